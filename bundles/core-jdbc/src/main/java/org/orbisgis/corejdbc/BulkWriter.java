@@ -36,35 +36,32 @@
  */
 package org.orbisgis.corejdbc;
 
-import java.util.Comparator;
+import java.sql.SQLException;
 
 /**
- *
- * A comparator with pre-loaded values,
- * does not require primary key but require more memory
- * @author Nicolas Fortin
+ * Write a large number of rows into an existing table. On PostgreSQL the rows are streamed with a binary COPY,
+ * other databases use batched inserts. Pending rows are sent when the buffer is full and on {@link #close()}.
+ * Instances are created by {@link CreateTable#createBulkWriter(java.sql.Connection, String, String[], int)}, they
+ * are not thread safe.
  */
-public class SortValueCachedComparator implements Comparator<Integer> {
+public interface BulkWriter extends AutoCloseable {
+
+    /**
+     * Append a row. While a PostgreSQL copy is in progress the connection cannot run other statements.
+     * @param values Column values, in the order of the columns given at creation, null values are accepted
+     * @throws SQLException If the value type does not match the column or if the rows cannot be sent
+     */
+    void addRow(Object... values) throws SQLException;
 
-        private Comparable<Object>[] values;
+    /**
+     * @return Number of rows appended
+     */
+    long getRowCount();
 
-        public SortValueCachedComparator(Comparable<Object>[] values) {
-                this.values = values;
-        }
-        
-        @Override
-        public int compare(Integer t, Integer t1) {
-                final Comparable<Object> left = values[t-1];
-                final Comparable<Object> right = values[t1-1];
-                if (right == null) {
-                    return (left == null) ? t.compareTo(t1) : 1;
-                } else if (left == null) {
-                    return -1;
-                }
-                int res = left.compareTo(right);
-                if(res==0) {
-                        res = t.compareTo(t1); //TreeSet remove duplicates
-                }
-                return res;
-        }        
+    /**
+     * Send the pending rows and release the statement.
+     * @throws SQLException
+     */
+    @Override
+    void close() throws SQLException;
 }
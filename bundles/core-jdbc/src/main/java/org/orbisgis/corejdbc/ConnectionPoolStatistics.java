@@ -0,0 +1,187 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc;
+
+/**
+ * Snapshot of the state of the connection pool of a {@link DataManager}.
+ */
+public class ConnectionPoolStatistics {
+    private final int maximumPoolSize;
+    private final int activeConnections;
+    private final int idleConnections;
+    private final long createdConnections;
+    private final long borrowCount;
+    private final long waitCount;
+    private final long totalWaitTime;
+    private final long validationFailures;
+    private final long leakCount;
+    private final long statementCacheHits;
+    private final long statementCacheMisses;
+    private final long statementCacheEvictions;
+
+    /**
+     * @param maximumPoolSize Maximum number of open connections
+     * @param activeConnections Connections currently borrowed
+     * @param idleConnections Open connections waiting in the pool
+     * @param createdConnections Number of physical connections opened since the pool creation
+     * @param borrowCount Number of {@link javax.sql.DataSource#getConnection()} calls served by the pool
+     * @param waitCount Number of calls that had to wait for a connection to be released
+     * @param totalWaitTime Cumulated waiting time in milliseconds
+     * @param validationFailures Number of idle connections found closed or broken before being borrowed
+     * @param leakCount Number of connections held longer than the leak detection threshold
+     * @param statementCacheHits Prepared statements reused from the cache
+     * @param statementCacheMisses Prepared statements created because they were not in the cache
+     * @param statementCacheEvictions Prepared statements closed to keep the cache size bounded
+     */
+    public ConnectionPoolStatistics(int maximumPoolSize, int activeConnections, int idleConnections,
+                                    long createdConnections, long borrowCount, long waitCount, long totalWaitTime,
+                                    long validationFailures, long leakCount, long statementCacheHits,
+                                    long statementCacheMisses, long statementCacheEvictions) {
+        this.maximumPoolSize = maximumPoolSize;
+        this.activeConnections = activeConnections;
+        this.idleConnections = idleConnections;
+        this.createdConnections = createdConnections;
+        this.borrowCount = borrowCount;
+        this.waitCount = waitCount;
+        this.totalWaitTime = totalWaitTime;
+        this.validationFailures = validationFailures;
+        this.leakCount = leakCount;
+        this.statementCacheHits = statementCacheHits;
+        this.statementCacheMisses = statementCacheMisses;
+        this.statementCacheEvictions = statementCacheEvictions;
+    }
+
+    /**
+     * @return Maximum number of open connections
+     */
+    public int getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    /**
+     * @return Connections currently borrowed
+     */
+    public int getActiveConnections() {
+        return activeConnections;
+    }
+
+    /**
+     * @return Open connections waiting in the pool
+     */
+    public int getIdleConnections() {
+        return idleConnections;
+    }
+
+    /**
+     * @return Number of physical connections opened since the pool creation
+     */
+    public long getCreatedConnections() {
+        return createdConnections;
+    }
+
+    /**
+     * @return Number of connections served by the pool
+     */
+    public long getBorrowCount() {
+        return borrowCount;
+    }
+
+    /**
+     * @return Number of requests that had to wait for a connection to be released
+     */
+    public long getWaitCount() {
+        return waitCount;
+    }
+
+    /**
+     * @return Cumulated waiting time in milliseconds
+     */
+    public long getTotalWaitTime() {
+        return totalWaitTime;
+    }
+
+    /**
+     * @return Number of idle connections found closed or broken before being borrowed
+     */
+    public long getValidationFailures() {
+        return validationFailures;
+    }
+
+    /**
+     * @return Number of connections held longer than the leak detection threshold
+     */
+    public long getLeakCount() {
+        return leakCount;
+    }
+
+    /**
+     * @return Prepared statements reused from the cache
+     */
+    public long getStatementCacheHits() {
+        return statementCacheHits;
+    }
+
+    /**
+     * @return Prepared statements created because they were not in the cache
+     */
+    public long getStatementCacheMisses() {
+        return statementCacheMisses;
+    }
+
+    /**
+     * @return Prepared statements closed to keep the cache size bounded
+     */
+    public long getStatementCacheEvictions() {
+        return statementCacheEvictions;
+    }
+
+    /**
+     * @return Part of the prepared statements served by the cache, in [0-1]
+     */
+    public double getStatementCacheHitRatio() {
+        long total = statementCacheHits + statementCacheMisses;
+        return total == 0 ? 0 : (double) statementCacheHits / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("active=%d idle=%d max=%d created=%d borrowed=%d waits=%d (%d ms) invalid=%d leaks=%d " +
+                        "statement cache hits=%d misses=%d evictions=%d", activeConnections, idleConnections,
+                maximumPoolSize, createdConnections, borrowCount, waitCount, totalWaitTime, validationFailures,
+                leakCount, statementCacheHits, statementCacheMisses, statementCacheEvictions);
+    }
+}
@@ -39,6 +39,11 @@ package org.orbisgis.corejdbc;
 import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.TableLocation;
 import org.orbisgis.commons.progress.ProgressMonitor;
+import org.orbisgis.corejdbc.common.NumberUnion;
+import org.orbisgis.corejdbc.internal.BatchInsertWriter;
+import org.orbisgis.corejdbc.internal.CopyInWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.xnap.commons.i18n.I18n;
 import org.xnap.commons.i18n.I18nFactory;
 
@@ -50,7 +55,10 @@ import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 
@@ -60,10 +68,18 @@ import java.util.Set;
  */
 public class CreateTable {
     private static final int INSERT_BATCH_SIZE = 30;
+    // Number of values sent in a single array parameter
+    private static final int ARRAY_INSERT_SIZE = 1 << 14;
+    // Consecutive values are inserted with a range query from this count
+    private static final int MIN_RANGE_LENGTH = 16;
+    private static final Logger LOGGER = LoggerFactory.getLogger(CreateTable.class);
     protected final static I18n I18N = I18nFactory.getI18n(CreateTable.class, Locale.getDefault(), I18nFactory.FALLBACK);
 
     /**
      * Create a temporary table that contains the provided collection of integers.
+     * On H2 and PostGreSQL, ranges of consecutive values of a {@link NumberUnion} are inserted with a single range
+     * query. The other values are sent by arrays on H2, with a {@link BulkWriter} on other databases (binary COPY
+     * on PostGreSQL, batches of insertBatchSize rows otherwise).
      * @param connection JDBC connection
      * @param pm Progress monitor
      * @param selectedRows Integer to add in temp table,elements must be unique as it will be added a primary key
@@ -76,39 +92,175 @@ public class CreateTable {
         try(Statement st = connection.createStatement()) {
             // Create row id table
             String tempTableName = "CREATE_SOURCE";
-            tempTableName = MetaData.getNewUniqueName(tempTableName, connection.getMetaData(), "");
+            DatabaseMetaData meta = connection.getMetaData();
+            tempTableName = MetaData.getNewUniqueName(tempTableName, meta, "");
             st.execute(String.format("CREATE LOCAL TEMPORARY TABLE %s("+columnName+" bigint primary key)", tempTableName));
-            // Prepare insert statement
-            PreparedStatement insertSt = connection.prepareStatement(String.format("INSERT INTO %s VALUES(?)", tempTableName));
+            if(JDBCUtilities.isH2DataBase(meta)) {
+                insertBulk(connection, tempTableName, selectedRows, insertProgress);
+            } else {
+                insertWriter(connection, tempTableName, columnName, selectedRows,
+                        isPostgreSQL(meta), insertBatchSize, insertProgress);
+            }
+            return tempTableName;
+        }
+    }
+
+    /**
+     * Insert the values with a bulk writer, on PostGreSQL ranges of consecutive values are inserted first with range
+     * queries as the connection is not available during the copy.
+     */
+    private static void insertWriter(Connection connection, String tempTableName, String columnName,
+                                     Collection<Long> selectedRows, boolean isPostgreSQL, int insertBatchSize,
+                                     ProgressMonitor insertProgress) throws SQLException {
+        long inserted = 0;
+        List<?> ranges = selectedRows instanceof NumberUnion ? ((NumberUnion<?>) selectedRows).getValueRanges() :
+                null;
+        if(isPostgreSQL && ranges != null) {
+            try(PreparedStatement rangeSt = connection.prepareStatement(String.format(
+                    "INSERT INTO %s SELECT generate_series(?::bigint, ?::bigint)", tempTableName))) {
+                PropertyChangeListener listener = EventHandler.create(PropertyChangeListener.class, rangeSt, "cancel");
+                insertProgress.addPropertyChangeListener(ProgressMonitor.PROP_CANCEL, listener);
+                try {
+                    for (int idRange = 0; idRange < ranges.size() - 1 && !insertProgress.isCancelled(); idRange += 2) {
+                        long begin = ((Number) ranges.get(idRange)).longValue();
+                        long end = ((Number) ranges.get(idRange + 1)).longValue();
+                        if (end - begin + 1 >= MIN_RANGE_LENGTH) {
+                            rangeSt.setLong(1, begin);
+                            rangeSt.setLong(2, end);
+                            rangeSt.executeUpdate();
+                            inserted += end - begin + 1;
+                            insertProgress.progressTo(inserted);
+                        }
+                    }
+                } finally {
+                    insertProgress.removePropertyChangeListener(listener);
+                }
+            }
+        }
+        try(BulkWriter writer = createBulkWriter(connection, tempTableName, new String[]{columnName},
+                insertBatchSize)) {
+            if(isPostgreSQL && ranges != null) {
+                // Remaining short ranges
+                for (int idRange = 0; idRange < ranges.size() - 1 && !insertProgress.isCancelled(); idRange += 2) {
+                    long begin = ((Number) ranges.get(idRange)).longValue();
+                    long end = ((Number) ranges.get(idRange + 1)).longValue();
+                    if (end - begin + 1 < MIN_RANGE_LENGTH) {
+                        for (long key = begin; key <= end; key++) {
+                            writer.addRow(key);
+                        }
+                        inserted += end - begin + 1;
+                        insertProgress.progressTo(inserted);
+                    }
+                }
+            } else {
+                Iterator<Long> it = selectedRows.iterator();
+                while(it.hasNext() && !insertProgress.isCancelled()) {
+                    writer.addRow(it.next());
+                    insertProgress.endTask();
+                }
+            }
+        }
+    }
+
+    /**
+     * Insert the ranges of consecutive values with range queries and the other values with array parameters
+     */
+    private static void insertBulk(Connection connection, String tempTableName, Collection<Long> selectedRows,
+                                   ProgressMonitor insertProgress) throws SQLException {
+        String rangeQuery = "INSERT INTO %s SELECT X FROM SYSTEM_RANGE(?, ?)";
+        String arrayQuery = "INSERT INTO %s SELECT X FROM TABLE(X BIGINT = ?)";
+        try(PreparedStatement rangeSt = connection.prepareStatement(String.format(rangeQuery, tempTableName));
+            PreparedStatement arraySt = connection.prepareStatement(String.format(arrayQuery, tempTableName))) {
             // Cancel insert
-            PropertyChangeListener listener = EventHandler.create(PropertyChangeListener.class, insertSt, "cancel");
-            insertProgress.addPropertyChangeListener(ProgressMonitor.PROP_CANCEL,
-                    listener);
+            PropertyChangeListener rangeListener = EventHandler.create(PropertyChangeListener.class, rangeSt, "cancel");
+            PropertyChangeListener arrayListener = EventHandler.create(PropertyChangeListener.class, arraySt, "cancel");
+            insertProgress.addPropertyChangeListener(ProgressMonitor.PROP_CANCEL, rangeListener);
+            insertProgress.addPropertyChangeListener(ProgressMonitor.PROP_CANCEL, arrayListener);
             try {
-                int batchSize = 0;
-                for (long sel : selectedRows){
-                    insertSt.setLong(1, sel);
-                    insertSt.addBatch();
-                    batchSize++;
-                    insertProgress.endTask();
-                    if(batchSize >= insertBatchSize) {
-                        batchSize = 0;
-                        insertSt.executeBatch();
+                Long[] keys = new Long[ARRAY_INSERT_SIZE];
+                int keyCount = 0;
+                long inserted = 0;
+                if(selectedRows instanceof NumberUnion) {
+                    List<?> ranges = ((NumberUnion<?>) selectedRows).getValueRanges();
+                    for(int idRange = 0; idRange < ranges.size() - 1 && !insertProgress.isCancelled(); idRange += 2) {
+                        long begin = ((Number) ranges.get(idRange)).longValue();
+                        long end = ((Number) ranges.get(idRange + 1)).longValue();
+                        if(end - begin + 1 >= MIN_RANGE_LENGTH) {
+                            rangeSt.setLong(1, begin);
+                            rangeSt.setLong(2, end);
+                            rangeSt.executeUpdate();
+                            inserted += end - begin + 1;
+                            insertProgress.progressTo(inserted);
+                        } else {
+                            for(long key = begin; key <= end; key++) {
+                                keys[keyCount++] = key;
+                                if(keyCount == keys.length) {
+                                    insertArray(arraySt, keys);
+                                    inserted += keyCount;
+                                    keyCount = 0;
+                                    insertProgress.progressTo(inserted);
+                                }
+                            }
+                        }
                     }
-                    if(insertProgress.isCancelled()) {
-                        break;
+                } else {
+                    Iterator<Long> it = selectedRows.iterator();
+                    while(it.hasNext() && !insertProgress.isCancelled()) {
+                        keys[keyCount++] = it.next();
+                        if(keyCount == keys.length) {
+                            insertArray(arraySt, keys);
+                            inserted += keyCount;
+                            keyCount = 0;
+                            insertProgress.progressTo(inserted);
+                        }
                     }
                 }
-                if(batchSize > 0) {
-                    insertSt.executeBatch();
+                if(keyCount > 0 && !insertProgress.isCancelled()) {
+                    insertArray(arraySt, Arrays.copyOf(keys, keyCount));
+                    inserted += keyCount;
+                    insertProgress.progressTo(inserted);
                 }
             } finally {
-                insertProgress.removePropertyChangeListener(listener);
+                insertProgress.removePropertyChangeListener(rangeListener);
+                insertProgress.removePropertyChangeListener(arrayListener);
             }
-            return tempTableName;
         }
     }
 
+    private static void insertArray(PreparedStatement arraySt, Long[] keys) throws SQLException {
+        arraySt.setObject(1, keys);
+        arraySt.executeUpdate();
+    }
+
+    private static boolean isPostgreSQL(DatabaseMetaData meta) throws SQLException {
+        return "PostgreSQL".equalsIgnoreCase(meta.getDatabaseProductName());
+    }
+
+    /**
+     * Create a writer of many rows into an existing table. On PostGreSQL the rows are sent with a binary COPY if the
+     * PostGreSQL driver is available and all the column types are supported, otherwise batched inserts are used.
+     * @param connection Active connection, it cannot run other statements until the writer is closed
+     * @param tableReference Target table
+     * @param columns Target columns
+     * @param insertBatchSize Number of rows per batch when inserts are used
+     * @return The writer, to be closed by the caller
+     * @throws SQLException
+     */
+    public static BulkWriter createBulkWriter(Connection connection, String tableReference, String[] columns,
+                                              int insertBatchSize) throws SQLException {
+        if(isPostgreSQL(connection.getMetaData())) {
+            try {
+                BulkWriter copyWriter = CopyInWriter.create(connection, tableReference, columns);
+                if(copyWriter != null) {
+                    return copyWriter;
+                }
+            } catch (NoClassDefFoundError ex) {
+                // The PostGreSQL driver is not visible from this bundle
+                LOGGER.debug(ex.getLocalizedMessage(), ex);
+            }
+        }
+        return new BatchInsertWriter(connection, tableReference, columns, insertBatchSize);
+    }
 
     public static void createTableFromRowPkSelection(DataSource dataSource, String tableName, Set<Long> selectedRows,
                                                      String newName, ProgressMonitor pm) throws SQLException {
@@ -137,6 +289,8 @@ public class CreateTable {
                             "WHERE "+pkEquality, TableLocation.parse(newName),
                     TableLocation.parse(tableName),tempTableName, primaryKeyName));
             pm.removePropertyChangeListener(listener);
+            // The connection may be reused, do not wait for its close to drop the temporary table
+            st.execute("DROP TABLE IF EXISTS " + tempTableName);
         }
     }
 }
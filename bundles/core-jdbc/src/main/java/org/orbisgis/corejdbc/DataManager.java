@@ -36,10 +36,15 @@
  */
 package org.orbisgis.corejdbc;
 
+import com.vividsolutions.jts.geom.Envelope;
+
 import javax.sql.DataSource;
 import javax.sql.rowset.RowSetFactory;
 import java.net.URI;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  * DataManager has been created in order to minimize the usage of JDBC transaction when the ResultSet is
@@ -60,6 +65,56 @@ public interface DataManager extends RowSetFactory {
      */
     String registerDataSource(URI uri) throws SQLException;
 
+    /**
+     * Register a set of data sources. The tables already linked to the source files are looked up only once for
+     * all the sources, use this method instead of {@link #registerDataSource(java.net.URI)} when a lot of sources
+     * have to be registered.
+     * @param uris Sources path
+     * @return Table reference of each source. The sources that cannot be registered are not in this map.
+     * @throws SQLException Error while transaction with JDBC
+     */
+    Map<URI, String> registerDataSources(Collection<URI> uris) throws SQLException;
+
+    /**
+     * When enabled, the files registered on a local H2 database are imported into a cache schema with a spatial
+     * index instead of being linked. The imported table is kept while the size and the modification time of the
+     * file do not change, it is imported again when the file is registered after an update.
+     * Disabled by default, the default value can be set with the system property
+     * corejdbc.datamanager.materialize_files.
+     * @param materializeLinkedFiles True to import the registered files
+     */
+    void setMaterializeLinkedFiles(boolean materializeLinkedFiles);
+
+    /**
+     * @return True if the registered files are imported into a spatially indexed cache
+     * @see #setMaterializeLinkedFiles(boolean)
+     */
+    boolean isMaterializeLinkedFiles();
+
+    /**
+     * When enabled, the changes of the listened tables of a local H2 database are detected at the end of each
+     * statement, by comparing the table modification counters, instead of with row triggers. Bulk statements on the
+     * listened tables are not slowed down, the listeners receive a single event without primary key per changed
+     * table. Disabled by default, the default value can be set with the system property
+     * corejdbc.datamanager.statement_change_events.
+     * @param statementChangeEvents True to detect the table changes at the end of each statement
+     */
+    void setStatementChangeEvents(boolean statementChangeEvents);
+
+    /**
+     * @return True if the table changes are detected at the end of each statement instead of with row triggers
+     * @see #setStatementChangeEvents(boolean)
+     */
+    boolean isStatementChangeEvents();
+
+    /**
+     * @param tableReference Table reference [[catalog.]schema.]table
+     * @return The envelope computed when the file of this table has been imported, null if the table is not an
+     * imported file.
+     * @throws SQLException Error while reading the cache catalog
+     */
+    Envelope getCachedEnvelope(String tableReference) throws SQLException;
+
     /**
      * @param tableReference Table reference [[catalog.]schema.]table
      * @return True if this table exists
@@ -71,6 +126,37 @@ public interface DataManager extends RowSetFactory {
      */
     DataSource getDataSource();
 
+    /**
+     * The DataSource of this DataManager keeps a bounded pool of connections, with a prepared statement cache per
+     * connection.
+     * @return Current state of the connection pool, null if the connections are not pooled
+     */
+    ConnectionPoolStatistics getConnectionPoolStatistics();
+
+    /**
+     * The statements issued through the pooled connections are timed and aggregated by SQL template. Statements
+     * slower than a threshold are appended to a log file in the workspace. The metrics are disabled unless the system
+     * property corejdbc.datamanager.statement_metrics is true.
+     * @return Metrics of each statement template, the most time consuming first. Empty if the connections are not
+     * pooled or if the metrics are disabled.
+     */
+    List<StatementMetrics> getStatementMetrics();
+
+    /**
+     * Forget the collected statement metrics
+     */
+    void resetStatementMetrics();
+
+    /**
+     * @return The cache of rows shared by the row sets
+     */
+    RowCache getRowCache();
+
+    /**
+     * @return The cache of the sorted row indexes of table columns
+     */
+    SortIndexCache getSortIndexCache();
+
     /**
      * Same as {@link javax.sql.rowset.RowSetFactory#createJdbcRowSet()}
      * @return A RowSet that manage {@link TableEditListener}
@@ -90,6 +176,13 @@ public interface DataManager extends RowSetFactory {
      */
     boolean hasTableEditListener(String table);
 
+    /**
+     * @param table Table identifier [[catalog.]schema.]table
+     * @return True if a listener of this table has requested the database changes, see
+     * {@link #addTableEditListener(String, TableEditListener, boolean)}
+     */
+    boolean hasTableEditTrigger(String table);
+
     /**
      * Table update done through ReversibleRowSet will be fire through theses listeners
      * @param table Table identifier [[catalog.]schema.]table
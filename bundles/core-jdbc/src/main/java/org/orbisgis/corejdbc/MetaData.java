@@ -443,6 +443,36 @@ public class MetaData {
         throw new SQLException(I18N.tr("Cannot find the table {0}", tableName));
     }
 
+    /**
+     * Read a value that change when the rows of the table are modified. On H2 this is the last modification id of
+     * the table, on PostGreSQL the number of inserted, updated and deleted tuples.
+     * @param connection Active connection
+     * @param table Table location
+     * @return The modification stamp, 0 if not available
+     */
+    public static long getTableModificationStamp(Connection connection, TableLocation table) {
+        String schema = table.getSchema();
+        String query;
+        try {
+            if (JDBCUtilities.isH2DataBase(connection.getMetaData())) {
+                query = "SELECT LAST_MODIFICATION FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ?";
+                schema = schema.isEmpty() ? "PUBLIC" : schema;
+            } else {
+                query = "SELECT n_tup_ins + n_tup_upd + n_tup_del FROM pg_stat_all_tables WHERE schemaname = ? AND relname = ?";
+                schema = schema.isEmpty() ? "public" : schema;
+            }
+            try (PreparedStatement st = connection.prepareStatement(query)) {
+                st.setString(1, schema);
+                st.setString(2, table.getTable());
+                try (ResultSet rs = st.executeQuery()) {
+                    return rs.next() ? rs.getLong(1) : 0;
+                }
+            }
+        } catch (SQLException ex) {
+            return 0;
+        }
+    }
+
     /**
      * List of available table types
      */
@@ -36,6 +36,7 @@
  */
 package org.orbisgis.corejdbc;
 
+import com.vividsolutions.jts.geom.Envelope;
 import org.h2gis.utilities.SpatialResultSet;
 import org.orbisgis.commons.progress.ProgressMonitor;
 
@@ -91,6 +92,23 @@ public interface ReadRowSet extends JdbcRowSet , SpatialResultSet {
      */
     public String getPkName();
 
+    /**
+     * The rows are read by batches of {@link java.sql.ResultSet#getFetchSize()} rows ordered by primary key. The
+     * first primary key value of the batches are found while reading the rows, or in background for large tables.
+     * @return The first primary key value of the known batches, in ascending order. Empty if there is no primary key.
+     */
+    long[] getBatchFirstPk();
+
+    /**
+     * Iterate over the rows while holding the read lock, see {@link RowCursor}.
+     * @param columns Column names, null to read all columns
+     * @param pkFilter Primary key of the rows to read, null to read all rows
+     * @param pm Progress monitor, the cursor stops when cancelled
+     * @return A cursor before the first row, close it to release the read lock
+     * @throws SQLException If the read lock is not acquired within {@link RowCursor#DEFAULT_LOCK_TIMEOUT}
+     */
+    RowCursor cursor(String[] columns, SortedSet<Long> pkFilter, ProgressMonitor pm) throws SQLException;
+
     /**
      * @return The read lock on this result set
      */
@@ -102,6 +120,27 @@ public interface ReadRowSet extends JdbcRowSet , SpatialResultSet {
      */
     void setCloseDelay(int milliseconds);
 
+    /**
+     * Read ahead the following batches in a background thread, in the scroll direction given by
+     * {@link java.sql.ResultSet#setFetchDirection(int)} or deduced from the cursor moves. (0, disabled by default)
+     * @param batchCount Number of batches of {@link java.sql.ResultSet#getFetchSize()} rows to read ahead
+     */
+    void setPrefetchDepth(int batchCount);
+
+    /**
+     * @param bytes Maximum estimated memory used by the batches read ahead
+     */
+    void setPrefetchMemoryLimit(long bytes);
+
+    /**
+     * Read the envelope of a geometry field of the current row. The cached WKB is not decoded into a
+     * {@link com.vividsolutions.jts.geom.Geometry}, only its coordinates bounds are read.
+     * @param column Geometry column index [1-n]
+     * @return The geometry envelope, or null if the cell is null
+     * @throws SQLException If the column is not a geometry column
+     */
+    Envelope getEnvelope(int column) throws SQLException;
+
     /**
      * @return The numeric, simple primary key of the current row. Used to identify a row.
      */
@@ -43,12 +43,15 @@ import org.h2gis.utilities.SFSUtilities;
 import org.h2gis.utilities.SpatialResultSet;
 import org.h2gis.utilities.TableLocation;
 import org.orbisgis.commons.progress.ProgressMonitor;
-import org.orbisgis.corejdbc.common.LongUnion;
+import org.orbisgis.corejdbc.common.IntegerArrayView;
+import org.orbisgis.corejdbc.common.LongBitmap;
+import org.orbisgis.corejdbc.common.PermutationSort;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnap.commons.i18n.I18n;
 import org.xnap.commons.i18n.I18nFactory;
 
+import javax.sql.DataSource;
 import java.beans.EventHandler;
 import java.beans.PropertyChangeListener;
 import java.io.Closeable;
@@ -60,6 +63,7 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.text.NumberFormat;
 import java.util.*;
 import java.util.concurrent.locks.Lock;
@@ -78,10 +82,20 @@ public class ReadTable {
     private static Logger LOGGER = LoggerFactory.getLogger(ReadTable.class);
     private static final int INSERT_BATCH_SIZE = 30;
 
+    /**
+     * Sort the rows of a table using the values of a column.
+     * @param connection Active connection
+     * @param originalOrder Row set of the table, used if the table does not have an integer primary key
+     * @param table Table identifier
+     * @param originalColumnName Column to sort
+     * @param ascending Sort order
+     * @param progressMonitor Progress monitor
+     * @return Row numbers [1-n] in the sort order, empty if the sort is cancelled
+     * @throws SQLException
+     */
     public static Collection<Integer> getSortedColumnRowIndex(Connection connection,ReadRowSet originalOrder, String table, String originalColumnName, boolean ascending, ProgressMonitor progressMonitor) throws SQLException {
         String quoteIdentifier = TableLocation.quoteIdentifier(originalColumnName);
         TableLocation tableLocation = TableLocation.parse(table);
-        Collection<Integer> columnValues;
         try(Statement st = connection.createStatement()) {
             int rowCount = 0;
             try(ResultSet rs = st.executeQuery("SELECT COUNT(*) cpt from "+tableLocation.toString())) {
@@ -89,7 +103,6 @@ public class ReadTable {
                     rowCount = rs.getInt(1);
                 }
             }
-            columnValues = new ArrayList<>(rowCount);
             PropertyChangeListener listener = EventHandler.create(PropertyChangeListener.class, st, "cancel");
             progressMonitor.addPropertyChangeListener(ProgressMonitor.PROP_CANCEL,listener);
             try {
@@ -105,42 +118,46 @@ public class ReadTable {
                     if(!ascending) {
                         desc = " DESC";
                     }
-                    // Create a map of Row Id to Pk Value
+                    // Pk values in the row order, the row id is found by binary search
                     ProgressMonitor pkProgress = jobProgress.startTask(I18N.tr("Build the primary key request"), 1);
-                    Map<Long, Integer> pkValueToRowId = new HashMap<>(rowCount);
-                    int rowId=0;
+                    long[] rowPk = new long[rowCount];
+                    int pkCount = 0;
                     try(ResultSet rs = st.executeQuery("select "+pkFieldName+" from "+table+" ORDER BY "+pkFieldName)){
                         if(JDBCUtilities.isH2DataBase(connection.getMetaData())) {
                             rs.beforeFirst();
                         }
                         pkProgress.endTask();
                         ProgressMonitor cacheProgress = jobProgress.startTask(I18N.tr("Cache primary key values"), rowCount);
-                        while (rs.next() && !progressMonitor.isCancelled()) {
-                            rowId++;
-                            pkValueToRowId.put(rs.getLong(1), rowId);
+                        while (pkCount < rowCount && rs.next() && !progressMonitor.isCancelled()) {
+                            rowPk[pkCount++] = rs.getLong(1);
                             cacheProgress.endTask();
                         }
                         rs.close();
                     }
                     if(progressMonitor.isCancelled()){
-                        return new ArrayList<>(rowCount);
+                        return new IntegerArrayView(new int[0]);
                     }
                     // Read ordered pk values
                     ProgressMonitor sortedPkProgress = jobProgress.startTask(I18N.tr("Build the sorted key request"), 1);
-
+                    int[] sortedRows = new int[pkCount];
+                    int sortedCount = 0;
                     try(ResultSet rs = st.executeQuery("select "+pkFieldName+" from "+table+" ORDER BY "+quoteIdentifier+desc)) {
                         sortedPkProgress.endTask();
                         ProgressMonitor sortProgress = jobProgress.startTask(I18N.tr("Read sorted keys"), rowCount);
-                        while(rs.next()) {
-                            columnValues.add(pkValueToRowId.get(rs.getLong(1)));
+                        while(sortedCount < pkCount && rs.next()) {
+                            int rowIndex = Arrays.binarySearch(rowPk, 0, pkCount, rs.getLong(1));
+                            if(rowIndex >= 0) {
+                                sortedRows[sortedCount++] = rowIndex + 1;
+                            }
                             sortProgress.endTask();
                         }
                     }
+                    return new IntegerArrayView(sortedRows, sortedCount);
                 } else {
                     ProgressMonitor jobProgress = progressMonitor.startTask(2);
                     //Cache values
                     ProgressMonitor cacheProgress = jobProgress.startTask(I18N.tr("Cache table values"), rowCount);
-                    Comparable[] cache = new Comparable[rowCount];
+                    PermutationSort.SortKeys keys;
                     Lock lock = originalOrder.getReadLock();
                     lock.tryLock();
                     try{
@@ -157,40 +174,99 @@ public class ReadTable {
                             }
                             fieldIndex-=offset;
                         }
-                        while(originalOrder.next() && !progressMonitor.isCancelled()) {
-                            Object obj = originalOrder.getObject(fieldIndex);
-                            if(obj != null && !(obj instanceof Comparable)) {
-                                throw new SQLException(I18N.tr("Could only sort comparable database object type"));
-                            }
-                            cache[i++] = (Comparable)obj;
+                        keys = createSortKeys(originalOrder.getMetaData().getColumnType(fieldIndex), rowCount);
+                        while(i < rowCount && originalOrder.next() && !progressMonitor.isCancelled()) {
+                            readSortKey(originalOrder, fieldIndex, keys, i++);
                             cacheProgress.endTask();
                         }
                     } finally {
                         lock.unlock();
                     }
                     if(progressMonitor.isCancelled()){
-                        return new ArrayList<>(rowCount);
+                        return new IntegerArrayView(new int[0]);
                     }
-                    ProgressMonitor sortProgress = jobProgress.startTask(I18N.tr("Sort table values"), rowCount);
-                    Comparator<Integer> comparator = new SortValueCachedComparator(cache);
-                    if (!ascending) {
-                        comparator = Collections.reverseOrder(comparator);
+                    ProgressMonitor sortProgress = jobProgress.startTask(I18N.tr("Sort table values"), 1);
+                    int[] sortedRows = PermutationSort.sort(keys, ascending, progressMonitor);
+                    if(sortedRows == null) {
+                        // Cancelled
+                        return new IntegerArrayView(new int[0]);
                     }
-                    columnValues = new TreeSet<>(comparator);
-                    for (int i = 1; i <= rowCount; i++) {
-                        columnValues.add(i);
-                        sortProgress.endTask();
+                    for (int i = 0; i < sortedRows.length; i++) {
+                        sortedRows[i]++;
                     }
+                    sortProgress.endTask();
+                    return new IntegerArrayView(sortedRows);
                 }
             } finally {
                 progressMonitor.removePropertyChangeListener(listener);
             }
-            return columnValues;
+        }
+    }
+
+    /**
+     * @param sqlType Column type {@link Types}
+     * @param rowCount Number of rows
+     * @return Primitive storage of the column values
+     */
+    private static PermutationSort.SortKeys createSortKeys(int sqlType, int rowCount) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return new PermutationSort.LongKeys(rowCount);
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return new PermutationSort.DoubleKeys(rowCount);
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                return new PermutationSort.StringKeys(rowCount);
+            default:
+                return new PermutationSort.ObjectKeys(rowCount);
+        }
+    }
+
+    /**
+     * Copy the value of the current row into the sort keys
+     * @param rs Result set on a valid row
+     * @param fieldIndex Column index
+     * @param keys Destination
+     * @param row Row index [0-n[
+     * @throws SQLException
+     */
+    private static void readSortKey(ResultSet rs, int fieldIndex, PermutationSort.SortKeys keys, int row) throws SQLException {
+        if(keys instanceof PermutationSort.LongKeys) {
+            long value = rs.getLong(fieldIndex);
+            if(rs.wasNull()) {
+                keys.setNull(row);
+            } else {
+                ((PermutationSort.LongKeys) keys).set(row, value);
+            }
+        } else if(keys instanceof PermutationSort.DoubleKeys) {
+            double value = rs.getDouble(fieldIndex);
+            if(rs.wasNull()) {
+                keys.setNull(row);
+            } else {
+                ((PermutationSort.DoubleKeys) keys).set(row, value);
+            }
+        } else if(keys instanceof PermutationSort.StringKeys) {
+            ((PermutationSort.StringKeys) keys).set(row, rs.getString(fieldIndex));
+        } else {
+            Object obj = rs.getObject(fieldIndex);
+            if(obj != null && !(obj instanceof Comparable)) {
+                throw new SQLException(I18N.tr("Could only sort comparable database object type"));
+            }
+            ((PermutationSort.ObjectKeys) keys).set(row, (Comparable) obj);
         }
     }
 
     public static SortedSet<Long> getRowPkFromRowNumber(ReadRowSet rowSet, SortedSet<Integer> rowNumber) throws SQLException {
-        SortedSet<Long> modelRows = new LongUnion();
+        SortedSet<Long> modelRows = new LongBitmap();
         for (int rowNum : rowNumber) {
             rowSet.absolute(rowNum);
             modelRows.add(rowSet.getPk());
@@ -333,7 +409,63 @@ public class ReadTable {
      * @throws SQLException
      */
     public static String[] computeStatsSQL(Connection connection, String tableName, String columnName, ProgressMonitor pm) throws SQLException {
-        String[] stats = new String[STATS.values().length];
+        try(Statement st = connection.createStatement()) {
+
+            // Cancel select
+            PropertyChangeListener listener = EventHandler.create(PropertyChangeListener.class, st, "cancel");
+            pm.addPropertyChangeListener(ProgressMonitor.PROP_CANCEL,
+                    listener);
+            try(ResultSet rs = st.executeQuery(String.format("SELECT %s FROM %s",getStatsFields(columnName), tableName ))) {
+                return readStats(rs);
+            } finally {
+                pm.removePropertyChangeListener(listener);
+            }
+        }
+    }
+
+    /**
+     * Compute numeric stats of the specified table column. The table is split in ranges of primary key that are
+     * aggregated concurrently, then the partial aggregates are merged.
+     * @param dataSource Connections used by the ranges
+     * @param tableName Table name
+     * @param columnName Column name
+     * @param pm Progress monitor
+     * @return An array of attributes {@link STATS}, null if canceled
+     * @throws SQLException
+     * @see TableScan
+     */
+    public static String[] computeStatsSQL(DataSource dataSource, String tableName, String columnName, ProgressMonitor pm) throws SQLException {
+        String value = columnName + "::double precision";
+        PartialStats stats = new TableScan(dataSource, tableName).scan("COUNT(" + value + "), SUM(" + value + "), MIN(" +
+                value + "), MAX(" + value + "), VAR_SAMP(" + value + ")", new PartialStatsReader(), pm);
+        return stats == null ? null : stats.toStats();
+    }
+
+    /**
+     * Compute numeric stats of the specified table column using a limited input rows. The primary keys are copied
+     * in a temporary table and the stats are done in the sql side.
+     * @param connection Available connection
+     * @param tableName Table name
+     * @param columnName Column name
+     * @param rowPk Primary key of the rows
+     * @param pm Progress monitor
+     * @return An array of attributes {@link STATS}
+     * @throws SQLException
+     */
+    public static String[] computeStatsSQL(Connection connection, String tableName, String columnName, SortedSet<Long> rowPk, ProgressMonitor pm) throws SQLException {
+        try(FilteredResultSet fRs = new FilteredResultSet(connection, tableName, rowPk, pm, false,
+                getStatsFields("t1." + columnName))) {
+            return readStats(fRs.getResultSet());
+        } catch (IOException ex) {
+            throw new SQLException(ex.getLocalizedMessage(), ex);
+        }
+    }
+
+    /**
+     * @param columnName Column expression
+     * @return The aggregate functions of {@link STATS} applied on the column
+     */
+    private static String getStatsFields(String columnName) {
         StringBuilder sb = new StringBuilder();
         for(STATS func : STATS.values()) {
             if(sb.length()!=0) {
@@ -345,20 +477,76 @@ public class ReadTable {
             sb.append("::double precision) ");
             sb.append(func.name());
         }
-        try(Statement st = connection.createStatement()) {
+        return sb.toString();
+    }
 
-            // Cancel select
-            PropertyChangeListener listener = EventHandler.create(PropertyChangeListener.class, st, "cancel");
-            pm.addPropertyChangeListener(ProgressMonitor.PROP_CANCEL,
-                    listener);
-            try(ResultSet rs = st.executeQuery(String.format("SELECT %s FROM %s",sb.toString(), tableName ))) {
-                if(rs.next()) {
-                    for(STATS func : STATS.values()) {
-                        stats[func.ordinal()] = rs.getString(func.name());
-                    }
+    /**
+     * Aggregates of a range of rows
+     */
+    private static class PartialStats {
+        private long count;
+        private double sum;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        // Sum of squared differences from the mean
+        private double m2;
+
+        private String[] toStats() {
+            String[] stats = new String[STATS.values().length];
+            stats[STATS.COUNT.ordinal()] = Long.toString(count);
+            if(count > 0) {
+                stats[STATS.SUM.ordinal()] = Double.toString(sum);
+                stats[STATS.AVG.ordinal()] = Double.toString(sum / count);
+                stats[STATS.MIN.ordinal()] = Double.toString(min);
+                stats[STATS.MAX.ordinal()] = Double.toString(max);
+                if(count > 1) {
+                    stats[STATS.STDDEV_SAMP.ordinal()] = Double.toString(Math.sqrt(m2 / (count - 1)));
                 }
-            } finally {
-                pm.removePropertyChangeListener(listener);
+            }
+            return stats;
+        }
+    }
+
+    private static class PartialStatsReader implements TableScan.PartitionReader<PartialStats> {
+        @Override
+        public PartialStats read(ResultSet rs) throws SQLException {
+            PartialStats stats = new PartialStats();
+            if(rs.next()) {
+                stats.count = rs.getLong(1);
+                if(stats.count > 0) {
+                    stats.sum = rs.getDouble(2);
+                    stats.min = rs.getDouble(3);
+                    stats.max = rs.getDouble(4);
+                    stats.m2 = stats.count > 1 ? rs.getDouble(5) * (stats.count - 1) : 0;
+                }
+            }
+            return stats;
+        }
+
+        @Override
+        public PartialStats merge(PartialStats left, PartialStats right) {
+            if(left.count == 0) {
+                return right;
+            } else if(right.count == 0) {
+                return left;
+            }
+            PartialStats stats = new PartialStats();
+            stats.count = left.count + right.count;
+            stats.sum = left.sum + right.sum;
+            stats.min = Math.min(left.min, right.min);
+            stats.max = Math.max(left.max, right.max);
+            // Chan et al. pairwise variance
+            double delta = right.sum / right.count - left.sum / left.count;
+            stats.m2 = left.m2 + right.m2 + delta * delta * left.count * right.count / stats.count;
+            return stats;
+        }
+    }
+
+    private static String[] readStats(ResultSet rs) throws SQLException {
+        String[] stats = new String[STATS.values().length];
+        if(rs.next()) {
+            for(STATS func : STATS.values()) {
+                stats[func.ordinal()] = rs.getString(func.name());
             }
         }
         return stats;
@@ -375,25 +563,75 @@ public class ReadTable {
      * @throws SQLException
      */
     public static String[] computeStatsLocal(Connection connection, String tableName, String columnName, SortedSet<Integer> rowNum, ProgressMonitor pm) throws SQLException {
-        String[] res = new String[STATS.values().length];
-        SummaryStatistics stats = new SummaryStatistics();
-        try(Statement st = connection.createStatement()) {
-            // Cancel select
-            PropertyChangeListener listener = EventHandler.create(PropertyChangeListener.class, st, "cancel");
-            pm.addPropertyChangeListener(ProgressMonitor.PROP_CANCEL,
-                    listener);
-            try (ResultSet rs = st.executeQuery(String.format("SELECT %s FROM %s",columnName, tableName ))) {
-                ProgressMonitor fetchProgress = pm.startTask(rowNum.size());
-                while(rs.next() && !pm.isCancelled()) {
-                    if(rowNum.contains(rs.getRow())) {
-                        stats.addValue(rs.getDouble(columnName));
+        return computeStatsLocal(connection, tableName, new String[]{columnName}, rowNum, pm)[0];
+    }
+
+    /**
+     * Compute numeric stats of several columns using a limited input rows, in a single pass over the table rows.
+     * The rows that follow the last row id are not read. Null values are ignored as in the sql side.
+     * @param connection Available connection
+     * @param tableName Table name
+     * @param columnNames Column names
+     * @param rowNum Row id
+     * @param pm Progress monitor
+     * @return For each column, an array of attributes {@link STATS}
+     * @throws SQLException
+     */
+    public static String[][] computeStatsLocal(Connection connection, String tableName, String[] columnNames, SortedSet<Integer> rowNum, ProgressMonitor pm) throws SQLException {
+        SummaryStatistics[] stats = new SummaryStatistics[columnNames.length];
+        StringBuilder fields = new StringBuilder();
+        for(int idColumn = 0; idColumn < columnNames.length; idColumn++) {
+            stats[idColumn] = new SummaryStatistics();
+            if(fields.length() != 0) {
+                fields.append(", ");
+            }
+            fields.append(columnNames[idColumn]);
+        }
+        if(!rowNum.isEmpty() && rowNum.last() > 0) {
+            try (Statement st = connection.createStatement()) {
+                // Do not read the rows after the last selected row
+                st.setMaxRows(rowNum.last());
+                // Cancel select
+                PropertyChangeListener listener = EventHandler.create(PropertyChangeListener.class, st, "cancel");
+                pm.addPropertyChangeListener(ProgressMonitor.PROP_CANCEL,
+                        listener);
+                try (ResultSet rs = st.executeQuery(String.format("SELECT %s FROM %s", fields, tableName))) {
+                    ProgressMonitor fetchProgress = pm.startTask(rowNum.size());
+                    int row = 0;
+                    Iterator<Integer> itRow = rowNum.iterator();
+                    while (itRow.hasNext() && !pm.isCancelled()) {
+                        int selectedRow = itRow.next();
+                        // Skip the rows that are not selected
+                        while (row < selectedRow && rs.next()) {
+                            row++;
+                        }
+                        if (row < selectedRow) {
+                            break;
+                        }
+                        if (selectedRow > 0) {
+                            for (int idColumn = 0; idColumn < columnNames.length; idColumn++) {
+                                double value = rs.getDouble(idColumn + 1);
+                                if (!rs.wasNull()) {
+                                    stats[idColumn].addValue(value);
+                                }
+                            }
+                        }
                         fetchProgress.endTask();
                     }
+                } finally {
+                    pm.removePropertyChangeListener(listener);
                 }
-            } finally {
-                pm.removePropertyChangeListener(listener);
             }
         }
+        String[][] res = new String[columnNames.length][];
+        for(int idColumn = 0; idColumn < columnNames.length; idColumn++) {
+            res[idColumn] = getStats(stats[idColumn]);
+        }
+        return res;
+    }
+
+    private static String[] getStats(SummaryStatistics stats) {
+        String[] res = new String[STATS.values().length];
         res[STATS.SUM.ordinal()] = Double.toString(stats.getSum());
         res[STATS.AVG.ordinal()] = Double.toString(stats.getMean());
         res[STATS.COUNT.ordinal()] = Long.toString(stats.getN());
@@ -444,7 +682,7 @@ public class ReadTable {
      */
     public static Set<Long> getTablePkByEnvelope(DataManager dataManager, String table,String geometryColumn,
                                                     Geometry selection, boolean contains) throws SQLException {
-        Set<Long> newSelection = new HashSet<>(50);
+        LongBitmap newSelection = new LongBitmap();
         TableLocation tableLocation = TableLocation.parse(table);
         // There is a where condition then system row index can't be used
         try(Connection connection = dataManager.getDataSource().getConnection()) {
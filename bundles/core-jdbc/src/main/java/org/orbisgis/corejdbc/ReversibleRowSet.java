@@ -64,4 +64,51 @@ public interface ReversibleRowSet extends ReadRowSet {
      * @throws SQLException
      */
     void updateGeometry(Geometry geometry) throws SQLException;
+
+    /**
+     * Start an edit session. Until {@link #commitEdit()}, the values given to {@link #updateRow()} are kept in memory
+     * and the row set still returns the values stored in the database. Insertion, deletion and update of the primary
+     * key are not available in an edit session.
+     * @throws SQLException If an edit session is already started or if the table cannot be edited
+     */
+    void beginEdit() throws SQLException;
+
+    /**
+     * Write the updates of the edit session in a single transaction and fire a single {@link TableEditEvent} that
+     * can be undone. The edit session is closed even if the transaction fails.
+     * @throws SQLException Error while updating the table, the table is left unchanged
+     */
+    void commitEdit() throws SQLException;
+
+    /**
+     * Drop the updates of the edit session and close it.
+     */
+    void cancelEdit();
+
+    /**
+     * @return True if an edit session is started
+     */
+    boolean isEditSessionStarted();
+
+    /**
+     * Enable or disable the write-behind mode. In this mode {@link #updateRow()} updates the row set values at once,
+     * the updates are grouped by row and written in the database later by a background thread, after a short delay or
+     * when too many rows are waiting. Updates of a row modified in the meantime by another connection are not
+     * written. Disabling this mode writes the pending updates.
+     * @param writeBehind True to enable the write-behind mode
+     * @throws SQLException Error while writing the pending updates
+     */
+    void setWriteBehind(boolean writeBehind) throws SQLException;
+
+    /**
+     * @return True if the write-behind mode is enabled
+     */
+    boolean isWriteBehind();
+
+    /**
+     * Write now the updates not yet written in the write-behind mode. This method is called on {@link #close()}.
+     * @throws SQLException Error while writing the updates, or some updates have been dropped because the rows have
+     * been modified by another connection.
+     */
+    void flush() throws SQLException;
 }
@@ -0,0 +1,85 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc;
+
+/**
+ * Cache of the rows read by the {@link ReadRowSet}. The cache is shared by all the row sets and is bounded by
+ * the estimated heap memory used by the rows.
+ */
+public interface RowCache {
+
+    /**
+     * @return Maximum estimated heap memory used by the cached rows, in bytes
+     */
+    long getMemoryBudget();
+
+    /**
+     * Rows are evicted if the new budget is lower than the used memory.
+     * @param bytes Maximum estimated heap memory used by the cached rows
+     */
+    void setMemoryBudget(long bytes);
+
+    /**
+     * @return Estimated heap memory used by the cached rows, in bytes
+     */
+    long getUsedMemory();
+
+    /**
+     * @return Number of cached batches of rows
+     */
+    int getBatchCount();
+
+    /**
+     * @return Number of batches found in the cache
+     */
+    long getHitCount();
+
+    /**
+     * @return Number of batches not found in the cache, they have been read from the database
+     */
+    long getMissCount();
+
+    /**
+     * @return Number of batches evicted in order to stay in the memory budget
+     */
+    long getEvictionCount();
+
+    /**
+     * Remove all the cached rows
+     */
+    void clear();
+}
@@ -0,0 +1,273 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import org.orbisgis.commons.progress.ProgressMonitor;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.SortedSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Forward only cursor over the rows of a {@link ReadRowSet}.
+ *
+ * The read lock of the row set is held from the creation of the cursor until {@link #close()}, closing the cursor
+ * before the last row stops the iteration. When a primary key filter is given only the batches that contain the
+ * selected rows are fetched. Values are read through primitive getters, check {@link #wasNull()} as with a
+ * {@link java.sql.ResultSet}. The cursor stops when the progress monitor is cancelled.
+ *
+ * The row set being stateful, a cursor cannot be split between threads. Use {@link TableScan#setRowSet(ReadRowSet)}
+ * to read ranges of the table concurrently.
+ */
+public class RowCursor implements AutoCloseable {
+    /** Default wait for the read lock of the row set, in milliseconds */
+    public static final long DEFAULT_LOCK_TIMEOUT = 10000;
+    private final ReadRowSet rowSet;
+    private final Lock lock;
+    private final int[] columnIndex;
+    private final Iterator<Integer> rowIterator;
+    private final ProgressMonitor pm;
+    private final ProgressMonitor rowProgress;
+    private boolean closed = false;
+
+    /**
+     * Acquire the read lock of the row set and move before the first row.
+     * @param rowSet Row set to read
+     * @param columns Column names, the cursor column i is columns[i - 1]. Null to read all the row set columns.
+     * @param pkFilter Primary key of the rows to read, null to read all rows
+     * @param lockTimeout Wait for the read lock, in milliseconds
+     * @param pm Progress monitor, one step per row. Stop the cursor when cancelled.
+     * @throws SQLException If the read lock cannot be acquired or a column does not exist
+     */
+    public RowCursor(ReadRowSet rowSet, String[] columns, SortedSet<Long> pkFilter, long lockTimeout,
+                     ProgressMonitor pm) throws SQLException {
+        this.rowSet = rowSet;
+        this.pm = pm;
+        lock = rowSet.getReadLock();
+        try {
+            if (!lock.tryLock(lockTimeout, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Another job is using the row set of " + rowSet.getTable());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(ex);
+        }
+        try {
+            if (columns == null) {
+                columnIndex = null;
+            } else {
+                columnIndex = new int[columns.length];
+                for (int i = 0; i < columns.length; i++) {
+                    columnIndex[i] = rowSet.findColumn(columns[i]);
+                }
+            }
+            if (pkFilter == null) {
+                rowIterator = null;
+                rowProgress = pm.startTask(rowSet.getRowCount());
+                rowSet.beforeFirst();
+            } else {
+                SortedSet<Integer> rows = rowSet.getRowNumberFromRowPk(pkFilter);
+                rowIterator = rows.iterator();
+                rowProgress = pm.startTask(rows.size());
+            }
+        } catch (SQLException | RuntimeException ex) {
+            lock.unlock();
+            throw ex;
+        }
+    }
+
+    /**
+     * Move to the next row
+     * @return False if there is no more row, or if the cursor is closed or cancelled
+     * @throws SQLException
+     */
+    public boolean next() throws SQLException {
+        if (closed || pm.isCancelled()) {
+            return false;
+        }
+        boolean valid;
+        if (rowIterator == null) {
+            valid = rowSet.next();
+        } else {
+            valid = rowIterator.hasNext() && rowSet.absolute(rowIterator.next());
+        }
+        if (valid) {
+            rowProgress.endTask();
+        }
+        return valid;
+    }
+
+    /**
+     * @return True if the progress monitor has been cancelled
+     */
+    public boolean isCancelled() {
+        return pm.isCancelled();
+    }
+
+    /**
+     * @param column Cursor column [1-n]
+     * @return Row set column [1-n]
+     */
+    private int getColumn(int column) throws SQLException {
+        if (columnIndex == null) {
+            return column;
+        }
+        if (column < 1 || column > columnIndex.length) {
+            throw new SQLException("Column index " + column + " out of bound[1-" + columnIndex.length + "]");
+        }
+        return columnIndex[column - 1];
+    }
+
+    /**
+     * @return Row number of the current row in the row set [1-n]
+     * @throws SQLException
+     */
+    public int getRow() throws SQLException {
+        return rowSet.getRow();
+    }
+
+    /**
+     * @return Primary key value of the current row
+     * @throws SQLException
+     */
+    public long getPk() throws SQLException {
+        return rowSet.getPk();
+    }
+
+    /**
+     * @return True if the last read value was SQL NULL
+     * @throws SQLException
+     */
+    public boolean wasNull() throws SQLException {
+        return rowSet.wasNull();
+    }
+
+    /**
+     * @param column Cursor column [1-n]
+     * @return The value, 0 if null
+     * @throws SQLException
+     */
+    public double getDouble(int column) throws SQLException {
+        return rowSet.getDouble(getColumn(column));
+    }
+
+    /**
+     * @param column Cursor column [1-n]
+     * @return The value, 0 if null
+     * @throws SQLException
+     */
+    public long getLong(int column) throws SQLException {
+        return rowSet.getLong(getColumn(column));
+    }
+
+    /**
+     * @param column Cursor column [1-n]
+     * @return The value, 0 if null
+     * @throws SQLException
+     */
+    public int getInt(int column) throws SQLException {
+        return rowSet.getInt(getColumn(column));
+    }
+
+    /**
+     * @param column Cursor column [1-n]
+     * @return The value, null if null
+     * @throws SQLException
+     */
+    public String getString(int column) throws SQLException {
+        return rowSet.getString(getColumn(column));
+    }
+
+    /**
+     * @param column Cursor column [1-n]
+     * @return The value, null if null
+     * @throws SQLException
+     */
+    public Object getObject(int column) throws SQLException {
+        return rowSet.getObject(getColumn(column));
+    }
+
+    /**
+     * @param column Cursor geometry column [1-n]
+     * @return The geometry, null if null
+     * @throws SQLException
+     */
+    public Geometry getGeometry(int column) throws SQLException {
+        return rowSet.getGeometry(getColumn(column));
+    }
+
+    /**
+     * @return The first geometry field of the row set, null if null
+     * @throws SQLException
+     */
+    public Geometry getGeometry() throws SQLException {
+        return rowSet.getGeometry();
+    }
+
+    /**
+     * Read the envelope of a geometry without decoding the geometry.
+     * @param column Cursor geometry column [1-n]
+     * @return The envelope, null if null
+     * @throws SQLException
+     */
+    public Envelope getEnvelope(int column) throws SQLException {
+        return rowSet.getEnvelope(getColumn(column));
+    }
+
+    /**
+     * @return Number of columns of the cursor
+     * @throws SQLException
+     */
+    public int getColumnCount() throws SQLException {
+        return columnIndex == null ? rowSet.getMetaData().getColumnCount() : columnIndex.length;
+    }
+
+    /**
+     * Stop the iteration and release the read lock of the row set
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            lock.unlock();
+        }
+    }
+}
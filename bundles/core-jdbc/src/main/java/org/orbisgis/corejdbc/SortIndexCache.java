@@ -0,0 +1,78 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc;
+
+import org.orbisgis.commons.progress.ProgressMonitor;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+
+/**
+ * Keep the sorted row indexes of table columns, in memory and in the workspace, so a sort already done on unchanged
+ * rows is not computed again. Indexes are identified by table, column and order, and are dropped when the table
+ * is modified.
+ */
+public interface SortIndexCache {
+
+    /**
+     * Same as {@link ReadTable#getSortedColumnRowIndex(Connection, ReadRowSet, String, String, boolean, ProgressMonitor)}
+     * but the cached index is returned if the table has not been modified since the index was saved.
+     * @param connection Active connection
+     * @param originalOrder Row set of the table, used if the table does not have an integer primary key
+     * @param table Table identifier
+     * @param originalColumnName Column to sort
+     * @param ascending Sort order
+     * @param progressMonitor Progress monitor
+     * @return Row numbers [1-n] in the sort order, empty if the sort is cancelled
+     * @throws SQLException
+     */
+    Collection<Integer> getSortedColumnRowIndex(Connection connection, ReadRowSet originalOrder, String table,
+                                                String originalColumnName, boolean ascending,
+                                                ProgressMonitor progressMonitor) throws SQLException;
+
+    /**
+     * Drop the indexes of the table
+     * @param table Table identifier
+     */
+    void invalidate(String table);
+
+    /**
+     * Drop all the indexes
+     */
+    void clear();
+}
@@ -81,7 +81,7 @@ public class StateEvent {
         if(StateEvent.DB_STATES.STATE_STATEMENT_END.equals(stateIdentifier)) {
             // DataBase update
             if (name != null) {
-                String subName = name.substring(0, MAX_LENGTH_QUERY).trim().toLowerCase();
+                String subName = name.substring(0, Math.min(name.length(), MAX_LENGTH_QUERY)).trim().toLowerCase();
                 for (String query : updateSourceListQuery) {
                     if (subName.startsWith(query)) {
                         return true;
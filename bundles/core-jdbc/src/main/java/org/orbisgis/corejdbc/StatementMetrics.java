@@ -0,0 +1,196 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc;
+
+import java.util.Arrays;
+
+/**
+ * Snapshot of the executions of a SQL statement template issued through a {@link DataManager}.
+ *
+ * The literals of the SQL are replaced by ? in the template, then the queries that differ only by their values are
+ * aggregated. Execution times are counted in a histogram of power of two microsecond buckets.
+ */
+public class StatementMetrics {
+    /** Number of buckets of the latency histogram */
+    public static final int HISTOGRAM_SIZE = 32;
+    private final String template;
+    private final String callSite;
+    private final long executionCount;
+    private final long errorCount;
+    private final long totalTime;
+    private final long maxTime;
+    private final long rowCount;
+    private final long bytesRead;
+    private final long[] histogram;
+
+    /**
+     * @param template SQL with the literals replaced by ?
+     * @param callSite Method that first issued the statement
+     * @param executionCount Number of executions
+     * @param errorCount Number of executions that failed
+     * @param totalTime Cumulated execution time in nanoseconds
+     * @param maxTime Longest execution time in nanoseconds
+     * @param rowCount Rows fetched from the result sets
+     * @param bytesRead Size of the binary values (WKB) read from the result sets
+     * @param histogram Execution count of each latency bucket, see {@link #getBucketUpperBound(int)}
+     */
+    public StatementMetrics(String template, String callSite, long executionCount, long errorCount, long totalTime,
+                            long maxTime, long rowCount, long bytesRead, long[] histogram) {
+        this.template = template;
+        this.callSite = callSite;
+        this.executionCount = executionCount;
+        this.errorCount = errorCount;
+        this.totalTime = totalTime;
+        this.maxTime = maxTime;
+        this.rowCount = rowCount;
+        this.bytesRead = bytesRead;
+        this.histogram = Arrays.copyOf(histogram, HISTOGRAM_SIZE);
+    }
+
+    /**
+     * @param nanoseconds Execution time
+     * @return Index of the histogram bucket
+     */
+    public static int getBucket(long nanoseconds) {
+        long microseconds = Math.max(0, nanoseconds / 1000);
+        return Math.min(HISTOGRAM_SIZE - 1, 64 - Long.numberOfLeadingZeros(microseconds));
+    }
+
+    /**
+     * @param bucket Index of the histogram bucket
+     * @return Excluded upper bound of the bucket, in microseconds
+     */
+    public static long getBucketUpperBound(int bucket) {
+        return bucket >= HISTOGRAM_SIZE - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    /**
+     * @return SQL with the literals replaced by ?
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * @return Class, method and line that first issued the statement
+     */
+    public String getCallSite() {
+        return callSite;
+    }
+
+    /**
+     * @return Number of executions
+     */
+    public long getExecutionCount() {
+        return executionCount;
+    }
+
+    /**
+     * @return Number of executions that failed
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * @return Cumulated execution time in milliseconds
+     */
+    public double getTotalTime() {
+        return totalTime / 1e6;
+    }
+
+    /**
+     * @return Mean execution time in milliseconds
+     */
+    public double getMeanTime() {
+        return executionCount == 0 ? 0 : totalTime / 1e6 / executionCount;
+    }
+
+    /**
+     * @return Longest execution time in milliseconds
+     */
+    public double getMaxTime() {
+        return maxTime / 1e6;
+    }
+
+    /**
+     * @param percentile Percentile [0-100]
+     * @return Upper bound in milliseconds of the execution time of this percentile of the executions
+     */
+    public double getPercentile(double percentile) {
+        long count = 0;
+        for(long bucketCount : histogram) {
+            count += bucketCount;
+        }
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long cumulated = 0;
+        for(int bucket = 0; bucket < HISTOGRAM_SIZE; bucket++) {
+            cumulated += histogram[bucket];
+            if(cumulated >= rank && cumulated > 0) {
+                return Math.min(getBucketUpperBound(bucket) / 1e3, getMaxTime());
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return Rows fetched from the result sets
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return Size in bytes of the binary values (WKB) read from the result sets
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return Execution count of each latency bucket, see {@link #getBucketUpperBound(int)}
+     */
+    public long[] getHistogram() {
+        return Arrays.copyOf(histogram, histogram.length);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d executions, mean %.3f ms, p95 %.3f ms, max %.3f ms, %d rows, %d bytes: %s",
+                executionCount, getMeanTime(), getPercentile(95), getMaxTime(), rowCount, bytesRead, template);
+    }
+}
@@ -0,0 +1,420 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc;
+
+import org.h2gis.utilities.JDBCUtilities;
+import org.h2gis.utilities.TableLocation;
+import org.orbisgis.commons.progress.ProgressMonitor;
+
+import javax.sql.DataSource;
+import java.beans.EventHandler;
+import java.beans.PropertyChangeListener;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Read a table with several connections at once.
+ *
+ * The table is split in ranges of its integer primary key, or of the H2 _ROWID_ column. The ranges are read
+ * concurrently by a fork join pool, each range with its own connection of the DataSource. The partial results of the
+ * ranges are merged in key order. Tables without an integer key are read with a single query.
+ */
+public class TableScan {
+    /** Default number of ranges read at the same time */
+    public static final int DEFAULT_PARALLELISM = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    /** Key ranges narrower than this are not split */
+    public static final long MIN_PARTITION_ROWS = 10000;
+    // More ranges than threads, a thread that ends early takes the next range
+    private static final int PARTITIONS_PER_THREAD = 2;
+    private static final int FETCH_SIZE = 1000;
+    private final DataSource dataSource;
+    private final TableLocation table;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private String filter = "";
+    private ReadRowSet rowSet;
+    private boolean isH2 = true;
+
+    /**
+     * @param dataSource Connections used by the scan, there is one connection per range being read
+     * @param tableReference Table identifier [[catalog.]schema.]table
+     */
+    public TableScan(DataSource dataSource, String tableReference) {
+        this.dataSource = dataSource;
+        this.table = TableLocation.parse(tableReference);
+    }
+
+    /**
+     * @param parallelism Maximum number of ranges read at the same time
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * @return Maximum number of ranges read at the same time
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @param filter SQL condition applied to the rows, empty to read all rows
+     */
+    public void setFilter(String filter) {
+        this.filter = filter == null ? "" : filter;
+    }
+
+    /**
+     * @param rowSet Row set of the table, its batches are used to split the table in ranges of the same row count.
+     *               The ranges are computed from the minimum and maximum key values if null.
+     */
+    public void setRowSet(ReadRowSet rowSet) {
+        this.rowSet = rowSet;
+    }
+
+    /**
+     * Split the table into ranges of key values
+     * @param connection Active connection
+     * @return The ranges, in key order. A single range without bounds if the table cannot be split.
+     * @throws SQLException
+     */
+    public List<Partition> getPartitions(Connection connection) throws SQLException {
+        isH2 = JDBCUtilities.isH2DataBase(connection.getMetaData());
+        String pkName = MetaData.getPkName(connection, table.toString(isH2), true);
+        if(pkName.isEmpty() || pkName.equals(MetaData.POSTGRE_ROW_IDENTIFIER)) {
+            return Collections.singletonList(new Partition(null, null, null));
+        }
+        String key = pkName.equals(MetaData.getSystemLongRowIdentifier(true)) ? pkName :
+                TableLocation.quoteIdentifier(pkName);
+        int partitionCount = parallelism * PARTITIONS_PER_THREAD;
+        List<Long> bounds = new ArrayList<>();
+        long[] batchFirstPk = rowSet != null && pkName.equalsIgnoreCase(rowSet.getPkName()) ?
+                rowSet.getBatchFirstPk() : new long[0];
+        if(batchFirstPk.length > 1) {
+            // Same number of batches in each range
+            int count = Math.min(partitionCount, batchFirstPk.length);
+            for(int part = 1; part < count; part++) {
+                long bound = batchFirstPk[(int)((long) part * batchFirstPk.length / count)];
+                if(bounds.isEmpty() || bounds.get(bounds.size() - 1) < bound) {
+                    bounds.add(bound);
+                }
+            }
+        } else {
+            try(Statement st = connection.createStatement();
+                ResultSet rs = st.executeQuery("SELECT MIN(" + key + "), MAX(" + key + ") FROM " +
+                        table.toString(isH2) + (filter.isEmpty() ? "" : " WHERE " + filter))) {
+                if(rs.next()) {
+                    long min = rs.getLong(1);
+                    long max = rs.getLong(2);
+                    if(!rs.wasNull()) {
+                        long span = max - min + 1;
+                        int count = (int) Math.max(1, Math.min(partitionCount, span / MIN_PARTITION_ROWS));
+                        for(int part = 1; part < count; part++) {
+                            bounds.add(min + span / count * part);
+                        }
+                    }
+                }
+            }
+        }
+        List<Partition> partitions = new ArrayList<>(bounds.size() + 1);
+        Long lower = null;
+        for(Long bound : bounds) {
+            partitions.add(new Partition(key, lower, bound));
+            lower = bound;
+        }
+        partitions.add(new Partition(key, lower, null));
+        return partitions;
+    }
+
+    /**
+     * Read the table
+     * @param fields SQL expressions of the selected columns
+     * @param reader Read the rows of a range, then merge the results of the ranges
+     * @param pm Progress monitor, cancel the running queries
+     * @param <T> Type of the result
+     * @return The merged result, null if the scan has been cancelled
+     * @throws SQLException
+     */
+    public <T> T scan(String fields, PartitionReader<T> reader, ProgressMonitor pm) throws SQLException {
+        List<Partition> partitions;
+        try(Connection connection = dataSource.getConnection()) {
+            partitions = getPartitions(connection);
+        }
+        ScanContext<T> context = new ScanContext<>(fields, reader, pm.startTask(partitions.size()));
+        PropertyChangeListener listener = EventHandler.create(PropertyChangeListener.class, context, "cancel");
+        pm.addPropertyChangeListener(ProgressMonitor.PROP_CANCEL, listener);
+        try {
+            T result;
+            if(partitions.size() == 1 || parallelism == 1) {
+                result = null;
+                for(Partition partition : partitions) {
+                    result = merge(reader, result, context.read(partition));
+                }
+            } else {
+                ForkJoinPool pool = new ForkJoinPool(Math.min(parallelism, partitions.size()));
+                try {
+                    result = pool.invoke(new ScanTask<>(context, partitions));
+                } catch (ScanException ex) {
+                    throw ex.getCause();
+                } finally {
+                    pool.shutdown();
+                }
+            }
+            return pm.isCancelled() ? null : result;
+        } catch (SQLException ex) {
+            if(pm.isCancelled()) {
+                return null;
+            }
+            throw ex;
+        } finally {
+            pm.removePropertyChangeListener(listener);
+        }
+    }
+
+    private static <T> T merge(PartitionReader<T> reader, T left, T right) {
+        if(left == null) {
+            return right;
+        } else if(right == null) {
+            return left;
+        } else {
+            return reader.merge(left, right);
+        }
+    }
+
+    /**
+     * Read the rows of a range, the methods are called concurrently from several threads.
+     * @param <T> Type of the result
+     */
+    public interface PartitionReader<T> {
+        /**
+         * @param rs Rows of a range, in no particular order
+         * @return The result of the range
+         * @throws SQLException
+         */
+        T read(ResultSet rs) throws SQLException;
+
+        /**
+         * @param left Result of the preceding ranges
+         * @param right Result of the following ranges
+         * @return The result of both
+         */
+        T merge(T left, T right);
+    }
+
+    /**
+     * Range of key values [lower, upper[
+     */
+    public static class Partition {
+        private final String key;
+        private final Long lower;
+        private final Long upper;
+
+        /**
+         * @param key Key column, null if the range contains the whole table
+         * @param lower Lowest key value, null for the first range
+         * @param upper Excluded upper key value, null for the last range
+         */
+        public Partition(String key, Long lower, Long upper) {
+            this.key = key;
+            this.lower = lower;
+            this.upper = upper;
+        }
+
+        /**
+         * @return Lowest key value, null for the first range
+         */
+        public Long getLower() {
+            return lower;
+        }
+
+        /**
+         * @return Excluded upper key value, null for the last range
+         */
+        public Long getUpper() {
+            return upper;
+        }
+
+        /**
+         * @return SQL condition on the key, empty if there is no bound
+         */
+        public String getCondition() {
+            StringBuilder condition = new StringBuilder();
+            if(lower != null) {
+                condition.append(key).append(" >= ").append(lower);
+            }
+            if(upper != null) {
+                if(condition.length() > 0) {
+                    condition.append(" AND ");
+                }
+                condition.append(key).append(" < ").append(upper);
+            }
+            return condition.toString();
+        }
+
+        @Override
+        public String toString() {
+            return "[" + lower + ", " + upper + "[";
+        }
+    }
+
+    /**
+     * State shared by the threads of a scan
+     */
+    private class ScanContext<T> {
+        private final String fields;
+        private final PartitionReader<T> reader;
+        private final ProgressMonitor progress;
+        private final Set<Statement> running = new HashSet<>();
+        private volatile boolean cancelled = false;
+
+        private ScanContext(String fields, PartitionReader<T> reader, ProgressMonitor progress) {
+            this.fields = fields;
+            this.reader = reader;
+            this.progress = progress;
+        }
+
+        /**
+         * Cancel the running queries, called by the progress monitor
+         */
+        public void cancel() {
+            cancelled = true;
+            List<Statement> statements;
+            synchronized (running) {
+                statements = new ArrayList<>(running);
+            }
+            for(Statement st : statements) {
+                try {
+                    st.cancel();
+                } catch (SQLException ex) {
+                    // Ignore, the query may be already done
+                }
+            }
+        }
+
+        private T read(Partition partition) throws SQLException {
+            if(cancelled) {
+                return null;
+            }
+            StringBuilder where = new StringBuilder(partition.getCondition());
+            if(!filter.isEmpty()) {
+                if(where.length() > 0) {
+                    where.append(" AND ");
+                }
+                where.append("(").append(filter).append(")");
+            }
+            String query = "SELECT " + fields + " FROM " + table.toString(isH2) +
+                    (where.length() > 0 ? " WHERE " + where : "");
+            try(Connection connection = dataSource.getConnection()) {
+                if(!isH2) {
+                    // PostgreSQL use a cursor only if auto commit is false
+                    connection.setAutoCommit(false);
+                }
+                try(PreparedStatement st = connection.prepareStatement(query)) {
+                    st.setFetchSize(FETCH_SIZE);
+                    synchronized (running) {
+                        running.add(st);
+                    }
+                    try(ResultSet rs = st.executeQuery()) {
+                        T result = reader.read(rs);
+                        synchronized (progress) {
+                            progress.endTask();
+                        }
+                        return result;
+                    } finally {
+                        synchronized (running) {
+                            running.remove(st);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Split the ranges until a single one is left
+     */
+    private static class ScanTask<T> extends RecursiveTask<T> {
+        private final ScanContext<T> context;
+        private final List<Partition> partitions;
+
+        private ScanTask(ScanContext<T> context, List<Partition> partitions) {
+            this.context = context;
+            this.partitions = partitions;
+        }
+
+        @Override
+        protected T compute() {
+            if(partitions.size() == 1) {
+                try {
+                    return context.read(partitions.get(0));
+                } catch (SQLException ex) {
+                    throw new ScanException(ex);
+                }
+            }
+            int middle = partitions.size() / 2;
+            ScanTask<T> left = new ScanTask<>(context, partitions.subList(0, middle));
+            ScanTask<T> right = new ScanTask<>(context, partitions.subList(middle, partitions.size()));
+            left.fork();
+            T rightResult = right.compute();
+            return merge(context.reader, left.join(), rightResult);
+        }
+    }
+
+    /**
+     * Carry the SQLException of a range through the fork join pool
+     */
+    private static class ScanException extends RuntimeException {
+        private ScanException(SQLException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized SQLException getCause() {
+            return (SQLException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,950 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.common;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * Compressed bitmap of long values.
+ *
+ * Values are split in chunks of 65536 consecutive values. A chunk is stored as a sorted array of its 16 low bits
+ * while it holds at most 4096 values, and as a bitmap of 8 KB otherwise. {@link #contains(long)} is a binary search
+ * on the chunks followed by a bit test or a binary search in a small array. Union, intersection and difference with
+ * another bitmap are done chunk by chunk on the words of the bitmaps.
+ *
+ * The behaviour of this class is the same as a {@link SortedSet}, sub sets are copies.
+ *
+ * This class is not thread safe
+ */
+public class LongBitmap extends AbstractSet<Long> implements NumberUnion<Long> {
+    private static final long serialVersionUID = 1L;
+    private static final int SERIAL_VERSION = 1;
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+    // Greatest cardinality of a chunk stored as an array
+    private static final int ARRAY_MAX_SIZE = 4096;
+    private static final int BITMAP_WORDS = (1 << CHUNK_BITS) / 64;
+    private static final int INITIAL_CAPACITY = 4;
+    private static final int AND = 0;
+    private static final int OR = 1;
+    private static final int AND_NOT = 2;
+    private static final int XOR = 3;
+
+    // Sorted high bits of the chunks
+    private transient long[] keys = new long[INITIAL_CAPACITY];
+    private transient Chunk[] chunks = new Chunk[INITIAL_CAPACITY];
+    private transient int chunkCount = 0;
+    private transient long cardinality = 0;
+
+    /**
+     * Empty set
+     */
+    public LongBitmap() {
+    }
+
+    /**
+     * Set with all values of the range [valueBegin-valueEnd].
+     * @param valueBegin Included begin of range
+     * @param valueEnd Included end of range
+     * @throws IllegalArgumentException if valueEnd < valueBegin
+     */
+    public LongBitmap(long valueBegin, long valueEnd) {
+        if (valueEnd < valueBegin) {
+            throw new IllegalArgumentException("Begin value must be inferior or equal to the end value.");
+        }
+        addRange(valueBegin, valueEnd);
+    }
+
+    /**
+     * Copy constructor with a generic collection
+     * @param externalCollection Values to insert in this set
+     */
+    public LongBitmap(Collection<Long> externalCollection) {
+        if(externalCollection instanceof LongBitmap) {
+            copy((LongBitmap) externalCollection);
+        } else if(externalCollection instanceof LongUnion) {
+            List<Long> ranges = ((LongUnion) externalCollection).getValueRanges();
+            for(int i = 0; i < ranges.size() - 1; i += 2) {
+                addRange(ranges.get(i), ranges.get(i + 1));
+            }
+        } else {
+            for(long value : externalCollection) {
+                add(value);
+            }
+        }
+    }
+
+    private void copy(LongBitmap other) {
+        keys = Arrays.copyOf(other.keys, Math.max(INITIAL_CAPACITY, other.chunkCount));
+        chunks = new Chunk[keys.length];
+        for(int i = 0; i < other.chunkCount; i++) {
+            chunks[i] = other.chunks[i].copy();
+        }
+        chunkCount = other.chunkCount;
+        cardinality = other.cardinality;
+    }
+
+    private static long high(long value) {
+        return value >> CHUNK_BITS;
+    }
+
+    private static int low(long value) {
+        return (int) (value & CHUNK_MASK);
+    }
+
+    private static long value(long high, int low) {
+        return (high << CHUNK_BITS) | low;
+    }
+
+    private int chunkIndex(long high) {
+        return Arrays.binarySearch(keys, 0, chunkCount, high);
+    }
+
+    private void insertChunk(int index, long high, Chunk chunk) {
+        if(chunkCount == keys.length) {
+            keys = Arrays.copyOf(keys, keys.length * 2);
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, chunkCount - index);
+        System.arraycopy(chunks, index, chunks, index + 1, chunkCount - index);
+        keys[index] = high;
+        chunks[index] = chunk;
+        chunkCount++;
+        cardinality += chunk.cardinality();
+    }
+
+    private void removeChunk(int index) {
+        cardinality -= chunks[index].cardinality();
+        System.arraycopy(keys, index + 1, keys, index, chunkCount - index - 1);
+        System.arraycopy(chunks, index + 1, chunks, index, chunkCount - index - 1);
+        chunkCount--;
+        chunks[chunkCount] = null;
+    }
+
+    /**
+     * @param value Value to look for
+     * @return True if this set contains the value
+     */
+    public boolean contains(long value) {
+        int index = chunkIndex(high(value));
+        return index >= 0 && chunks[index].contains(low(value));
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long && contains(((Long) o).longValue());
+    }
+
+    /**
+     * @param value Value to add
+     * @return True if the value was not in this set
+     */
+    public boolean add(long value) {
+        long high = high(value);
+        int index = chunkIndex(high);
+        if(index < 0) {
+            ArrayChunk chunk = new ArrayChunk();
+            chunk.add(low(value));
+            insertChunk(-index - 1, high, chunk);
+            return true;
+        }
+        Chunk chunk = chunks[index];
+        int oldCardinality = chunk.cardinality();
+        chunks[index] = chunk.add(low(value));
+        if(chunks[index].cardinality() != oldCardinality) {
+            cardinality++;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean add(Long value) {
+        return add(value.longValue());
+    }
+
+    /**
+     * Add all values of the range [valueBegin-valueEnd]
+     * @param valueBegin Included begin of range
+     * @param valueEnd Included end of range
+     */
+    public void addRange(long valueBegin, long valueEnd) {
+        for(long high = high(valueBegin); high <= high(valueEnd); high++) {
+            int lowBegin = high == high(valueBegin) ? low(valueBegin) : 0;
+            int lowEnd = high == high(valueEnd) ? low(valueEnd) : CHUNK_MASK;
+            if(lowEnd - lowBegin < 64) {
+                for(int low = lowBegin; low <= lowEnd; low++) {
+                    add(value(high, low));
+                }
+            } else {
+                int index = chunkIndex(high);
+                long[] words = index >= 0 ? chunks[index].toWords() : new long[BITMAP_WORDS];
+                setBits(words, lowBegin, lowEnd);
+                Chunk chunk = fromWords(words);
+                if(index >= 0) {
+                    cardinality += chunk.cardinality() - chunks[index].cardinality();
+                    chunks[index] = chunk;
+                } else {
+                    insertChunk(-index - 1, high, chunk);
+                }
+            }
+        }
+    }
+
+    /**
+     * Set the bits of the range [begin-end]
+     */
+    private static void setBits(long[] words, int begin, int end) {
+        int wordBegin = begin >>> 6;
+        int wordEnd = end >>> 6;
+        for(int w = wordBegin; w <= wordEnd; w++) {
+            long mask = -1L;
+            if(w == wordBegin) {
+                mask &= -1L << begin;
+            }
+            if(w == wordEnd) {
+                mask &= -1L >>> (63 - (end & 63));
+            }
+            words[w] |= mask;
+        }
+    }
+
+    /**
+     * @param value Value to remove
+     * @return True if the value was in this set
+     */
+    public boolean remove(long value) {
+        int index = chunkIndex(high(value));
+        if(index < 0) {
+            return false;
+        }
+        Chunk chunk = chunks[index];
+        int oldCardinality = chunk.cardinality();
+        Chunk newChunk = chunk.remove(low(value));
+        if(newChunk.cardinality() == oldCardinality) {
+            return false;
+        }
+        cardinality--;
+        chunks[index] = newChunk;
+        if(newChunk.cardinality() == 0) {
+            removeChunk(index);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Long && remove(((Long) o).longValue());
+    }
+
+    @Override
+    public void clear() {
+        keys = new long[INITIAL_CAPACITY];
+        chunks = new Chunk[INITIAL_CAPACITY];
+        chunkCount = 0;
+        cardinality = 0;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, cardinality);
+    }
+
+    /**
+     * @return Number of values, may be greater than {@link Integer#MAX_VALUE}
+     */
+    public long longSize() {
+        return cardinality;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    @Override
+    public Iterator<Long> iterator() {
+        return new BitmapIterator();
+    }
+
+    @Override
+    public Comparator<? super Long> comparator() {
+        // Natural ordering
+        return null;
+    }
+
+    @Override
+    public Long first() {
+        if(chunkCount == 0) {
+            throw new NoSuchElementException();
+        }
+        return value(keys[0], chunks[0].next(0));
+    }
+
+    @Override
+    public Long last() {
+        if(chunkCount == 0) {
+            throw new NoSuchElementException();
+        }
+        return value(keys[chunkCount - 1], chunks[chunkCount - 1].last());
+    }
+
+    @Override
+    public SortedSet<Long> subSet(Long fromElement, Long toElement) {
+        return fromElement < toElement ? copyRange(fromElement, toElement - 1) : new LongBitmap();
+    }
+
+    @Override
+    public SortedSet<Long> headSet(Long toElement) {
+        return toElement > Long.MIN_VALUE ? copyRange(Long.MIN_VALUE, toElement - 1) : new LongBitmap();
+    }
+
+    @Override
+    public SortedSet<Long> tailSet(Long fromElement) {
+        return copyRange(fromElement, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return A new set with the values of the range [from-to]
+     */
+    private LongBitmap copyRange(long from, long to) {
+        LongBitmap result = new LongBitmap();
+        long highFrom = high(from);
+        long highTo = high(to);
+        int start = chunkIndex(highFrom);
+        for(int i = start >= 0 ? start : -start - 1; i < chunkCount && keys[i] <= highTo; i++) {
+            Chunk chunk;
+            if(keys[i] == highFrom || keys[i] == highTo) {
+                long[] mask = new long[BITMAP_WORDS];
+                setBits(mask, keys[i] == highFrom ? low(from) : 0, keys[i] == highTo ? low(to) : CHUNK_MASK);
+                chunk = combine(chunks[i], new BitmapChunk(mask, 0), AND);
+            } else {
+                chunk = chunks[i].copy();
+            }
+            if(chunk != null) {
+                result.insertChunk(result.chunkCount, keys[i], chunk);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return intervals ex: 0,0,50,60 for [0] and [50-60]
+     */
+    @Override
+    public List<Long> getValueRanges() {
+        List<Long> ranges = new ArrayList<>();
+        Iterator<Long> it = iterator();
+        if(it.hasNext()) {
+            long begin = it.next();
+            long end = begin;
+            while (it.hasNext()) {
+                long value = it.next();
+                if(value != end + 1) {
+                    ranges.add(begin);
+                    ranges.add(end);
+                    begin = value;
+                }
+                end = value;
+            }
+            ranges.add(begin);
+            ranges.add(end);
+        }
+        return Collections.unmodifiableList(ranges);
+    }
+
+    /**
+     * @param other Other set
+     * @return A new set with the values of this set and of the other set
+     */
+    public LongBitmap or(LongBitmap other) {
+        return combine(this, other, OR);
+    }
+
+    /**
+     * @param other Other set
+     * @return A new set with the values that are in both sets
+     */
+    public LongBitmap and(LongBitmap other) {
+        return combine(this, other, AND);
+    }
+
+    /**
+     * @param other Other set
+     * @return A new set with the values of this set that are not in the other set
+     */
+    public LongBitmap andNot(LongBitmap other) {
+        return combine(this, other, AND_NOT);
+    }
+
+    /**
+     * @param other Other set
+     * @return A new set with the values that are in only one of the two sets
+     */
+    public LongBitmap xor(LongBitmap other) {
+        return combine(this, other, XOR);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Long> c) {
+        if(c instanceof LongBitmap) {
+            return replaceBy(or((LongBitmap) c));
+        }
+        return super.addAll(c);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        if(c instanceof LongBitmap) {
+            return replaceBy(andNot((LongBitmap) c));
+        }
+        boolean modified = false;
+        for(Object o : c) {
+            modified |= remove(o);
+        }
+        return modified;
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        if(c instanceof LongBitmap) {
+            return replaceBy(and((LongBitmap) c));
+        }
+        return super.retainAll(c);
+    }
+
+    private boolean replaceBy(LongBitmap other) {
+        // Values are only added or only removed
+        boolean modified = other.cardinality != cardinality;
+        keys = other.keys;
+        chunks = other.chunks;
+        chunkCount = other.chunkCount;
+        cardinality = other.cardinality;
+        return modified;
+    }
+
+    private static LongBitmap combine(LongBitmap a, LongBitmap b, int operation) {
+        LongBitmap result = new LongBitmap();
+        int i = 0;
+        int j = 0;
+        while(i < a.chunkCount || j < b.chunkCount) {
+            // Chunk keys are at most 2^47, MAX_VALUE is after all keys
+            long keyA = i < a.chunkCount ? a.keys[i] : Long.MAX_VALUE;
+            long keyB = j < b.chunkCount ? b.keys[j] : Long.MAX_VALUE;
+            if(keyA < keyB) {
+                if(operation != AND) {
+                    result.insertChunk(result.chunkCount, keyA, a.chunks[i].copy());
+                }
+                i++;
+            } else if(keyB < keyA) {
+                if(operation == OR || operation == XOR) {
+                    result.insertChunk(result.chunkCount, keyB, b.chunks[j].copy());
+                }
+                j++;
+            } else {
+                Chunk chunk = combine(a.chunks[i], b.chunks[j], operation);
+                if(chunk != null) {
+                    result.insertChunk(result.chunkCount, keyA, chunk);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The combined chunk, null if empty
+     */
+    private static Chunk combine(Chunk a, Chunk b, int operation) {
+        if(a instanceof ArrayChunk && b instanceof ArrayChunk) {
+            return ((ArrayChunk) a).merge((ArrayChunk) b, operation);
+        }
+        long[] words = a.toWords();
+        long[] otherWords = b instanceof BitmapChunk ? ((BitmapChunk) b).words : b.toWords();
+        for(int w = 0; w < BITMAP_WORDS; w++) {
+            switch (operation) {
+                case AND:
+                    words[w] &= otherWords[w];
+                    break;
+                case OR:
+                    words[w] |= otherWords[w];
+                    break;
+                case AND_NOT:
+                    words[w] &= ~otherWords[w];
+                    break;
+                default:
+                    words[w] ^= otherWords[w];
+            }
+        }
+        return fromWords(words);
+    }
+
+    private static Chunk fromWords(long[] words) {
+        int count = 0;
+        for(long word : words) {
+            count += Long.bitCount(word);
+        }
+        if(count == 0) {
+            return null;
+        }
+        BitmapChunk bitmap = new BitmapChunk(words, count);
+        return count > ARRAY_MAX_SIZE ? bitmap : bitmap.toArrayChunk();
+    }
+
+    /**
+     * Save this set in a compact form
+     * @param out Destination
+     * @throws IOException
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(SERIAL_VERSION);
+        out.writeInt(chunkCount);
+        for(int i = 0; i < chunkCount; i++) {
+            out.writeLong(keys[i]);
+            Chunk chunk = chunks[i];
+            if(chunk.cardinality() <= ARRAY_MAX_SIZE) {
+                ArrayChunk arrayChunk = chunk instanceof ArrayChunk ? (ArrayChunk) chunk :
+                        ((BitmapChunk) chunk).toArrayChunk();
+                out.writeShort(arrayChunk.size - 1);
+                for(int v = 0; v < arrayChunk.size; v++) {
+                    out.writeShort(arrayChunk.values[v]);
+                }
+            } else {
+                BitmapChunk bitmapChunk = (BitmapChunk) chunk;
+                out.writeShort(bitmapChunk.cardinality - 1);
+                for(long word : bitmapChunk.words) {
+                    out.writeLong(word);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Number of bytes written by {@link #write(DataOutput)}
+     */
+    public long getSerializedSize() {
+        long size = 2 * Integer.SIZE / Byte.SIZE;
+        for(int i = 0; i < chunkCount; i++) {
+            int chunkCardinality = chunks[i].cardinality();
+            size += (Long.SIZE + Short.SIZE) / Byte.SIZE;
+            size += chunkCardinality <= ARRAY_MAX_SIZE ? chunkCardinality * Short.SIZE / Byte.SIZE :
+                    BITMAP_WORDS * Long.SIZE / Byte.SIZE;
+        }
+        return size;
+    }
+
+    /**
+     * Read a set saved by {@link #write(DataOutput)}
+     * @param in Source
+     * @return The set
+     * @throws IOException
+     */
+    public static LongBitmap read(DataInput in) throws IOException {
+        LongBitmap bitmap = new LongBitmap();
+        bitmap.readContent(in);
+        return bitmap;
+    }
+
+    private void readContent(DataInput in) throws IOException {
+        if(in.readInt() != SERIAL_VERSION) {
+            throw new IOException("Unsupported bitmap version");
+        }
+        int count = in.readInt();
+        keys = new long[Math.max(INITIAL_CAPACITY, count)];
+        chunks = new Chunk[keys.length];
+        chunkCount = 0;
+        cardinality = 0;
+        for(int i = 0; i < count; i++) {
+            long key = in.readLong();
+            int chunkCardinality = in.readUnsignedShort() + 1;
+            Chunk chunk;
+            if(chunkCardinality <= ARRAY_MAX_SIZE) {
+                char[] values = new char[chunkCardinality];
+                for(int v = 0; v < chunkCardinality; v++) {
+                    values[v] = in.readChar();
+                }
+                chunk = new ArrayChunk(values, chunkCardinality);
+            } else {
+                long[] words = new long[BITMAP_WORDS];
+                for(int w = 0; w < BITMAP_WORDS; w++) {
+                    words[w] = in.readLong();
+                }
+                chunk = new BitmapChunk(words, chunkCardinality);
+            }
+            insertChunk(chunkCount, key, chunk);
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        write(out);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        readContent(in);
+    }
+
+    /**
+     * Iterate over the values in ascending order
+     */
+    private class BitmapIterator implements Iterator<Long> {
+        private int chunkIndex;
+        // Low bits of the next value in the current chunk
+        private int nextLow;
+        private long lastReturned;
+        private boolean canRemove = false;
+
+        private BitmapIterator() {
+            seek(0, 0);
+        }
+
+        private void seek(int index, int low) {
+            chunkIndex = index;
+            while(chunkIndex < chunkCount) {
+                nextLow = chunks[chunkIndex].next(low);
+                if(nextLow >= 0) {
+                    return;
+                }
+                chunkIndex++;
+                low = 0;
+            }
+            nextLow = -1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextLow >= 0;
+        }
+
+        @Override
+        public Long next() {
+            if(nextLow < 0) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = value(keys[chunkIndex], nextLow);
+            canRemove = true;
+            if(nextLow == CHUNK_MASK) {
+                seek(chunkIndex + 1, 0);
+            } else {
+                seek(chunkIndex, nextLow + 1);
+            }
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if(!canRemove) {
+                throw new IllegalStateException();
+            }
+            canRemove = false;
+            LongBitmap.this.remove(lastReturned);
+            // Chunks may have been moved or converted
+            if(hasNext()) {
+                long nextValue = lastReturned + 1;
+                int index = chunkIndex(high(nextValue));
+                if(index >= 0) {
+                    seek(index, low(nextValue));
+                } else {
+                    seek(-index - 1, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Values of a chunk, the 16 low bits of the values
+     */
+    private abstract static class Chunk {
+        abstract int cardinality();
+
+        abstract boolean contains(int low);
+
+        /**
+         * @return This chunk or a converted chunk
+         */
+        abstract Chunk add(int low);
+
+        /**
+         * @return This chunk or a converted chunk
+         */
+        abstract Chunk remove(int low);
+
+        /**
+         * @return The smallest value greater or equal than low, -1 if there is none
+         */
+        abstract int next(int low);
+
+        abstract int last();
+
+        /**
+         * @return A new bitmap of the values
+         */
+        abstract long[] toWords();
+
+        abstract Chunk copy();
+    }
+
+    private static class ArrayChunk extends Chunk {
+        private char[] values;
+        private int size;
+
+        private ArrayChunk() {
+            values = new char[INITIAL_CAPACITY];
+        }
+
+        private ArrayChunk(char[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        boolean contains(int low) {
+            return Arrays.binarySearch(values, 0, size, (char) low) >= 0;
+        }
+
+        @Override
+        Chunk add(int low) {
+            int index = Arrays.binarySearch(values, 0, size, (char) low);
+            if(index >= 0) {
+                return this;
+            }
+            if(size == ARRAY_MAX_SIZE) {
+                return toBitmapChunk().add(low);
+            }
+            index = -index - 1;
+            if(size == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX_SIZE, values.length * 2));
+            }
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = (char) low;
+            size++;
+            return this;
+        }
+
+        @Override
+        Chunk remove(int low) {
+            int index = Arrays.binarySearch(values, 0, size, (char) low);
+            if(index >= 0) {
+                System.arraycopy(values, index + 1, values, index, size - index - 1);
+                size--;
+            }
+            return this;
+        }
+
+        @Override
+        int next(int low) {
+            int index = Arrays.binarySearch(values, 0, size, (char) low);
+            if(index >= 0) {
+                return low;
+            }
+            index = -index - 1;
+            return index < size ? values[index] : -1;
+        }
+
+        @Override
+        int last() {
+            return values[size - 1];
+        }
+
+        @Override
+        long[] toWords() {
+            long[] words = new long[BITMAP_WORDS];
+            for(int i = 0; i < size; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return words;
+        }
+
+        private BitmapChunk toBitmapChunk() {
+            return new BitmapChunk(toWords(), size);
+        }
+
+        @Override
+        Chunk copy() {
+            return new ArrayChunk(Arrays.copyOf(values, Math.max(1, size)), size);
+        }
+
+        /**
+         * Merge the two sorted arrays
+         * @return The combined chunk, null if empty
+         */
+        private Chunk merge(ArrayChunk other, int operation) {
+            char[] merged = new char[size + other.size];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while(i < size || j < other.size) {
+                int a = i < size ? values[i] : Integer.MAX_VALUE;
+                int b = j < other.size ? other.values[j] : Integer.MAX_VALUE;
+                if(a < b) {
+                    if(operation != AND) {
+                        merged[count++] = (char) a;
+                    }
+                    i++;
+                } else if(b < a) {
+                    if(operation == OR || operation == XOR) {
+                        merged[count++] = (char) b;
+                    }
+                    j++;
+                } else {
+                    if(operation == AND || operation == OR) {
+                        merged[count++] = (char) a;
+                    }
+                    i++;
+                    j++;
+                }
+            }
+            if(count == 0) {
+                return null;
+            }
+            ArrayChunk chunk = new ArrayChunk(merged, count);
+            return count > ARRAY_MAX_SIZE ? chunk.toBitmapChunk() : chunk;
+        }
+    }
+
+    private static class BitmapChunk extends Chunk {
+        private final long[] words;
+        private int cardinality;
+
+        private BitmapChunk(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(int low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        Chunk add(int low) {
+            long bit = 1L << low;
+            if((words[low >>> 6] & bit) == 0) {
+                words[low >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Chunk remove(int low) {
+            long bit = 1L << low;
+            if((words[low >>> 6] & bit) != 0) {
+                words[low >>> 6] &= ~bit;
+                cardinality--;
+                // Convert back with a margin to not switch at each add/remove
+                if(cardinality <= ARRAY_MAX_SIZE / 2) {
+                    return toArrayChunk();
+                }
+            }
+            return this;
+        }
+
+        @Override
+        int next(int low) {
+            int w = low >>> 6;
+            long word = words[w] & (-1L << low);
+            while(word == 0) {
+                w++;
+                if(w == BITMAP_WORDS) {
+                    return -1;
+                }
+                word = words[w];
+            }
+            return w * 64 + Long.numberOfTrailingZeros(word);
+        }
+
+        @Override
+        int last() {
+            for(int w = BITMAP_WORDS - 1; w >= 0; w--) {
+                if(words[w] != 0) {
+                    return w * 64 + 63 - Long.numberOfLeadingZeros(words[w]);
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        long[] toWords() {
+            return Arrays.copyOf(words, BITMAP_WORDS);
+        }
+
+        private ArrayChunk toArrayChunk() {
+            char[] values = new char[Math.max(1, cardinality)];
+            int count = 0;
+            for(int w = 0; w < BITMAP_WORDS; w++) {
+                long word = words[w];
+                while(word != 0) {
+                    values[count++] = (char) (w * 64 + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayChunk(values, count);
+        }
+
+        @Override
+        Chunk copy() {
+            return new BitmapChunk(Arrays.copyOf(words, BITMAP_WORDS), cardinality);
+        }
+    }
+}
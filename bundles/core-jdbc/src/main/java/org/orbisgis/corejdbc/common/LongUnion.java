@@ -305,6 +305,13 @@ public class LongUnion implements NumberUnion<Long> {
         return Collections.unmodifiableList(intervals);
     }
 
+    /**
+     * @return Number of ranges of consecutive values
+     */
+    public int getRangeCount() {
+        return intervals.size() / 2;
+    }
+
     @Override
     public Comparator<? super Long> comparator() {
         return new LongComparator();
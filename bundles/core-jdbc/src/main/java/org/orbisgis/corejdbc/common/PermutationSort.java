@@ -0,0 +1,387 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.common;
+
+import org.orbisgis.commons.progress.NullProgressMonitor;
+import org.orbisgis.commons.progress.ProgressMonitor;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sort the rows of a column without boxing. The column values are copied into primitive arrays
+ * ({@link LongKeys}, {@link DoubleKeys}, dictionary encoded {@link StringKeys}) then an int permutation of the rows
+ * is sorted with a parallel merge sort.
+ *
+ * Null values are lower than other values, equal values are ordered by row index. A descending sort is the exact
+ * reverse of the ascending sort.
+ */
+public class PermutationSort {
+    // Below this number of rows a range is sorted by the current thread
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+    // Below this number of rows a range is sorted by insertion
+    private static final int INSERTION_THRESHOLD = 32;
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
+    private PermutationSort() {
+    }
+
+    /**
+     * Sort the rows
+     * @param keys Column values
+     * @param ascending Sort order
+     * @return Row indexes [0-n[ in the sort order
+     */
+    public static int[] sort(SortKeys keys, boolean ascending) {
+        return sort(keys, ascending, new NullProgressMonitor());
+    }
+
+    /**
+     * Sort the rows, the cancellation is checked between the merge passes.
+     * @param keys Column values
+     * @param ascending Sort order
+     * @param pm Progress monitor, only used for the cancellation
+     * @return Row indexes [0-n[ in the sort order, null if the sort has been cancelled
+     */
+    public static int[] sort(SortKeys keys, boolean ascending, ProgressMonitor pm) {
+        final int rowCount = keys.getRowCount();
+        keys.prepare();
+        int[] permutation = new int[rowCount];
+        for(int i = 0; i < rowCount; i++) {
+            permutation[i] = i;
+        }
+        if(rowCount > 1) {
+            int[] buffer = new int[rowCount];
+            if(rowCount <= PARALLEL_THRESHOLD) {
+                mergeSort(keys, permutation, buffer, 0, rowCount, pm);
+            } else {
+                POOL.invoke(new MergeSortTask(keys, permutation, buffer, 0, rowCount, pm));
+            }
+            if(pm.isCancelled()) {
+                return null;
+            }
+        }
+        if(!ascending) {
+            for(int i = 0, j = rowCount - 1; i < j; i++, j--) {
+                int tmp = permutation[i];
+                permutation[i] = permutation[j];
+                permutation[j] = tmp;
+            }
+        }
+        return permutation;
+    }
+
+    private static void mergeSort(SortKeys keys, int[] values, int[] buffer, int from, int to, ProgressMonitor pm) {
+        if(to - from <= INSERTION_THRESHOLD) {
+            insertionSort(keys, values, from, to);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(keys, values, buffer, from, mid, pm);
+        mergeSort(keys, values, buffer, mid, to, pm);
+        if(!pm.isCancelled()) {
+            merge(keys, values, buffer, from, mid, to);
+        }
+    }
+
+    private static void insertionSort(SortKeys keys, int[] values, int from, int to) {
+        for(int i = from + 1; i < to; i++) {
+            int value = values[i];
+            int j = i - 1;
+            while(j >= from && keys.compare(values[j], value) > 0) {
+                values[j + 1] = values[j];
+                j--;
+            }
+            values[j + 1] = value;
+        }
+    }
+
+    /**
+     * Merge the sorted ranges [from-mid[ and [mid-to[
+     */
+    private static void merge(SortKeys keys, int[] values, int[] buffer, int from, int mid, int to) {
+        if(keys.compare(values[mid - 1], values[mid]) <= 0) {
+            // Already in order
+            return;
+        }
+        System.arraycopy(values, from, buffer, from, mid - from);
+        int left = from;
+        int right = mid;
+        int target = from;
+        while(left < mid && right < to) {
+            if(keys.compare(buffer[left], values[right]) <= 0) {
+                values[target++] = buffer[left++];
+            } else {
+                values[target++] = values[right++];
+            }
+        }
+        System.arraycopy(buffer, left, values, target, mid - left);
+    }
+
+    private static class MergeSortTask extends RecursiveAction {
+        private final SortKeys keys;
+        private final int[] values;
+        private final int[] buffer;
+        private final int from;
+        private final int to;
+        private final ProgressMonitor pm;
+
+        private MergeSortTask(SortKeys keys, int[] values, int[] buffer, int from, int to, ProgressMonitor pm) {
+            this.keys = keys;
+            this.values = values;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+            this.pm = pm;
+        }
+
+        @Override
+        protected void compute() {
+            if(pm.isCancelled()) {
+                return;
+            }
+            if(to - from <= PARALLEL_THRESHOLD) {
+                mergeSort(keys, values, buffer, from, to, pm);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new MergeSortTask(keys, values, buffer, from, mid, pm),
+                        new MergeSortTask(keys, values, buffer, mid, to, pm));
+                if(!pm.isCancelled()) {
+                    merge(keys, values, buffer, from, mid, to);
+                }
+            }
+        }
+    }
+
+    /**
+     * Column values of the rows [0-n[
+     */
+    public abstract static class SortKeys {
+        protected final BitSet nulls;
+        private final int rowCount;
+        private boolean hasNulls = true;
+
+        protected SortKeys(int rowCount) {
+            this.rowCount = rowCount;
+            this.nulls = new BitSet(rowCount);
+        }
+
+        /**
+         * @return Number of rows
+         */
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * @param row Row index [0-n[
+         */
+        public void setNull(int row) {
+            nulls.set(row);
+        }
+
+        /**
+         * Called before sorting, once all the values are set
+         */
+        protected void prepare() {
+            hasNulls = !nulls.isEmpty();
+        }
+
+        /**
+         * @param rowA Row index [0-n[
+         * @param rowB Row index [0-n[
+         * @return The comparison of the row values, then of the row indexes
+         */
+        public final int compare(int rowA, int rowB) {
+            int res;
+            boolean nullA;
+            boolean nullB;
+            if(hasNulls && ((nullA = nulls.get(rowA)) | (nullB = nulls.get(rowB)))) {
+                res = nullA == nullB ? 0 : (nullA ? -1 : 1);
+            } else {
+                res = compareValues(rowA, rowB);
+            }
+            return res != 0 ? res : (rowA < rowB ? -1 : (rowA == rowB ? 0 : 1));
+        }
+
+        /**
+         * @param rowA Row index [0-n[ of a not null value
+         * @param rowB Row index [0-n[ of a not null value
+         * @return The comparison of the row values
+         */
+        protected abstract int compareValues(int rowA, int rowB);
+    }
+
+    /**
+     * Integer values
+     */
+    public static class LongKeys extends SortKeys {
+        private final long[] values;
+
+        public LongKeys(int rowCount) {
+            super(rowCount);
+            values = new long[rowCount];
+        }
+
+        public void set(int row, long value) {
+            values[row] = value;
+        }
+
+        @Override
+        protected int compareValues(int rowA, int rowB) {
+            long a = values[rowA];
+            long b = values[rowB];
+            return a < b ? -1 : (a == b ? 0 : 1);
+        }
+    }
+
+    /**
+     * Floating point values
+     */
+    public static class DoubleKeys extends SortKeys {
+        private final double[] values;
+
+        public DoubleKeys(int rowCount) {
+            super(rowCount);
+            values = new double[rowCount];
+        }
+
+        public void set(int row, double value) {
+            values[row] = value;
+        }
+
+        @Override
+        protected int compareValues(int rowA, int rowB) {
+            return Double.compare(values[rowA], values[rowB]);
+        }
+    }
+
+    /**
+     * Character strings, each distinct string is stored once. The strings are replaced by their rank before
+     * sorting.
+     */
+    public static class StringKeys extends SortKeys {
+        private final int[] codes;
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private String[] words = new String[16];
+        private boolean encoded = false;
+
+        public StringKeys(int rowCount) {
+            super(rowCount);
+            codes = new int[rowCount];
+        }
+
+        public void set(int row, String value) {
+            if(value == null) {
+                setNull(row);
+                return;
+            }
+            Integer code = dictionary.get(value);
+            if(code == null) {
+                code = dictionary.size();
+                if(code == words.length) {
+                    words = Arrays.copyOf(words, words.length * 2);
+                }
+                words[code] = value;
+                dictionary.put(value, code);
+            }
+            codes[row] = code;
+        }
+
+        /**
+         * Replace the string codes by the rank of the strings
+         */
+        @Override
+        protected void prepare() {
+            super.prepare();
+            if(encoded) {
+                return;
+            }
+            final int wordCount = dictionary.size();
+            String[] sorted = Arrays.copyOf(words, wordCount);
+            Arrays.sort(sorted);
+            int[] rank = new int[wordCount];
+            for(int i = 0; i < wordCount; i++) {
+                rank[dictionary.get(sorted[i])] = i;
+            }
+            for(int row = 0; row < codes.length; row++) {
+                if(!nulls.get(row)) {
+                    codes[row] = rank[codes[row]];
+                }
+            }
+            dictionary.clear();
+            words = null;
+            encoded = true;
+        }
+
+        @Override
+        protected int compareValues(int rowA, int rowB) {
+            int a = codes[rowA];
+            int b = codes[rowB];
+            return a < b ? -1 : (a == b ? 0 : 1);
+        }
+    }
+
+    /**
+     * Other comparable values
+     */
+    public static class ObjectKeys extends SortKeys {
+        private final Comparable[] values;
+
+        public ObjectKeys(int rowCount) {
+            super(rowCount);
+            values = new Comparable[rowCount];
+        }
+
+        public void set(int row, Comparable value) {
+            if(value == null) {
+                setNull(row);
+            }
+            values[row] = value;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        protected int compareValues(int rowA, int rowB) {
+            return values[rowA].compareTo(values[rowB]);
+        }
+    }
+}
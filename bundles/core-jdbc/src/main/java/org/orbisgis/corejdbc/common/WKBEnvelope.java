@@ -0,0 +1,218 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.common;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Compute the envelope of a WKB or EWKB geometry without building the JTS geometry.
+ *
+ * Only the headers and the X,Y ordinates are read, no {@link com.vividsolutions.jts.geom.Coordinate} is created.
+ * Z and M ordinates (EWKB flags or ISO type codes) and the EWKB SRID are skipped.
+ */
+public class WKBEnvelope {
+    private static final int EWKB_Z = 0x80000000;
+    private static final int EWKB_M = 0x40000000;
+    private static final int EWKB_SRID = 0x20000000;
+    private static final int EWKB_FLAGS = EWKB_Z | EWKB_M | EWKB_SRID;
+    private static final int POINT = 1;
+    private static final int LINESTRING = 2;
+    private static final int POLYGON = 3;
+    private static final int MULTIPOINT = 4;
+    private static final int MULTILINESTRING = 5;
+    private static final int MULTIPOLYGON = 6;
+    private static final int GEOMETRYCOLLECTION = 7;
+
+    private final byte[] wkb;
+    private int position = 0;
+    private boolean littleEndian;
+    private double minX = Double.POSITIVE_INFINITY;
+    private double minY = Double.POSITIVE_INFINITY;
+    private double maxX = Double.NEGATIVE_INFINITY;
+    private double maxY = Double.NEGATIVE_INFINITY;
+
+    private WKBEnvelope(byte[] wkb) {
+        this.wkb = wkb;
+    }
+
+    /**
+     * Read the envelope of a geometry
+     * @param wkb WKB or EWKB geometry
+     * @return The geometry envelope, a null envelope ({@link Envelope#isNull()}) for an empty geometry, or null if
+     * the array is null or is not a valid WKB.
+     */
+    public static Envelope read(byte[] wkb) {
+        if(wkb == null) {
+            return null;
+        }
+        WKBEnvelope reader = new WKBEnvelope(wkb);
+        try {
+            if(!reader.readGeometry()) {
+                return null;
+            }
+        } catch (ArrayIndexOutOfBoundsException ex) {
+            return null;
+        }
+        if(reader.minX > reader.maxX) {
+            return new Envelope();
+        }
+        return new Envelope(reader.minX, reader.maxX, reader.minY, reader.maxY);
+    }
+
+    /**
+     * Read a geometry header and its content
+     * @return False if the WKB is not valid
+     */
+    private boolean readGeometry() {
+        byte byteOrder = wkb[position++];
+        if(byteOrder == 0) {
+            littleEndian = false;
+        } else if(byteOrder == 1) {
+            littleEndian = true;
+        } else {
+            return false;
+        }
+        int typeInt = readInt();
+        int dimension = 2;
+        if((typeInt & EWKB_Z) != 0) {
+            dimension++;
+        }
+        if((typeInt & EWKB_M) != 0) {
+            dimension++;
+        }
+        if((typeInt & EWKB_SRID) != 0) {
+            position += 4;
+        }
+        int type = typeInt & ~EWKB_FLAGS;
+        // ISO WKB, 1000 for Z, 2000 for M and 3000 for ZM
+        int isoDimension = type / 1000;
+        if(isoDimension > 3) {
+            return false;
+        }
+        dimension += isoDimension == 3 ? 2 : (isoDimension > 0 ? 1 : 0);
+        type = type % 1000;
+        switch (type) {
+            case POINT:
+                return readCoordinates(1, dimension);
+            case LINESTRING:
+                return readCoordinates(readInt(), dimension);
+            case POLYGON:
+                int ringCount = readInt();
+                if(ringCount < 0) {
+                    return false;
+                }
+                for(int ring = 0; ring < ringCount; ring++) {
+                    int pointCount = readInt();
+                    if(ring == 0) {
+                        if(!readCoordinates(pointCount, dimension)) {
+                            return false;
+                        }
+                    } else {
+                        // Holes are inside the shell, skip them
+                        if(pointCount < 0 || position + (long)pointCount * dimension * 8 > wkb.length) {
+                            return false;
+                        }
+                        position += pointCount * dimension * 8;
+                    }
+                }
+                return true;
+            case MULTIPOINT:
+            case MULTILINESTRING:
+            case MULTIPOLYGON:
+            case GEOMETRYCOLLECTION:
+                int geometryCount = readInt();
+                if(geometryCount < 0) {
+                    return false;
+                }
+                for(int geometry = 0; geometry < geometryCount; geometry++) {
+                    if(!readGeometry()) {
+                        return false;
+                    }
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean readCoordinates(int count, int dimension) {
+        if(count < 0 || position + (long)count * dimension * 8 > wkb.length) {
+            return false;
+        }
+        for(int i = 0; i < count; i++) {
+            double x = readDouble();
+            double y = readDouble();
+            position += (dimension - 2) * 8;
+            // NaN ordinates are used for the empty point
+            if(!Double.isNaN(x) && !Double.isNaN(y)) {
+                minX = Math.min(minX, x);
+                maxX = Math.max(maxX, x);
+                minY = Math.min(minY, y);
+                maxY = Math.max(maxY, y);
+            }
+        }
+        return true;
+    }
+
+    private int readInt() {
+        int b0 = wkb[position] & 0xFF;
+        int b1 = wkb[position + 1] & 0xFF;
+        int b2 = wkb[position + 2] & 0xFF;
+        int b3 = wkb[position + 3] & 0xFF;
+        position += 4;
+        if(littleEndian) {
+            return (b3 << 24) | (b2 << 16) | (b1 << 8) | b0;
+        } else {
+            return (b0 << 24) | (b1 << 16) | (b2 << 8) | b3;
+        }
+    }
+
+    private double readDouble() {
+        long value = 0;
+        if(littleEndian) {
+            for(int i = 7; i >= 0; i--) {
+                value = (value << 8) | (wkb[position + i] & 0xFF);
+            }
+        } else {
+            for(int i = 0; i < 8; i++) {
+                value = (value << 8) | (wkb[position + i] & 0xFF);
+            }
+        }
+        position += 8;
+        return Double.longBitsToDouble(value);
+    }
+}
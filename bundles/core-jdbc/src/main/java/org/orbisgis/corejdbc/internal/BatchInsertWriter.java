@@ -0,0 +1,114 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import org.orbisgis.corejdbc.BulkWriter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Write rows with a prepared insert statement, sent by batches.
+ */
+public class BatchInsertWriter implements BulkWriter {
+    private final PreparedStatement insertSt;
+    private final int columnCount;
+    private final int batchSize;
+    private int pendingRows = 0;
+    private long rowCount = 0;
+
+    /**
+     * @param connection Active connection
+     * @param tableReference Target table
+     * @param columns Target columns
+     * @param batchSize Number of rows sent at once
+     * @throws SQLException
+     */
+    public BatchInsertWriter(Connection connection, String tableReference, String[] columns, int batchSize)
+            throws SQLException {
+        this.columnCount = columns.length;
+        this.batchSize = Math.max(1, batchSize);
+        StringBuilder sb = new StringBuilder("INSERT INTO ");
+        sb.append(tableReference).append("(");
+        StringBuilder parameters = new StringBuilder();
+        for(int idColumn = 0; idColumn < columns.length; idColumn++) {
+            if(idColumn > 0) {
+                sb.append(", ");
+                parameters.append(", ");
+            }
+            sb.append(columns[idColumn]);
+            parameters.append("?");
+        }
+        sb.append(") VALUES (").append(parameters).append(")");
+        insertSt = connection.prepareStatement(sb.toString());
+    }
+
+    @Override
+    public void addRow(Object... values) throws SQLException {
+        if(values.length != columnCount) {
+            throw new SQLException("Expected " + columnCount + " values, got " + values.length);
+        }
+        for(int idColumn = 0; idColumn < values.length; idColumn++) {
+            insertSt.setObject(idColumn + 1, values[idColumn]);
+        }
+        insertSt.addBatch();
+        pendingRows++;
+        rowCount++;
+        if(pendingRows >= batchSize) {
+            insertSt.executeBatch();
+            pendingRows = 0;
+        }
+    }
+
+    @Override
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            if(pendingRows > 0) {
+                insertSt.executeBatch();
+                pendingRows = 0;
+            }
+        } finally {
+            insertSt.close();
+        }
+    }
+}
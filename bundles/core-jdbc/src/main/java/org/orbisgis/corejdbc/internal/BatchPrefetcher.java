@@ -0,0 +1,271 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read ahead the batches of a {@link ReadRowSetImpl} in a background thread. Batches are fetched in the scroll
+ * direction, up to a number of batches and a memory limit. Fetched batches are consumed by the row set when the cursor
+ * reach them.
+ */
+public class BatchPrefetcher {
+    /** Read ahead is disabled by default */
+    public static final int DEFAULT_DEPTH = 0;
+    public static final long DEFAULT_MEMORY_LIMIT = 16 * 1024 * 1024;
+    private static final int THREAD_COUNT = 2;
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchPrefetcher.class);
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+        private final AtomicInteger threadCount = new AtomicInteger();
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ReadRowSet prefetch " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final Map<Integer, PrefetchedBatch> batches = new ConcurrentHashMap<>();
+    private final AtomicLong usedMemory = new AtomicLong();
+    // Incremented when fetched batches are no longer valid
+    private final AtomicInteger generation = new AtomicInteger();
+    // Incremented when a new read ahead task replace the running one
+    private final AtomicInteger sequence = new AtomicInteger();
+    private Future<?> task;
+    private volatile int depth = DEFAULT_DEPTH;
+    private volatile long memoryLimit = DEFAULT_MEMORY_LIMIT;
+
+    /**
+     * @param depth Number of batches to read ahead, 0 to disable read ahead
+     */
+    public void setDepth(int depth) {
+        this.depth = Math.max(0, depth);
+        if(this.depth == 0) {
+            invalidate();
+        }
+    }
+
+    /**
+     * @return Number of batches to read ahead
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @param memoryLimit Maximum estimated size in bytes of the batches fetched in advance
+     */
+    public void setMemoryLimit(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
+    }
+
+    /**
+     * @return Maximum estimated size in bytes of the batches fetched in advance
+     */
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    /**
+     * Remove a batch fetched in advance.
+     * @param batchId Batch identifier
+     * @param firstPk Expected first primary key value of the batch
+     * @return The batch or null if it has not been fetched yet or if it does not start with firstPk
+     */
+    public PrefetchedBatch take(int batchId, Long firstPk) {
+        PrefetchedBatch batch;
+        synchronized (batches) {
+            batch = batches.remove(batchId);
+            if(batch == null) {
+                return null;
+            }
+            usedMemory.addAndGet(-batch.size);
+        }
+        return Objects.equals(batch.firstPk, firstPk) ? batch : null;
+    }
+
+    /**
+     * Start to read ahead the batches that follow the current batch in the scroll direction.
+     * @param batchId Current batch identifier
+     * @param forward True to read the following batches, false to read the preceding batches
+     * @param firstPk First primary key of each batch, completed by the read ahead
+     * @param source Fetch the batches using its own connection, its state must not change while it is used by the
+     *               read ahead thread
+     */
+    public synchronized void schedule(final int batchId, final boolean forward, final PkPageIndex firstPk,
+                                      final BatchSource source) {
+        final int readDepth = depth;
+        if(readDepth <= 0) {
+            return;
+        }
+        // Drop batches that are out of range
+        synchronized (batches) {
+            Iterator<Map.Entry<Integer, PrefetchedBatch>> it = batches.entrySet().iterator();
+            while(it.hasNext()) {
+                Map.Entry<Integer, PrefetchedBatch> entry = it.next();
+                if(Math.abs(entry.getKey() - batchId) > readDepth) {
+                    usedMemory.addAndGet(-entry.getValue().size);
+                    it.remove();
+                }
+            }
+        }
+        final int taskGeneration = generation.get();
+        final int taskSequence = sequence.incrementAndGet();
+        if(task != null) {
+            task.cancel(false);
+        }
+        task = EXECUTOR.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 1; i <= readDepth; i++) {
+                        int target = forward ? batchId + i : batchId - i;
+                        if (target < 0 || target >= firstPk.size() || sequence.get() != taskSequence ||
+                                usedMemory.get() >= memoryLimit) {
+                            return;
+                        }
+                        // The first batch starts at the table beginning, the others require a known first pk
+                        Long targetPk = firstPk.get(target);
+                        if (target > 0 && targetPk == null) {
+                            return;
+                        }
+                        PrefetchedBatch batch = batches.get(target);
+                        if (batch == null || !Objects.equals(batch.firstPk, targetPk)) {
+                            batch = source.fetchBatch(targetPk);
+                            if (!store(target, batch, taskGeneration)) {
+                                return;
+                            }
+                        }
+                        if (forward) {
+                            if (batch.nextFirstPk == null) {
+                                return;
+                            }
+                            if (firstPk.get(target + 1) == null) {
+                                firstPk.set(target + 1, batch.nextFirstPk);
+                            }
+                        }
+                    }
+                } catch (SQLException ex) {
+                    // The row set will fetch the batch itself
+                    LOGGER.debug(ex.getLocalizedMessage(), ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * Keep a fetched batch, called from the read ahead thread. The batch is discarded if the fetched batches have been
+     * invalidated since the task started.
+     * @return False if the batch has been discarded
+     */
+    private boolean store(int batchId, PrefetchedBatch batch, int taskGeneration) {
+        synchronized (batches) {
+            // The generation is incremented before the batches are cleared
+            if(generation.get() != taskGeneration) {
+                return false;
+            }
+            PrefetchedBatch old = batches.put(batchId, batch);
+            usedMemory.addAndGet(batch.size - (old == null ? 0 : old.size));
+            return true;
+        }
+    }
+
+    /**
+     * Stop reading ahead and forget the fetched batches. Must be called when the underlying data or the batch
+     * boundaries change.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        sequence.incrementAndGet();
+        synchronized (this) {
+            if(task != null) {
+                task.cancel(false);
+                task = null;
+            }
+        }
+        synchronized (batches) {
+            batches.clear();
+            usedMemory.set(0);
+        }
+    }
+
+    /**
+     * Fetch a batch, called from a background thread.
+     */
+    public interface BatchSource {
+        /**
+         * @param firstPk First primary key value of the batch, null for the first batch
+         * @return The batch content
+         * @throws SQLException
+         */
+        PrefetchedBatch fetchBatch(Long firstPk) throws SQLException;
+    }
+
+    /**
+     * Content of a batch and the first primary key of the next batch.
+     */
+    public static class PrefetchedBatch {
+        public final ColumnarBatch batch;
+        public final Long firstPk;
+        public final Long nextFirstPk;
+        final long size;
+
+        /**
+         * @param batch Rows of the batch
+         * @param firstPk First primary key value used to query the batch
+         * @param nextFirstPk First primary key value of the next batch, null if this is the last batch
+         */
+        public PrefetchedBatch(ColumnarBatch batch, Long firstPk, Long nextFirstPk) {
+            this.batch = batch;
+            this.firstPk = firstPk;
+            this.nextFirstPk = nextFirstPk;
+            this.size = batch.estimateSize();
+        }
+    }
+}
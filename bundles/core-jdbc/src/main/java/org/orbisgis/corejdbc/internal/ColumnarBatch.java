@@ -0,0 +1,432 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKBReader;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Column oriented storage of a batch of rows. Numeric columns are kept in primitive arrays, strings are shared through
+ * a {@link StringDictionary} and geometries are kept as WKB until they are read. A geometry is decoded once, on the
+ * first read of its cell.
+ */
+public class ColumnarBatch {
+    /** Storage type of a column */
+    public enum Kind { INT, LONG, DOUBLE, STRING, GEOMETRY, OBJECT }
+    private final Kind[] kinds;
+    private final Object[] columns;
+    private final long[][] nulls;
+    private final long[] pk;
+    // Decoded geometries of the geometry columns, a cell is set on its first read
+    private final AtomicReferenceArray<Geometry>[] decoded;
+    private final StringDictionary dictionary;
+    private final int capacity;
+    private int rowCount = 0;
+
+    /**
+     * @param kinds Storage type of each column
+     * @param capacity Maximum number of rows
+     * @param withPk True if rows are identified by a primary key value
+     * @param dictionary Shared string dictionary
+     */
+    @SuppressWarnings("unchecked")
+    public ColumnarBatch(Kind[] kinds, int capacity, boolean withPk, StringDictionary dictionary) {
+        this.kinds = kinds.clone();
+        this.dictionary = dictionary;
+        this.capacity = capacity;
+        columns = new Object[kinds.length];
+        nulls = new long[kinds.length][];
+        decoded = new AtomicReferenceArray[kinds.length];
+        pk = withPk ? new long[capacity] : null;
+        for(int idColumn = 0; idColumn < kinds.length; idColumn++) {
+            columns[idColumn] = newStorage(this.kinds[idColumn], capacity);
+            if(this.kinds[idColumn] == Kind.GEOMETRY) {
+                decoded[idColumn] = new AtomicReferenceArray<>(capacity);
+            }
+        }
+    }
+
+    /**
+     * Read the storage type of the result set columns.
+     * @param meta Result set meta data
+     * @param offset Number of leading columns to skip
+     * @param columnCount Number of columns to read
+     * @return Storage kind of each column
+     * @throws SQLException
+     */
+    public static Kind[] readKinds(ResultSetMetaData meta, int offset, int columnCount) throws SQLException {
+        Kind[] kinds = new Kind[columnCount];
+        for(int idColumn = 0; idColumn < columnCount; idColumn++) {
+            int column = idColumn + 1 + offset;
+            switch (meta.getColumnType(column)) {
+                case Types.INTEGER:
+                    kinds[idColumn] = Kind.INT;
+                    break;
+                case Types.BIGINT:
+                    kinds[idColumn] = Kind.LONG;
+                    break;
+                case Types.DOUBLE:
+                case Types.FLOAT:
+                    kinds[idColumn] = Kind.DOUBLE;
+                    break;
+                case Types.CHAR:
+                case Types.VARCHAR:
+                case Types.LONGVARCHAR:
+                case Types.NCHAR:
+                case Types.NVARCHAR:
+                    kinds[idColumn] = Kind.STRING;
+                    break;
+                default:
+                    if("GEOMETRY".equalsIgnoreCase(meta.getColumnTypeName(column))) {
+                        kinds[idColumn] = Kind.GEOMETRY;
+                    } else {
+                        kinds[idColumn] = Kind.OBJECT;
+                    }
+            }
+        }
+        return kinds;
+    }
+
+    private static Object newStorage(Kind kind, int capacity) {
+        switch (kind) {
+            case INT:
+                return new int[capacity];
+            case LONG:
+                return new long[capacity];
+            case DOUBLE:
+                return new double[capacity];
+            case STRING:
+                return new String[capacity];
+            case GEOMETRY:
+                return new byte[capacity][];
+            default:
+                return new Object[capacity];
+        }
+    }
+
+    /**
+     * Append a new row, values are set through {@link #set(int, int, Object)}
+     * @param pkValue Primary key value of the row, ignored if this batch does not store primary keys
+     * @return The row index in this batch
+     */
+    public int addRow(long pkValue) {
+        if(pk != null) {
+            pk[rowCount] = pkValue;
+        }
+        return rowCount++;
+    }
+
+    /**
+     * Remove all rows, the storage is kept in order to reuse this batch.
+     */
+    public void clear() {
+        for(long[] columnNulls : nulls) {
+            if(columnNulls != null) {
+                Arrays.fill(columnNulls, 0);
+            }
+        }
+        for(AtomicReferenceArray<Geometry> columnGeometries : decoded) {
+            if(columnGeometries != null) {
+                for(int row = 0; row < rowCount; row++) {
+                    columnGeometries.set(row, null);
+                }
+            }
+        }
+        rowCount = 0;
+    }
+
+    /**
+     * @return Number of rows in this batch
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return Number of columns in this batch
+     */
+    public int getColumnCount() {
+        return kinds.length;
+    }
+
+    /**
+     * @param column Column index [0-n[
+     * @return Storage type of the column
+     */
+    public Kind getKind(int column) {
+        return kinds[column];
+    }
+
+    /**
+     * @param row Row index
+     * @return Primary key value or null if this batch does not store primary keys
+     */
+    public Long getPk(int row) {
+        return pk == null ? null : pk[row];
+    }
+
+    /**
+     * Set a cell value. If the value does not fit in the column storage, the column fall back to object storage.
+     * @param column Column index [0-n[
+     * @param row Row index
+     * @param value Cell value
+     */
+    public void set(int column, int row, Object value) {
+        if(decoded[column] != null) {
+            decoded[column].set(row, null);
+        }
+        if(value == null) {
+            setNull(column, row);
+            return;
+        }
+        switch (kinds[column]) {
+            case INT:
+                if(value instanceof Integer) {
+                    ((int[]) columns[column])[row] = (Integer) value;
+                    return;
+                }
+                break;
+            case LONG:
+                if(value instanceof Long) {
+                    ((long[]) columns[column])[row] = (Long) value;
+                    return;
+                }
+                break;
+            case DOUBLE:
+                if(value instanceof Double) {
+                    ((double[]) columns[column])[row] = (Double) value;
+                    return;
+                }
+                break;
+            case STRING:
+                if(value instanceof String) {
+                    ((String[]) columns[column])[row] = dictionary.canonicalize((String) value);
+                    return;
+                }
+                break;
+            case GEOMETRY:
+                if(value instanceof byte[]) {
+                    ((byte[][]) columns[column])[row] = (byte[]) value;
+                    return;
+                }
+                break;
+            default:
+                ((Object[]) columns[column])[row] = value;
+                return;
+        }
+        toObjectStorage(column);
+        ((Object[]) columns[column])[row] = value;
+    }
+
+    private void setNull(int column, int row) {
+        if(nulls[column] == null) {
+            nulls[column] = new long[(capacity + 63) >>> 6];
+        }
+        nulls[column][row >>> 6] |= 1L << row;
+    }
+
+    /**
+     * @param column Column index [0-n[
+     * @param row Row index
+     * @return True if the cell is null
+     */
+    public boolean isNull(int column, int row) {
+        long[] columnNulls = nulls[column];
+        return columnNulls != null && (columnNulls[row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * Convert a primitive column into an object column, used when a value does not match the declared column type.
+     * @param column Column index [0-n[
+     */
+    private void toObjectStorage(int column) {
+        Object[] values = new Object[capacity];
+        for (int row = 0; row < rowCount; row++) {
+            values[row] = getObject(column, row);
+        }
+        columns[column] = values;
+        kinds[column] = Kind.OBJECT;
+        decoded[column] = null;
+    }
+
+    /**
+     * @param column Column index [0-n[
+     * @param row Row index
+     * @return The cell value, geometries are decoded from WKB
+     */
+    public Object getObject(int column, int row) {
+        if(isNull(column, row)) {
+            return null;
+        }
+        switch (kinds[column]) {
+            case INT:
+                return ((int[]) columns[column])[row];
+            case LONG:
+                return ((long[]) columns[column])[row];
+            case DOUBLE:
+                return ((double[]) columns[column])[row];
+            case STRING:
+                return ((String[]) columns[column])[row];
+            case GEOMETRY:
+                return getGeometry(column, row);
+            default:
+                return ((Object[]) columns[column])[row];
+        }
+    }
+
+    /**
+     * @param column Column index [0-n[
+     * @return True if the column is stored in a primitive numeric array
+     */
+    public boolean isNumeric(int column) {
+        Kind kind = kinds[column];
+        return kind == Kind.INT || kind == Kind.LONG || kind == Kind.DOUBLE;
+    }
+
+    /**
+     * @param column Numeric column index [0-n[ {@link #isNumeric(int)}
+     * @param row Row index
+     * @return The value as double, 0 if null
+     */
+    public double getDouble(int column, int row) {
+        switch (kinds[column]) {
+            case INT:
+                return ((int[]) columns[column])[row];
+            case LONG:
+                return ((long[]) columns[column])[row];
+            default:
+                return ((double[]) columns[column])[row];
+        }
+    }
+
+    /**
+     * @param column Numeric column index [0-n[ {@link #isNumeric(int)}
+     * @param row Row index
+     * @return The value as long, 0 if null
+     */
+    public long getLong(int column, int row) {
+        switch (kinds[column]) {
+            case INT:
+                return ((int[]) columns[column])[row];
+            case LONG:
+                return ((long[]) columns[column])[row];
+            default:
+                return (long) ((double[]) columns[column])[row];
+        }
+    }
+
+    /**
+     * @param column Geometry column index [0-n[
+     * @param row Row index
+     * @return The WKB of the geometry, null if the cell is null or if the column is not a geometry column
+     */
+    public byte[] getWKB(int column, int row) {
+        if(kinds[column] != Kind.GEOMETRY) {
+            return null;
+        }
+        return ((byte[][]) columns[column])[row];
+    }
+
+    /**
+     * Approximate the heap size of this batch. Strings shared through the dictionary are counted in each batch.
+     * @return Estimated size in bytes
+     */
+    public long estimateSize() {
+        long size = pk == null ? 0 : 8L * capacity;
+        for(int idColumn = 0; idColumn < kinds.length; idColumn++) {
+            if(nulls[idColumn] != null) {
+                size += 8L * nulls[idColumn].length;
+            }
+            switch (kinds[idColumn]) {
+                case INT:
+                    size += 4L * capacity;
+                    break;
+                case LONG:
+                case DOUBLE:
+                    size += 8L * capacity;
+                    break;
+                case STRING:
+                    size += 8L * capacity;
+                    for(String value : (String[]) columns[idColumn]) {
+                        if(value != null) {
+                            size += 40 + 2L * value.length();
+                        }
+                    }
+                    break;
+                case GEOMETRY:
+                    // The decoded geometries are counted before their first read, the size is not updated
+                    size += 16L * capacity;
+                    for(byte[] value : (byte[][]) columns[idColumn]) {
+                        if(value != null) {
+                            size += 16 + value.length + 64 + 3L * value.length;
+                        }
+                    }
+                    break;
+                default:
+                    // Boxed values, dates, clob excerpts..
+                    size += 32L * capacity;
+            }
+        }
+        return size;
+    }
+
+    private Geometry getGeometry(int column, int row) {
+        // Batches are read by several threads, a cell decoded by two threads at once keeps one of the geometries
+        Geometry geometry = decoded[column].get(row);
+        if(geometry == null) {
+            try {
+                geometry = new WKBReader().read(((byte[][]) columns[column])[row]);
+            } catch (ParseException ex) {
+                throw new IllegalStateException(ex.getLocalizedMessage(), ex);
+            }
+            if(!decoded[column].compareAndSet(row, null, geometry)) {
+                Geometry other = decoded[column].get(row);
+                if(other != null) {
+                    geometry = other;
+                }
+            }
+        }
+        return geometry;
+    }
+}
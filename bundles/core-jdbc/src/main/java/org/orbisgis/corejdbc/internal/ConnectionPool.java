@@ -0,0 +1,430 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import org.orbisgis.corejdbc.ConnectionPoolStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nFactory;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of connections on top of another DataSource.
+ *
+ * Each pooled connection keeps a cache of its prepared statements. Closing a connection or a cached statement
+ * returns it to the pool. Connections whose session state has been changed (SET commands, isolation level, read
+ * only, catalog or schema) are not reused. The execution time of the statements is collected by a
+ * {@link StatementMonitor}.
+ */
+public class ConnectionPool implements DataSource {
+    /** Default maximum number of open connections */
+    public static final int DEFAULT_MAXIMUM_POOL_SIZE = 16;
+    /** Default number of prepared statements kept by each connection */
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+    /** Default delay in milliseconds before getConnection fails when all connections are borrowed */
+    public static final long DEFAULT_ACQUIRE_TIMEOUT = 30000;
+    /** Default delay in milliseconds after which a borrowed connection is reported as leaked */
+    public static final long DEFAULT_LEAK_THRESHOLD = 300000;
+    // Idle connections unused for this delay are validated before being borrowed
+    private static final long VALIDATION_DELAY = 30000;
+    // Seconds
+    private static final int VALIDATION_TIMEOUT = 5;
+    // Idle connections unused for this delay are closed
+    private static final long IDLE_TIMEOUT = 600000;
+    private static final long MAINTENANCE_PERIOD = 30000;
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPool.class);
+    private static final I18n I18N = I18nFactory.getI18n(ConnectionPool.class);
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Connection pool maintenance");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final DataSource dataSource;
+    private final int maximumPoolSize;
+    private final int statementCacheSize;
+    private volatile long acquireTimeout = DEFAULT_ACQUIRE_TIMEOUT;
+    private volatile long leakThreshold = DEFAULT_LEAK_THRESHOLD;
+    // Following fields are guarded by this
+    // Most recently released first
+    private final ArrayDeque<PooledConnection> idle = new ArrayDeque<>();
+    private final Set<PooledConnection> active = new HashSet<>();
+    // Connections being opened, they count in the pool size
+    private int pendingCreation = 0;
+    private boolean closed = false;
+    private long createdConnections = 0;
+    private long borrowCount = 0;
+    private long waitCount = 0;
+    private long totalWaitTime = 0;
+    private long validationFailures = 0;
+    private long leakCount = 0;
+    // Statement cache counters, updated by the connections
+    final AtomicLong statementCacheHits = new AtomicLong();
+    final AtomicLong statementCacheMisses = new AtomicLong();
+    final AtomicLong statementCacheEvictions = new AtomicLong();
+    // Incremented when the cached statements may be invalid
+    final AtomicInteger statementCacheGeneration = new AtomicInteger();
+    private final ScheduledFuture<?> maintenance;
+    private final StatementMonitor statementMonitor = new StatementMonitor();
+
+    /**
+     * @param dataSource Source of the physical connections
+     * @param maximumPoolSize Maximum number of open connections
+     * @param statementCacheSize Number of prepared statements kept by each connection, 0 to disable the cache
+     */
+    public ConnectionPool(DataSource dataSource, int maximumPoolSize, int statementCacheSize) {
+        if(maximumPoolSize < 1) {
+            throw new IllegalArgumentException("The pool must contain at least one connection");
+        }
+        this.dataSource = dataSource;
+        this.maximumPoolSize = maximumPoolSize;
+        this.statementCacheSize = Math.max(0, statementCacheSize);
+        maintenance = EXECUTOR.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                maintain();
+            }
+        }, MAINTENANCE_PERIOD, MAINTENANCE_PERIOD, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param dataSource Source of the physical connections
+     */
+    public ConnectionPool(DataSource dataSource) {
+        this(dataSource, DEFAULT_MAXIMUM_POOL_SIZE, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * @return The wrapped DataSource
+     */
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * @param acquireTimeout Delay in milliseconds before getConnection fails when all connections are borrowed
+     */
+    public void setAcquireTimeout(long acquireTimeout) {
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    /**
+     * @param leakThreshold Delay in milliseconds after which a borrowed connection is reported as leaked with the
+     *                      stack trace of its borrower, 0 to disable the leak detection
+     */
+    public void setLeakThreshold(long leakThreshold) {
+        this.leakThreshold = leakThreshold;
+    }
+
+    /**
+     * @return Maximum number of open connections
+     */
+    public int getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    /**
+     * @return Number of prepared statements kept by each connection
+     */
+    int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.currentTimeMillis();
+        boolean waited = false;
+        boolean schedulerReleased = false;
+        while(true) {
+            PooledConnection candidate = null;
+            boolean create = false;
+            boolean releaseScheduler = false;
+            synchronized (this) {
+                if(closed) {
+                    throw new SQLException(I18N.tr("The connection pool is closed"));
+                }
+                if(!idle.isEmpty()) {
+                    candidate = idle.pollFirst();
+                    active.add(candidate);
+                } else if(active.size() + pendingCreation < maximumPoolSize) {
+                    pendingCreation++;
+                    create = true;
+                } else if(!schedulerReleased) {
+                    // Cursors kept open by the row sets may hold the connections
+                    schedulerReleased = true;
+                    releaseScheduler = true;
+                } else {
+                    long remaining = start + acquireTimeout - System.currentTimeMillis();
+                    if(remaining <= 0) {
+                        throw new SQLException(I18N.tr("No connection available after {0} ms, {1} connections are " +
+                                "in use", acquireTimeout, active.size()));
+                    }
+                    if(!waited) {
+                        waited = true;
+                        waitCount++;
+                    }
+                    try {
+                        wait(remaining);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException(ex);
+                    }
+                    continue;
+                }
+            }
+            if(releaseScheduler) {
+                ResultSetScheduler.getInstance().releaseIdleResources();
+                continue;
+            }
+            if(create) {
+                candidate = createConnection();
+            } else if(System.currentTimeMillis() - candidate.getLastUsed() > VALIDATION_DELAY
+                    && !candidate.isValid(VALIDATION_TIMEOUT)) {
+                synchronized (this) {
+                    validationFailures++;
+                    active.remove(candidate);
+                    notifyAll();
+                }
+                candidate.closePhysical();
+                continue;
+            }
+            long leakDetection = leakThreshold;
+            synchronized (this) {
+                borrowCount++;
+                if(waited) {
+                    totalWaitTime += System.currentTimeMillis() - start;
+                }
+            }
+            return candidate.borrow(leakDetection > 0 ? new Throwable("Connection borrowed here") : null);
+        }
+    }
+
+    private PooledConnection createConnection() throws SQLException {
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+        } finally {
+            synchronized (this) {
+                pendingCreation--;
+                if(connection == null) {
+                    notifyAll();
+                }
+            }
+        }
+        PooledConnection pooledConnection = new PooledConnection(this, connection);
+        synchronized (this) {
+            createdConnections++;
+            active.add(pooledConnection);
+        }
+        return pooledConnection;
+    }
+
+    /**
+     * Called by the connection once closed by its borrower
+     * @param connection Pooled connection
+     * @param reusable False if the connection must be closed
+     */
+    void release(PooledConnection connection, boolean reusable) {
+        boolean close;
+        synchronized (this) {
+            active.remove(connection);
+            close = closed || !reusable;
+            if(!close) {
+                idle.addFirst(connection);
+            }
+            notifyAll();
+        }
+        if(close) {
+            connection.closePhysical();
+        }
+    }
+
+    /**
+     * @return Execution metrics of the statements issued through this pool
+     */
+    public StatementMonitor getStatementMonitor() {
+        return statementMonitor;
+    }
+
+    /**
+     * Close the cached prepared statements. Called when the database structure has been updated, by a command
+     * executed through this pool, by a database event or when a cached plan has been rejected by the database.
+     */
+    public void clearStatementCache() {
+        statementCacheGeneration.incrementAndGet();
+    }
+
+    /**
+     * Report leaked connections and close connections unused for a long time
+     */
+    private void maintain() {
+        List<PooledConnection> toClose = new ArrayList<>();
+        List<PooledConnection> leaked = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        long leakDetection = leakThreshold;
+        synchronized (this) {
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while(it.hasNext()) {
+                PooledConnection connection = it.next();
+                if(now - connection.getLastUsed() > IDLE_TIMEOUT) {
+                    it.remove();
+                    toClose.add(connection);
+                } else {
+                    // Next connections have been used more recently
+                    break;
+                }
+            }
+            if(leakDetection > 0) {
+                for(PooledConnection connection : active) {
+                    if(connection.checkLeak(now, leakDetection)) {
+                        leakCount++;
+                        leaked.add(connection);
+                    }
+                }
+            }
+        }
+        for(PooledConnection connection : leaked) {
+            LOGGER.warn(I18N.tr("A database connection has not been released for more than {0} seconds",
+                    leakDetection / 1000), connection.getBorrowStack());
+        }
+        for(PooledConnection connection : toClose) {
+            connection.closePhysical();
+        }
+    }
+
+    /**
+     * @return Current state of the pool
+     */
+    public synchronized ConnectionPoolStatistics getStatistics() {
+        return new ConnectionPoolStatistics(maximumPoolSize, active.size(), idle.size(), createdConnections,
+                borrowCount, waitCount, totalWaitTime, validationFailures, leakCount, statementCacheHits.get(),
+                statementCacheMisses.get(), statementCacheEvictions.get());
+    }
+
+    /**
+     * Close the idle connections. Borrowed connections are closed when released.
+     */
+    public void close() {
+        List<PooledConnection> toClose;
+        synchronized (this) {
+            if(closed) {
+                return;
+            }
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+            notifyAll();
+        }
+        maintenance.cancel(false);
+        for(PooledConnection connection : toClose) {
+            connection.closePhysical();
+        }
+        statementMonitor.close();
+    }
+
+    /**
+     * @return True if {@link #close()} has been called
+     */
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        // Connections of other users are not pooled
+        return dataSource.getConnection(username, password);
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return dataSource.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        dataSource.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        dataSource.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return dataSource.getLoginTimeout();
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return dataSource.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if(iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return dataSource.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || dataSource.isWrapperFor(iface);
+    }
+}
@@ -0,0 +1,392 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.WKBWriter;
+import org.orbisgis.corejdbc.BulkWriter;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Stream rows to PostgreSQL with a binary COPY. Values are encoded in the binary format of the target column type,
+ * only the common types are supported.
+ */
+public class CopyInWriter implements BulkWriter {
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final int BUFFER_SIZE = 1 << 16;
+    // PostgreSQL dates and timestamps are relative to 2000-01-01
+    private static final long PG_EPOCH_MILLIS = 946684800000L;
+    private static final long MILLIS_PER_DAY = 86400000L;
+    // EWKB flag of the geometry type when a SRID follows
+    private static final int EWKB_SRID_FLAG = 0x20000000;
+    private static final Map<String, ColumnType> COLUMN_TYPES = new HashMap<>();
+    static {
+        COLUMN_TYPES.put("int2", ColumnType.INT2);
+        COLUMN_TYPES.put("int4", ColumnType.INT4);
+        COLUMN_TYPES.put("serial", ColumnType.INT4);
+        COLUMN_TYPES.put("int8", ColumnType.INT8);
+        COLUMN_TYPES.put("bigserial", ColumnType.INT8);
+        COLUMN_TYPES.put("float4", ColumnType.FLOAT4);
+        COLUMN_TYPES.put("float8", ColumnType.FLOAT8);
+        COLUMN_TYPES.put("bool", ColumnType.BOOL);
+        COLUMN_TYPES.put("text", ColumnType.TEXT);
+        COLUMN_TYPES.put("varchar", ColumnType.TEXT);
+        COLUMN_TYPES.put("bpchar", ColumnType.TEXT);
+        COLUMN_TYPES.put("bytea", ColumnType.BYTEA);
+        COLUMN_TYPES.put("geometry", ColumnType.GEOMETRY);
+        COLUMN_TYPES.put("date", ColumnType.DATE);
+        COLUMN_TYPES.put("timestamp", ColumnType.TIMESTAMP);
+        COLUMN_TYPES.put("timestamptz", ColumnType.TIMESTAMPTZ);
+    }
+    private final CopyIn copyIn;
+    private final ColumnType[] columnTypes;
+    // SRID of the geometry columns, 0 if the column does not constrain the SRID
+    private final int[] columnSrids;
+    private final WKBWriter wkbWriter2D = new WKBWriter(2);
+    private final WKBWriter wkbWriter3D = new WKBWriter(3);
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int size = 0;
+    private long rowCount = 0;
+    private boolean failed = false;
+
+    enum ColumnType {INT2, INT4, INT8, FLOAT4, FLOAT8, BOOL, TEXT, BYTEA, GEOMETRY, DATE, TIMESTAMP, TIMESTAMPTZ}
+
+    /**
+     * @param copyIn Started copy
+     * @param columnTypes Binary format of each column
+     * @param columnSrids SRID of each geometry column, 0 to keep the SRID of the geometries
+     */
+    CopyInWriter(CopyIn copyIn, ColumnType[] columnTypes, int[] columnSrids) {
+        this.copyIn = copyIn;
+        this.columnTypes = columnTypes;
+        this.columnSrids = columnSrids;
+        writeBytes(SIGNATURE);
+        // Flags and header extension length
+        writeInt(0);
+        writeInt(0);
+    }
+
+    /**
+     * Start a copy into the table
+     * @param connection PostgreSQL connection
+     * @param tableReference Target table
+     * @param columns Target columns
+     * @return The writer or null if a column type is not supported by the binary encoder
+     * @throws SQLException
+     */
+    public static CopyInWriter create(Connection connection, String tableReference, String[] columns)
+            throws SQLException {
+        if(!connection.isWrapperFor(PGConnection.class)) {
+            return null;
+        }
+        StringBuilder columnList = new StringBuilder();
+        for(String column : columns) {
+            if(columnList.length() > 0) {
+                columnList.append(", ");
+            }
+            columnList.append(column);
+        }
+        ColumnType[] columnTypes = new ColumnType[columns.length];
+        int[] columnSrids = new int[columns.length];
+        boolean hasTimestamp = false;
+        try(Statement st = connection.createStatement()) {
+            try(ResultSet rs = st.executeQuery(String.format("SELECT %s FROM %s LIMIT 0", columnList,
+                    tableReference))) {
+                ResultSetMetaData meta = rs.getMetaData();
+                for(int idColumn = 0; idColumn < columns.length; idColumn++) {
+                    columnTypes[idColumn] = COLUMN_TYPES.get(meta.getColumnTypeName(idColumn + 1)
+                            .toLowerCase(Locale.ROOT));
+                    if(columnTypes[idColumn] == null) {
+                        return null;
+                    }
+                    hasTimestamp |= columnTypes[idColumn] == ColumnType.TIMESTAMP ||
+                            columnTypes[idColumn] == ColumnType.TIMESTAMPTZ;
+                    if(columnTypes[idColumn] == ColumnType.GEOMETRY) {
+                        columnSrids[idColumn] = getColumnSrid(connection, tableReference,
+                                meta.getColumnName(idColumn + 1));
+                    }
+                }
+            }
+            if(hasTimestamp) {
+                // Timestamps are sent as 64 bits integers
+                try(ResultSet rs = st.executeQuery("SHOW integer_datetimes")) {
+                    if(!rs.next() || !"on".equalsIgnoreCase(rs.getString(1))) {
+                        return null;
+                    }
+                }
+            }
+        }
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(
+                String.format("COPY %s(%s) FROM STDIN WITH BINARY", tableReference, columnList));
+        return new CopyInWriter(copyIn, columnTypes, columnSrids);
+    }
+
+    /**
+     * @return The SRID of the geometry column, 0 if the column does not constrain the SRID
+     */
+    private static int getColumnSrid(Connection connection, String tableReference, String columnName)
+            throws SQLException {
+        try(PreparedStatement st = connection.prepareStatement("SELECT g.srid FROM geometry_columns g, pg_class c, " +
+                "pg_namespace n WHERE c.oid = ?::regclass AND n.oid = c.relnamespace AND g.f_table_schema = n.nspname" +
+                " AND g.f_table_name = c.relname AND g.f_geometry_column = ?")) {
+            st.setString(1, tableReference);
+            st.setString(2, columnName);
+            try(ResultSet rs = st.executeQuery()) {
+                return rs.next() ? Math.max(0, rs.getInt(1)) : 0;
+            }
+        }
+    }
+
+    @Override
+    public void addRow(Object... values) throws SQLException {
+        if(values.length != columnTypes.length) {
+            throw new SQLException("Expected " + columnTypes.length + " values, got " + values.length);
+        }
+        int rowStart = size;
+        try {
+            writeShort(values.length);
+            for(int idColumn = 0; idColumn < values.length; idColumn++) {
+                writeValue(idColumn, values[idColumn]);
+            }
+        } catch (ClassCastException ex) {
+            // Drop the partial row
+            size = rowStart;
+            throw new SQLException("The value type does not match the column type", ex);
+        }
+        rowCount++;
+        if(size >= BUFFER_SIZE) {
+            flush();
+        }
+    }
+
+    private void writeValue(int idColumn, Object value) {
+        if(value == null) {
+            writeInt(-1);
+            return;
+        }
+        switch (columnTypes[idColumn]) {
+            case INT2:
+                writeInt(2);
+                writeShort(((Number) value).shortValue());
+                break;
+            case INT4:
+                writeInt(4);
+                writeInt(((Number) value).intValue());
+                break;
+            case INT8:
+                writeInt(8);
+                writeLong(((Number) value).longValue());
+                break;
+            case FLOAT4:
+                writeInt(4);
+                writeInt(Float.floatToIntBits(((Number) value).floatValue()));
+                break;
+            case FLOAT8:
+                writeInt(8);
+                writeLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+                break;
+            case BOOL:
+                writeInt(1);
+                ensureCapacity(1);
+                buffer[size++] = (byte) ((Boolean) value ? 1 : 0);
+                break;
+            case TEXT:
+                writeField(value.toString().getBytes(StandardCharsets.UTF_8));
+                break;
+            case BYTEA:
+                writeField((byte[]) value);
+                break;
+            case GEOMETRY:
+                // geometry_recv reads WKB and EWKB
+                writeField(value instanceof Geometry ? toEWKB((Geometry) value, columnSrids[idColumn]) :
+                        (byte[]) value);
+                break;
+            case DATE:
+                long days = floorDiv(toLocalMillis((Date) value), MILLIS_PER_DAY) - PG_EPOCH_MILLIS / MILLIS_PER_DAY;
+                writeInt(4);
+                writeInt((int) days);
+                break;
+            case TIMESTAMP:
+                writeInt(8);
+                writeLong(toMicros(toLocalMillis((Date) value), (Date) value));
+                break;
+            case TIMESTAMPTZ:
+                writeInt(8);
+                writeLong(toMicros(((Date) value).getTime(), (Date) value));
+                break;
+        }
+    }
+
+    /**
+     * @param columnSrid SRID of the column, it replaces the SRID of the geometry (often 0) that would be rejected by
+     *                   the column constraint
+     */
+    private byte[] toEWKB(Geometry geometry, int columnSrid) {
+        Coordinate coordinate = geometry.getCoordinate();
+        byte[] wkb;
+        if(coordinate != null && !Double.isNaN(coordinate.z)) {
+            wkb = wkbWriter3D.write(geometry);
+        } else {
+            wkb = wkbWriter2D.write(geometry);
+        }
+        int srid = columnSrid > 0 ? columnSrid : geometry.getSRID();
+        if(srid <= 0) {
+            return wkb;
+        }
+        // Big endian byte order, geometry type with the SRID flag, SRID, then the geometry content
+        byte[] ewkb = new byte[wkb.length + 4];
+        ewkb[0] = wkb[0];
+        int type = ((wkb[1] & 0xFF) << 24 | (wkb[2] & 0xFF) << 16 | (wkb[3] & 0xFF) << 8 | (wkb[4] & 0xFF))
+                | EWKB_SRID_FLAG;
+        for(int i = 0; i < 4; i++) {
+            ewkb[1 + i] = (byte) (type >>> (24 - 8 * i));
+            ewkb[5 + i] = (byte) (srid >>> (24 - 8 * i));
+        }
+        System.arraycopy(wkb, 5, ewkb, 9, wkb.length - 5);
+        return ewkb;
+    }
+
+    private static long toLocalMillis(Date date) {
+        return date.getTime() + TimeZone.getDefault().getOffset(date.getTime());
+    }
+
+    private static long toMicros(long millis, Date date) {
+        long micros = (millis - PG_EPOCH_MILLIS) * 1000;
+        if(date instanceof Timestamp) {
+            // Microseconds that follow the milliseconds
+            micros += (((Timestamp) date).getNanos() / 1000) % 1000;
+        }
+        return micros;
+    }
+
+    private static long floorDiv(long value, long divisor) {
+        long quotient = value / divisor;
+        if(value % divisor != 0 && (value < 0) != (divisor < 0)) {
+            quotient--;
+        }
+        return quotient;
+    }
+
+    private void ensureCapacity(int length) {
+        if(size + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(size + length, buffer.length * 2));
+        }
+    }
+
+    private void writeField(byte[] value) {
+        writeInt(value.length);
+        writeBytes(value);
+    }
+
+    private void writeBytes(byte[] value) {
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, buffer, size, value.length);
+        size += value.length;
+    }
+
+    private void writeShort(int value) {
+        ensureCapacity(2);
+        buffer[size++] = (byte) (value >>> 8);
+        buffer[size++] = (byte) value;
+    }
+
+    private void writeInt(int value) {
+        ensureCapacity(4);
+        buffer[size++] = (byte) (value >>> 24);
+        buffer[size++] = (byte) (value >>> 16);
+        buffer[size++] = (byte) (value >>> 8);
+        buffer[size++] = (byte) value;
+    }
+
+    private void writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    private void flush() throws SQLException {
+        try {
+            copyIn.writeToCopy(buffer, 0, size);
+            size = 0;
+        } catch (SQLException ex) {
+            failed = true;
+            throw ex;
+        }
+    }
+
+    @Override
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if(!copyIn.isActive()) {
+            return;
+        }
+        if(failed) {
+            copyIn.cancelCopy();
+            return;
+        }
+        try {
+            // File trailer
+            writeShort(-1);
+            flush();
+            copyIn.endCopy();
+        } finally {
+            if(copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+}
@@ -37,19 +37,27 @@
 package org.orbisgis.corejdbc.internal;
 
 
+import com.vividsolutions.jts.geom.Envelope;
 import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.TableLocation;
 import org.h2gis.utilities.URIUtilities;
+import org.orbisgis.corejdbc.ConnectionPoolStatistics;
+import org.orbisgis.corejdbc.StatementMetrics;
 import org.orbisgis.corejdbc.DataManager;
 import org.orbisgis.corejdbc.DatabaseProgressionListener;
 import org.orbisgis.corejdbc.TableEditEvent;
 import org.orbisgis.corejdbc.TableEditListener;
 import org.orbisgis.corejdbc.ReadRowSet;
 import org.orbisgis.corejdbc.ReversibleRowSet;
+import org.orbisgis.corejdbc.RowCache;
+import org.orbisgis.corejdbc.SortIndexCache;
 import org.orbisgis.corejdbc.StateEvent;
 import org.orbisgis.commons.utils.FileUtils;
+import org.orbisgis.frameworkapi.CoreWorkspace;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -70,9 +78,12 @@ import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Implementation of the DataManager service.
@@ -85,9 +96,36 @@ public class DataManagerImpl implements DataManager {
     private boolean isH2 = true;
     private boolean isLocalH2Table = true;
     private static final String H2TRIGGER = "org.orbisgis.h2triggers.H2Trigger";
+    private static final String PAGE_INDEX_FOLDER = "pageindex";
+    // Row sets save their page index in this folder, null if there is no workspace
+    private File pageIndexFolder;
+    private static final String SORT_INDEX_FOLDER = "sortindex";
+    private final SortIndexCacheImpl sortIndexCache = new SortIndexCacheImpl(this);
+    // File path of the linked tables
+    private final LinkedFileIndex linkedFileIndex = new LinkedFileIndex();
+    // Import files in a spatially indexed cache instead of linking them
+    private static final String MATERIALIZE_PROPERTY = "corejdbc.datamanager.materialize_files";
+    private boolean materializeLinkedFiles = Boolean.getBoolean(MATERIALIZE_PROPERTY);
+    private final LinkedFileCache linkedFileCache = new LinkedFileCache(this);
+    // Maximum number of pooled connections, 0 to use the DataSource connections directly
+    private static final String POOL_SIZE_PROPERTY = "corejdbc.datamanager.pool_size";
+    private static final String STATEMENT_CACHE_PROPERTY = "corejdbc.datamanager.statement_cache_size";
+    private ConnectionPool connectionPool;
+    // Statement execution metrics of the pooled connections, disabled by default as the result sets are then proxies
+    private static final String STATEMENT_METRICS_PROPERTY = "corejdbc.datamanager.statement_metrics";
+    private static final String SLOW_QUERY_THRESHOLD_PROPERTY = "corejdbc.datamanager.slow_query_threshold";
+    private static final String SLOW_QUERY_LOG = "slow_queries.log";
+    // Statements slower than the threshold are written in this file, null if there is no workspace
+    private File slowQueryLog;
 
-    /** ReversibleRowSet fire row updates to their DataManager  */
-    private Map<String, List<TableEditListener>> tableEditionListener = new HashMap<>();
+    /** ReversibleRowSet fire row updates to their DataManager, read from the threads that deliver the events,
+     * updates are synchronized on the map */
+    private final Map<String, List<TableEditListener>> tableEditionListener = new ConcurrentHashMap<>();
+    // Detect the table changes at the end of statements instead of with row triggers
+    private static final String STATEMENT_CHANGE_EVENTS_PROPERTY = "corejdbc.datamanager.statement_change_events";
+    private volatile boolean statementChangeEvents = Boolean.getBoolean(STATEMENT_CHANGE_EVENTS_PROPERTY);
+    // Listened tables that requested a trigger, parsed table identifier to table reference
+    private final Map<String, String> triggerTables = new ConcurrentHashMap<>();
     private Map<StateEvent.DB_STATES, ArrayList<DatabaseProgressionListener>> progressionListenerMap = new HashMap<>();
 
     @Override
@@ -102,12 +140,16 @@ public class DataManagerImpl implements DataManager {
 
     @Override
     public ReversibleRowSet createReversibleRowSet() throws SQLException {
-        return new ReversibleRowSetImpl(dataSource, this);
+        ReversibleRowSetImpl rowSet = new ReversibleRowSetImpl(dataSource, this);
+        rowSet.setPageIndexFolder(pageIndexFolder);
+        return rowSet;
     }
 
     @Override
     public ReadRowSet createReadRowSet() throws SQLException {
-        return new ReadRowSetImpl(dataSource);
+        ReadRowSetImpl rowSet = new ReadRowSetImpl(dataSource);
+        rowSet.setPageIndexFolder(pageIndexFolder);
+        return rowSet;
     }
 
     @Override
@@ -140,7 +182,9 @@ public class DataManagerImpl implements DataManager {
 
     @Override
     public void dispose() {
-
+        if(connectionPool != null) {
+            connectionPool.close();
+        }
     }
 
     @Override
@@ -157,42 +201,28 @@ public class DataManagerImpl implements DataManager {
 
     @Override
     public String registerDataSource(URI uri) throws SQLException {
-        if(!uri.isAbsolute()) {
-            // Uri is incomplete, resolve it by using working directory
-            uri = new File("./").toURI().resolve(uri);
-        }
+        uri = resolveURI(uri);
         if("file".equalsIgnoreCase(uri.getScheme())) {
             File path = new File(uri);
             if(!path.exists()) {
                 throw new SQLException("Specified source does not exists");
             }
-            String tableName = findUniqueTableName(TableLocation.capsIdentifier(FileUtils.getNameFromURI(uri), isH2));
             try (Connection connection = dataSource.getConnection()) {
+                if(materializeLinkedFiles && isH2) {
+                    return linkedFileCache.getTable(connection, path);
+                }
                 // Find if a linked table use this file path
-                DatabaseMetaData meta = connection.getMetaData();
-                try(ResultSet tablesRs = meta.getTables(null,null,null,null)) {
-                    while(tablesRs.next()) {
-                        String remarks = tablesRs.getString("REMARKS");
-                        if(remarks!= null && !remarks.isEmpty()) {
-                            File filePath = URIUtilities.fileFromString(remarks);
-                            try {
-                                if(filePath.equals(path) && filePath.exists()) {
-                                    return new TableLocation(tablesRs.getString("TABLE_CAT"), tablesRs.getString("TABLE_SCHEM"), tablesRs.getString("TABLE_NAME")).toString();
-                                }
-                            } catch (Exception ex) {
-                                //Ignore, not an URI
-                            }
-                        }
-                    }
+                boolean refreshed = linkedFileIndex.isStale();
+                String tableReference = findLinkedTable(connection, path, refreshed);
+                if(tableReference == null && !refreshed) {
+                    // The table may have been linked without notification, read the updated remarks
+                    tableReference = findLinkedTable(connection, path, true);
                 }
-                // Table not found, use table link
-                // TODO if tcp, use DriverManager
-                PreparedStatement st = connection.prepareStatement("CALL FILE_TABLE(?,?)");
-                st.setString(1, path.getAbsolutePath());
-                st.setString(2, new TableLocation("","",tableName).toString(isH2));
-                st.execute();
+                if(tableReference != null) {
+                    return tableReference;
+                }
+                return linkFile(connection, uri, path);
             }
-            return tableName;
         } else if("jdbc".equalsIgnoreCase(uri.getScheme())) {
             // A link to a remote or local database
             try(Connection connection = dataSource.getConnection()) {
@@ -216,13 +246,200 @@ public class DataManagerImpl implements DataManager {
         }
     }
 
+    @Override
+    public Map<URI, String> registerDataSources(Collection<URI> uris) throws SQLException {
+        Map<URI, String> tableReferences = new HashMap<>(uris.size());
+        try (Connection connection = dataSource.getConnection()) {
+            // Read the linked tables only once for all the sources
+            linkedFileIndex.refresh(connection.getMetaData());
+            for(URI source : uris) {
+                if(tableReferences.containsKey(source)) {
+                    continue;
+                }
+                URI uri = resolveURI(source);
+                try {
+                    String tableReference;
+                    if("file".equalsIgnoreCase(uri.getScheme())) {
+                        File path = new File(uri);
+                        if(!path.exists()) {
+                            throw new SQLException("Specified source does not exists");
+                        }
+                        if(materializeLinkedFiles && isH2) {
+                            tableReference = linkedFileCache.getTable(connection, path);
+                        } else {
+                            tableReference = findLinkedTable(connection, path, linkedFileIndex.isStale());
+                            if(tableReference == null) {
+                                tableReference = linkFile(connection, uri, path);
+                            }
+                        }
+                    } else {
+                        tableReference = registerDataSource(uri);
+                    }
+                    tableReferences.put(source, tableReference);
+                } catch (SQLException | IllegalArgumentException ex) {
+                    LOGGER.debug("Unable to register the data source "+source, ex);
+                }
+            }
+        }
+        return tableReferences;
+    }
+
+    @Override
+    public void setMaterializeLinkedFiles(boolean materializeLinkedFiles) {
+        this.materializeLinkedFiles = materializeLinkedFiles;
+    }
+
+    @Override
+    public boolean isMaterializeLinkedFiles() {
+        return materializeLinkedFiles;
+    }
+
+    @Override
+    public void setStatementChangeEvents(boolean statementChangeEvents) {
+        if(this.statementChangeEvents == statementChangeEvents) {
+            return;
+        }
+        this.statementChangeEvents = statementChangeEvents;
+        if(!isLocalH2Table || triggerTables.isEmpty()) {
+            return;
+        }
+        // Add or remove the triggers of the listened tables
+        try(Connection connection = dataSource.getConnection();
+            Statement st = connection.createStatement()) {
+            for(String table : new ArrayList<>(triggerTables.values())) {
+                if(statementChangeEvents) {
+                    st.execute("DROP TRIGGER IF EXISTS " + getH2TriggerName(table));
+                } else {
+                    createH2Trigger(st, table);
+                }
+            }
+        } catch (SQLException ex) {
+            LOGGER.error(ex.getLocalizedMessage(), ex);
+        }
+    }
+
+    @Override
+    public boolean isStatementChangeEvents() {
+        return statementChangeEvents;
+    }
+
+    @Override
+    public Envelope getCachedEnvelope(String tableReference) throws SQLException {
+        if(!isH2) {
+            return null;
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            return linkedFileCache.getEnvelope(connection, tableReference);
+        }
+    }
+
+    private static URI resolveURI(URI uri) {
+        if(!uri.isAbsolute()) {
+            // Uri is incomplete, resolve it by using working directory
+            return new File("./").toURI().resolve(uri);
+        }
+        return uri;
+    }
+
+    /**
+     * Find the table linked to a file in the linked file index
+     * @param connection Active connection
+     * @param path File path
+     * @param refresh Refresh the index before the lookup
+     * @return Table reference or null if the file is not linked
+     * @throws SQLException Error while reading the table list
+     */
+    private String findLinkedTable(Connection connection, File path, boolean refresh) throws SQLException {
+        if(refresh) {
+            linkedFileIndex.refresh(connection.getMetaData());
+        }
+        String tableReference = linkedFileIndex.get(path);
+        if(tableReference != null && !refresh) {
+            // Check that the indexed table has not been dropped
+            TableLocation table = TableLocation.parse(tableReference);
+            try(ResultSet rs = connection.getMetaData().getTables(table.getCatalog(), table.getSchema(),
+                    table.getTable(), null)) {
+                if(!rs.next()) {
+                    return findLinkedTable(connection, path, true);
+                }
+            }
+        }
+        return tableReference;
+    }
+
+    /**
+     * Link a file in a new table
+     * @param connection Active connection
+     * @param uri File URI
+     * @param path File path
+     * @return Table reference
+     * @throws SQLException Error while linking the file
+     */
+    private String linkFile(Connection connection, URI uri, File path) throws SQLException {
+        String tableName = findUniqueTableName(TableLocation.capsIdentifier(FileUtils.getNameFromURI(uri), isH2));
+        // TODO if tcp, use DriverManager
+        try(PreparedStatement st = connection.prepareStatement("CALL FILE_TABLE(?,?)")) {
+            st.setString(1, path.getAbsolutePath());
+            st.setString(2, new TableLocation("","",tableName).toString(isH2));
+            st.execute();
+        }
+        linkedFileIndex.put(path, tableName);
+        return tableName;
+    }
+
     @Override
     public DataSource getDataSource() {
         return dataSource;
     }
 
+    @Override
+    public ConnectionPoolStatistics getConnectionPoolStatistics() {
+        return connectionPool != null ? connectionPool.getStatistics() : null;
+    }
+
+    @Override
+    public List<StatementMetrics> getStatementMetrics() {
+        return connectionPool != null ? connectionPool.getStatementMonitor().getMetrics() :
+                new ArrayList<StatementMetrics>();
+    }
+
+    @Override
+    public void resetStatementMetrics() {
+        if(connectionPool != null) {
+            connectionPool.getStatementMonitor().reset();
+        }
+    }
+
+    @Override
+    public RowCache getRowCache() {
+        return TwoQueueRowCache.getInstance();
+    }
+
+    @Override
+    public SortIndexCache getSortIndexCache() {
+        return sortIndexCache;
+    }
+
     @Reference
     public void setDataSource(DataSource dataSource) throws SQLException {
+        if(connectionPool != null) {
+            connectionPool.close();
+            connectionPool = null;
+        }
+        int poolSize = Integer.getInteger(POOL_SIZE_PROPERTY, ConnectionPool.DEFAULT_MAXIMUM_POOL_SIZE);
+        if(poolSize > 0) {
+            connectionPool = new ConnectionPool(dataSource, poolSize,
+                    Integer.getInteger(STATEMENT_CACHE_PROPERTY, ConnectionPool.DEFAULT_STATEMENT_CACHE_SIZE));
+            StatementMonitor statementMonitor = connectionPool.getStatementMonitor();
+            statementMonitor.setEnabled(Boolean.parseBoolean(System.getProperty(STATEMENT_METRICS_PROPERTY, "false")));
+            statementMonitor.setSlowQueryThreshold(Long.getLong(SLOW_QUERY_THRESHOLD_PROPERTY,
+                    StatementMonitor.DEFAULT_SLOW_QUERY_THRESHOLD));
+            statementMonitor.setSlowQueryLog(slowQueryLog);
+            // The row sets keep open at most half of the connections, the others remain available for the queries
+            ResultSetScheduler.getInstance().setMaxOpenResources(
+                    Math.max(1, connectionPool.getMaximumPoolSize() / 2));
+            dataSource = connectionPool;
+        }
         this.dataSource = dataSource;
         try (Connection connection = dataSource.getConnection()) {
             DatabaseMetaData meta = connection.getMetaData();
@@ -232,9 +449,32 @@ public class DataManagerImpl implements DataManager {
         }
     }
 
+    /**
+     * @param coreWorkspace Workspace where row sets save their page index and where sorted indexes are saved
+     */
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC)
+    public void setCoreWorkspace(CoreWorkspace coreWorkspace) {
+        pageIndexFolder = new File(coreWorkspace.getWorkspaceFolder(), PAGE_INDEX_FOLDER);
+        sortIndexCache.setFolder(new File(coreWorkspace.getWorkspaceFolder(), SORT_INDEX_FOLDER));
+        slowQueryLog = new File(coreWorkspace.getWorkspaceFolder(), SLOW_QUERY_LOG);
+        if(connectionPool != null) {
+            connectionPool.getStatementMonitor().setSlowQueryLog(slowQueryLog);
+        }
+    }
+
+    public void unsetCoreWorkspace(CoreWorkspace coreWorkspace) {
+        pageIndexFolder = null;
+        sortIndexCache.setFolder(null);
+        slowQueryLog = null;
+        if(connectionPool != null) {
+            connectionPool.getStatementMonitor().setSlowQueryLog(null);
+        }
+    }
+
     public void unsetDataSource(DataSource dataSource) {
         this.dataSource = null;
         dispose();
+        connectionPool = null;
     }
 
     @Override
@@ -257,6 +497,16 @@ public class DataManagerImpl implements DataManager {
         return tableEditionListener.containsKey(parsedTable);
     }
 
+    @Override
+    public boolean hasTableEditTrigger(String tableIdentifier) {
+        TableLocation table = TableLocation.parse(tableIdentifier, isH2);
+        if("PUBLIC".equals(table.getSchema()) && !triggerTables.containsKey(table.toString(true))) {
+            // Maybe schema is not given in listener table identifier
+            table = new TableLocation("","",table.getTable());
+        }
+        return triggerTables.containsKey(table.toString(isH2));
+    }
+
     @Override
     public void addTableEditListener(String table, TableEditListener listener) {
         addTableEditListener(table, listener, true);
@@ -265,20 +515,28 @@ public class DataManagerImpl implements DataManager {
     @Override
     public void addTableEditListener(String table, TableEditListener listener, boolean addTrigger) {
         String parsedTable = TableLocation.parse(table, isH2).toString(isH2);
-        List<TableEditListener> listeners = tableEditionListener.get(parsedTable);
-        if(listeners == null) {
-            listeners = new ArrayList<>();
-            tableEditionListener.put(parsedTable, listeners);
-        }
-        if(!listeners.contains(listener)) {
-            listeners.add(listener);
+        List<TableEditListener> listeners;
+        synchronized (tableEditionListener) {
+            listeners = tableEditionListener.get(parsedTable);
+            if(listeners == null) {
+                listeners = new CopyOnWriteArrayList<>();
+                tableEditionListener.put(parsedTable, listeners);
+            }
+            if(!listeners.contains(listener)) {
+                listeners.add(listener);
+            }
         }
         try(Connection connection = dataSource.getConnection();
             Statement st = connection.createStatement()) {
             // Add trigger
             if(isLocalH2Table && addTrigger) {
-                    String triggerName = getH2TriggerName(table);
-                    st.execute("CREATE FORCE TRIGGER IF NOT EXISTS "+triggerName+" AFTER INSERT, UPDATE, DELETE ON "+table+" CALL \""+H2TRIGGER+"\"");
+                triggerTables.put(parsedTable, table);
+                if(statementChangeEvents) {
+                    // The trigger may remain from a previous session
+                    st.execute("DROP TRIGGER IF EXISTS " + getH2TriggerName(table));
+                } else {
+                    createH2Trigger(st, table);
+                }
             }
         } catch (SQLException ex) {
             listeners.remove(listener);
@@ -298,22 +556,34 @@ public class DataManagerImpl implements DataManager {
     @Override
     public void removeTableEditListener(String table, TableEditListener listener) {
         String parsedTable = TableLocation.parse(table).toString();
-        List<TableEditListener> listeners = tableEditionListener.get(parsedTable);
-        if(listeners != null) {
-            listeners.remove(listener);
-            if(listeners.isEmpty()) {
-                // Remove trigger
-                String triggerName = getH2TriggerName(table);
-                try(Connection connection = dataSource.getConnection();
-                    Statement st = connection.createStatement()) {
-                    st.execute("DROP TRIGGER IF EXISTS "+triggerName);
-                } catch (SQLException ex) {
-                    LOGGER.error(ex.getLocalizedMessage(), ex);
+        boolean lastListener = false;
+        synchronized (tableEditionListener) {
+            List<TableEditListener> listeners = tableEditionListener.get(parsedTable);
+            if(listeners != null) {
+                listeners.remove(listener);
+                if(listeners.isEmpty()) {
+                    lastListener = true;
+                    tableEditionListener.remove(parsedTable);
                 }
-                tableEditionListener.remove(parsedTable);
             }
         }
+        if(lastListener) {
+            // Remove trigger
+            String triggerName = getH2TriggerName(table);
+            try(Connection connection = dataSource.getConnection();
+                Statement st = connection.createStatement()) {
+                st.execute("DROP TRIGGER IF EXISTS "+triggerName);
+            } catch (SQLException ex) {
+                LOGGER.error(ex.getLocalizedMessage(), ex);
+            }
+            triggerTables.remove(parsedTable);
+        }
+    }
+    private static void createH2Trigger(Statement st, String table) throws SQLException {
+        String triggerName = getH2TriggerName(table);
+        st.execute("CREATE FORCE TRIGGER IF NOT EXISTS "+triggerName+" AFTER INSERT, UPDATE, DELETE ON "+table+" CALL \""+H2TRIGGER+"\"");
     }
+
     private static String getH2TriggerName(String table) {
         TableLocation tableIdentifier = TableLocation.parse(table, true);
         return new TableLocation(tableIdentifier.getCatalog(), tableIdentifier.getSchema(),
@@ -370,6 +640,13 @@ public class DataManagerImpl implements DataManager {
 
     @Override
     public void fireDatabaseProgression(StateEvent event) {
+        if(event.isUpdateDatabaseStructure()) {
+            linkedFileIndex.setStale();
+            if(connectionPool != null) {
+                // Prepared statements may refer to the old structure
+                connectionPool.clearStatementCache();
+            }
+        }
         ArrayList<DatabaseProgressionListener> listenerList = progressionListenerMap.get(event.getStateIdentifier());
         if(listenerList != null) {
             for(DatabaseProgressionListener listener : new ArrayList<>(listenerList)) {
@@ -0,0 +1,271 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import com.vividsolutions.jts.geom.Envelope;
+import org.h2gis.utilities.JDBCUtilities;
+import org.h2gis.utilities.SFSUtilities;
+import org.h2gis.utilities.TableLocation;
+import org.orbisgis.commons.utils.FileUtils;
+import org.orbisgis.corejdbc.TableEditEvent;
+import org.orbisgis.corejdbc.TableEditListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Files imported in a cache schema of a local H2 database. Contrary to the linked tables, the imported tables have
+ * a spatial index and their envelope is computed only once.
+ *
+ * The imported tables are registered in a catalog table with the size and the last modification time of the file.
+ * The table is imported again, with the same name, when the file has been updated.
+ *
+ * The imported tables can be edited. Once a table has been edited its stored envelope is no longer used, and it is not
+ * replaced when the file is updated, in order to keep the user edits.
+ */
+class LinkedFileCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LinkedFileCache.class);
+    /** Schema of the imported tables */
+    static final String CACHE_SCHEMA = "ORBISGIS_FILE_CACHE";
+    private static final String CATALOG_TABLE = new TableLocation("", CACHE_SCHEMA, "FILES").toString(true);
+    private static final String LINK_SUFFIX = "_LINK";
+    private final DataManagerImpl dataManager;
+    private boolean catalogCreated = false;
+    // Tables watched for edits
+    private final Set<String> listenedTables = new HashSet<>();
+
+    /**
+     * @param dataManager Data manager, used to find unique table names
+     */
+    LinkedFileCache(DataManagerImpl dataManager) {
+        this.dataManager = dataManager;
+    }
+
+    /**
+     * Return the imported table of a file, the file is imported if it is not in the cache or if it has been updated.
+     * @param connection Active connection
+     * @param path File path
+     * @return Table reference
+     * @throws SQLException Error while importing the file
+     */
+    synchronized String getTable(Connection connection, File path) throws SQLException {
+        createCatalog(connection);
+        File file = LinkedFileIndex.getCanonicalFile(path);
+        long size = file.length();
+        long modified = file.lastModified();
+        String tableReference = null;
+        try(PreparedStatement st = connection.prepareStatement("SELECT TABLE_NAME, FILE_SIZE, FILE_MODIFIED, EDITED " +
+                "FROM " + CATALOG_TABLE + " WHERE FILE_PATH = ?")) {
+            st.setString(1, file.getAbsolutePath());
+            try(ResultSet rs = st.executeQuery()) {
+                if(rs.next()) {
+                    tableReference = rs.getString(1);
+                    if(JDBCUtilities.tableExists(connection, tableReference)) {
+                        if(rs.getLong(2) == size && rs.getLong(3) == modified) {
+                            listenEdits(tableReference);
+                            return tableReference;
+                        }
+                        if(rs.getBoolean(4)) {
+                            LOGGER.warn("The file " + file + " has been updated but its cached table " +
+                                    tableReference + " has been edited, the cached table is kept");
+                            listenEdits(tableReference);
+                            return tableReference;
+                        }
+                    }
+                }
+            }
+        }
+        if(tableReference == null) {
+            tableReference = dataManager.findUniqueTableName(new TableLocation("", CACHE_SCHEMA,
+                    TableLocation.capsIdentifier(FileUtils.getNameFromURI(file.toURI()), true)).toString(true));
+        } else {
+            LOGGER.debug("Refresh the cached table " + tableReference + " of the updated file " + file);
+        }
+        importFile(connection, file, tableReference);
+        Envelope envelope = computeEnvelope(connection, tableReference);
+        try(PreparedStatement st = connection.prepareStatement("MERGE INTO " + CATALOG_TABLE + "(FILE_PATH, " +
+                "TABLE_NAME, FILE_SIZE, FILE_MODIFIED, MIN_X, MAX_X, MIN_Y, MAX_Y, EDITED) KEY(FILE_PATH) VALUES (?, ?," +
+                " ?, ?, ?, ?, ?, ?, FALSE)")) {
+            st.setString(1, file.getAbsolutePath());
+            st.setString(2, tableReference);
+            st.setLong(3, size);
+            st.setLong(4, modified);
+            if(envelope != null && !envelope.isNull()) {
+                st.setDouble(5, envelope.getMinX());
+                st.setDouble(6, envelope.getMaxX());
+                st.setDouble(7, envelope.getMinY());
+                st.setDouble(8, envelope.getMaxY());
+            } else {
+                for(int i = 5; i <= 8; i++) {
+                    st.setNull(i, Types.DOUBLE);
+                }
+            }
+            st.execute();
+        }
+        listenEdits(tableReference);
+        return tableReference;
+    }
+
+    /**
+     * Watch the edits of an imported table, the first edit is written in the catalog. The database changes are
+     * requested, in order to see the edits made by SQL queries. The listener is removed after the first edit.
+     */
+    private void listenEdits(final String tableReference) {
+        if(listenedTables.add(tableReference)) {
+            dataManager.addTableEditListener(tableReference, new TableEditListener() {
+                @Override
+                public void tableChange(TableEditEvent event) {
+                    dataManager.removeTableEditListener(tableReference, this);
+                    setEdited(tableReference);
+                }
+            });
+        }
+    }
+
+    private synchronized void setEdited(String tableReference) {
+        try(Connection connection = dataManager.getDataSource().getConnection();
+            PreparedStatement st = connection.prepareStatement("UPDATE " + CATALOG_TABLE + " SET EDITED = TRUE " +
+                    "WHERE TABLE_NAME = ?")) {
+            st.setString(1, tableReference);
+            st.execute();
+        } catch (SQLException ex) {
+            LOGGER.error(ex.getLocalizedMessage(), ex);
+        }
+    }
+
+    /**
+     * @param connection Active connection
+     * @param tableReference Table reference
+     * @return The envelope computed when the file has been imported, null if the table is not in the cache or if it has
+     * been edited since
+     * @throws SQLException Error while reading the catalog
+     */
+    synchronized Envelope getEnvelope(Connection connection, String tableReference) throws SQLException {
+        TableLocation table = TableLocation.parse(tableReference, true);
+        if(!CACHE_SCHEMA.equals(table.getSchema()) || !JDBCUtilities.tableExists(connection, CATALOG_TABLE)) {
+            return null;
+        }
+        try(PreparedStatement st = connection.prepareStatement("SELECT MIN_X, MAX_X, MIN_Y, MAX_Y FROM "
+                + CATALOG_TABLE + " WHERE TABLE_NAME = ? AND NOT EDITED")) {
+            st.setString(1, table.toString(true));
+            try(ResultSet rs = st.executeQuery()) {
+                if(rs.next()) {
+                    double minX = rs.getDouble(1);
+                    if(rs.wasNull()) {
+                        return new Envelope();
+                    }
+                    return new Envelope(minX, rs.getDouble(2), rs.getDouble(3), rs.getDouble(4));
+                }
+            }
+        }
+        return null;
+    }
+
+    private void createCatalog(Connection connection) throws SQLException {
+        if(!catalogCreated) {
+            try(Statement st = connection.createStatement()) {
+                st.execute("CREATE SCHEMA IF NOT EXISTS " + CACHE_SCHEMA);
+                st.execute("CREATE TABLE IF NOT EXISTS " + CATALOG_TABLE + "(FILE_PATH VARCHAR PRIMARY KEY, " +
+                        "TABLE_NAME VARCHAR, FILE_SIZE BIGINT, FILE_MODIFIED BIGINT, MIN_X DOUBLE, MAX_X DOUBLE, " +
+                        "MIN_Y DOUBLE, MAX_Y DOUBLE, EDITED BOOLEAN DEFAULT FALSE)");
+                // Catalog created by a previous version
+                st.execute("ALTER TABLE " + CATALOG_TABLE + " ADD COLUMN IF NOT EXISTS EDITED BOOLEAN DEFAULT FALSE");
+            }
+            catalogCreated = true;
+        }
+    }
+
+    /**
+     * Copy the file into the table, through a temporary linked table.
+     */
+    private void importFile(Connection connection, File file, String tableReference) throws SQLException {
+        TableLocation table = TableLocation.parse(tableReference, true);
+        String linkTable = new TableLocation(table.getCatalog(), table.getSchema(), table.getTable() + LINK_SUFFIX)
+                .toString(true);
+        try(Statement st = connection.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS " + linkTable);
+            try(PreparedStatement link = connection.prepareStatement("CALL FILE_TABLE(?,?)")) {
+                link.setString(1, file.getAbsolutePath());
+                link.setString(2, linkTable);
+                link.execute();
+            }
+            try {
+                st.execute("DROP TABLE IF EXISTS " + tableReference);
+                st.execute("CREATE TABLE " + tableReference + " AS SELECT * FROM " + linkTable);
+                int pkIndex = JDBCUtilities.getIntegerPrimaryKey(connection, linkTable);
+                if(pkIndex > 0) {
+                    String pkField = JDBCUtilities.getFieldName(connection.getMetaData(), linkTable, pkIndex);
+                    st.execute("ALTER TABLE " + tableReference + " ADD PRIMARY KEY (" +
+                            TableLocation.quoteIdentifier(pkField) + ")");
+                }
+            } finally {
+                st.execute("DROP TABLE IF EXISTS " + linkTable);
+            }
+            List<String> geometryFields = SFSUtilities.getGeometryFields(connection, table);
+            for(String geometryField : geometryFields) {
+                st.execute("CREATE SPATIAL INDEX ON " + tableReference + "(" +
+                        TableLocation.quoteIdentifier(geometryField) + ")");
+            }
+            // Keep the file path in the remarks, the layers save the file path instead of the table reference
+            st.execute("COMMENT ON TABLE " + tableReference + " IS " + quoteString(file.toURI().toString()));
+        }
+    }
+
+    private static Envelope computeEnvelope(Connection connection, String tableReference) {
+        try {
+            return SFSUtilities.getTableEnvelope(connection, TableLocation.parse(tableReference, true), "");
+        } catch (SQLException ex) {
+            // No geometry field
+            LOGGER.trace(ex.getLocalizedMessage(), ex);
+            return null;
+        }
+    }
+
+    private static String quoteString(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+}
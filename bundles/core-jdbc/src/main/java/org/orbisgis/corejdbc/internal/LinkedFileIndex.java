@@ -0,0 +1,160 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.URIUtilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Index of the tables linked to a file. The file path is stored in the REMARKS of the linked tables, this index
+ * avoid to parse the remarks of all the database tables each time a file is registered.
+ *
+ * The index is refreshed incrementally, the remarks of a table are parsed again only if they have been updated.
+ */
+class LinkedFileIndex {
+    /** Table identifier to linked table */
+    private Map<String, LinkedTable> linkedTables = new HashMap<>();
+    /** Canonical file path to table identifier */
+    private Map<File, String> linkedFiles = new HashMap<>();
+    private boolean stale = true;
+
+    /**
+     * @param file File path
+     * @return Canonical file path, or the absolute path if the canonical path cannot be resolved
+     */
+    static File getCanonicalFile(File file) {
+        try {
+            return file.getCanonicalFile();
+        } catch (IOException ex) {
+            return file.getAbsoluteFile();
+        }
+    }
+
+    /**
+     * @return True if the database structure may have been updated since the last refresh
+     */
+    synchronized boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * Mark the index as outdated, it will be refreshed before the next lookup.
+     */
+    synchronized void setStale() {
+        stale = true;
+    }
+
+    /**
+     * @param file File path
+     * @return The identifier of the table linked to this file, null if not found
+     */
+    synchronized String get(File file) {
+        return linkedFiles.get(getCanonicalFile(file));
+    }
+
+    /**
+     * Register a new linked table
+     * @param file File path
+     * @param tableIdentifier Table identifier
+     */
+    synchronized void put(File file, String tableIdentifier) {
+        File canonicalFile = getCanonicalFile(file);
+        linkedTables.put(tableIdentifier, new LinkedTable(file.getAbsolutePath(), canonicalFile));
+        linkedFiles.put(canonicalFile, tableIdentifier);
+    }
+
+    /**
+     * Read the remarks of the database tables. Only the new or updated remarks are parsed.
+     * @param meta Database meta data
+     * @throws SQLException Error while reading the table list
+     */
+    synchronized void refresh(DatabaseMetaData meta) throws SQLException {
+        Map<String, LinkedTable> newLinkedTables = new HashMap<>(linkedTables.size());
+        Map<File, String> newLinkedFiles = new HashMap<>(linkedFiles.size());
+        try(ResultSet tablesRs = meta.getTables(null, null, null, null)) {
+            while(tablesRs.next()) {
+                String remarks = tablesRs.getString("REMARKS");
+                if(remarks == null || remarks.isEmpty() ||
+                        LinkedFileCache.CACHE_SCHEMA.equals(tablesRs.getString("TABLE_SCHEM"))) {
+                    // Not a linked table, the imported files are managed by LinkedFileCache
+                    continue;
+                }
+                String tableIdentifier = new TableLocation(tablesRs.getString("TABLE_CAT"),
+                        tablesRs.getString("TABLE_SCHEM"), tablesRs.getString("TABLE_NAME")).toString();
+                LinkedTable linkedTable = linkedTables.get(tableIdentifier);
+                if(linkedTable == null || !remarks.equals(linkedTable.remarks)) {
+                    linkedTable = new LinkedTable(remarks, parseRemarks(remarks));
+                }
+                newLinkedTables.put(tableIdentifier, linkedTable);
+                if(linkedTable.file != null && !newLinkedFiles.containsKey(linkedTable.file)) {
+                    newLinkedFiles.put(linkedTable.file, tableIdentifier);
+                }
+            }
+        }
+        linkedTables = newLinkedTables;
+        linkedFiles = newLinkedFiles;
+        stale = false;
+    }
+
+    private static File parseRemarks(String remarks) {
+        try {
+            return getCanonicalFile(URIUtilities.fileFromString(remarks));
+        } catch (Exception ex) {
+            // Ignore, not an URI
+            return null;
+        }
+    }
+
+    private static class LinkedTable {
+        private final String remarks;
+        // Null if the remarks are not a file path
+        private final File file;
+
+        private LinkedTable(String remarks, File file) {
+            this.remarks = remarks;
+            this.file = file;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * First primary key value of each page (batch) of rows of a table, ordered by primary key. Pages may be unknown.
+ * Values are stored in a primitive array, this index can be shared between threads.
+ */
+public class PkPageIndex {
+    private static final int FILE_VERSION = 1;
+    private static final int INITIAL_CAPACITY = 16;
+    private final int pageSize;
+    private long[] firstPk;
+    private long[] known;
+    private int size = 0;
+
+    /**
+     * Empty index, only the first page is known: it starts at the beginning of the table.
+     * @param pageSize Number of rows per page
+     */
+    public PkPageIndex(int pageSize) {
+        this(pageSize, INITIAL_CAPACITY);
+        size = 1;
+    }
+
+    private PkPageIndex(int pageSize, int capacity) {
+        this.pageSize = pageSize;
+        firstPk = new long[Math.max(1, capacity)];
+        known = new long[(firstPk.length + 63) >>> 6];
+    }
+
+    /**
+     * @return Number of rows per page
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return Number of pages, known or not
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @param page Page index
+     * @return First primary key of the page, null if unknown or if page is the first page and it starts at the
+     * beginning of the table
+     */
+    public synchronized Long get(int page) {
+        if(page < 0 || page >= size || (known[page >>> 6] & (1L << page)) == 0) {
+            return null;
+        }
+        return firstPk[page];
+    }
+
+    /**
+     * @param page Page index, the index is expanded if necessary
+     * @param pk First primary key of the page, null if unknown
+     */
+    public synchronized void set(int page, Long pk) {
+        if(page >= size) {
+            setSize(page + 1);
+        }
+        if(pk == null) {
+            known[page >>> 6] &= ~(1L << page);
+        } else {
+            firstPk[page] = pk;
+            known[page >>> 6] |= 1L << page;
+        }
+    }
+
+    /**
+     * Append a page
+     * @param pk First primary key of the page, null if unknown
+     */
+    public synchronized void add(Long pk) {
+        set(size, pk);
+    }
+
+    /**
+     * Expand or shrink the index. New pages are unknown.
+     * @param newSize New number of pages
+     */
+    public synchronized void setSize(int newSize) {
+        if(newSize > firstPk.length) {
+            int capacity = Math.max(newSize, firstPk.length + (firstPk.length >> 1));
+            firstPk = Arrays.copyOf(firstPk, capacity);
+            known = Arrays.copyOf(known, (capacity + 63) >>> 6);
+        }
+        for(int page = newSize; page < size; page++) {
+            known[page >>> 6] &= ~(1L << page);
+        }
+        size = newSize;
+    }
+
+    /**
+     * @param pageCount Expected number of pages
+     * @return True if the first primary key of all pages is known
+     */
+    public synchronized boolean isComplete(int pageCount) {
+        if(size < pageCount) {
+            return false;
+        }
+        // The first page may start at the beginning of the table
+        for(int page = 1; page < pageCount; page++) {
+            if((known[page >>> 6] & (1L << page)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return First primary key of the known pages, in page order
+     */
+    public synchronized long[] getKnownFirstPk() {
+        long[] values = new long[size];
+        int count = 0;
+        for(int page = 0; page < size; page++) {
+            if((known[page >>> 6] & (1L << page)) != 0) {
+                values[count++] = firstPk[page];
+            }
+        }
+        return Arrays.copyOf(values, count);
+    }
+
+    /**
+     * @param pk Primary key value
+     * @return The first page that may contain the primary key value, pages with an unknown first primary key are
+     * taken into account
+     */
+    public synchronized int getFirstPage(long pk) {
+        int firstPage = 0;
+        for(int page = 1; page < size; page++) {
+            if((known[page >>> 6] & (1L << page)) != 0) {
+                if(firstPk[page] > pk) {
+                    break;
+                }
+                firstPage = page;
+            }
+        }
+        return firstPage;
+    }
+
+    /**
+     * @param pk Primary key value
+     * @return The last page that may contain the primary key value, pages with an unknown first primary key are
+     * taken into account
+     */
+    public synchronized int getLastPage(long pk) {
+        for(int page = 1; page < size; page++) {
+            if((known[page >>> 6] & (1L << page)) != 0 && firstPk[page] > pk) {
+                return page - 1;
+            }
+        }
+        return size - 1;
+    }
+
+    /**
+     * Pages that follow the one that contains the primary key value are no longer known, used when rows are inserted
+     * or deleted.
+     * @param pk Inserted or deleted primary key value
+     */
+    public synchronized void invalidateFrom(long pk) {
+        int page = 1;
+        while(page < size && (known[page >>> 6] & (1L << page)) != 0 && firstPk[page] <= pk) {
+            page++;
+        }
+        for(int unknownPage = page; unknownPage < size; unknownPage++) {
+            known[unknownPage >>> 6] &= ~(1L << unknownPage);
+        }
+    }
+
+    /**
+     * Read all primary key values in a single pass, keeping the first one of each page.
+     * @param st Statement that return ordered primary key values in the first column
+     * @param pageSize Number of rows per page
+     * @param expectedRows Number of rows, used to size the index
+     * @return The complete index
+     * @throws SQLException
+     */
+    public static PkPageIndex build(PreparedStatement st, int pageSize, long expectedRows) throws SQLException {
+        PkPageIndex index = new PkPageIndex(pageSize, (int) (expectedRows / pageSize) + 1);
+        long row = 0;
+        try(ResultSet rs = st.executeQuery()) {
+            while (rs.next()) {
+                if (row % pageSize == 0) {
+                    index.add(rs.getLong(1));
+                }
+                row++;
+            }
+        }
+        if(index.size == 0) {
+            index.add(null);
+        }
+        return index;
+    }
+
+    /**
+     * Compare the first, middle and last known pages with the table content, used to check a loaded index.
+     * @param connection Active connection
+     * @param command Statement that return ordered primary key values in the first column, without limit
+     * @param parameters Statement parameters
+     * @return True if the checked pages start with the same primary key value in the table
+     * @throws SQLException
+     */
+    public boolean matches(Connection connection, String command, Map<Integer, Object> parameters) throws SQLException {
+        final int pageCount = size();
+        for(int page : new int[]{1, pageCount / 2, pageCount - 1}) {
+            Long pk = get(page);
+            if(page <= 0 || pk == null) {
+                continue;
+            }
+            try(PreparedStatement st = connection.prepareStatement(command + " LIMIT 1 OFFSET " +
+                    (long) page * pageSize)) {
+                for(Map.Entry<Integer, Object> entry : parameters.entrySet()) {
+                    st.setObject(entry.getKey(), entry.getValue());
+                }
+                try(ResultSet rs = st.executeQuery()) {
+                    if(!rs.next() || rs.getLong(1) != pk) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Save the known pages
+     * @param file Destination file
+     * @param key Identifier of the indexed table (and filter)
+     * @param stamp Row count or modification stamp of the table
+     * @throws IOException
+     */
+    public synchronized void write(File file, String key, long stamp) throws IOException {
+        File parent = file.getParentFile();
+        if(parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create folder " + parent);
+        }
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(FILE_VERSION);
+            out.writeUTF(key);
+            out.writeLong(stamp);
+            out.writeInt(pageSize);
+            out.writeInt(size);
+            for(int page = 0; page < size; page++) {
+                boolean isKnown = (known[page >>> 6] & (1L << page)) != 0;
+                out.writeBoolean(isKnown);
+                out.writeLong(isKnown ? firstPk[page] : 0);
+            }
+        }
+    }
+
+    /**
+     * Load an index saved by {@link #write(File, String, long)}
+     * @param file Index file
+     * @param key Identifier of the indexed table (and filter)
+     * @param stamp Row count or modification stamp of the table
+     * @param pageSize Number of rows per page
+     * @return The index or null if the file does not exists or if it does not match the key, stamp and page size
+     * @throws IOException
+     */
+    public static PkPageIndex read(File file, String key, long stamp, int pageSize) throws IOException {
+        if(!file.exists()) {
+            return null;
+        }
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if(in.readInt() != FILE_VERSION || !key.equals(in.readUTF()) || in.readLong() != stamp ||
+                    in.readInt() != pageSize) {
+                return null;
+            }
+            int pageCount = in.readInt();
+            PkPageIndex index = new PkPageIndex(pageSize, pageCount);
+            for(int page = 0; page < pageCount; page++) {
+                boolean isKnown = in.readBoolean();
+                long pk = in.readLong();
+                index.add(isKnown ? pk : null);
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,738 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Physical connection of a {@link ConnectionPool} and its prepared statement cache.
+ *
+ * The borrowers receive a proxy of the connection, closing the proxy returns the connection to the pool. The
+ * statements created through the proxy are closed with it, the cached prepared statements are kept open.
+ */
+class PooledConnection {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PooledConnection.class);
+    private static final I18n I18N = I18nFactory.getI18n(PooledConnection.class);
+    // Connection methods that change the session state
+    private static final Set<String> SESSION_SETTERS = new HashSet<>(Arrays.asList("setReadOnly",
+            "setTransactionIsolation", "setCatalog", "setSchema", "setHoldability", "setTypeMap", "setClientInfo",
+            "setNetworkTimeout", "abort"));
+    // Statement properties restored before putting back a prepared statement in the cache
+    private static final Map<String, String> STATEMENT_PROPERTIES = new HashMap<>();
+    // Statement methods whose effect cannot be restored
+    private static final Set<String> STATEMENT_NOT_RESTORABLE = new HashSet<>(Arrays.asList("setEscapeProcessing",
+            "setCursorName", "setPoolable", "closeOnCompletion"));
+    private static final Set<String> SQL_METHODS = new HashSet<>(Arrays.asList("execute", "executeQuery",
+            "executeUpdate", "addBatch"));
+    // First keyword of the commands that change the database structure
+    private static final Set<String> STRUCTURE_COMMANDS = new HashSet<>(Arrays.asList("CREATE", "ALTER", "DROP"));
+    // SQL state of PostgreSQL when the result type of a cached plan has changed
+    private static final String CACHED_PLAN_CHANGED_STATE = "0A000";
+    // Statement methods timed by the statement monitor
+    private static final Set<String> EXECUTE_METHODS = new HashSet<>(Arrays.asList("execute", "executeQuery",
+            "executeUpdate", "executeBatch", "executeLargeUpdate", "executeLargeBatch"));
+    // Interfaces of the driver result sets visible from this bundle, implemented by the monitored result sets
+    private static final Map<Class<?>, Class<?>[]> PROXY_INTERFACES = new ConcurrentHashMap<>();
+    static {
+        STATEMENT_PROPERTIES.put("setFetchSize", "getFetchSize");
+        STATEMENT_PROPERTIES.put("setFetchDirection", "getFetchDirection");
+        STATEMENT_PROPERTIES.put("setMaxRows", "getMaxRows");
+        STATEMENT_PROPERTIES.put("setMaxFieldSize", "getMaxFieldSize");
+        STATEMENT_PROPERTIES.put("setQueryTimeout", "getQueryTimeout");
+    }
+    private final ConnectionPool pool;
+    private final Connection connection;
+    // Following fields are guarded by this
+    // Prepared statements not in use, least recently used first
+    private final LinkedHashMap<String, PreparedStatement> statementCache = new LinkedHashMap<>(16, 0.75f, true);
+    private int statementCacheGeneration;
+    // Statements of the current borrower
+    private final Set<StatementHandle> openStatements = new HashSet<>();
+    private ConnectionHandle handle;
+    private boolean dirty = false;
+    private long lastUsed = System.currentTimeMillis();
+    private long borrowTime;
+    private Throwable borrowStack;
+    private boolean leakReported;
+
+    /**
+     * @param pool Owner
+     * @param connection Physical connection
+     */
+    PooledConnection(ConnectionPool pool, Connection connection) {
+        this.pool = pool;
+        this.connection = connection;
+        this.statementCacheGeneration = pool.statementCacheGeneration.get();
+    }
+
+    /**
+     * @param borrowStack Stack trace of the borrower, for the leak detection (can be null)
+     * @return A new proxy of the connection
+     */
+    synchronized Connection borrow(Throwable borrowStack) {
+        checkStatementCacheGeneration();
+        this.borrowStack = borrowStack;
+        borrowTime = System.currentTimeMillis();
+        leakReported = false;
+        handle = new ConnectionHandle();
+        handle.proxy = (Connection) Proxy.newProxyInstance(PooledConnection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, handle);
+        return handle.proxy;
+    }
+
+    /**
+     * @return Time in ms of the last release
+     */
+    synchronized long getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * @return Stack trace of the borrower
+     */
+    synchronized Throwable getBorrowStack() {
+        return borrowStack;
+    }
+
+    /**
+     * @param now Current time
+     * @param threshold Leak threshold
+     * @return True if the connection is borrowed since more than threshold ms and has not been reported yet
+     */
+    synchronized boolean checkLeak(long now, long threshold) {
+        if(handle != null && !leakReported && now - borrowTime > threshold) {
+            leakReported = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param timeout Timeout in seconds
+     * @return True if the physical connection is still usable
+     */
+    boolean isValid(int timeout) {
+        try {
+            return connection.isValid(timeout);
+        } catch (SQLException | AbstractMethodError ex) {
+            // Old drivers, use a query
+            try(Statement st = connection.createStatement()) {
+                st.execute("SELECT 1");
+                return true;
+            } catch (SQLException ex2) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Close the statements and the physical connection
+     */
+    synchronized void closePhysical() {
+        for(PreparedStatement st : statementCache.values()) {
+            closeQuietly(st);
+        }
+        statementCache.clear();
+        try {
+            connection.close();
+        } catch (SQLException ex) {
+            LOGGER.debug(ex.getLocalizedMessage(), ex);
+        }
+    }
+
+    private void checkStatementCacheGeneration() {
+        int generation = pool.statementCacheGeneration.get();
+        if(generation != statementCacheGeneration) {
+            statementCacheGeneration = generation;
+            for(PreparedStatement st : statementCache.values()) {
+                closeQuietly(st);
+            }
+            statementCache.clear();
+        }
+    }
+
+    private static void closeQuietly(Statement st) {
+        try {
+            st.close();
+        } catch (SQLException ex) {
+            LOGGER.trace(ex.getLocalizedMessage(), ex);
+        }
+    }
+
+    /**
+     * @param sql Executed SQL
+     * @return True if the query changes the session settings
+     */
+    static boolean isSessionCommand(String sql) {
+        if(sql == null) {
+            return false;
+        }
+        String trimmed = sql.trim();
+        return trimmed.length() > 3 && trimmed.substring(0, 3).toUpperCase(Locale.ROOT).equals("SET")
+                && Character.isWhitespace(trimmed.charAt(3));
+    }
+
+    /**
+     * @param sql Executed SQL
+     * @return True if the query changes the database structure
+     */
+    static boolean isStructureCommand(String sql) {
+        if(sql == null) {
+            return false;
+        }
+        String trimmed = sql.trim();
+        int end = 0;
+        while(end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) {
+            end++;
+        }
+        return STRUCTURE_COMMANDS.contains(trimmed.substring(0, end).toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Mark the connection as not reusable if the error comes from a broken connection, close the cached statements
+     * if their plan is no longer valid.
+     */
+    private void checkError(SQLException ex) {
+        String state = ex.getSQLState();
+        if(state != null && state.startsWith("08")) {
+            synchronized (this) {
+                dirty = true;
+            }
+        } else if(CACHED_PLAN_CHANGED_STATE.equals(state)) {
+            // The structure has been changed without notification, by another client or by a function
+            pool.clearStatementCache();
+        }
+    }
+
+    private static Throwable unwrap(InvocationTargetException ex) {
+        return ex.getCause() != null ? ex.getCause() : ex;
+    }
+
+    private synchronized PreparedStatement prepareStatement(ConnectionHandle owner, String sql, int resultSetType,
+                                                            int resultSetConcurrency) throws SQLException {
+        checkStatementCacheGeneration();
+        if(isSessionCommand(sql)) {
+            dirty = true;
+        }
+        String key = resultSetType + ":" + resultSetConcurrency + ":" + sql;
+        PreparedStatement st = null;
+        if(pool.getStatementCacheSize() > 0) {
+            st = statementCache.remove(key);
+            if(st != null && st.isClosed()) {
+                st = null;
+            }
+            if(st != null) {
+                pool.statementCacheHits.incrementAndGet();
+            } else {
+                pool.statementCacheMisses.incrementAndGet();
+            }
+        }
+        if(st == null) {
+            st = connection.prepareStatement(sql, resultSetType, resultSetConcurrency);
+        }
+        return (PreparedStatement) wrap(owner, st, PreparedStatement.class,
+                pool.getStatementCacheSize() > 0 ? key : null, sql);
+    }
+
+    /**
+     * @param owner Connection proxy
+     * @param st Statement to wrap
+     * @param iface Statement interface
+     * @param cacheKey Key in the prepared statement cache, null if the statement is not cached
+     * @param sql Prepared query, null for a statement
+     * @return Statement proxy
+     */
+    private synchronized Statement wrap(ConnectionHandle owner, Statement st, Class<? extends Statement> iface,
+                                        String cacheKey, String sql) {
+        StatementHandle statementHandle = new StatementHandle(owner, st, cacheKey);
+        statementHandle.structureCommand = isStructureCommand(sql);
+        StatementMonitor monitor = pool.getStatementMonitor();
+        if(sql != null && monitor.isEnabled()) {
+            statementHandle.recorder = monitor.getRecorder(sql);
+        }
+        openStatements.add(statementHandle);
+        statementHandle.proxy = (Statement) Proxy.newProxyInstance(PooledConnection.class.getClassLoader(),
+                new Class<?>[]{iface}, statementHandle);
+        return statementHandle.proxy;
+    }
+
+    /**
+     * @param type Class of a driver object
+     * @param iface Interface that the proxy must implement
+     * @return The interfaces of the class that are visible from this bundle
+     */
+    private static Class<?>[] getProxyInterfaces(Class<?> type, Class<?> iface) {
+        Class<?>[] interfaces = PROXY_INTERFACES.get(type);
+        if(interfaces == null) {
+            Set<Class<?>> visible = new LinkedHashSet<>();
+            visible.add(iface);
+            for(Class<?> current = type; current != null; current = current.getSuperclass()) {
+                for(Class<?> candidate : current.getInterfaces()) {
+                    try {
+                        if(Class.forName(candidate.getName(), false, PooledConnection.class.getClassLoader())
+                                == candidate) {
+                            visible.add(candidate);
+                        }
+                    } catch (ClassNotFoundException ex) {
+                        // Driver specific interface
+                    }
+                }
+            }
+            interfaces = visible.toArray(new Class<?>[visible.size()]);
+            PROXY_INTERFACES.put(type, interfaces);
+        }
+        return interfaces;
+    }
+
+    /**
+     * @param resultSet Driver result set
+     * @param statement Statement proxy, null for the meta data result sets
+     * @param recorder Counters of the query
+     * @return Result set proxy that counts the fetched rows and the read bytes
+     */
+    private static ResultSet monitor(ResultSet resultSet, Statement statement, StatementMonitor.Recorder recorder) {
+        return (ResultSet) Proxy.newProxyInstance(PooledConnection.class.getClassLoader(),
+                getProxyInterfaces(resultSet.getClass(), ResultSet.class),
+                new ResultSetHandle(resultSet, statement, recorder));
+    }
+
+    /**
+     * The borrower closed a statement
+     * @param statementHandle Closed statement
+     */
+    private void statementClosed(StatementHandle statementHandle) {
+        for(ResultSet rs : new ResultSet[]{statementHandle.resultSet, statementHandle.generatedKeys}) {
+            if(rs != null) {
+                try {
+                    rs.close();
+                } catch (SQLException ex) {
+                    LOGGER.trace(ex.getLocalizedMessage(), ex);
+                }
+            }
+        }
+        statementHandle.resultSet = null;
+        statementHandle.generatedKeys = null;
+        boolean reuse = statementHandle.cacheKey != null && statementHandle.reusable;
+        if(reuse) {
+            try {
+                PreparedStatement st = (PreparedStatement) statementHandle.statement;
+                st.clearParameters();
+                st.clearBatch();
+                st.clearWarnings();
+                for(Map.Entry<String, Object> property : statementHandle.properties.entrySet()) {
+                    Method setter = Statement.class.getMethod(property.getKey(), int.class);
+                    setter.invoke(st, property.getValue());
+                }
+            } catch (SQLException | ReflectiveOperationException ex) {
+                LOGGER.trace(ex.getLocalizedMessage(), ex);
+                reuse = false;
+            }
+        }
+        synchronized (this) {
+            openStatements.remove(statementHandle);
+            if(reuse && statementCacheGeneration == pool.statementCacheGeneration.get()) {
+                PreparedStatement previous = statementCache.put(statementHandle.cacheKey,
+                        (PreparedStatement) statementHandle.statement);
+                if(previous != null && previous != statementHandle.statement) {
+                    // The same query was prepared twice
+                    closeQuietly(previous);
+                }
+                Iterator<PreparedStatement> it = statementCache.values().iterator();
+                while(statementCache.size() > pool.getStatementCacheSize() && it.hasNext()) {
+                    closeQuietly(it.next());
+                    it.remove();
+                    pool.statementCacheEvictions.incrementAndGet();
+                }
+                return;
+            }
+        }
+        closeQuietly(statementHandle.statement);
+    }
+
+    /**
+     * The borrower closed the connection
+     */
+    private void release() {
+        List<StatementHandle> statements;
+        synchronized (this) {
+            statements = new ArrayList<>(openStatements);
+        }
+        for(StatementHandle statementHandle : statements) {
+            if(!statementHandle.closed) {
+                statementHandle.closed = true;
+                statementClosed(statementHandle);
+            }
+        }
+        boolean reusable;
+        synchronized (this) {
+            reusable = !dirty;
+        }
+        if(reusable) {
+            try {
+                if (!connection.getAutoCommit()) {
+                    // Uncommitted changes are lost, as with a closed connection
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                connection.clearWarnings();
+            } catch (SQLException ex) {
+                LOGGER.debug(ex.getLocalizedMessage(), ex);
+                reusable = false;
+            }
+        }
+        synchronized (this) {
+            handle = null;
+            borrowStack = null;
+            lastUsed = System.currentTimeMillis();
+        }
+        pool.release(this, reusable);
+    }
+
+    /**
+     * Proxy given to a borrower, closing it returns the connection in the pool.
+     */
+    private class ConnectionHandle implements InvocationHandler {
+        private Connection proxy;
+        private volatile boolean closed = false;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if(!closed) {
+                        closed = true;
+                        release();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled " + connection.toString();
+            }
+            if(closed) {
+                throw new SQLException(I18N.tr("The connection is closed"));
+            }
+            if("prepareStatement".equals(name) && (args.length == 1 || args.length == 3)) {
+                if(args.length == 1) {
+                    return prepareStatement(this, (String) args[0], ResultSet.TYPE_FORWARD_ONLY,
+                            ResultSet.CONCUR_READ_ONLY);
+                } else {
+                    return prepareStatement(this, (String) args[0], (Integer) args[1], (Integer) args[2]);
+                }
+            }
+            if(("unwrap".equals(name) || "isWrapperFor".equals(name)) && ((Class<?>) args[0]).isInstance(proxy)) {
+                return "unwrap".equals(name) ? proxy : Boolean.TRUE;
+            }
+            if(SESSION_SETTERS.contains(name)) {
+                synchronized (PooledConnection.this) {
+                    dirty = true;
+                }
+            }
+            Object result;
+            try {
+                result = method.invoke(connection, args);
+            } catch (InvocationTargetException ex) {
+                Throwable cause = unwrap(ex);
+                if(cause instanceof SQLException) {
+                    checkError((SQLException) cause);
+                }
+                throw cause;
+            }
+            // Statements are closed with the connection
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+            if(result instanceof CallableStatement) {
+                return wrap(this, (Statement) result, CallableStatement.class, null, sql);
+            } else if(result instanceof PreparedStatement) {
+                return wrap(this, (Statement) result, PreparedStatement.class, null, sql);
+            } else if(result instanceof Statement) {
+                return wrap(this, (Statement) result, Statement.class, null, null);
+            } else if(result instanceof DatabaseMetaData && pool.getStatementMonitor().isEnabled()) {
+                return Proxy.newProxyInstance(PooledConnection.class.getClassLoader(),
+                        new Class<?>[]{DatabaseMetaData.class}, new MetaDataHandle(this, (DatabaseMetaData) result));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Proxy of a statement, track the result sets to close them with the statement.
+     */
+    private class StatementHandle implements InvocationHandler {
+        private final ConnectionHandle owner;
+        private final Statement statement;
+        private final String cacheKey;
+        // A statement has at most one open result set, the previous one is closed by the next execution
+        private ResultSet resultSet;
+        private ResultSet generatedKeys;
+        // Initial values of the modified properties
+        private final Map<String, Object> properties = new HashMap<>();
+        private volatile boolean closed = false;
+        private boolean reusable = true;
+        // The prepared query changes the database structure
+        private boolean structureCommand = false;
+        private Statement proxy;
+        // Counters of the prepared query, or of the last query of a statement
+        private StatementMonitor.Recorder recorder;
+
+        private StatementHandle(ConnectionHandle owner, Statement statement, String cacheKey) {
+            this.owner = owner;
+            this.statement = statement;
+            this.cacheKey = cacheKey;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if(!closed) {
+                        closed = true;
+                        statementClosed(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || statement.isClosed();
+                case "getConnection":
+                    return owner.proxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return statement.toString();
+            }
+            if(closed) {
+                throw new SQLException(I18N.tr("The statement is closed"));
+            }
+            if(("unwrap".equals(name) || "isWrapperFor".equals(name)) && ((Class<?>) args[0]).isInstance(proxy)) {
+                return "unwrap".equals(name) ? proxy : Boolean.TRUE;
+            }
+            String getter = STATEMENT_PROPERTIES.get(name);
+            if(getter != null && !properties.containsKey(name)) {
+                properties.put(name, Statement.class.getMethod(getter).invoke(statement));
+            } else if(STATEMENT_NOT_RESTORABLE.contains(name)) {
+                reusable = false;
+            }
+            if(args != null && args.length > 0 && args[0] instanceof String && SQL_METHODS.contains(name)
+                    && isSessionCommand((String) args[0])) {
+                synchronized (PooledConnection.this) {
+                    dirty = true;
+                }
+            }
+            StatementMonitor monitor = pool.getStatementMonitor();
+            boolean timed = false;
+            if(monitor.isEnabled()) {
+                if(args != null && args.length > 0 && args[0] instanceof String && SQL_METHODS.contains(name)) {
+                    recorder = monitor.getRecorder((String) args[0]);
+                }
+                timed = recorder != null && EXECUTE_METHODS.contains(name);
+            }
+            Object result;
+            long start = timed ? System.nanoTime() : 0;
+            try {
+                result = method.invoke(statement, args);
+            } catch (InvocationTargetException ex) {
+                if(timed) {
+                    recorder.record(System.nanoTime() - start, true);
+                }
+                Throwable cause = unwrap(ex);
+                if(cause instanceof SQLException) {
+                    // Do not keep a statement in an unknown state
+                    reusable = false;
+                    checkError((SQLException) cause);
+                }
+                throw cause;
+            }
+            if(timed) {
+                recorder.record(System.nanoTime() - start, false);
+            }
+            if(EXECUTE_METHODS.contains(name) && (structureCommand || (args != null && args.length > 0 &&
+                    args[0] instanceof String && isStructureCommand((String) args[0])))) {
+                // Prepared statements may refer to the old structure
+                pool.clearStatementCache();
+            }
+            if(result instanceof ResultSet) {
+                if("getGeneratedKeys".equals(name)) {
+                    generatedKeys = (ResultSet) result;
+                } else {
+                    resultSet = (ResultSet) result;
+                    if(recorder != null && monitor.isEnabled()) {
+                        return monitor((ResultSet) result, this.proxy, recorder);
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Proxy of a result set, count the fetched rows and the size of the binary values.
+     */
+    private static class ResultSetHandle implements InvocationHandler {
+        private final ResultSet resultSet;
+        private final Statement statement;
+        private final StatementMonitor.Recorder recorder;
+
+        private ResultSetHandle(ResultSet resultSet, Statement statement, StatementMonitor.Recorder recorder) {
+            this.resultSet = resultSet;
+            this.statement = statement;
+            this.recorder = recorder;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "getStatement":
+                    if(statement != null) {
+                        return statement;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "unwrap":
+                case "isWrapperFor":
+                    if(((Class<?>) args[0]).isInstance(proxy)) {
+                        return "unwrap".equals(name) ? proxy : Boolean.TRUE;
+                    }
+                    break;
+            }
+            Object result;
+            try {
+                result = method.invoke(resultSet, args);
+            } catch (InvocationTargetException ex) {
+                throw unwrap(ex);
+            }
+            if("next".equals(name)) {
+                if(Boolean.TRUE.equals(result)) {
+                    recorder.addRow();
+                }
+            } else if(result instanceof byte[]) {
+                recorder.addBytes(((byte[]) result).length);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Proxy of the database meta data, time the queries of the meta data
+     */
+    private class MetaDataHandle implements InvocationHandler {
+        private final ConnectionHandle owner;
+        private final DatabaseMetaData metaData;
+
+        private MetaDataHandle(ConnectionHandle owner, DatabaseMetaData metaData) {
+            this.owner = owner;
+            this.metaData = metaData;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "getConnection":
+                    return owner.proxy;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "unwrap":
+                case "isWrapperFor":
+                    if(((Class<?>) args[0]).isInstance(proxy)) {
+                        return "unwrap".equals(name) ? proxy : Boolean.TRUE;
+                    }
+                    break;
+            }
+            if(!ResultSet.class.equals(method.getReturnType())) {
+                try {
+                    return method.invoke(metaData, args);
+                } catch (InvocationTargetException ex) {
+                    throw unwrap(ex);
+                }
+            }
+            StatementMonitor.Recorder recorder = pool.getStatementMonitor().getRecorder("DatabaseMetaData." + name);
+            long start = System.nanoTime();
+            ResultSet result;
+            try {
+                result = (ResultSet) method.invoke(metaData, args);
+            } catch (InvocationTargetException ex) {
+                recorder.record(System.nanoTime() - start, true);
+                Throwable cause = unwrap(ex);
+                if(cause instanceof SQLException) {
+                    checkError((SQLException) cause);
+                }
+                throw cause;
+            }
+            recorder.record(System.nanoTime() - start, false);
+            return result == null ? null : monitor(result, null, recorder);
+        }
+    }
+}
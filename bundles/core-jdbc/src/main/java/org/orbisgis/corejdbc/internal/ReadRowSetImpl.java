@@ -36,18 +36,22 @@
  */
 package org.orbisgis.corejdbc.internal;
 
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 import org.apache.commons.collections4.BidiMap;
 import org.apache.commons.collections4.bidimap.DualHashBidiMap;
-import org.apache.commons.collections4.map.LRUMap;
 import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.SFSUtilities;
 import org.h2gis.utilities.SpatialResultSetMetaData;
 import org.h2gis.utilities.TableLocation;
 import org.orbisgis.corejdbc.AbstractRowSet;
 import org.orbisgis.corejdbc.ReadRowSet;
+import org.orbisgis.corejdbc.RowCursor;
 import org.orbisgis.corejdbc.MetaData;
+import org.orbisgis.corejdbc.TableEditEvent;
+import org.orbisgis.corejdbc.TableEditListener;
 import org.orbisgis.corejdbc.common.IntegerUnion;
+import org.orbisgis.corejdbc.common.WKBEnvelope;
 import org.orbisgis.commons.progress.NullProgressMonitor;
 import org.orbisgis.commons.progress.ProgressMonitor;
 import org.slf4j.Logger;
@@ -58,8 +62,11 @@ import org.xnap.commons.i18n.I18nFactory;
 import javax.sql.DataSource;
 import javax.sql.rowset.JdbcRowSet;
 import javax.sql.rowset.RowSetWarning;
+import javax.swing.event.TableModelEvent;
 import java.beans.EventHandler;
 import java.beans.PropertyChangeListener;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.Reader;
@@ -84,7 +91,12 @@ import java.sql.Statement;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -94,12 +106,24 @@ import java.util.regex.Pattern;
  *
  * @author Nicolas Fortin
  */
-public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSource, SpatialResultSetMetaData, ReadRowSet {
-    private static final int WAITING_FOR_RESULTSET = 5;
+public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSource, SpatialResultSetMetaData, ReadRowSet,
+        TableEditListener {
     public static final int DEFAULT_FETCH_SIZE = 90;
-    public static final int DEFAULT_CACHE_SIZE = 300;
     // Like binary search, max intermediate batch fetching
     private static final int MAX_INTERMEDIATE_BATCH = 5;
+    // The batches first pk are all read in background if the table has at least this number of batches
+    private static final int PAGE_INDEX_MIN_BATCH = 64;
+    private static final String PAGE_INDEX_FILE_EXTENSION = ".pki";
+    // Above this number of table changes not yet applied, all the cached batches are dropped
+    private static final int MAX_PENDING_CHANGES = 64;
+    private static final ExecutorService PAGE_INDEX_EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ReadRowSet page index");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
     private static final Logger LOGGER = LoggerFactory.getLogger(ReadRowSetImpl.class);
     protected static final I18n I18N = I18nFactory.getI18n(ReadRowSetImpl.class, Locale.getDefault(), I18nFactory.FALLBACK);
     protected TableLocation location;
@@ -108,14 +132,28 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
     protected long rowId = 0;
     /** If the table has been updated or never read, rowCount is set to -1 (unknown) */
     protected long cachedRowCount = -1;
-    private int cachedColumnCount = -1;
+    // Meta data of the last execution
+    private volatile ResultSetMetaDataSnapshot metaDataSnapshot;
+    // Execution of the result set that gave the meta data
+    private volatile int snapshotExecution;
     protected BidiMap<String, Integer> cachedColumnNames;
     protected BidiMap<String, Integer> cachedGeomColumnNames;
     private boolean wasNull = true;
-    /** Used to managed table without primary key (ResultSet are kept {@link ResultSetHolder#RESULT_SET_TIMEOUT} */
+    /** Used to managed table without primary key (ResultSet are kept {@link ResultSetHolder#RESULT_SET_TIMEOUT} or
+     * until released by the {@link ResultSetScheduler}) */
     protected final ResultSetHolder resultSetHolder;
-    /** If the table contains a unique non null index then this variable contain the batch first row PK value */
-    protected List<Long> rowFetchFirstPk = new ArrayList<>(Arrays.asList(new Long[]{null}));
+    /** If the table contains a unique non null index then this variable contain the batch first row PK value.
+     * As the current batch, it is only used by the thread that holds the read lock. */
+    protected PkPageIndex rowFetchFirstPk = new PkPageIndex(DEFAULT_FETCH_SIZE);
+    // Complete page index read or built in background, not yet used
+    private volatile PkPageIndex builtPageIndex;
+    private final AtomicInteger pageIndexGeneration = new AtomicInteger();
+    // Where page indexes are saved, null to not save them
+    private File pageIndexFolder;
+    // Table changes received by tableChange, applied by the thread that read the rows. Guarded by pendingChanges.
+    private final List<PendingChange> pendingChanges = new ArrayList<>();
+    private boolean pendingTableChange = false;
+    private volatile boolean hasPendingChanges = false;
     protected String pk_name = "";
     protected String select_fields = "*";
     protected String select_where = "";
@@ -125,11 +163,18 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
     protected final ReentrantReadWriteLock rwl = new ReentrantReadWriteLock();
     protected final Lock readLock = rwl.writeLock(); // Read here is exclusive
     protected int fetchSize = DEFAULT_FETCH_SIZE;
-    // Cache of requested rows
-    protected Map<Long, Row> cache = new LRUMap<>(DEFAULT_CACHE_SIZE);
+    // Cache of requested rows, shared by all row sets
+    protected final TwoQueueRowCache rowCache = TwoQueueRowCache.getInstance();
+    protected final long cacheOwner = rowCache.newOwner();
     // Cache of last queried batch
     protected long currentBatchId = -1;
-    protected List<Row> currentBatch = new ArrayList<>();
+    protected ColumnarBatch currentBatch = null;
+    // Strings shared by all cached batches
+    protected final StringDictionary stringDictionary = new StringDictionary();
+    // Storage of the current row of tables without primary key, reused for each row
+    private ColumnarBatch rowBatch;
+    // Read ahead of batches, use its own connection
+    protected final BatchPrefetcher prefetcher = new BatchPrefetcher();
     private int fetchDirection = FETCH_UNKNOWN;
     // When close is called, in how many ms the result set is really closed
     private int closeDelay = 0;
@@ -155,6 +200,11 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
         return readLock;
     }
 
+    @Override
+    public RowCursor cursor(String[] columns, SortedSet<Long> pkFilter, ProgressMonitor pm) throws SQLException {
+        return new RowCursor(this, columns, pkFilter, RowCursor.DEFAULT_LOCK_TIMEOUT, pm);
+    }
+
     private void setWasNull(boolean wasNull) {
         this.wasNull = wasNull;
     }
@@ -168,18 +218,20 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
     @Override
     public long getPk() throws SQLException {
         checkCurrentRow();
-        return currentRow.pk;
+        return currentRow.getPk();
     }
 
     @Override
     public SortedSet<Integer> getRowNumberFromRowPk(SortedSet<Long> pkSet) throws SQLException {
         SortedSet<Integer> rowsNum = new IntegerUnion();
+        applyTableChanges();
         if(rowFetchFirstPk == null) {
             for(long pk : pkSet) {
                 rowsNum.add((int)pk);
             }
         } else {
             // Use first Pk value of batch in order to fetch only batch that contains a selected pk
+            adoptPageIndex();
             Iterator<Long> fetchPkIt = pkSet.iterator();
             int batchIterId = -1;
             List<Long> batchPK = new ArrayList<>(fetchSize);
@@ -239,6 +291,7 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
      * @throws SQLException
      */
     protected void checkCurrentRow() throws SQLException {
+        applyTableChanges();
         if(rowId < 1 || rowId > getRowCount()) {
             throw new SQLException("Not in a valid row "+rowId+"/"+getRowCount());
         }
@@ -251,20 +304,259 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
     }
 
     protected void cacheColumnNames() throws SQLException {
-        cachedColumnNames = new DualHashBidiMap<>();
-        cachedGeomColumnNames = new DualHashBidiMap<>();
-        try(Resource res = resultSetHolder.getResource()) {
-            ResultSetMetaData meta = res.getResultSet().getMetaData();
-            for (int idColumn = 1; idColumn <= meta.getColumnCount(); idColumn++) {
-                cachedColumnNames.put(meta.getColumnName(idColumn), idColumn);
+        cacheColumnNames(getMetaDataSnapshot());
+    }
+
+    private void cacheColumnNames(ResultSetMetaDataSnapshot meta) throws SQLException {
+        BidiMap<String, Integer> columnNames = new DualHashBidiMap<>();
+        BidiMap<String, Integer> geomColumnNames = new DualHashBidiMap<>();
+        for (int idColumn = 1; idColumn <= meta.getColumnCount(); idColumn++) {
+            columnNames.put(meta.getColumnName(idColumn), idColumn);
+        }
+        for (int idColumn : meta.getHiddenColumns()) {
+            geomColumnNames.put(meta.getColumnName(idColumn), idColumn);
+        }
+        cachedGeomColumnNames = geomColumnNames;
+        cachedColumnNames = columnNames;
+    }
+
+    /**
+     * @return The meta data copied at the last execution, copy it if necessary
+     * @throws SQLException
+     */
+    protected ResultSetMetaDataSnapshot getMetaDataSnapshot() throws SQLException {
+        ResultSetMetaDataSnapshot snapshot = metaDataSnapshot;
+        if(snapshot != null && snapshotExecution != resultSetHolder.getExecutionCount()) {
+            // The result set has been executed again, the table structure may have changed since the copy
+            try(Resource res = resultSetHolder.getResource()) {
+                snapshotExecution = resultSetHolder.getExecutionCount();
+                if(!snapshot.hasSameColumns(res.getResultSet().getMetaData())) {
+                    snapshot = null;
+                    // The cached batches have the former columns
+                    addTableChange();
+                }
             }
+        }
+        if(snapshot == null) {
+            List<String> hiddenFields = new ArrayList<>();
             if(excludeGeomFields) {
-                List<String> geomFields = SFSUtilities.getGeometryFields(getConnection(), location);
-                for (String geomField : geomFields) {
-                    cachedGeomColumnNames.put(geomField, cachedColumnNames.get(geomField));
+                try(Connection connection = getConnection()) {
+                    hiddenFields = SFSUtilities.getGeometryFields(connection, location);
                 }
             }
+            try(Resource res = resultSetHolder.getResource()) {
+                snapshot = new ResultSetMetaDataSnapshot(res.getResultSet().getMetaData(), hiddenFields);
+                snapshotExecution = resultSetHolder.getExecutionCount();
+            }
+            metaDataSnapshot = snapshot;
+            if(cachedColumnNames != null) {
+                // Dropped by a table structure change
+                cacheColumnNames(snapshot);
+            }
         }
+        return snapshot;
+    }
+
+    /**
+     * The events may come from another thread, the changes are applied by the next read of the rows. A change of the
+     * table structure is found when the result set is executed again, see {@link #getMetaDataSnapshot()}.
+     * @param event Table edit event
+     */
+    @Override
+    public void tableChange(TableEditEvent event) {
+        boolean wholeTable = event.getUndoableEdit() == null && event.getColumn() == TableModelEvent.ALL_COLUMNS &&
+                event.getFirstRowPK() == null && event.getLastRowPK() == null;
+        if(wholeTable) {
+            addTableChange();
+        } else if(event.getFirstRowPK() != null) {
+            synchronized (pendingChanges) {
+                if(pendingChanges.size() >= MAX_PENDING_CHANGES) {
+                    pendingTableChange = true;
+                    pendingChanges.clear();
+                } else if(!pendingTableChange) {
+                    pendingChanges.add(new PendingChange(event.getFirstRowPK(), event.getLastRowPK() != null ?
+                            event.getLastRowPK() : event.getFirstRowPK(), isValueUpdate(event)));
+                }
+                hasPendingChanges = true;
+            }
+        }
+    }
+
+    /**
+     * Any row of the table may have changed, the cached batches will be dropped by the next read
+     */
+    private void addTableChange() {
+        synchronized (pendingChanges) {
+            pendingTableChange = true;
+            pendingChanges.clear();
+            hasPendingChanges = true;
+        }
+    }
+
+    /**
+     * Drop the cached batches and the batch boundaries changed by the table edit events received since the last
+     * call. The read lock must be held.
+     */
+    private void applyTableChanges() {
+        if(!hasPendingChanges) {
+            return;
+        }
+        boolean tableChange;
+        List<PendingChange> changes;
+        synchronized (pendingChanges) {
+            tableChange = pendingTableChange;
+            changes = new ArrayList<>(pendingChanges);
+            pendingChanges.clear();
+            pendingTableChange = false;
+            hasPendingChanges = false;
+        }
+        if(tableChange) {
+            if(pk_name.isEmpty()) {
+                // The rows are read from the result set, it is executed again on demand
+                resultSetHolder.tryRelease();
+            }
+            // Column types may have changed
+            rowBatch = null;
+            firstGeometryIndex = -1;
+            // Any row may have changed, forget the cached batches and their boundaries
+            cachedRowCount = -1;
+            rowCache.removeOwner(cacheOwner);
+            pageIndexGeneration.incrementAndGet();
+            builtPageIndex = null;
+            prefetcher.invalidate();
+            rowFetchFirstPk = new PkPageIndex(fetchSize);
+            currentBatch = null;
+            currentBatchId = -1;
+            currentRow = null;
+        } else if(!changes.isEmpty()) {
+            // Batches read ahead may contain the changed rows
+            prefetcher.invalidate();
+            for(PendingChange change : changes) {
+                // Only the batches that contain the changed rows are outdated
+                int firstBatch = rowFetchFirstPk.getFirstPage(change.firstPk);
+                int lastBatch;
+                if(change.valueUpdate) {
+                    lastBatch = rowFetchFirstPk.getLastPage(change.lastPk);
+                } else {
+                    // Rows have been inserted, deleted or their pk changed, following batches may have moved
+                    lastBatch = Integer.MAX_VALUE;
+                    pageIndexGeneration.incrementAndGet();
+                    builtPageIndex = null;
+                    rowFetchFirstPk.invalidateFrom(change.firstPk);
+                }
+                rowCache.removeBatches(cacheOwner, firstBatch, lastBatch);
+                if(currentBatchId >= firstBatch && currentBatchId <= lastBatch) {
+                    currentBatch = null;
+                    currentBatchId = -1;
+                    currentRow = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param event Table edit event
+     * @return True if the event is the update of a value that is not the primary key
+     */
+    private boolean isValueUpdate(TableEditEvent event) {
+        return (event.getUndoableEdit() instanceof TableUndoableUpdate &&
+                !pk_name.equals(((TableUndoableUpdate) event.getUndoableEdit()).getColumnName())) ||
+                event.getUndoableEdit() instanceof TableUndoableBulkUpdate;
+    }
+
+    /**
+     * @param pageIndexFolder Folder where the batches first primary key are saved, null to not save them
+     */
+    public void setPageIndexFolder(File pageIndexFolder) {
+        this.pageIndexFolder = pageIndexFolder;
+    }
+
+    /**
+     * Use the page index read or built in background
+     */
+    private void adoptPageIndex() {
+        PkPageIndex index = builtPageIndex;
+        if(index != null) {
+            builtPageIndex = null;
+            if(index.getPageSize() == fetchSize) {
+                rowFetchFirstPk = index;
+            }
+        }
+    }
+
+    /**
+     * Read the first primary key of all batches of large tables in background, in a single ordered pass. The index
+     * is saved and reused while the table row count and modification stamp are the same, and if a few of its pages
+     * match the table content.
+     * @throws SQLException
+     */
+    private void loadPageIndex() throws SQLException {
+        final int generation = pageIndexGeneration.incrementAndGet();
+        builtPageIndex = null;
+        if(pk_name.isEmpty() || (!isH2 && pk_name.equals(MetaData.POSTGRE_ROW_IDENTIFIER)) ||
+                getBatchCount() < PAGE_INDEX_MIN_BATCH || rowFetchFirstPk.isComplete(getBatchCount())) {
+            return;
+        }
+        final int pageSize = fetchSize;
+        final long rowCount = getRowCount();
+        // Filter parameters are not part of the key
+        final String key = location + "|" + pk_name + "|" + select_where;
+        final File indexFile = pageIndexFolder == null || !parameters.isEmpty() ? null :
+                new File(pageIndexFolder, Integer.toHexString(key.hashCode()) + "_" + pageSize + PAGE_INDEX_FILE_EXTENSION);
+        final String command = "SELECT " + pk_name + getCommandWithoutFields("") + " ORDER BY " + pk_name;
+        final Map<Integer, Object> queryParameters = new HashMap<>(parameters);
+        PAGE_INDEX_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                if(pageIndexGeneration.get() != generation) {
+                    return;
+                }
+                try(Connection connection = getConnection()) {
+                    long stamp = rowCount * 31 + MetaData.getTableModificationStamp(connection, location);
+                    PkPageIndex index = null;
+                    if(indexFile != null) {
+                        index = PkPageIndex.read(indexFile, key, stamp, pageSize);
+                        // The modification stamp does not survive a database restart
+                        if(index != null && !index.matches(connection, command, queryParameters)) {
+                            index = null;
+                        }
+                    }
+                    if(index == null) {
+                        if(!isH2) {
+                            // PostGreSQL use cursor only if auto commit is false
+                            connection.setAutoCommit(false);
+                        }
+                        try(PreparedStatement st = connection.prepareStatement(command)) {
+                            st.setFetchSize(pageSize * MAX_INTERMEDIATE_BATCH);
+                            for(Map.Entry<Integer, Object> entry : queryParameters.entrySet()) {
+                                st.setObject(entry.getKey(), entry.getValue());
+                            }
+                            index = PkPageIndex.build(st, pageSize, rowCount);
+                        }
+                        if(indexFile != null && pageIndexGeneration.get() == generation) {
+                            index.write(indexFile, key, stamp);
+                        }
+                    }
+                    if(pageIndexGeneration.get() == generation) {
+                        builtPageIndex = index;
+                    }
+                } catch (SQLException | IOException ex) {
+                    LOGGER.debug(ex.getLocalizedMessage(), ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * Forget the meta data, it will be read again on the next request
+     */
+    protected void clearMetaData() {
+        metaDataSnapshot = null;
+        cachedColumnNames = null;
+        cachedGeomColumnNames = null;
+        firstGeometryIndex = -1;
+        // Column types may have changed
+        rowBatch = null;
     }
 
     /**
@@ -276,6 +568,13 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
 
 
     private PreparedStatement createBatchQuery(Connection connection, Long firstPk, boolean cacheData, int queryOffset, int limit, boolean queryPk) throws SQLException {
+        PreparedStatement st = connection.prepareStatement(getBatchCommand(firstPk != null, cacheData, queryOffset,
+                limit, queryPk));
+        setBatchParameters(st, parameters, firstPk, isH2 || !pk_name.equals(MetaData.POSTGRE_ROW_IDENTIFIER));
+        return st;
+    }
+
+    private String getBatchCommand(boolean withFirstPk, boolean cacheData, int queryOffset, int limit, boolean queryPk) throws SQLException {
         StringBuilder command = new StringBuilder();
         if(cachedColumnNames == null || cachedGeomColumnNames==null) {
             cacheColumnNames();
@@ -307,12 +606,12 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
         }
         command.append(" FROM ");
         command.append(getTable());
-        if(firstPk != null || !select_where.isEmpty()) {
+        if(withFirstPk || !select_where.isEmpty()) {
             command.append(" WHERE ");
             if(!select_where.isEmpty()) {
                 command.append(select_where);
             }
-            if (firstPk != null) {
+            if (withFirstPk) {
                 if(!select_where.isEmpty()) {
                     command.append(" AND ");
                 }
@@ -330,76 +629,127 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
             command.append(" OFFSET ");
             command.append(queryOffset);
         }
-        PreparedStatement st = connection.prepareStatement(command.toString());
+        return command.toString();
+    }
+
+    /**
+     * @param st Batch query
+     * @param parameters Filter parameters
+     * @param firstPk First primary key value of the batch, null for the first batch
+     * @param numericPk False if the primary key is the PostGreSQL row identifier
+     * @throws SQLException
+     */
+    private static void setBatchParameters(PreparedStatement st, Map<Integer, Object> parameters, Long firstPk,
+                                           boolean numericPk) throws SQLException {
         for(Map.Entry<Integer, Object> entry : parameters.entrySet()) {
             st.setObject(entry.getKey(), entry.getValue());
         }
         if(firstPk != null) {
-            if (isH2 || !pk_name.equals(MetaData.POSTGRE_ROW_IDENTIFIER)) {
+            if (numericPk) {
                 st.setLong(parameters.size() + 1, firstPk);
             } else {
                 Ref pkRef = new Tid(firstPk);
                 st.setRef(parameters.size() + 1, pkRef);
             }
         }
-        return st;
     }
 
     /**
-     * Fetch a batch that start with firstPk
+     * Fetch the pk of the row located queryOffset rows after firstPk, in order to feed rowFetchFirstPk
      *
      * @param firstPk     First row PK
-     * @param cacheData   False to only feed rowFetchFirstPk
      * @param queryOffset Offset pk fetching by this number of rows
      * @return Pk of next batch
      * @throws SQLException
      */
-    private Long fetchBatch(Long firstPk, boolean cacheData, int queryOffset) throws SQLException {
-        if (cacheData) {
-            currentBatch.clear();
+    private Long fetchBatch(Long firstPk, int queryOffset) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement st = createBatchQuery(connection, firstPk, false, queryOffset, 1, true);
+             ResultSet rsBatch = st.executeQuery()) {
+            if (rsBatch.next()) {
+                return rsBatch.getLong(pk_name);
+            }
+            return null;
         }
+    }
+
+    /**
+     * Copy the state of the row set required to query the rows of a batch. The copy does not change when the row
+     * set is modified, it can be used by the {@link BatchPrefetcher} thread.
+     *
+     * @return The batch query of the current row set state
+     * @throws SQLException
+     */
+    private BatchQuery newBatchQuery() throws SQLException {
         final int columnCount = getColumnCount();
         if (cachedColumnNames == null) {
             cacheColumnNames();
         }
         boolean ignoreFirstColumn = !cachedColumnNames.containsKey(pk_name);
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement st = createBatchQuery(connection, firstPk, cacheData, queryOffset, cacheData ?
-                     fetchSize + 1 : 1, ignoreFirstColumn || !cacheData);
-             ResultSet rsBatch = st.executeQuery()) {
+        return new BatchQuery(dataSource, pk_name,
+                getBatchCommand(false, true, 0, fetchSize + 1, ignoreFirstColumn),
+                getBatchCommand(true, true, 0, fetchSize + 1, ignoreFirstColumn),
+                new HashMap<>(parameters), isH2 || !pk_name.equals(MetaData.POSTGRE_ROW_IDENTIFIER), fetchSize,
+                columnCount, ignoreFirstColumn ? 1 : 0, stringDictionary);
+    }
 
-            int curRow = 1;
-            while (rsBatch.next()) {
-                long currentRowPk = rsBatch.getLong(pk_name);
-                if (cacheData) {
-                    int offset = ignoreFirstColumn ? 1 : 0;
-                    Object[] row = new Object[columnCount];
-                    for (int idColumn = 1 + offset; idColumn <= columnCount + offset; idColumn++) {
-                        Object obj = rsBatch.getObject(idColumn);
-                            if(obj instanceof Clob){
-                                Clob clob = (Clob) obj;
-                                obj = clob.getSubString(1, NUMBER_CHARACTERS)+" ...";
-                            }
-                        row[idColumn - 1 - offset] = obj;
-                    }
-                    currentBatch.add(new Row(row, currentRowPk));
-                    if (curRow++ == fetchSize + 1) {
-                        return rsBatch.getLong(pk_name);
+    /**
+     * Copy the current row of the result set into the batch
+     * @param rs Result set on a valid row
+     * @param batch Destination batch
+     * @param row Row index in the batch
+     * @param offset Number of leading result set columns to skip
+     * @param clobMaxLength Clob are truncated to this length, 0 to read the full clob
+     * @throws SQLException
+     */
+    private static void readRow(ResultSet rs, ColumnarBatch batch, int row, int offset, int clobMaxLength) throws SQLException {
+        for (int idColumn = 0; idColumn < batch.getColumnCount(); idColumn++) {
+            final int rsColumn = idColumn + 1 + offset;
+            Object obj;
+            if(batch.getKind(idColumn) == ColumnarBatch.Kind.GEOMETRY) {
+                // Keep the geometry encoded, it is decoded only when read
+                obj = rs.getBytes(rsColumn);
+            } else {
+                obj = rs.getObject(rsColumn);
+                if (obj instanceof Clob) {
+                    Clob clob = (Clob) obj;
+                    if (clobMaxLength > 0) {
+                        obj = clob.getSubString(1, clobMaxLength) + " ...";
+                    } else {
+                        obj = clob.getSubString(1, (int) clob.length());
                     }
-                } else {
-                    return currentRowPk;
                 }
             }
-            return null;
-
+            batch.set(idColumn, row, obj);
         }
     }
 
     /**
-     * Read the content of the DB near the current row id
+     * Read the content of the DB near the current row id, unless the rows are in the {@link TwoQueueRowCache}
      */
     protected void refreshRowCache() throws SQLException {
-        if(!cache.containsKey(rowId) && rowId > 0 && rowId <= getRowCount()) {
+        applyTableChanges();
+        currentRow = null;
+        if(rowId <= 0 || rowId > getRowCount()) {
+            return;
+        }
+        final int targetBatch = (int) (rowId - 1) / fetchSize;
+        if(!pk_name.isEmpty() && currentBatchId != targetBatch) {
+            BatchPrefetcher.PrefetchedBatch cachedBatch = rowCache.get(cacheOwner, targetBatch,
+                    targetBatch < rowFetchFirstPk.size() ? rowFetchFirstPk.get(targetBatch) : null);
+            if(cachedBatch != null && (targetBatch == 0 || cachedBatch.firstPk != null)) {
+                if(targetBatch != 0) {
+                    rowFetchFirstPk.set(targetBatch, cachedBatch.firstPk);
+                }
+                if(cachedBatch.nextFirstPk != null) {
+                    rowFetchFirstPk.set(targetBatch + 1, cachedBatch.nextFirstPk);
+                }
+                currentBatch = cachedBatch.batch;
+                currentBatchId = targetBatch;
+                applyPendingUpdates(currentBatch);
+            }
+        }
+        if(pk_name.isEmpty() || currentBatchId != targetBatch) {
             try(Resource res = resultSetHolder.getResource()) {
                 ResultSet rs = res.getResultSet();
                 final int columnCount = getColumnCount();
@@ -425,63 +775,102 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
                         validRow = rs.absolute((int)rowId);
                     }
                     if(validRow) {
-                        Object[] row = new Object[columnCount];
-                        for(int idColumn=1; idColumn <= columnCount; idColumn++) {
-                            Object obj = rs.getObject(idColumn);
-                            if(obj instanceof Clob){
-                                Clob clob = (Clob) obj;
-                                obj = clob.getSubString(1, (int) clob.length());
-                            }
-                            row[idColumn-1] = obj;
+                        if(rowBatch == null) {
+                            rowBatch = new ColumnarBatch(ColumnarBatch.readKinds(rs.getMetaData(), 0, columnCount), 1,
+                                    false, stringDictionary);
+                        } else {
+                            rowBatch.clear();
                         }
-                        cache.put(rowId, new Row(row, null));
+                        readRow(rs, rowBatch, rowBatch.addRow(0), 0, 0);
+                        currentRow = new Row(rowBatch, 0);
                     }
-                } else {
-                    // Fetch block pk of current row
-                    final int targetBatch = (int) (rowId - 1) / fetchSize;
-                    if (currentBatchId != targetBatch) {
-                        if (targetBatch >= rowFetchFirstPk.size() || (targetBatch != 0 && rowFetchFirstPk.get(targetBatch) == null)) {
-                            // For optimisation sake
-                            // Like binary search if the gap of target batch is too wide, require average PK values
-                            int topBatchCount = getBatchCount();
-                            int lowerBatchCount = 0;
-                            int intermediateBatchFetching = 0;
-                            while(lowerBatchCount + ((topBatchCount - lowerBatchCount) / 2) != targetBatch &&
-                                    intermediateBatchFetching < MAX_INTERMEDIATE_BATCH) {
-                                int midleBatchTarget = lowerBatchCount + ((topBatchCount - lowerBatchCount) / 2);
-                                if(targetBatch < midleBatchTarget) {
-                                    topBatchCount = midleBatchTarget;
-                                } else {
-                                    if(midleBatchTarget >= rowFetchFirstPk.size() ||
-                                            rowFetchFirstPk.get(midleBatchTarget) == null) {
-                                        fetchBatchPk(midleBatchTarget);
-                                    }
-                                    intermediateBatchFetching++;
-                                    lowerBatchCount = midleBatchTarget;
-                                }
-                            }
-                            fetchBatchPk(targetBatch);
-                        }
-                        // Fetch all data of current batch
-                        Long firstPk = fetchBatch(rowFetchFirstPk.get(targetBatch), true, 0);
-                        if(firstPk!=null) {
-                            if(targetBatch + 1 < rowFetchFirstPk.size()) {
-                                rowFetchFirstPk.set(targetBatch + 1, firstPk);
-                            } else {
-                                rowFetchFirstPk.add(firstPk);
+                    return;
+                }
+                adoptPageIndex();
+                // Fetch block pk of current row
+                if (targetBatch >= rowFetchFirstPk.size() || (targetBatch != 0 && rowFetchFirstPk.get(targetBatch) == null)) {
+                    // For optimisation sake
+                    // Like binary search if the gap of target batch is too wide, require average PK values
+                    int topBatchCount = getBatchCount();
+                    int lowerBatchCount = 0;
+                    int intermediateBatchFetching = 0;
+                    while(lowerBatchCount + ((topBatchCount - lowerBatchCount) / 2) != targetBatch &&
+                            intermediateBatchFetching < MAX_INTERMEDIATE_BATCH) {
+                        int midleBatchTarget = lowerBatchCount + ((topBatchCount - lowerBatchCount) / 2);
+                        if(targetBatch < midleBatchTarget) {
+                            topBatchCount = midleBatchTarget;
+                        } else {
+                            if(midleBatchTarget >= rowFetchFirstPk.size() ||
+                                    rowFetchFirstPk.get(midleBatchTarget) == null) {
+                                fetchBatchPk(midleBatchTarget);
                             }
+                            intermediateBatchFetching++;
+                            lowerBatchCount = midleBatchTarget;
                         }
-                        currentBatchId = targetBatch;
-                    }
-                    // Ok, still in current batch
-                    int targetRowInBatch = (int) (rowId - 1) % fetchSize;
-                    if(targetRowInBatch < currentBatch.size()) {
-                        cache.put(rowId, currentBatch.get(targetRowInBatch));
                     }
+                    fetchBatchPk(targetBatch);
                 }
+                // Fetch all data of current batch, unless it has been read ahead
+                Long batchFirstPk = rowFetchFirstPk.get(targetBatch);
+                BatchQuery batchQuery = newBatchQuery();
+                BatchPrefetcher.PrefetchedBatch loadedBatch = prefetcher.take(targetBatch, batchFirstPk);
+                if(loadedBatch == null) {
+                    currentBatch = null;
+                    currentBatchId = -1;
+                    loadedBatch = batchQuery.fetchBatch(batchFirstPk);
+                }
+                applyPendingUpdates(loadedBatch.batch);
+                rowCache.put(cacheOwner, targetBatch, loadedBatch);
+                currentBatch = loadedBatch.batch;
+                if(loadedBatch.nextFirstPk != null) {
+                    rowFetchFirstPk.set(targetBatch + 1, loadedBatch.nextFirstPk);
+                }
+                schedulePrefetch(targetBatch, batchQuery);
+                currentBatchId = targetBatch;
             }
         }
-        currentRow = cache.get(rowId);
+        // Ok, in current batch
+        int targetRowInBatch = (int) (rowId - 1) % fetchSize;
+        if(currentBatch != null && targetRowInBatch < currentBatch.getRowCount()) {
+            currentRow = new Row(currentBatch, targetRowInBatch);
+        }
+    }
+
+    /**
+     * Called when a batch become the current batch, the values of the rows updated but not yet written in the
+     * database are set here.
+     * @param batch Batch read from the database or from the cache
+     */
+    protected void applyPendingUpdates(ColumnarBatch batch) {
+    }
+
+    /**
+     * Remove the cached batch that contains this row. Rows of tables without primary key are not cached, they are
+     * read again from the result set.
+     * @param rowId Row identifier [1-n]
+     */
+    protected void removeCachedRow(long rowId) {
+        if(!pk_name.isEmpty()) {
+            rowCache.remove(cacheOwner, (rowId - 1) / fetchSize);
+        }
+    }
+
+    /**
+     * Read ahead the batches that follow the target batch in the scroll direction. The direction is given by
+     * {@link #setFetchDirection(int)} or deduced from the previous batch.
+     * @param targetBatch Batch that has just been loaded
+     * @param batchQuery Query of the batches
+     */
+    private void schedulePrefetch(int targetBatch, BatchQuery batchQuery) {
+        if(prefetcher.getDepth() > 0) {
+            boolean forward;
+            if(fetchDirection == FETCH_FORWARD || fetchDirection == FETCH_REVERSE) {
+                forward = fetchDirection == FETCH_FORWARD;
+            } else {
+                forward = currentBatchId <= targetBatch;
+            }
+            prefetcher.schedule(targetBatch, forward, rowFetchFirstPk, batchQuery);
+        }
     }
 
     private void fetchBatchPk(int targetBatch) throws SQLException {
@@ -490,9 +879,7 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
             // Using limit and offset in query try to reduce query time
             // There is another batchs between target batch and the end of cached batch PK, add null intermediate pk for those.
             if(targetBatch > rowFetchFirstPk.size()) {
-                Long[] intermediateSkipped = new Long[targetBatch - rowFetchFirstPk.size()];
-                Arrays.fill(intermediateSkipped, null);
-                rowFetchFirstPk.addAll(Arrays.asList(intermediateSkipped));
+                rowFetchFirstPk.setSize(targetBatch);
             }
             int lastNullBatchPK = targetBatch > 0 ? targetBatch - 1 : 0;
             while(firstPk == null && lastNullBatchPK > 0) {
@@ -501,13 +888,9 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
                     lastNullBatchPK--;
                 }
             }
-            firstPk = fetchBatch(firstPk, false, (targetBatch - lastNullBatchPK) * fetchSize);
+            firstPk = fetchBatch(firstPk, (targetBatch - lastNullBatchPK) * fetchSize);
             if(firstPk != null) {
-                if(targetBatch >= rowFetchFirstPk.size()) {
-                    rowFetchFirstPk.add(firstPk);
-                } else {
-                    rowFetchFirstPk.set(targetBatch, firstPk);
-                }
+                rowFetchFirstPk.set(targetBatch, firstPk);
             }
         }
     }
@@ -591,6 +974,7 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
     @Override
     public void setExcludeGeomFields(boolean excludeGeomFields) {
         this.excludeGeomFields = excludeGeomFields;
+        clearMetaData();
     }
 
     @Override
@@ -614,8 +998,9 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
     public void execute(ProgressMonitor pm) throws SQLException {
         try(Connection connection = dataSource.getConnection()) {
             isH2 = JDBCUtilities.isH2DataBase(connection.getMetaData());
-            // Cache Columncount here
-            cachedColumnCount = -1;
+            // Meta data is copied at the end of the execution
+            clearMetaData();
+            stringDictionary.clear();
             // Cache Rowcount here
             cachedRowCount = -1;
             getRowCount(pm);
@@ -636,10 +1021,13 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
             }
         } else {
             // Clear cache of all rows
-            rowFetchFirstPk = new ArrayList<>(Arrays.asList(new Long[]{null}));
+            prefetcher.invalidate();
+            rowFetchFirstPk = new PkPageIndex(fetchSize);
             moveCursorTo(Math.min(getRowCount(), rowId));
             refreshRow();
         }
+        getMetaDataSnapshot();
+        loadPageIndex();
     }
 
     @Override
@@ -658,6 +1046,12 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
     @Override
     public void close() throws SQLException {
         clearRowCache();
+        prefetcher.invalidate();
+        // Release the batches of this row set in the shared cache
+        rowCache.removeOwner(cacheOwner);
+        currentBatch = null;
+        currentBatchId = -1;
+        stringDictionary.clear();
         try {
             resultSetHolder.delayedClose(closeDelay);
         } catch (Exception ex) {
@@ -737,11 +1131,74 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
     public Object getObject(int i) throws SQLException {
         checkColumnIndex(i);
         checkCurrentRow();
-        Object cell = currentRow.row[i-1];
+        Object cell = currentRow.getObject(i - 1);
         setWasNull(cell == null);
         return cell;
     }
 
+    @Override
+    public double getDouble(int i) throws SQLException {
+        checkColumnIndex(i);
+        checkCurrentRow();
+        if(!currentRow.batch.isNumeric(i - 1)) {
+            return super.getDouble(i);
+        }
+        boolean isNull = currentRow.batch.isNull(i - 1, currentRow.index);
+        setWasNull(isNull);
+        return isNull ? 0 : currentRow.batch.getDouble(i - 1, currentRow.index);
+    }
+
+    @Override
+    public long getLong(int i) throws SQLException {
+        checkColumnIndex(i);
+        checkCurrentRow();
+        if(!currentRow.batch.isNumeric(i - 1)) {
+            return super.getLong(i);
+        }
+        boolean isNull = currentRow.batch.isNull(i - 1, currentRow.index);
+        setWasNull(isNull);
+        return isNull ? 0 : currentRow.batch.getLong(i - 1, currentRow.index);
+    }
+
+    @Override
+    public int getInt(int i) throws SQLException {
+        checkColumnIndex(i);
+        checkCurrentRow();
+        if(!currentRow.batch.isNumeric(i - 1)) {
+            return super.getInt(i);
+        }
+        return (int) getLong(i);
+    }
+
+    @Override
+    public byte[] getBytes(int i) throws SQLException {
+        checkColumnIndex(i);
+        checkCurrentRow();
+        if(currentRow.batch.getKind(i - 1) != ColumnarBatch.Kind.GEOMETRY) {
+            return super.getBytes(i);
+        }
+        // Return the cached WKB instead of decoding the geometry
+        byte[] wkb = currentRow.batch.getWKB(i - 1, currentRow.index);
+        setWasNull(wkb == null);
+        return wkb;
+    }
+
+    @Override
+    public Envelope getEnvelope(int column) throws SQLException {
+        checkColumnIndex(column);
+        checkCurrentRow();
+        byte[] wkb = currentRow.batch.getWKB(column - 1, currentRow.index);
+        if(wkb != null) {
+            Envelope envelope = WKBEnvelope.read(wkb);
+            if(envelope != null) {
+                setWasNull(false);
+                return envelope;
+            }
+        }
+        Geometry geometry = getGeometry(column);
+        return geometry == null ? null : geometry.getEnvelopeInternal();
+    }
+
     @Override
     public int findColumn(String label) throws SQLException {
         if(cachedColumnNames == null) {
@@ -811,6 +1268,7 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
     }
 
     private boolean moveCursorTo(long i) throws SQLException {
+        applyTableChanges();
         i = Math.max(0, i);
         i = Math.min(getRowCount() + 1, i);
         long oldRowId = rowId;
@@ -842,6 +1300,16 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
         fetchDirection = i;
     }
 
+    @Override
+    public void setPrefetchDepth(int batchCount) {
+        prefetcher.setDepth(batchCount);
+    }
+
+    @Override
+    public void setPrefetchMemoryLimit(long bytes) {
+        prefetcher.setMemoryLimit(bytes);
+    }
+
     @Override
     public int getFetchDirection() throws SQLException {
         return fetchDirection;
@@ -850,11 +1318,12 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
     @Override
     public void setFetchSize(int i) throws SQLException {
         fetchSize = i;
-        LRUMap<Long, Row> lruMap = new LRUMap<>(fetchSize + 1);
-        lruMap.putAll(cache);
-        cache = lruMap;
-        rowFetchFirstPk = new ArrayList<>(Arrays.asList(new Long[]{null}));
-        currentBatch.clear();
+        rowCache.removeOwner(cacheOwner);
+        prefetcher.invalidate();
+        rowFetchFirstPk = new PkPageIndex(fetchSize);
+        pageIndexGeneration.incrementAndGet();
+        builtPageIndex = null;
+        currentBatch = null;
         currentBatchId = -1;
     }
 
@@ -863,6 +1332,16 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
         return fetchSize;
     }
 
+    @Override
+    public long[] getBatchFirstPk() {
+        if(pk_name.isEmpty()) {
+            return new long[0];
+        }
+        // The index built in background may be more complete
+        PkPageIndex index = builtPageIndex;
+        return (index != null ? index : rowFetchFirstPk).getKnownFirstPk();
+    }
+
     @Override
     public int getType() throws SQLException {
         try(Resource res = resultSetHolder.getResource()) {
@@ -904,15 +1383,19 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
             Set<Integer> batchIds = new HashSet<>();
             for(int refRowId : rowsIndex) {
                 batchIds.add(refRowId / fetchSize);
-                cache.remove(((long)refRowId));
+                removeCachedRow(refRowId);
             }
+            prefetcher.invalidate();
             for(int batchId : batchIds) {
+                if(!pk_name.isEmpty()) {
+                    rowCache.remove(cacheOwner, batchId);
+                }
                 if(batchId < rowFetchFirstPk.size() && batchId >= 0) {
                     rowFetchFirstPk.set(batchId, null);
                 }
                 if(batchId == currentBatchId) {
                     currentBatchId = -1;
-                    currentBatch = new ArrayList<>(fetchSize + 1);
+                    currentBatch = null;
                 }
             }
         } catch (SQLException ex) {
@@ -924,8 +1407,9 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
     public void refreshRow() throws SQLException {
         try(Resource res = resultSetHolder.getResource()) {
             currentRow = null;
-            cache.clear();
-            currentBatch = new ArrayList<>(fetchSize + 1);
+            rowCache.removeOwner(cacheOwner);
+            prefetcher.invalidate();
+            currentBatch = null;
             currentBatchId = -1;
             if(res.getResultSet().getRow() > 0 && !res.getResultSet().isAfterLast()) {
                 res.getResultSet().refreshRow();
@@ -1004,76 +1488,47 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
 
     @Override
     public String getCatalogName(int i) throws SQLException {
-        try(Resource res = resultSetHolder.getResource()) {
-            return res.getResultSet().getMetaData().getCatalogName(i);
-        }
+        return getMetaDataSnapshot().getCatalogName(i);
     }
 
     @Override
     public int getColumnCount() throws SQLException {
-        if(cachedColumnNames == null || cachedGeomColumnNames==null) {
-            cacheColumnNames();
-        }
-        if(cachedColumnCount == -1) {
-            try(Resource res = resultSetHolder.getResource()) {
-                int hiddenFields = excludeGeomFields?cachedGeomColumnNames.size():0;
-                cachedColumnCount = res.getResultSet().getMetaData().getColumnCount()-hiddenFields;
-                if(cachedColumnCount == 0){
-                    cachedColumnCount = res.getResultSet().getMetaData().getColumnCount();
-                }
-                return cachedColumnCount;
-            }
-        }
-        return cachedColumnCount;
+        return getMetaDataSnapshot().getVisibleColumnCount();
     }
 
     @Override
     public boolean isAutoIncrement(int i) throws SQLException {
-        try(Resource res = resultSetHolder.getResource()) {
-            return res.getResultSet().getMetaData().isAutoIncrement(i);
-        }
+        return getMetaDataSnapshot().isAutoIncrement(i);
     }
 
     @Override
     public boolean isCaseSensitive(int i) throws SQLException {
-        try(Resource res = resultSetHolder.getResource()) {
-            return res.getResultSet().getMetaData().isCaseSensitive(i);
-        }
+        return getMetaDataSnapshot().isCaseSensitive(i);
     }
 
     @Override
     public boolean isSearchable(int i) throws SQLException {
-        try(Resource res = resultSetHolder.getResource()) {
-            return res.getResultSet().getMetaData().isSearchable(i);
-        }
+        return getMetaDataSnapshot().isSearchable(i);
     }
 
     @Override
     public boolean isCurrency(int i) throws SQLException {
-        try(Resource res = resultSetHolder.getResource()) {
-            return res.getResultSet().getMetaData().isCurrency(i);
-        }
+        return getMetaDataSnapshot().isCurrency(i);
     }
 
     @Override
     public int isNullable(int i) throws SQLException {
-        try(Resource res = resultSetHolder.getResource()) {
-            return res.getResultSet().getMetaData().isNullable(i);
-        }
+        return getMetaDataSnapshot().isNullable(i);
     }
 
     @Override
     public boolean isSigned(int i) throws SQLException {
-        try(Resource res = resultSetHolder.getResource()) {
-            return res.getResultSet().getMetaData().isSigned(i);
-        }
+        return getMetaDataSnapshot().isSigned(i);
     }
 
     @Override
     public int getColumnDisplaySize(int i) throws SQLException {
-        try(Resource res = resultSetHolder.getResource()) {
-            return res.getResultSet().getMetaData().getColumnDisplaySize(i);
-        }
+        return getMetaDataSnapshot().getColumnDisplaySize(i);
     }
 
     @Override
@@ -1083,9 +1538,7 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
 
     @Override
     public String getColumnLabel(int i) throws SQLException {
-        try(Resource res = resultSetHolder.getResource()) {
-            return res.getResultSet().getMetaData().getColumnLabel(i);
-        }
+        return getMetaDataSnapshot().getColumnLabel(i);
     }
 
     @Override
@@ -1098,81 +1551,54 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
 
     @Override
     public String getSchemaName(int i) throws SQLException {
-        try(Resource res = resultSetHolder.getResource()) {
-            return res.getResultSet().getMetaData().getSchemaName(i);
-        }
+        return getMetaDataSnapshot().getSchemaName(i);
     }
 
     @Override
     public int getPrecision(int i) throws SQLException {
-        try(Resource res = resultSetHolder.getResource()) {
-            return res.getResultSet().getMetaData().getPrecision(i);
-        }
+        return getMetaDataSnapshot().getPrecision(i);
     }
 
     @Override
     public int getScale(int i) throws SQLException {
-        try(Resource res = resultSetHolder.getResource()) {
-            return res.getResultSet().getMetaData().getScale(i);
-        }
+        return getMetaDataSnapshot().getScale(i);
     }
 
     @Override
     public String getTableName(int i) throws SQLException {
-        try(Resource res = resultSetHolder.getResource()) {
-            return res.getResultSet().getMetaData().getTableName(i);
-        }
+        return getMetaDataSnapshot().getTableName(i);
     }
 
     @Override
     public int getColumnType(int i) throws SQLException {
         //If the geometries are exluded, the index i should shift
-        int offset = 0;
-        if(excludeGeomFields){
-            for(int val : cachedGeomColumnNames.values()){
-                if(val<=i){
-                    offset++;
-                }
-            }
-        }
-        try(Resource res = resultSetHolder.getResource()) {
-            return res.getResultSet().getMetaData().getColumnType(i+offset);
-        }
+        ResultSetMetaDataSnapshot meta = getMetaDataSnapshot();
+        return meta.getColumnType(meta.getColumnIndex(i));
     }
 
     @Override
     public String getColumnTypeName(int i) throws SQLException {
-        try(Resource res = resultSetHolder.getResource()) {
-            return res.getResultSet().getMetaData().getColumnTypeName(i);
-        }
+        return getMetaDataSnapshot().getColumnTypeName(i);
     }
 
     @Override
     public boolean isReadOnly(int i) throws SQLException {
-        try(Resource res = resultSetHolder.getResource()) {
-            return res.getResultSet().getMetaData().isReadOnly(i);
-        }
+        return getMetaDataSnapshot().isReadOnly(i);
     }
 
     @Override
     public boolean isWritable(int i) throws SQLException {
-        try(Resource res = resultSetHolder.getResource()) {
-            return res.getResultSet().getMetaData().isWritable(i);
-        }
+        return getMetaDataSnapshot().isWritable(i);
     }
 
     @Override
     public boolean isDefinitelyWritable(int i) throws SQLException {
-        try(Resource res = resultSetHolder.getResource()) {
-            return res.getResultSet().getMetaData().isDefinitelyWritable(i);
-        }
+        return getMetaDataSnapshot().isDefinitelyWritable(i);
     }
 
     @Override
     public String getColumnClassName(int i) throws SQLException {
-        try(Resource res = resultSetHolder.getResource()) {
-            return res.getResultSet().getMetaData().getColumnClassName(i);
-        }
+        return getMetaDataSnapshot().getColumnClassName(i);
     }
 
     @Override
@@ -1727,46 +2153,57 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
 
     @Override
     public int getGeometryType(int i) throws SQLException {
-        try(Resource res = resultSetHolder.getResource()) {
-            SpatialResultSetMetaData meta = res.getResultSet().getMetaData().unwrap(SpatialResultSetMetaData.class);
-            return meta.getGeometryType(i);
-        }
+        return getMetaDataSnapshot().getGeometryType(i);
     }
 
     @Override
     public int getGeometryType() throws SQLException {
-        try(Resource res = resultSetHolder.getResource()) {
-            SpatialResultSetMetaData meta = res.getResultSet().getMetaData().unwrap(SpatialResultSetMetaData.class);
-            return meta.getGeometryType();
-        }
+        return getMetaDataSnapshot().getGeometryType();
     }
 
     @Override
     public int getFirstGeometryFieldIndex() throws SQLException {
-        try(Resource res = resultSetHolder.getResource()) {
-            SpatialResultSetMetaData meta = res.getResultSet().getMetaData().unwrap(SpatialResultSetMetaData.class);
-            return meta.getFirstGeometryFieldIndex();
+        return getMetaDataSnapshot().getFirstGeometryFieldIndex();
+    }
+
+    /**
+     * Primary key range of a table edit event not yet applied to the cached batches
+     */
+    private static class PendingChange {
+        private final long firstPk;
+        private final long lastPk;
+        // True if only values that are not the primary key have been updated
+        private final boolean valueUpdate;
+
+        private PendingChange(long firstPk, long lastPk, boolean valueUpdate) {
+            this.firstPk = firstPk;
+            this.lastPk = lastPk;
+            this.valueUpdate = valueUpdate;
         }
     }
 
     /**
      * This thread guaranty that the connection,ResultSet is released when no longer used.
      */
-    private static class ResultSetHolder implements Runnable,AutoCloseable {
-        private static final int SLEEP_TIME = 1000;
+    private static class ResultSetHolder implements AutoCloseable, ResultSetScheduler.ScheduledResource {
         private static final int RESULT_SET_TIMEOUT = 60000;
         private final int fetchSize;
         public enum STATUS { NEVER_STARTED, STARTED , READY, CLOSING, CLOSED, EXCEPTION}
-        private Exception ex;
+        private Connection connection;
+        private PreparedStatement statement;
         private ResultSet resultSet;
         private DataSource dataSource;
         private String command;
         private Map<Integer, Object> parameters = new HashMap<>();
-        private STATUS status = STATUS.NEVER_STARTED;
-        private long lastUsage = System.currentTimeMillis();
+        private volatile STATUS status = STATUS.NEVER_STARTED;
+        private volatile long expiration = 0;
+        // Number of successful executions of the command
+        private volatile int executionCount = 0;
         private static final Logger LOGGER = LoggerFactory.getLogger(ResultSetHolder.class);
         private int openCount = 0;
-        private Statement cancelStatement;
+        private volatile Statement cancelStatement;
+        // Held while the result set is opened, read or closed
+        private final ReentrantLock lock = new ReentrantLock();
 
         private ResultSetHolder(int fetchSize, DataSource dataSource) {
             this.fetchSize = fetchSize;
@@ -1791,54 +2228,117 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
             return command;
         }
 
-        @Override
-        public void run() {
-            lastUsage = System.currentTimeMillis();
+        /**
+         * Execute the command, the result set is kept open until it is released by the {@link ResultSetScheduler}.
+         * The expiration must be set, the lock must be held.
+         * @throws SQLException
+         */
+        private void open() throws SQLException {
             status = STATUS.STARTED;
-            try (Connection connection = dataSource.getConnection()) {
+            ResultSetScheduler.getInstance().register(this);
+            try {
+                connection = dataSource.getConnection();
                 boolean isH2 = JDBCUtilities.isH2DataBase(connection.getMetaData());
-                try (
-                        PreparedStatement st = connection.prepareStatement(command, isH2 ? ResultSet
-                                .TYPE_SCROLL_SENSITIVE : ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
-                    cancelStatement = st;
-                    st.setFetchSize(fetchSize);
-                    for(Map.Entry<Integer, Object> entry : parameters.entrySet()) {
-                        st.setObject(entry.getKey(), entry.getValue());
-                    }
-                    if (!isH2) {
-                        // Memory optimisation for PostGre
-                        connection.setAutoCommit(false);
-                    }
-                    // PostGreSQL use cursor only if auto commit is false
-                    try (ResultSet activeResultSet = st.executeQuery()) {
-                        resultSet = activeResultSet;
-                        status = STATUS.READY;
-                        while (lastUsage + RESULT_SET_TIMEOUT > System.currentTimeMillis() || openCount != 0) {
-                            Thread.sleep(SLEEP_TIME);
-                        }
-                    }
+                statement = connection.prepareStatement(command, isH2 ? ResultSet
+                        .TYPE_SCROLL_SENSITIVE : ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                cancelStatement = statement;
+                statement.setFetchSize(fetchSize);
+                for(Map.Entry<Integer, Object> entry : parameters.entrySet()) {
+                    statement.setObject(entry.getKey(), entry.getValue());
+                }
+                if (!isH2) {
+                    // Memory optimisation for PostGre
+                    connection.setAutoCommit(false);
                 }
-            } catch (Exception ex) {
+                // PostGreSQL use cursor only if auto commit is false
+                resultSet = statement.executeQuery();
+                executionCount++;
+                status = STATUS.READY;
+            } catch (SQLException ex) {
                 LOGGER.error(ex.getLocalizedMessage(), ex);
-                this.ex = ex;
+                release();
                 status = STATUS.EXCEPTION;
-            } finally {
-                if (status != STATUS.EXCEPTION) {
-                    status = STATUS.CLOSED;
+                throw ex;
+            }
+        }
+
+        /**
+         * Close the result set and its connection, lock must be held
+         */
+        private void release() {
+            cancelStatement = null;
+            try {
+                if (resultSet != null) {
+                    resultSet.close();
                 }
+                if (statement != null) {
+                    statement.close();
+                }
+                if (connection != null) {
+                    connection.close();
+                }
+            } catch (SQLException ex) {
+                LOGGER.error(ex.getLocalizedMessage(), ex);
+            } finally {
+                resultSet = null;
+                statement = null;
+                connection = null;
+                openCount = 0;
+                status = STATUS.CLOSED;
+                ResultSetScheduler.getInstance().unregister(this);
             }
         }
 
         @Override
         public void close() throws SQLException {
-            lastUsage = 0;
-            openCount = 0;
-            status = STATUS.CLOSING;
+            lock.lock();
+            try {
+                if (status == STATUS.READY || status == STATUS.STARTED) {
+                    status = STATUS.CLOSING;
+                    release();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void delayedClose(int milliSec) throws SQLException {
+            if(milliSec <= 0) {
+                close();
+            } else {
+                lock.lock();
+                try {
+                    expiration = System.currentTimeMillis() + milliSec;
+                    openCount = 0;
+                } finally {
+                    lock.unlock();
+                }
+            }
         }
 
-        public void delayedClose(int milliSec) {
-            lastUsage = System.currentTimeMillis() - RESULT_SET_TIMEOUT + milliSec;
-            openCount = 0;
+        @Override
+        public long getExpiration() {
+            return expiration;
+        }
+
+        @Override
+        public boolean isIdle() {
+            return openCount == 0 && !lock.isLocked();
+        }
+
+        @Override
+        public boolean tryRelease() {
+            if (lock.tryLock()) {
+                try {
+                    if (openCount == 0 && status == STATUS.READY) {
+                        release();
+                        return true;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            return false;
         }
 
         /**
@@ -1852,6 +2352,14 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
             }
         }
 
+        /**
+         * @return Number of successful executions of the command, the result set columns may change between two
+         * executions
+         */
+        public int getExecutionCount() {
+            return executionCount;
+        }
+
         /**
          * @return ResultSet status
          */
@@ -1860,36 +2368,33 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
         }
 
         public Resource getResource() throws SQLException {
-            // Wait execution of request
-            while(getStatus() != STATUS.READY) {
+            lock.lock();
+            try {
+                // Used and not expired before it is registered by the scheduler
+                expiration = System.currentTimeMillis() + RESULT_SET_TIMEOUT;
+                openCount++;
                 // Reactivate result set if necessary
-                if(getStatus() == ResultSetHolder.STATUS.CLOSED || getStatus() == ResultSetHolder.STATUS.NEVER_STARTED) {
-                    Thread resultSetThread = new Thread(this, "ResultSet of "+command);
-                    resultSetThread.start();
-                }
-                if(status == STATUS.EXCEPTION) {
-                    if(ex instanceof SQLException) {
-                        throw (SQLException)ex;
-                    } else {
-                        throw new SQLException(ex);
-                    }
-                }
-                try {
-                    Thread.sleep(WAITING_FOR_RESULTSET);
-                } catch (InterruptedException e) {
-                    throw new SQLException(e);
+                if (status != STATUS.READY) {
+                    open();
+                } else {
+                    ResultSetScheduler.getInstance().touch(this);
                 }
+                return new Resource(this, resultSet);
+            } finally {
+                lock.unlock();
             }
-            lastUsage = System.currentTimeMillis();
-            openCount++;
-            return new Resource(this, resultSet);
         }
 
         /**
          * Even if the timer should close the result set, the connection is not closed
          */
         public void onResourceClosed() {
-            openCount = Math.max(0, openCount-1);
+            lock.lock();
+            try {
+                openCount = Math.max(0, openCount - 1);
+            } finally {
+                lock.unlock();
+            }
         }
     }
 
@@ -1943,13 +2448,108 @@ public class ReadRowSetImpl extends AbstractRowSet implements JdbcRowSet, DataSo
         }
     }
 
+    /**
+     * Immutable copy of the batch query, used by the {@link BatchPrefetcher} thread while the row set may change.
+     */
+    private static class BatchQuery implements BatchPrefetcher.BatchSource {
+        private final DataSource dataSource;
+        private final String pkName;
+        private final String firstBatchCommand;
+        private final String batchCommand;
+        private final Map<Integer, Object> parameters;
+        private final boolean numericPk;
+        private final int batchSize;
+        private final int columnCount;
+        private final int offset;
+        private final StringDictionary dictionary;
+
+        /**
+         * @param dataSource Data source
+         * @param pkName Primary key column name
+         * @param firstBatchCommand Query of the first batch
+         * @param batchCommand Query of the batches that start with a given primary key
+         * @param parameters Copy of the filter parameters
+         * @param numericPk False if the primary key is the PostGreSQL row identifier
+         * @param batchSize Number of rows of a batch
+         * @param columnCount Number of columns of the row set
+         * @param offset 1 if the primary key is queried before the row set columns
+         * @param dictionary Shared strings
+         */
+        private BatchQuery(DataSource dataSource, String pkName, String firstBatchCommand, String batchCommand,
+                           Map<Integer, Object> parameters, boolean numericPk, int batchSize, int columnCount,
+                           int offset, StringDictionary dictionary) {
+            this.dataSource = dataSource;
+            this.pkName = pkName;
+            this.firstBatchCommand = firstBatchCommand;
+            this.batchCommand = batchCommand;
+            this.parameters = parameters;
+            this.numericPk = numericPk;
+            this.batchSize = batchSize;
+            this.columnCount = columnCount;
+            this.offset = offset;
+            this.dictionary = dictionary;
+        }
+
+        /**
+         * Query the rows of a batch
+         * @param firstPk First row PK, null for the first batch
+         * @return The batch content and the pk of the next batch
+         * @throws SQLException
+         */
+        @Override
+        public BatchPrefetcher.PrefetchedBatch fetchBatch(Long firstPk) throws SQLException {
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement st = connection.prepareStatement(firstPk == null ? firstBatchCommand :
+                         batchCommand)) {
+                setBatchParameters(st, parameters, firstPk, numericPk);
+                try (ResultSet rsBatch = st.executeQuery()) {
+                    int curRow = 1;
+                    ColumnarBatch batch = new ColumnarBatch(ColumnarBatch.readKinds(rsBatch.getMetaData(), offset,
+                            columnCount), batchSize + 1, true, dictionary);
+                    while (rsBatch.next()) {
+                        readRow(rsBatch, batch, batch.addRow(rsBatch.getLong(pkName)), offset, NUMBER_CHARACTERS);
+                        if (curRow++ == batchSize + 1) {
+                            return new BatchPrefetcher.PrefetchedBatch(batch, firstPk, rsBatch.getLong(pkName));
+                        }
+                    }
+                    return new BatchPrefetcher.PrefetchedBatch(batch, firstPk, null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cached row, values are stored in a shared {@link ColumnarBatch}
+     */
     protected static class Row {
-        public final Object[] row;
-        public final Long pk;
+        public final ColumnarBatch batch;
+        public final int index;
+
+        public Row(ColumnarBatch batch, int index) {
+            this.batch = batch;
+            this.index = index;
+        }
 
-        public Row(Object[] row, Long pk) {
-            this.row = row;
-            this.pk = pk;
+        /**
+         * @param column Column index [0-n[
+         * @return Cell value
+         */
+        public Object getObject(int column) {
+            return batch.getObject(column, index);
+        }
+
+        /**
+         * @return Number of columns
+         */
+        public int getColumnCount() {
+            return batch.getColumnCount();
+        }
+
+        /**
+         * @return Row primary key value, null if not available
+         */
+        public Long getPk() {
+            return batch.getPk(index);
         }
     }
 }
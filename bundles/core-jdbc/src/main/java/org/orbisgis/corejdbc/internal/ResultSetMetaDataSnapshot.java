@@ -0,0 +1,337 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import org.h2gis.utilities.SpatialResultSetMetaData;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable copy of a {@link ResultSetMetaData}. Once created, reading the meta data does not require the result set.
+ * Column indexes are the ones of the copied result set, unless stated otherwise.
+ */
+public class ResultSetMetaDataSnapshot {
+    private final int columnCount;
+    private final String[] catalogName;
+    private final String[] schemaName;
+    private final String[] tableName;
+    private final String[] columnName;
+    private final String[] columnLabel;
+    private final String[] columnTypeName;
+    private final String[] columnClassName;
+    private final int[] columnType;
+    private final int[] precision;
+    private final int[] scale;
+    private final int[] displaySize;
+    private final int[] nullable;
+    private final boolean[] autoIncrement;
+    private final boolean[] caseSensitive;
+    private final boolean[] searchable;
+    private final boolean[] currency;
+    private final boolean[] signed;
+    private final boolean[] readOnly;
+    private final boolean[] writable;
+    private final boolean[] definitelyWritable;
+    // Spatial meta data, null if the result set is not spatial
+    private final Integer[] geometryType;
+    private final int firstGeometryFieldIndex;
+    // Hidden columns index
+    private final List<Integer> hiddenColumns = new ArrayList<>();
+    // Visible column index [0-n[ to column index [1-n]
+    private final int[] visibleColumns;
+
+    /**
+     * Copy the meta data.
+     * @param meta Meta data of the result set
+     * @param hiddenColumnNames Name of the columns that are not visible (excluded geometry fields)
+     * @throws SQLException
+     */
+    public ResultSetMetaDataSnapshot(ResultSetMetaData meta, Collection<String> hiddenColumnNames) throws SQLException {
+        columnCount = meta.getColumnCount();
+        catalogName = new String[columnCount];
+        schemaName = new String[columnCount];
+        tableName = new String[columnCount];
+        columnName = new String[columnCount];
+        columnLabel = new String[columnCount];
+        columnTypeName = new String[columnCount];
+        columnClassName = new String[columnCount];
+        columnType = new int[columnCount];
+        precision = new int[columnCount];
+        scale = new int[columnCount];
+        displaySize = new int[columnCount];
+        nullable = new int[columnCount];
+        autoIncrement = new boolean[columnCount];
+        caseSensitive = new boolean[columnCount];
+        searchable = new boolean[columnCount];
+        currency = new boolean[columnCount];
+        signed = new boolean[columnCount];
+        readOnly = new boolean[columnCount];
+        writable = new boolean[columnCount];
+        definitelyWritable = new boolean[columnCount];
+        for(int idColumn = 0; idColumn < columnCount; idColumn++) {
+            int column = idColumn + 1;
+            catalogName[idColumn] = meta.getCatalogName(column);
+            schemaName[idColumn] = meta.getSchemaName(column);
+            tableName[idColumn] = meta.getTableName(column);
+            columnName[idColumn] = meta.getColumnName(column);
+            columnLabel[idColumn] = meta.getColumnLabel(column);
+            columnTypeName[idColumn] = meta.getColumnTypeName(column);
+            columnClassName[idColumn] = meta.getColumnClassName(column);
+            columnType[idColumn] = meta.getColumnType(column);
+            precision[idColumn] = meta.getPrecision(column);
+            scale[idColumn] = meta.getScale(column);
+            displaySize[idColumn] = meta.getColumnDisplaySize(column);
+            nullable[idColumn] = meta.isNullable(column);
+            autoIncrement[idColumn] = meta.isAutoIncrement(column);
+            caseSensitive[idColumn] = meta.isCaseSensitive(column);
+            searchable[idColumn] = meta.isSearchable(column);
+            currency[idColumn] = meta.isCurrency(column);
+            signed[idColumn] = meta.isSigned(column);
+            readOnly[idColumn] = meta.isReadOnly(column);
+            writable[idColumn] = meta.isWritable(column);
+            definitelyWritable[idColumn] = meta.isDefinitelyWritable(column);
+            if(hiddenColumnNames.contains(columnName[idColumn])) {
+                hiddenColumns.add(column);
+            }
+        }
+        // If all columns are hidden, show them all
+        if(hiddenColumns.size() == columnCount) {
+            visibleColumns = new int[columnCount];
+        } else {
+            visibleColumns = new int[columnCount - hiddenColumns.size()];
+        }
+        int visibleColumn = 0;
+        for(int column = 1; column <= columnCount; column++) {
+            if(visibleColumns.length == columnCount || !hiddenColumns.contains(column)) {
+                visibleColumns[visibleColumn++] = column;
+            }
+        }
+        // Spatial types, fetched only for geometry columns
+        if(meta.isWrapperFor(SpatialResultSetMetaData.class)) {
+            SpatialResultSetMetaData spatialMeta = meta.unwrap(SpatialResultSetMetaData.class);
+            geometryType = new Integer[columnCount];
+            for(int idColumn = 0; idColumn < columnCount; idColumn++) {
+                if("GEOMETRY".equalsIgnoreCase(columnTypeName[idColumn])) {
+                    geometryType[idColumn] = spatialMeta.getGeometryType(idColumn + 1);
+                }
+            }
+            firstGeometryFieldIndex = spatialMeta.getFirstGeometryFieldIndex();
+        } else {
+            geometryType = null;
+            firstGeometryFieldIndex = -1;
+        }
+    }
+
+    /**
+     * @param meta Meta data of a result set
+     * @return True if the result set has the same columns, with the same types
+     * @throws SQLException
+     */
+    public boolean hasSameColumns(ResultSetMetaData meta) throws SQLException {
+        if(meta.getColumnCount() != columnCount) {
+            return false;
+        }
+        for(int idColumn = 0; idColumn < columnCount; idColumn++) {
+            int column = idColumn + 1;
+            if(!Objects.equals(columnName[idColumn], meta.getColumnName(column)) ||
+                    columnType[idColumn] != meta.getColumnType(column) ||
+                    !Objects.equals(columnTypeName[idColumn], meta.getColumnTypeName(column)) ||
+                    precision[idColumn] != meta.getPrecision(column) || scale[idColumn] != meta.getScale(column)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int check(int column) throws SQLException {
+        if(column < 1 || column > columnCount) {
+            throw new SQLException(new IndexOutOfBoundsException("Column index "+column+" out of bound[1-"+columnCount+"]"));
+        }
+        return column - 1;
+    }
+
+    /**
+     * @return Number of columns, hidden columns included
+     */
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * @return Number of visible columns
+     */
+    public int getVisibleColumnCount() {
+        return visibleColumns.length;
+    }
+
+    /**
+     * @param visibleColumn Visible column index [1-n]
+     * @return Column index [1-n] in the result set
+     * @throws SQLException
+     */
+    public int getColumnIndex(int visibleColumn) throws SQLException {
+        if(visibleColumn < 1 || visibleColumn > visibleColumns.length) {
+            throw new SQLException(new IndexOutOfBoundsException("Column index "+visibleColumn+" out of bound[1-"+
+                    visibleColumns.length+"]"));
+        }
+        return visibleColumns[visibleColumn - 1];
+    }
+
+    /**
+     * @return Index [1-n] of the hidden columns
+     */
+    public List<Integer> getHiddenColumns() {
+        return new ArrayList<>(hiddenColumns);
+    }
+
+    public String getCatalogName(int column) throws SQLException {
+        return catalogName[check(column)];
+    }
+
+    public String getSchemaName(int column) throws SQLException {
+        return schemaName[check(column)];
+    }
+
+    public String getTableName(int column) throws SQLException {
+        return tableName[check(column)];
+    }
+
+    public String getColumnName(int column) throws SQLException {
+        return columnName[check(column)];
+    }
+
+    public String getColumnLabel(int column) throws SQLException {
+        return columnLabel[check(column)];
+    }
+
+    public String getColumnTypeName(int column) throws SQLException {
+        return columnTypeName[check(column)];
+    }
+
+    public String getColumnClassName(int column) throws SQLException {
+        return columnClassName[check(column)];
+    }
+
+    public int getColumnType(int column) throws SQLException {
+        return columnType[check(column)];
+    }
+
+    public int getPrecision(int column) throws SQLException {
+        return precision[check(column)];
+    }
+
+    public int getScale(int column) throws SQLException {
+        return scale[check(column)];
+    }
+
+    public int getColumnDisplaySize(int column) throws SQLException {
+        return displaySize[check(column)];
+    }
+
+    public int isNullable(int column) throws SQLException {
+        return nullable[check(column)];
+    }
+
+    public boolean isAutoIncrement(int column) throws SQLException {
+        return autoIncrement[check(column)];
+    }
+
+    public boolean isCaseSensitive(int column) throws SQLException {
+        return caseSensitive[check(column)];
+    }
+
+    public boolean isSearchable(int column) throws SQLException {
+        return searchable[check(column)];
+    }
+
+    public boolean isCurrency(int column) throws SQLException {
+        return currency[check(column)];
+    }
+
+    public boolean isSigned(int column) throws SQLException {
+        return signed[check(column)];
+    }
+
+    public boolean isReadOnly(int column) throws SQLException {
+        return readOnly[check(column)];
+    }
+
+    public boolean isWritable(int column) throws SQLException {
+        return writable[check(column)];
+    }
+
+    public boolean isDefinitelyWritable(int column) throws SQLException {
+        return definitelyWritable[check(column)];
+    }
+
+    /**
+     * @param column Geometry column index [1-n]
+     * @return Geometry type code {@link org.h2gis.utilities.GeometryTypeCodes}
+     * @throws SQLException If the column is not a geometry column
+     */
+    public int getGeometryType(int column) throws SQLException {
+        int idColumn = check(column);
+        if(geometryType == null || geometryType[idColumn] == null) {
+            throw new SQLException("The column "+columnName[idColumn]+" is not a geometry column");
+        }
+        return geometryType[idColumn];
+    }
+
+    /**
+     * @return Geometry type code of the first geometry column
+     * @throws SQLException If there is no geometry column
+     */
+    public int getGeometryType() throws SQLException {
+        return getGeometryType(getFirstGeometryFieldIndex());
+    }
+
+    /**
+     * @return Index [1-n] of the first geometry column
+     * @throws SQLException If the result set is not spatial
+     */
+    public int getFirstGeometryFieldIndex() throws SQLException {
+        if(geometryType == null) {
+            throw new SQLException("Not a spatial result set");
+        }
+        return firstGeometryFieldIndex;
+    }
+}
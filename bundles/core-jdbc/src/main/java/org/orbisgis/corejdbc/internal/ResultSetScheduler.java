@@ -0,0 +1,279 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns the open result sets of all row sets. A single thread runs a timer wheel that releases the result sets that
+ * have not been used for a while, and the least recently used idle result sets are released when the number of open
+ * result sets exceeds a global budget. Released result sets are reopened by their owner on demand.
+ */
+public class ResultSetScheduler {
+    /** Half of the default pool size, the other connections remain available for the other queries */
+    public static final int DEFAULT_MAX_OPEN_RESOURCES = ConnectionPool.DEFAULT_MAXIMUM_POOL_SIZE / 2;
+    private static final long TICK_DURATION = 1000;
+    private static final int WHEEL_SIZE = 64;
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResultSetScheduler.class);
+    private static final ResultSetScheduler INSTANCE = new ResultSetScheduler(TICK_DURATION);
+    // Access ordered, first entry is the least recently used resource
+    private final Map<ScheduledResource, Boolean> openResources = new LinkedHashMap<>(16, 0.75f, true);
+    // Wheel slot of each scheduled resource, a resource is in a single slot
+    private final Map<ScheduledResource, Integer> resourceSlots = new HashMap<>();
+    private final List<Set<ScheduledResource>> wheel = new ArrayList<>(WHEEL_SIZE);
+    private final long tickDuration;
+    private int wheelCursor = 0;
+    private int maxOpenResources = DEFAULT_MAX_OPEN_RESOURCES;
+    private ScheduledExecutorService executor;
+
+    /**
+     * @param tickDuration Duration of a wheel slot in milliseconds
+     */
+    ResultSetScheduler(long tickDuration) {
+        this.tickDuration = tickDuration;
+        for(int slot = 0; slot < WHEEL_SIZE; slot++) {
+            wheel.add(new HashSet<ScheduledResource>());
+        }
+    }
+
+    /**
+     * @return The scheduler shared by all row sets
+     */
+    public static ResultSetScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param maxOpenResources Number of open result sets (and their connection) above which idle result sets are
+     *                         released
+     */
+    public synchronized void setMaxOpenResources(int maxOpenResources) {
+        this.maxOpenResources = Math.max(1, maxOpenResources);
+    }
+
+    /**
+     * @return Number of open result sets above which idle result sets are released
+     */
+    public synchronized int getMaxOpenResources() {
+        return maxOpenResources;
+    }
+
+    /**
+     * @return Number of currently open result sets
+     */
+    public synchronized int getOpenResourceCount() {
+        return openResources.size();
+    }
+
+    /**
+     * Register a resource that is about to be opened, its expiration must be set. If the budget is exceeded the least
+     * recently used idle resources are released.
+     * @param resource Resource to watch
+     */
+    public void register(ScheduledResource resource) {
+        List<ScheduledResource> evicted = new ArrayList<>();
+        synchronized (this) {
+            int toEvict = openResources.size() + 1 - maxOpenResources;
+            Iterator<ScheduledResource> it = openResources.keySet().iterator();
+            while (toEvict > 0 && it.hasNext()) {
+                ScheduledResource candidate = it.next();
+                if (candidate != resource && candidate.isIdle()) {
+                    evicted.add(candidate);
+                    toEvict--;
+                }
+            }
+            openResources.put(resource, Boolean.TRUE);
+            schedule(resource);
+            if (executor == null) {
+                executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "ResultSet scheduler");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+                executor.scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        tick();
+                    }
+                }, tickDuration, tickDuration, TimeUnit.MILLISECONDS);
+            }
+        }
+        // Release outside of the scheduler lock, the resource lock may be held by its owner
+        for (ScheduledResource victim : evicted) {
+            victim.tryRelease();
+        }
+    }
+
+    /**
+     * Mark the resource as the most recently used
+     * @param resource Registered resource
+     */
+    public synchronized void touch(ScheduledResource resource) {
+        openResources.get(resource);
+    }
+
+    /**
+     * Stop watching the resource, called when the resource has been released.
+     * @param resource Registered resource
+     */
+    public synchronized void unregister(ScheduledResource resource) {
+        openResources.remove(resource);
+        Integer slot = resourceSlots.remove(resource);
+        if(slot != null) {
+            wheel.get(slot).remove(resource);
+        }
+    }
+
+    /**
+     * @return Number of resources in the wheel slots
+     */
+    synchronized int getScheduledCount() {
+        int count = 0;
+        for(Set<ScheduledResource> slot : wheel) {
+            count += slot.size();
+        }
+        return count;
+    }
+
+    /**
+     * Release all idle resources without waiting for their expiration, called when the connections are lacking.
+     * @return Number of released resources
+     */
+    public int releaseIdleResources() {
+        List<ScheduledResource> idle = new ArrayList<>();
+        synchronized (this) {
+            for (ScheduledResource resource : openResources.keySet()) {
+                if (resource.isIdle()) {
+                    idle.add(resource);
+                }
+            }
+        }
+        int released = 0;
+        // Release outside of the scheduler lock, the resource lock may be held by its owner
+        for (ScheduledResource resource : idle) {
+            if (resource.tryRelease()) {
+                released++;
+            }
+        }
+        return released;
+    }
+
+    /**
+     * Move the resource in the wheel slot of its expiration. Expirations beyond the wheel span are placed in the last
+     * slot and rescheduled when this slot is reached.
+     * @param resource Registered resource
+     */
+    private void schedule(ScheduledResource resource) {
+        long delay = resource.getExpiration() - System.currentTimeMillis();
+        int ticks = (int) Math.min(WHEEL_SIZE - 1, Math.max(1, (delay + tickDuration - 1) / tickDuration));
+        int slot = (wheelCursor + ticks) % WHEEL_SIZE;
+        Integer oldSlot = resourceSlots.put(resource, slot);
+        if(oldSlot != null && oldSlot != slot) {
+            wheel.get(oldSlot).remove(resource);
+        }
+        wheel.get(slot).add(resource);
+    }
+
+    private void tick() {
+        Set<ScheduledResource> expired;
+        synchronized (this) {
+            wheelCursor = (wheelCursor + 1) % WHEEL_SIZE;
+            expired = wheel.set(wheelCursor, new HashSet<ScheduledResource>());
+            for (ScheduledResource resource : expired) {
+                resourceSlots.remove(resource);
+            }
+        }
+        long now = System.currentTimeMillis();
+        for (ScheduledResource resource : expired) {
+            try {
+                boolean released = false;
+                if (resource.getExpiration() <= now) {
+                    released = resource.tryRelease();
+                }
+                if (!released) {
+                    synchronized (this) {
+                        // Do not reschedule resources released by their owner, or already scheduled again by a
+                        // reopening
+                        if (openResources.containsKey(resource) && !resourceSlots.containsKey(resource)) {
+                            schedule(resource);
+                        }
+                    }
+                }
+            } catch (RuntimeException ex) {
+                LOGGER.error(ex.getLocalizedMessage(), ex);
+            }
+        }
+    }
+
+    /**
+     * A resource that can be released by the scheduler and reopened by its owner.
+     */
+    public interface ScheduledResource {
+        /**
+         * @return Time in ms (as {@link System#currentTimeMillis()}) after which the resource can be released
+         */
+        long getExpiration();
+
+        /**
+         * @return True if the resource is not used by its owner
+         */
+        boolean isIdle();
+
+        /**
+         * Release the resource if it is idle and not locked by another thread. The resource must unregister itself.
+         * @return True if the resource has been released
+         */
+        boolean tryRelease();
+    }
+}
@@ -70,6 +70,10 @@ public class ReversibleRowSetImpl extends ReadRowSetImpl implements ReversibleRo
     private DataManager manager;
     private TableUndoableUpdate[] updateRow = null;
     private TableUndoableInsert insertRow = null;
+    // Updates of the edit session, null if there is no edit session
+    private TableUndoableBulkUpdate.Builder editSession = null;
+    // Updates not yet written, null if the write-behind mode is disabled
+    private WriteBehindBuffer writeBehindBuffer = null;
 
 
     public ReversibleRowSetImpl(DataSource dataSource, DataManager manager) {
@@ -96,6 +100,33 @@ public class ReversibleRowSetImpl extends ReadRowSetImpl implements ReversibleRo
         initialize(location, pk_name, pm);
     }
 
+    @Override
+    public void initialize(TableLocation location, String pk_name, ProgressMonitor pm) throws SQLException {
+        super.initialize(location, pk_name, pm);
+        // Listen to structure changes, without database trigger
+        manager.addTableEditListener(getTable(), this, false);
+    }
+
+    @Override
+    public void close() throws SQLException {
+        editSession = null;
+        SQLException flushError = null;
+        try {
+            flush();
+        } catch (SQLException ex) {
+            // Close the row set anyway
+            flushError = ex;
+        }
+        writeBehindBuffer = null;
+        if(location != null) {
+            manager.removeTableEditListener(getTable(), this);
+        }
+        super.close();
+        if(flushError != null) {
+            throw flushError;
+        }
+    }
+
     @Override
     public void addTableEditListener(String table, TableEditListener listener) {
         manager.addTableEditListener(getTable(), listener);
@@ -225,6 +256,9 @@ public class ReversibleRowSetImpl extends ReadRowSetImpl implements ReversibleRo
     @Override
     public void updateObject(int i, Object o) throws SQLException {
         checkUpdate(i);
+        if(editSession != null && pk_name.equals(getColumnName(i))) {
+            throw new SQLException(I18N.tr("Can not edit primary key values in an edit session"));
+        }
         if(insertRow != null) {
             insertRow.setValue(getColumnName(i), o);
         } else {
@@ -332,6 +366,8 @@ public class ReversibleRowSetImpl extends ReadRowSetImpl implements ReversibleRo
 
     @Override
     public void insertRow() throws SQLException {
+        checkNoEditSession();
+        flush();
         if(insertRow == null) {
             throw new SQLException(I18N.tr("RowSet not moved to insert row"));
         }
@@ -348,7 +384,33 @@ public class ReversibleRowSetImpl extends ReadRowSetImpl implements ReversibleRo
         if(insertRow != null) {
             throw new SQLException("On insert row");
         }
-        if(updateRow != null) {
+        if(updateRow != null && editSession != null) {
+            // Keep the updates until the end of the edit session, the cached row shows the new values
+            checkCurrentRow();
+            for(int updateColumn = 0; updateColumn < updateRow.length; updateColumn++) {
+                TableUndoableUpdate update = updateRow[updateColumn];
+                if(update != null) {
+                    editSession.add(updateColumn, update.getColumnName(), update.getRowIdentifier(),
+                            update.getOldValue(), update.getNewValue());
+                    currentRow.batch.set(updateColumn, currentRow.index, update.getNewValue());
+                }
+            }
+            updateRow = null;
+        } else if(updateRow != null && writeBehindBuffer != null &&
+                updateRow[cachedColumnNames.get(pk_name) - 1] == null) {
+            // Update the cached row now, the database is updated later
+            checkCurrentRow();
+            for(int updateColumn = 0; updateColumn < updateRow.length; updateColumn++) {
+                TableUndoableUpdate update = updateRow[updateColumn];
+                if(update != null) {
+                    writeBehindBuffer.add(update.getRowIdentifier(), updateColumn, update.getColumnName(),
+                            update.getOldValue(), update.getNewValue());
+                    currentRow.batch.set(updateColumn, currentRow.index, update.getNewValue());
+                }
+            }
+            updateRow = null;
+        } else if(updateRow != null) {
+            flush();
             int pkColumnId = cachedColumnNames.get(pk_name);
             for(int updateColumn = 0; updateColumn < updateRow.length; updateColumn++) {
                 TableUndoableUpdate update = updateRow[updateColumn];
@@ -367,9 +429,9 @@ public class ReversibleRowSetImpl extends ReadRowSetImpl implements ReversibleRo
                         getPk() , TableModelEvent.DELETE));
             } else {
                 updateRow = null;
-                cache.remove(rowId);
+                removeCachedRow(rowId);
                 currentRow = null;
-                currentBatch.clear();
+                currentBatch = null;
                 currentBatchId = -1;
             }
         }
@@ -377,10 +439,12 @@ public class ReversibleRowSetImpl extends ReadRowSetImpl implements ReversibleRo
 
     @Override
     public void deleteRow() throws SQLException {
+        checkNoEditSession();
+        flush();
         checkCurrentRow();
         TableUndoableDelete deleteEvt = new TableUndoableDelete(manager, location, pk_name, isH2);
-        for(int idColumn = 0; idColumn < currentRow.row.length; idColumn++) {
-            deleteEvt.setValue(getColumnLabel(idColumn + 1), currentRow.row[idColumn]);
+        for(int idColumn = 0; idColumn < currentRow.getColumnCount(); idColumn++) {
+            deleteEvt.setValue(getColumnLabel(idColumn + 1), currentRow.getObject(idColumn));
         }
         deleteEvt.redo(false);
         cachedRowCount--;
@@ -397,6 +461,7 @@ public class ReversibleRowSetImpl extends ReadRowSetImpl implements ReversibleRo
 
     @Override
     public void moveToInsertRow() throws SQLException {
+        checkNoEditSession();
         insertRow = new TableUndoableInsert(manager, location, pk_name, isH2);
     }
 
@@ -631,6 +696,87 @@ public class ReversibleRowSetImpl extends ReadRowSetImpl implements ReversibleRo
         updateObject(getFirstGeometryFieldIndex(), geometry);
     }
 
+    @Override
+    public void beginEdit() throws SQLException {
+        checkNoEditSession();
+        checkUpdate(0);
+        flush();
+        editSession = new TableUndoableBulkUpdate.Builder(manager, isH2, location, pk_name);
+    }
+
+    @Override
+    public void commitEdit() throws SQLException {
+        if(editSession == null) {
+            throw new SQLException(I18N.tr("No edit session has been started"));
+        }
+        TableUndoableBulkUpdate bulkUpdate = editSession.build();
+        if(bulkUpdate != null) {
+            // On failure the session is kept, it can be committed again or canceled
+            bulkUpdate.redo(false);
+        }
+        editSession = null;
+        if(bulkUpdate != null) {
+            manager.fireTableEditHappened(bulkUpdate.createEvent());
+        }
+    }
+
+    @Override
+    public void cancelEdit() {
+        editSession = null;
+        // The cached rows hold the values of the session
+        currentRow = null;
+        rowCache.removeOwner(cacheOwner);
+        currentBatch = null;
+        currentBatchId = -1;
+    }
+
+    @Override
+    public boolean isEditSessionStarted() {
+        return editSession != null;
+    }
+
+    @Override
+    public void setWriteBehind(boolean writeBehind) throws SQLException {
+        if(writeBehind && writeBehindBuffer == null) {
+            checkUpdate(0);
+            writeBehindBuffer = new WriteBehindBuffer(manager, isH2, location, pk_name);
+        } else if(!writeBehind && writeBehindBuffer != null) {
+            try {
+                flush();
+            } finally {
+                writeBehindBuffer = null;
+            }
+        }
+    }
+
+    @Override
+    public boolean isWriteBehind() {
+        return writeBehindBuffer != null;
+    }
+
+    @Override
+    public void flush() throws SQLException {
+        if(writeBehindBuffer != null) {
+            writeBehindBuffer.flush();
+        }
+    }
+
+    @Override
+    protected void applyPendingUpdates(ColumnarBatch batch) {
+        if(writeBehindBuffer != null) {
+            writeBehindBuffer.apply(batch);
+        }
+        if(editSession != null) {
+            editSession.apply(batch);
+        }
+    }
+
+    private void checkNoEditSession() throws SQLException {
+        if(editSession != null) {
+            throw new SQLException(I18N.tr("Not available in an edit session"));
+        }
+    }
+
     @Override
     public void rollback() throws SQLException {
         throw new UnsupportedOperationException("Autocommit is on");
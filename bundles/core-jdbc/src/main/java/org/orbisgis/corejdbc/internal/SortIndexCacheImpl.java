@@ -0,0 +1,397 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import org.h2gis.utilities.JDBCUtilities;
+import org.h2gis.utilities.TableLocation;
+import org.orbisgis.commons.progress.ProgressMonitor;
+import org.orbisgis.corejdbc.DataManager;
+import org.orbisgis.corejdbc.MetaData;
+import org.orbisgis.corejdbc.ReadRowSet;
+import org.orbisgis.corejdbc.ReadTable;
+import org.orbisgis.corejdbc.SortIndexCache;
+import org.orbisgis.corejdbc.TableEditEvent;
+import org.orbisgis.corejdbc.TableEditListener;
+import org.orbisgis.corejdbc.common.IntegerArrayView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Sorted row indexes kept in memory and saved in the workspace. Saved indexes are read through a memory mapped
+ * buffer. An index is valid while the row count and the modification stamp of the table do not change, the indexes
+ * of a table are also dropped on {@link TableEditEvent}. The modification stamp does not survive a database restart,
+ * then the saved indexes are only reused in the session that wrote them, the files of the previous sessions are
+ * deleted when the folder is set.
+ */
+public class SortIndexCacheImpl implements SortIndexCache, TableEditListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SortIndexCacheImpl.class);
+    private static final int FILE_VERSION = 1;
+    private static final String SORT_INDEX_FILE_EXTENSION = ".sort";
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+    /** Maximum number of row indexes kept in memory, all indexes included */
+    private static final long MAX_MEMORY_ROWS = 1 << 23;
+    private final DataManager dataManager;
+    private File folder;
+    private final LinkedHashMap<String, SortIndex> memoryIndex = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryRows = 0;
+    // Incremented on each invalidation, an index computed before an invalidation is not kept
+    private long generation = 0;
+    private final Set<String> listenedTables = new HashSet<>();
+    // Tables modified since their saved indexes have been written, the files are deleted on the next sort
+    private final Set<String> staleTables = new HashSet<>();
+    // Identifier of this session, written in the saved indexes
+    private final String session = UUID.randomUUID().toString();
+
+    /**
+     * @param dataManager Used to listen the modifications of the sorted tables
+     */
+    public SortIndexCacheImpl(DataManager dataManager) {
+        this.dataManager = dataManager;
+    }
+
+    /**
+     * @param folder Folder where the sorted indexes are saved, null to keep them only in memory
+     */
+    public void setFolder(File folder) {
+        synchronized (this) {
+            this.folder = folder;
+            staleTables.clear();
+        }
+        if(folder != null) {
+            // Indexes of the previous sessions cannot be checked
+            deleteFiles(folder, "");
+        }
+    }
+
+    @Override
+    public Collection<Integer> getSortedColumnRowIndex(Connection connection, ReadRowSet originalOrder, String table,
+                                                       String originalColumnName, boolean ascending,
+                                                       ProgressMonitor progressMonitor) throws SQLException {
+        final String tableKey = getTableKey(table);
+        final String key = tableKey + "|" + originalColumnName + "|" + (ascending ? "ASC" : "DESC");
+        final String fileKey = key + "|" + session;
+        listen(table, tableKey);
+        long startGeneration;
+        File indexFolder;
+        boolean stale;
+        synchronized (this) {
+            startGeneration = generation;
+            indexFolder = folder;
+            stale = staleTables.remove(tableKey);
+        }
+        if(stale && indexFolder != null) {
+            deleteFiles(indexFolder, getTablePrefix(tableKey));
+        }
+        long stamp = readStamp(connection, table);
+        File file = indexFolder == null ? null : getFile(indexFolder, tableKey, key, stamp);
+        int[] rows = null;
+        synchronized (this) {
+            SortIndex index = memoryIndex.get(key);
+            if(index != null && index.stamp == stamp) {
+                rows = index.rows;
+            }
+        }
+        if(rows == null && file != null) {
+            try {
+                rows = read(file, fileKey, stamp);
+            } catch (IOException ex) {
+                LOGGER.debug(ex.getLocalizedMessage(), ex);
+            }
+            if(rows != null) {
+                keep(key, new SortIndex(stamp, rows), startGeneration);
+            }
+        }
+        if(rows != null) {
+            return new IntegerArrayView(rows);
+        }
+        Collection<Integer> sortedRows = ReadTable.getSortedColumnRowIndex(connection, originalOrder, table,
+                originalColumnName, ascending, progressMonitor);
+        if(progressMonitor.isCancelled()) {
+            return sortedRows;
+        }
+        if(sortedRows instanceof IntegerArrayView) {
+            rows = ((IntegerArrayView) sortedRows).toIntArray();
+        } else {
+            rows = new int[sortedRows.size()];
+            int i = 0;
+            for(int row : sortedRows) {
+                rows[i++] = row;
+            }
+        }
+        if(keep(key, new SortIndex(stamp, rows), startGeneration) && file != null) {
+            try {
+                deleteFiles(indexFolder, getFilePrefix(tableKey, key));
+                write(file, fileKey, stamp, rows);
+            } catch (IOException ex) {
+                LOGGER.debug(ex.getLocalizedMessage(), ex);
+            }
+        }
+        return sortedRows;
+    }
+
+    @Override
+    public void invalidate(String table) {
+        String tableKey = getTableKey(table);
+        File indexFolder;
+        synchronized (this) {
+            removeMemoryIndexes(tableKey);
+            staleTables.remove(tableKey);
+            indexFolder = folder;
+        }
+        if(indexFolder != null) {
+            deleteFiles(indexFolder, getTablePrefix(tableKey));
+        }
+    }
+
+    /**
+     * Drop the indexes of the table kept in memory
+     * @param tableKey Table identifier
+     */
+    private void removeMemoryIndexes(String tableKey) {
+        generation++;
+        Iterator<Map.Entry<String, SortIndex>> it = memoryIndex.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, SortIndex> entry = it.next();
+            if(entry.getKey().startsWith(tableKey + "|")) {
+                memoryRows -= entry.getValue().rows.length;
+                it.remove();
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        File indexFolder;
+        synchronized (this) {
+            generation++;
+            memoryIndex.clear();
+            memoryRows = 0;
+            staleTables.clear();
+            indexFolder = folder;
+        }
+        if(indexFolder != null) {
+            deleteFiles(indexFolder, "");
+        }
+    }
+
+    /**
+     * Called on the event delivery thread, the saved indexes are deleted on the next sort of the table.
+     * @param event Table edit event
+     */
+    @Override
+    public synchronized void tableChange(TableEditEvent event) {
+        String tableKey = getTableKey(event.getTableName());
+        removeMemoryIndexes(tableKey);
+        staleTables.add(tableKey);
+    }
+
+    private void listen(String table, String tableKey) {
+        synchronized (this) {
+            if(!listenedTables.add(tableKey)) {
+                return;
+            }
+        }
+        // Modifications made outside the row sets are detected by the modification stamp, a trigger would slow
+        // down all the following modifications of the table
+        dataManager.addTableEditListener(table, this, false);
+    }
+
+    /**
+     * Keep an index in memory, the least recently used indexes are removed to stay under {@link #MAX_MEMORY_ROWS}.
+     * @return False if the table has been modified since the index computation started
+     */
+    private synchronized boolean keep(String key, SortIndex index, long startGeneration) {
+        if(generation != startGeneration) {
+            return false;
+        }
+        SortIndex old = memoryIndex.put(key, index);
+        memoryRows += index.rows.length - (old == null ? 0 : old.rows.length);
+        Iterator<SortIndex> it = memoryIndex.values().iterator();
+        while (memoryRows > MAX_MEMORY_ROWS && it.hasNext()) {
+            SortIndex eldest = it.next();
+            if(eldest != index) {
+                memoryRows -= eldest.rows.length;
+                it.remove();
+            }
+        }
+        return true;
+    }
+
+    private static String getTableKey(String table) {
+        return TableLocation.parse(table, true).toString(true);
+    }
+
+    private static String getTablePrefix(String tableKey) {
+        return Integer.toHexString(tableKey.hashCode()) + "_";
+    }
+
+    private static String getFilePrefix(String tableKey, String key) {
+        return getTablePrefix(tableKey) + Integer.toHexString(key.hashCode()) + "_";
+    }
+
+    private static File getFile(File folder, String tableKey, String key, long stamp) {
+        return new File(folder, getFilePrefix(tableKey, key) + Long.toHexString(stamp) + SORT_INDEX_FILE_EXTENSION);
+    }
+
+    /**
+     * @return Row count and modification stamp of the table
+     */
+    private static long readStamp(Connection connection, String table) throws SQLException {
+        TableLocation location = TableLocation.parse(table, JDBCUtilities.isH2DataBase(connection.getMetaData()));
+        long rowCount = 0;
+        try(Statement st = connection.createStatement();
+            ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + location)) {
+            if(rs.next()) {
+                rowCount = rs.getLong(1);
+            }
+        }
+        return rowCount * 31 + MetaData.getTableModificationStamp(connection, location);
+    }
+
+    /**
+     * Delete the saved indexes, a file that cannot be deleted (still mapped) is deleted on exit.
+     * @param folder Index folder
+     * @param prefix File name prefix
+     */
+    private static void deleteFiles(File folder, final String prefix) {
+        File[] files = folder.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.getName().startsWith(prefix) && file.getName().endsWith(SORT_INDEX_FILE_EXTENSION);
+            }
+        });
+        if(files != null) {
+            for(File file : files) {
+                if(!file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+        }
+    }
+
+    /**
+     * Save a sorted index
+     * @param file Destination file
+     * @param key Identifier of the table, column and order
+     * @param stamp Row count and modification stamp of the table
+     * @param rows Row numbers in the sort order
+     * @throws IOException
+     */
+    static void write(File file, String key, long stamp, int[] rows) throws IOException {
+        File parent = file.getParentFile();
+        if(parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create folder " + parent);
+        }
+        try(RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(0);
+            out.writeInt(FILE_VERSION);
+            out.writeUTF(key);
+            out.writeLong(stamp);
+            out.writeInt(rows.length);
+            FileChannel channel = out.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+            IntBuffer intBuffer = buffer.asIntBuffer();
+            for(int offset = 0; offset < rows.length; offset += intBuffer.capacity()) {
+                int length = Math.min(intBuffer.capacity(), rows.length - offset);
+                intBuffer.clear();
+                intBuffer.put(rows, offset, length);
+                buffer.clear();
+                buffer.limit(length * 4);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Load an index saved by {@link #write(File, String, long, int[])}
+     * @param file Index file
+     * @param key Identifier of the table, column and order
+     * @param stamp Row count and modification stamp of the table
+     * @return Row numbers in the sort order or null if the file does not exists, is not complete or does not match
+     * the key and stamp
+     * @throws IOException
+     */
+    static int[] read(File file, String key, long stamp) throws IOException {
+        if(!file.exists()) {
+            return null;
+        }
+        try(RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            if(in.readInt() != FILE_VERSION || !key.equals(in.readUTF()) || in.readLong() != stamp) {
+                return null;
+            }
+            int count = in.readInt();
+            long offset = in.getFilePointer();
+            if(count < 0 || offset + count * 4L > in.length()) {
+                return null;
+            }
+            int[] rows = new int[count];
+            in.getChannel().map(FileChannel.MapMode.READ_ONLY, offset, count * 4L).asIntBuffer().get(rows);
+            return rows;
+        }
+    }
+
+    private static class SortIndex {
+        private final long stamp;
+        private final int[] rows;
+
+        private SortIndex(long stamp, int[] rows) {
+            this.stamp = stamp;
+            this.rows = rows;
+        }
+    }
+}
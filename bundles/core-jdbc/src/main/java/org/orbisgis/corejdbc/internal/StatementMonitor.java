@@ -0,0 +1,344 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import org.orbisgis.corejdbc.StatementMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Pattern;
+
+/**
+ * Collect the execution time, fetched rows and read bytes of the statements issued through a {@link ConnectionPool},
+ * aggregated by SQL template. Statements slower than a threshold are appended to a log file.
+ */
+public class StatementMonitor {
+    /** Default execution time in milliseconds above which a statement is written in the slow query log */
+    public static final long DEFAULT_SLOW_QUERY_THRESHOLD = 1000;
+    // Further templates are aggregated in a single entry
+    private static final int MAX_TEMPLATES = 2000;
+    private static final int MAX_TEMPLATE_LENGTH = 2000;
+    private static final String OTHER_TEMPLATE = "...";
+    private static final Pattern VALUE_LIST = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+    // Frames of the instrumentation or of the JDBC wrappers, skipped when looking for the call site
+    private static final String[] SKIPPED_PACKAGES = new String[]{"java.", "javax.", "sun.", "com.sun.", "jdk.",
+            "org.h2gis.utilities."};
+    private static final String[] SKIPPED_CLASSES = new String[]{StatementMonitor.class.getName(),
+            PooledConnection.class.getName(), ConnectionPool.class.getName()};
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatementMonitor.class);
+    private final ConcurrentHashMap<String, Recorder> recorders = new ConcurrentHashMap<>();
+    private volatile boolean enabled = true;
+    // Nanoseconds, 0 to disable the slow query log
+    private volatile long slowQueryThreshold = DEFAULT_SLOW_QUERY_THRESHOLD * 1000000;
+    // Following fields are guarded by this
+    private File slowQueryLog;
+    private Writer slowQueryWriter;
+
+    /**
+     * @param enabled False to stop collecting metrics
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return True if the metrics are collected
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param milliseconds Execution time above which a statement is written in the slow query log, 0 to disable
+     */
+    public void setSlowQueryThreshold(long milliseconds) {
+        slowQueryThreshold = Math.max(0, milliseconds) * 1000000;
+    }
+
+    /**
+     * @param file File where the slow statements are appended, null to disable
+     */
+    public synchronized void setSlowQueryLog(File file) {
+        closeSlowQueryWriter();
+        slowQueryLog = file;
+    }
+
+    /**
+     * Close the slow query log file
+     */
+    public synchronized void close() {
+        closeSlowQueryWriter();
+    }
+
+    private void closeSlowQueryWriter() {
+        if(slowQueryWriter != null) {
+            try {
+                slowQueryWriter.close();
+            } catch (IOException ex) {
+                LOGGER.debug(ex.getLocalizedMessage(), ex);
+            }
+            slowQueryWriter = null;
+        }
+    }
+
+    /**
+     * Replace the literal values of a query by ?, and the lists of values by a single ?.
+     * @param sql SQL query
+     * @return Query template
+     */
+    public static String toTemplate(String sql) {
+        StringBuilder template = new StringBuilder(Math.min(sql.length(), MAX_TEMPLATE_LENGTH));
+        int length = sql.length();
+        int i = 0;
+        while(i < length && template.length() < MAX_TEMPLATE_LENGTH) {
+            char c = sql.charAt(i);
+            if(c == '\'') {
+                // String literal, '' is an escaped quote
+                i++;
+                while(i < length) {
+                    if(sql.charAt(i) == '\'') {
+                        if(i + 1 < length && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                template.append('?');
+                i++;
+            } else if(c == '"') {
+                // Quoted identifier, kept as is
+                int end = sql.indexOf('"', i + 1);
+                end = end < 0 ? length : end + 1;
+                template.append(sql, i, end);
+                i = end;
+            } else if(Character.isDigit(c) && (template.length() == 0 ||
+                    !isIdentifierPart(template.charAt(template.length() - 1)))) {
+                while(i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                template.append('?');
+            } else if(Character.isWhitespace(c)) {
+                while(i < length && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                if(template.length() > 0 && i < length) {
+                    template.append(' ');
+                }
+            } else {
+                template.append(c);
+                i++;
+            }
+        }
+        return VALUE_LIST.matcher(template).replaceAll("?");
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    /**
+     * @param sql SQL query
+     * @return The recorder of the query template
+     */
+    public Recorder getRecorder(String sql) {
+        String template = toTemplate(sql);
+        Recorder recorder = recorders.get(template);
+        if(recorder == null) {
+            if(recorders.size() >= MAX_TEMPLATES) {
+                template = OTHER_TEMPLATE;
+            }
+            Recorder newRecorder = new Recorder(template);
+            recorder = recorders.putIfAbsent(template, newRecorder);
+            if(recorder == null) {
+                recorder = newRecorder;
+            }
+        }
+        return recorder;
+    }
+
+    /**
+     * @return Metrics of all templates, the most time consuming first
+     */
+    public List<StatementMetrics> getMetrics() {
+        List<StatementMetrics> metrics = new ArrayList<>(recorders.size());
+        for(Recorder recorder : recorders.values()) {
+            metrics.add(recorder.getMetrics());
+        }
+        Collections.sort(metrics, new Comparator<StatementMetrics>() {
+            @Override
+            public int compare(StatementMetrics o1, StatementMetrics o2) {
+                return Double.compare(o2.getTotalTime(), o1.getTotalTime());
+            }
+        });
+        return metrics;
+    }
+
+    /**
+     * Forget the collected metrics
+     */
+    public void reset() {
+        recorders.clear();
+    }
+
+    /**
+     * @return Class, method and line of the first frame that does not belong to the JDBC layers
+     */
+    static String findCallSite() {
+        for(StackTraceElement frame : new Throwable().getStackTrace()) {
+            String className = frame.getClassName();
+            boolean skip = className.contains("$Proxy");
+            for(int i = 0; !skip && i < SKIPPED_PACKAGES.length; i++) {
+                skip = className.startsWith(SKIPPED_PACKAGES[i]);
+            }
+            for(int i = 0; !skip && i < SKIPPED_CLASSES.length; i++) {
+                // Including the inner classes
+                skip = className.equals(SKIPPED_CLASSES[i]) || className.startsWith(SKIPPED_CLASSES[i] + "$");
+            }
+            if(!skip) {
+                return frame.toString();
+            }
+        }
+        return "";
+    }
+
+    private synchronized void logSlowQuery(Recorder recorder, long nanoseconds) {
+        if(slowQueryLog == null) {
+            return;
+        }
+        try {
+            if(slowQueryWriter == null) {
+                File parent = slowQueryLog.getParentFile();
+                if(parent != null && !parent.exists() && !parent.mkdirs()) {
+                    throw new IOException("Cannot create folder " + parent);
+                }
+                slowQueryWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(slowQueryLog, true),
+                        "UTF-8"));
+            }
+            slowQueryWriter.write(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS").format(new Date()) + "\t" +
+                    String.format("%.3f", nanoseconds / 1e6) + " ms\t" + findCallSite() + "\t" + recorder.template +
+                    System.getProperty("line.separator"));
+            slowQueryWriter.flush();
+        } catch (IOException ex) {
+            LOGGER.warn(ex.getLocalizedMessage(), ex);
+            closeSlowQueryWriter();
+            slowQueryLog = null;
+        }
+    }
+
+    /**
+     * Counters of a query template, updated concurrently by the statements
+     */
+    public class Recorder {
+        private final String template;
+        private volatile String callSite;
+        private final AtomicLong executionCount = new AtomicLong();
+        private final AtomicLong errorCount = new AtomicLong();
+        private final AtomicLong totalTime = new AtomicLong();
+        private final AtomicLong maxTime = new AtomicLong();
+        private final AtomicLong rowCount = new AtomicLong();
+        private final AtomicLong bytesRead = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(StatementMetrics.HISTOGRAM_SIZE);
+
+        private Recorder(String template) {
+            this.template = template;
+        }
+
+        /**
+         * @param nanoseconds Execution time
+         * @param failed True if the execution threw an exception
+         */
+        public void record(long nanoseconds, boolean failed) {
+            if(callSite == null) {
+                callSite = findCallSite();
+            }
+            executionCount.incrementAndGet();
+            if(failed) {
+                errorCount.incrementAndGet();
+            }
+            totalTime.addAndGet(nanoseconds);
+            long max = maxTime.get();
+            while(nanoseconds > max && !maxTime.compareAndSet(max, nanoseconds)) {
+                max = maxTime.get();
+            }
+            histogram.incrementAndGet(StatementMetrics.getBucket(nanoseconds));
+            long threshold = slowQueryThreshold;
+            if(threshold > 0 && nanoseconds >= threshold) {
+                logSlowQuery(this, nanoseconds);
+            }
+        }
+
+        /**
+         * A row has been fetched
+         */
+        public void addRow() {
+            rowCount.incrementAndGet();
+        }
+
+        /**
+         * @param bytes Size of a binary value read from a result set
+         */
+        public void addBytes(long bytes) {
+            bytesRead.addAndGet(bytes);
+        }
+
+        private StatementMetrics getMetrics() {
+            long[] buckets = new long[histogram.length()];
+            for(int bucket = 0; bucket < buckets.length; bucket++) {
+                buckets[bucket] = histogram.get(bucket);
+            }
+            return new StatementMetrics(template, callSite, executionCount.get(), errorCount.get(), totalTime.get(),
+                    maxTime.get(), rowCount.get(), bytesRead.get(), buckets);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Share identical strings between cached rows. The number and the length of the stored strings are bounded, once the
+ * dictionary is full new strings are returned as is.
+ */
+public class StringDictionary {
+    public static final int DEFAULT_MAX_ENTRIES = 65536;
+    public static final int DEFAULT_MAX_LENGTH = 128;
+    private final int maxEntries;
+    private final int maxLength;
+    private final Map<String, String> entries = new HashMap<>();
+
+    public StringDictionary() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * @param maxEntries Maximum number of distinct strings
+     * @param maxLength Longer strings are not shared
+     */
+    public StringDictionary(int maxEntries, int maxLength) {
+        this.maxEntries = maxEntries;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * @param value String value
+     * @return The shared instance equal to value
+     */
+    public synchronized String canonicalize(String value) {
+        if(value.length() > maxLength) {
+            return value;
+        }
+        String shared = entries.get(value);
+        if(shared != null) {
+            return shared;
+        }
+        if(entries.size() < maxEntries) {
+            entries.put(value, value);
+        }
+        return value;
+    }
+
+    /**
+     * @return Number of distinct strings
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Remove all shared strings
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+}
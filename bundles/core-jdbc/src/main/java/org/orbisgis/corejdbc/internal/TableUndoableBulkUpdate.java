@@ -0,0 +1,424 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import org.h2gis.utilities.TableLocation;
+import org.orbisgis.corejdbc.DataManager;
+import org.orbisgis.corejdbc.TableEditEvent;
+import org.orbisgis.corejdbc.TableUndoableEdit;
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nFactory;
+
+import javax.swing.event.TableModelEvent;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Updates done in an edit session of {@link org.orbisgis.corejdbc.ReversibleRowSet}. The old and new values are
+ * stored by column, sorted by primary key. Consecutive primary keys that share the same value are updated with a
+ * single statement, all the statements are run in one transaction.
+ */
+public class TableUndoableBulkUpdate implements TableUndoableEdit {
+    public static final String EDIT_IDENTIFIER = "BULK_UPDATE";
+    private static final I18n I18N = I18nFactory.getI18n(TableUndoableBulkUpdate.class);
+    // Statements are sent to the database by batch of this size
+    private static final int BATCH_SIZE = 1000;
+    private final DataManager dataManager;
+    private final boolean isH2;
+    private final TableLocation tableLocation;
+    private final String pkName;
+    private final List<ColumnUpdate> columns;
+    private final long firstPk;
+    private final long lastPk;
+
+    private TableUndoableBulkUpdate(DataManager dataManager, boolean isH2, TableLocation tableLocation, String pkName,
+                                    List<ColumnUpdate> columns) {
+        this.dataManager = dataManager;
+        this.isH2 = isH2;
+        this.tableLocation = tableLocation;
+        this.pkName = pkName;
+        this.columns = columns;
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        for(ColumnUpdate column : columns) {
+            first = Math.min(first, column.pk[0]);
+            last = Math.max(last, column.pk[column.pk.length - 1]);
+        }
+        this.firstPk = first;
+        this.lastPk = last;
+    }
+
+    /**
+     * @return Number of updated values
+     */
+    public int getUpdateCount() {
+        int count = 0;
+        for(ColumnUpdate column : columns) {
+            count += column.pk.length;
+        }
+        return count;
+    }
+
+    /**
+     * @return Name of the updated columns
+     */
+    public List<String> getColumnNames() {
+        List<String> columnNames = new ArrayList<>(columns.size());
+        for(ColumnUpdate column : columns) {
+            columnNames.add(column.columnName);
+        }
+        return columnNames;
+    }
+
+    @Override
+    public void undo() throws SQLException {
+        undo(true);
+    }
+
+    public void undo(boolean callListeners) throws SQLException {
+        doUpdate(false, callListeners);
+    }
+
+    @Override
+    public boolean canUndo() {
+        return true;
+    }
+
+    @Override
+    public void redo() throws SQLException {
+        redo(true);
+    }
+
+    public void redo(boolean callListeners) throws SQLException {
+        doUpdate(true, callListeners);
+    }
+
+    @Override
+    public boolean canRedo() {
+        return true;
+    }
+
+    private void doUpdate(boolean newValues, boolean callListeners) throws SQLException {
+        try(Connection connection = dataManager.getDataSource().getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                for(ColumnUpdate column : columns) {
+                    updateColumn(connection, column, newValues ? column.newValues : column.oldValues);
+                }
+                connection.commit();
+            } catch (SQLException ex) {
+                connection.rollback();
+                throw ex;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+        if(callListeners) {
+            dataManager.fireTableEditHappened(createEvent());
+        }
+    }
+
+    /**
+     * @return The event of this edit, a single event for all the updated rows
+     */
+    TableEditEvent createEvent() {
+        int column = columns.size() == 1 ? columns.get(0).columnIndex : TableModelEvent.ALL_COLUMNS;
+        return new TableEditEvent(tableLocation.toString(isH2), this, column, firstPk, lastPk, TableModelEvent.UPDATE);
+    }
+
+    private void updateColumn(Connection connection, ColumnUpdate column, Object[] values) throws SQLException {
+        String update = "UPDATE " + tableLocation.toString(isH2) + " SET " +
+                TableLocation.quoteIdentifier(column.columnName, isH2) + " = ? WHERE " + pkName;
+        try(PreparedStatement rowSt = connection.prepareStatement(update + " = ?");
+            PreparedStatement rangeSt = connection.prepareStatement(update + " BETWEEN ? AND ?")) {
+            int rowBatch = 0;
+            int rangeBatch = 0;
+            int runStart = 0;
+            while(runStart < column.pk.length) {
+                int runEnd = nextRun(column.pk, values, runStart);
+                if(runEnd - runStart == 1) {
+                    rowSt.setObject(1, values[runStart]);
+                    rowSt.setLong(2, column.pk[runStart]);
+                    rowSt.addBatch();
+                    if(++rowBatch == BATCH_SIZE) {
+                        rowSt.executeBatch();
+                        rowBatch = 0;
+                    }
+                } else {
+                    rangeSt.setObject(1, values[runStart]);
+                    rangeSt.setLong(2, column.pk[runStart]);
+                    rangeSt.setLong(3, column.pk[runEnd - 1]);
+                    rangeSt.addBatch();
+                    if(++rangeBatch == BATCH_SIZE) {
+                        rangeSt.executeBatch();
+                        rangeBatch = 0;
+                    }
+                }
+                runStart = runEnd;
+            }
+            if(rowBatch > 0) {
+                rowSt.executeBatch();
+            }
+            if(rangeBatch > 0) {
+                rangeSt.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Find the end of a run of consecutive primary keys that share the same value.
+     * @param pk Sorted primary keys, without duplicates
+     * @param values Values of each primary key
+     * @param start Run first index
+     * @return Run last index, exclusive
+     */
+    static int nextRun(long[] pk, Object[] values, int start) {
+        int end = start + 1;
+        while(end < pk.length && pk[end] == pk[end - 1] + 1 && Objects.equals(values[end], values[start])) {
+            end++;
+        }
+        return end;
+    }
+
+    @Override
+    public void die() {
+
+    }
+
+    @Override
+    public boolean isSignificant() {
+        return true;
+    }
+
+    @Override
+    public String getEditIdentifier() {
+        return EDIT_IDENTIFIER;
+    }
+
+    @Override
+    public String getPresentationName() {
+        return I18N.tr("Update of {0} values", getUpdateCount());
+    }
+
+    @Override
+    public String getUndoPresentationName() {
+        return I18N.tr("Revert the update of {0} values", getUpdateCount());
+    }
+
+    @Override
+    public String getRedoPresentationName() {
+        return I18N.tr("Redo the update of {0} values", getUpdateCount());
+    }
+
+    /**
+     * Values of a column, sorted by primary key
+     */
+    private static class ColumnUpdate {
+        private final String columnName;
+        private final int columnIndex;
+        private final long[] pk;
+        private final Object[] oldValues;
+        private final Object[] newValues;
+
+        private ColumnUpdate(String columnName, int columnIndex, long[] pk, Object[] oldValues, Object[] newValues) {
+            this.columnName = columnName;
+            this.columnIndex = columnIndex;
+            this.pk = pk;
+            this.oldValues = oldValues;
+            this.newValues = newValues;
+        }
+    }
+
+    /**
+     * Collect the updates of an edit session. When a value is updated several times, the first old value and the
+     * last new value are kept.
+     */
+    static class Builder {
+        private final DataManager dataManager;
+        private final boolean isH2;
+        private final TableLocation tableLocation;
+        private final String pkName;
+        private final Map<Integer, ColumnBuffer> columns = new LinkedHashMap<>();
+        // Last new value of the updated cells, by primary key and column index
+        private final Map<Long, Map<Integer, Object>> rows = new HashMap<>();
+
+        Builder(DataManager dataManager, boolean isH2, TableLocation tableLocation, String pkName) {
+            this.dataManager = dataManager;
+            this.isH2 = isH2;
+            this.tableLocation = tableLocation;
+            this.pkName = pkName;
+        }
+
+        /**
+         * @param columnIndex Column index, starting at 0
+         * @param columnName Column name
+         * @param pk Primary key value of the row
+         * @param oldValue Value before the update
+         * @param newValue Value after the update
+         */
+        void add(int columnIndex, String columnName, long pk, Object oldValue, Object newValue) {
+            ColumnBuffer buffer = columns.get(columnIndex);
+            if(buffer == null) {
+                buffer = new ColumnBuffer(columnName);
+                columns.put(columnIndex, buffer);
+            }
+            buffer.add(pk, oldValue, newValue);
+            Map<Integer, Object> row = rows.get(pk);
+            if(row == null) {
+                row = new HashMap<>();
+                rows.put(pk, row);
+            }
+            row.put(columnIndex, newValue);
+        }
+
+        /**
+         * Replace the values of the batch by the collected updates.
+         * @param batch Batch read from the database
+         */
+        void apply(ColumnarBatch batch) {
+            if(rows.isEmpty()) {
+                return;
+            }
+            for(int row = 0; row < batch.getRowCount(); row++) {
+                Long pk = batch.getPk(row);
+                Map<Integer, Object> values = pk != null ? rows.get(pk) : null;
+                if(values != null) {
+                    for(Map.Entry<Integer, Object> entry : values.entrySet()) {
+                        batch.set(entry.getKey(), row, entry.getValue());
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return The edit of the collected updates, null if there is no update
+         */
+        TableUndoableBulkUpdate build() {
+            if(columns.isEmpty()) {
+                return null;
+            }
+            List<ColumnUpdate> columnUpdates = new ArrayList<>(columns.size());
+            for(Map.Entry<Integer, ColumnBuffer> entry : columns.entrySet()) {
+                columnUpdates.add(entry.getValue().build(entry.getKey()));
+            }
+            return new TableUndoableBulkUpdate(dataManager, isH2, tableLocation, pkName, columnUpdates);
+        }
+    }
+
+    /**
+     * Updates of a column in the order of the calls
+     */
+    private static class ColumnBuffer {
+        private final String columnName;
+        private long[] pk = new long[16];
+        private Object[] oldValues = new Object[16];
+        private Object[] newValues = new Object[16];
+        private int size = 0;
+        private boolean sorted = true;
+
+        private ColumnBuffer(String columnName) {
+            this.columnName = columnName;
+        }
+
+        private void add(long rowPk, Object oldValue, Object newValue) {
+            if(size == pk.length) {
+                int capacity = size + (size >> 1);
+                pk = Arrays.copyOf(pk, capacity);
+                oldValues = Arrays.copyOf(oldValues, capacity);
+                newValues = Arrays.copyOf(newValues, capacity);
+            }
+            if(size > 0 && rowPk <= pk[size - 1]) {
+                if(rowPk == pk[size - 1]) {
+                    // Same cell updated again
+                    newValues[size - 1] = newValue;
+                    return;
+                }
+                sorted = false;
+            }
+            pk[size] = rowPk;
+            oldValues[size] = oldValue;
+            newValues[size] = newValue;
+            size++;
+        }
+
+        private ColumnUpdate build(int columnIndex) {
+            if(sorted) {
+                return new ColumnUpdate(columnName, columnIndex, Arrays.copyOf(pk, size),
+                        Arrays.copyOf(oldValues, size), Arrays.copyOf(newValues, size));
+            }
+            // Stable sort of the updates by primary key
+            Integer[] order = new Integer[size];
+            for(int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            final long[] unsortedPk = pk;
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    return Long.compare(unsortedPk[o1], unsortedPk[o2]);
+                }
+            });
+            long[] sortedPk = new long[size];
+            Object[] sortedOld = new Object[size];
+            Object[] sortedNew = new Object[size];
+            int count = 0;
+            for(int i : order) {
+                if(count > 0 && sortedPk[count - 1] == pk[i]) {
+                    // Keep the first old value and the last new value
+                    sortedNew[count - 1] = newValues[i];
+                } else {
+                    sortedPk[count] = pk[i];
+                    sortedOld[count] = oldValues[i];
+                    sortedNew[count] = newValues[i];
+                    count++;
+                }
+            }
+            return new ColumnUpdate(columnName, columnIndex, Arrays.copyOf(sortedPk, count),
+                    Arrays.copyOf(sortedOld, count), Arrays.copyOf(sortedNew, count));
+        }
+    }
+}
@@ -84,6 +84,34 @@ public class TableUndoableUpdate implements TableUndoableEdit {
         this.reversibleRowSet = reversibleRowSet;
     }
 
+    /**
+     * @return Name of the updated column
+     */
+    public String getColumnName() {
+        return columnName;
+    }
+
+    /**
+     * @return Primary key value of the updated row
+     */
+    long getRowIdentifier() {
+        return rowIdentifier;
+    }
+
+    /**
+     * @return Value before the update
+     */
+    Object getOldValue() {
+        return oldValue;
+    }
+
+    /**
+     * @return Value after the update
+     */
+    Object getNewValue() {
+        return newValue;
+    }
+
     @Override
     public void undo() throws SQLException {
         undo(true);
@@ -0,0 +1,285 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import org.orbisgis.commons.collections.twoqueue.DoubleQueueValue;
+import org.orbisgis.commons.collections.twoqueue.TwoQueueBuffer;
+import org.orbisgis.corejdbc.RowCache;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Row cache shared by all the {@link ReadRowSetImpl}. Batches of rows are kept in a {@link TwoQueueBuffer}, then a
+ * scan of a large table (rendering) stays in the first queue and does not evict the batches read several times
+ * (table editor). The buffer is bounded by the estimated size of the batches.
+ */
+public class TwoQueueRowCache implements RowCache {
+    /** Default memory budget, 1/16 of the maximum heap size and no more than 256 MB */
+    public static final long DEFAULT_MEMORY_BUDGET = Math.min(Runtime.getRuntime().maxMemory() / 16, 256L * 1024 * 1024);
+    // The buffer is bounded by memory, this is only a safety limit on the number of batches
+    private static final int MAX_BATCH_COUNT = 1 << 16;
+    private static final TwoQueueRowCache INSTANCE = new TwoQueueRowCache(DEFAULT_MEMORY_BUDGET);
+    private final AtomicLong ownerSequence = new AtomicLong();
+    private final BatchBuffer buffer = new BatchBuffer();
+    private long memoryBudget;
+    private long usedMemory = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+    // Batch being inserted, given to the buffer through reclaim
+    private BatchPrefetcher.PrefetchedBatch insertedBatch;
+    // True while batches are explicitly removed, they are not counted as evictions
+    private boolean removing = false;
+
+    /**
+     * @param memoryBudget Maximum estimated size of the cached batches in bytes
+     */
+    public TwoQueueRowCache(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * @return The cache shared by all the row sets
+     */
+    public static TwoQueueRowCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return A new identifier for a row set, used to build the keys of its batches
+     */
+    public long newOwner() {
+        return ownerSequence.incrementAndGet();
+    }
+
+    /**
+     * @param owner Row set identifier
+     * @param batchId Batch identifier in the row set
+     * @param firstPk Expected primary key of the first row of the batch, null if unknown
+     * @return The cached batch or null if it is not cached or if its first primary key is not the expected one
+     */
+    public synchronized BatchPrefetcher.PrefetchedBatch get(long owner, long batchId, Long firstPk) {
+        BatchKey key = new BatchKey(owner, batchId);
+        if(buffer.contains(key)) {
+            BatchPrefetcher.PrefetchedBatch batch = buffer.get(key);
+            if(firstPk == null || firstPk.equals(batch.firstPk)) {
+                hitCount++;
+                return batch;
+            }
+            // The rows have moved
+            remove(key);
+        }
+        missCount++;
+        return null;
+    }
+
+    /**
+     * Add or replace a batch, then evict batches in order to stay in the memory budget.
+     * @param owner Row set identifier
+     * @param batchId Batch identifier in the row set
+     * @param batch Batch content
+     */
+    public synchronized void put(long owner, long batchId, BatchPrefetcher.PrefetchedBatch batch) {
+        BatchKey key = new BatchKey(owner, batchId);
+        if(buffer.contains(key)) {
+            remove(key);
+        }
+        insertedBatch = batch;
+        try {
+            buffer.get(key);
+        } finally {
+            insertedBatch = null;
+        }
+        trim();
+    }
+
+    /**
+     * Remove a batch
+     * @param owner Row set identifier
+     * @param batchId Batch identifier in the row set
+     */
+    public synchronized void remove(long owner, long batchId) {
+        remove(new BatchKey(owner, batchId));
+    }
+
+    /**
+     * Remove all the batches of a row set
+     * @param owner Row set identifier
+     */
+    public synchronized void removeOwner(long owner) {
+        removing = true;
+        try {
+            Iterator<DoubleQueueValue<BatchKey, BatchPrefetcher.PrefetchedBatch>> it = buffer.iterator();
+            while(it.hasNext()) {
+                if(it.next().getKey().owner == owner) {
+                    it.remove();
+                }
+            }
+        } finally {
+            removing = false;
+        }
+    }
+
+    /**
+     * Remove the batches of a row set in a range of batch identifiers
+     * @param owner Row set identifier
+     * @param firstBatchId First batch identifier to remove
+     * @param lastBatchId Last batch identifier to remove, included
+     */
+    public synchronized void removeBatches(long owner, long firstBatchId, long lastBatchId) {
+        removing = true;
+        try {
+            Iterator<DoubleQueueValue<BatchKey, BatchPrefetcher.PrefetchedBatch>> it = buffer.iterator();
+            while(it.hasNext()) {
+                BatchKey key = it.next().getKey();
+                if(key.owner == owner && key.batchId >= firstBatchId && key.batchId <= lastBatchId) {
+                    it.remove();
+                }
+            }
+        } finally {
+            removing = false;
+        }
+    }
+
+    private void remove(BatchKey key) {
+        removing = true;
+        try {
+            buffer.remove(key);
+        } finally {
+            removing = false;
+        }
+    }
+
+    private void trim() {
+        while(usedMemory > memoryBudget) {
+            if(!buffer.unloadOldest()) {
+                break;
+            }
+        }
+    }
+
+    @Override
+    public synchronized long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    @Override
+    public synchronized void setMemoryBudget(long bytes) {
+        memoryBudget = bytes;
+        trim();
+    }
+
+    @Override
+    public synchronized long getUsedMemory() {
+        return usedMemory;
+    }
+
+    @Override
+    public synchronized int getBatchCount() {
+        return buffer.size();
+    }
+
+    @Override
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    @Override
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    @Override
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized void clear() {
+        buffer.clear();
+        usedMemory = 0;
+    }
+
+    /**
+     * 2Q buffer of batches, batches are only inserted by {@link #put(long, long, BatchPrefetcher.PrefetchedBatch)}
+     */
+    private class BatchBuffer extends TwoQueueBuffer<BatchKey, BatchPrefetcher.PrefetchedBatch> {
+
+        BatchBuffer() {
+            super(MAX_BATCH_COUNT);
+        }
+
+        @Override
+        protected BatchPrefetcher.PrefetchedBatch reclaim(BatchKey id) {
+            usedMemory += insertedBatch.size;
+            return insertedBatch;
+        }
+
+        @Override
+        protected void unload(BatchPrefetcher.PrefetchedBatch batch) {
+            usedMemory -= batch.size;
+            if(!removing) {
+                evictionCount++;
+            }
+        }
+    }
+
+    private static final class BatchKey {
+        final long owner;
+        final long batchId;
+
+        BatchKey(long owner, long batchId) {
+            this.owner = owner;
+            this.batchId = batchId;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if(!(other instanceof BatchKey)) {
+                return false;
+            }
+            BatchKey key = (BatchKey) other;
+            return owner == key.owner && batchId == key.batchId;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (int) (owner ^ (owner >>> 32)) + (int) (batchId ^ (batchId >>> 32));
+        }
+    }
+}
@@ -0,0 +1,489 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import com.vividsolutions.jts.geom.Geometry;
+import org.h2gis.utilities.TableLocation;
+import org.orbisgis.corejdbc.DataManager;
+import org.orbisgis.corejdbc.TableEditEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nFactory;
+
+import javax.swing.event.TableModelEvent;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Updates of a {@link ReversibleRowSetImpl} not yet written in the database. The updates are grouped by row and
+ * written in a background thread, after a delay or when too many rows are waiting.
+ *
+ * Before the write, the values of the database are compared with the values read before the update. The updates of
+ * the cells modified by another connection are not written. A failed background write is tried again with a growing
+ * delay, its error is thrown by the next {@link #flush()}.
+ */
+public class WriteBehindBuffer {
+    /** Delay in milliseconds between the first pending update and the write */
+    public static final long DEFAULT_FLUSH_DELAY = 2000;
+    /** The updates are written without delay when this number of rows are waiting */
+    public static final int DEFAULT_FLUSH_ROW_COUNT = 500;
+    /** Maximum delay in milliseconds between two attempts of a failed background write */
+    public static final long MAX_RETRY_DELAY = 60000;
+    // Number of rows checked by a single query
+    private static final int CHECK_ROW_COUNT = 250;
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindBuffer.class);
+    private static final I18n I18N = I18nFactory.getI18n(WriteBehindBuffer.class);
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ReversibleRowSet write behind");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final DataManager dataManager;
+    private final boolean isH2;
+    private final TableLocation tableLocation;
+    private final String pkName;
+    // Only one write at a time
+    private final Object flushLock = new Object();
+    // Following fields are guarded by this
+    private Map<Long, Map<Integer, PendingValue>> pending = new LinkedHashMap<>();
+    private Map<Long, Map<Integer, PendingValue>> inFlight = Collections.emptyMap();
+    private final Map<Integer, String> columnNames = new HashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+    private SQLException flushError;
+    // Delay of the next attempt after a failed background write, 0 if the last write succeeded
+    private long retryDelay = 0;
+    private long flushDelay = DEFAULT_FLUSH_DELAY;
+    private int flushRowCount = DEFAULT_FLUSH_ROW_COUNT;
+
+    /**
+     * @param dataManager Data manager, used to fire the table edit events
+     * @param isH2 True if the table is stored in a H2 database
+     * @param tableLocation Table identifier
+     * @param pkName Primary key column name
+     */
+    public WriteBehindBuffer(DataManager dataManager, boolean isH2, TableLocation tableLocation, String pkName) {
+        this.dataManager = dataManager;
+        this.isH2 = isH2;
+        this.tableLocation = tableLocation;
+        this.pkName = pkName;
+    }
+
+    /**
+     * @param flushDelay Delay in milliseconds between the first pending update and the write
+     * @param flushRowCount The updates are written without delay when this number of rows are waiting
+     */
+    public synchronized void setFlushPolicy(long flushDelay, int flushRowCount) {
+        this.flushDelay = Math.max(0, flushDelay);
+        this.flushRowCount = Math.max(1, flushRowCount);
+    }
+
+    /**
+     * Add an update. When the same cell is updated several times, the first old value is kept.
+     * @param pk Primary key value of the row
+     * @param column Column index [0-n[
+     * @param columnName Column name
+     * @param oldValue Value before the update
+     * @param newValue Value after the update
+     */
+    public synchronized void add(long pk, int column, String columnName, Object oldValue, Object newValue) {
+        columnNames.put(column, columnName);
+        Map<Integer, PendingValue> row = pending.get(pk);
+        if(row == null) {
+            row = new HashMap<>();
+            pending.put(pk, row);
+        }
+        PendingValue value = row.get(column);
+        if(value == null) {
+            row.put(column, new PendingValue(oldValue, newValue));
+        } else {
+            value.newValue = newValue;
+        }
+        if(retryDelay > 0) {
+            // The database refused the last write, do not try again before the delay
+            if(scheduledFlush == null) {
+                scheduleFlush(retryDelay);
+            }
+        } else if(pending.size() >= flushRowCount) {
+            scheduleFlush(0);
+        } else if(scheduledFlush == null) {
+            scheduleFlush(flushDelay);
+        }
+    }
+
+    /**
+     * @return True if there is no update waiting to be written
+     */
+    public synchronized boolean isEmpty() {
+        return pending.isEmpty() && inFlight.isEmpty();
+    }
+
+    /**
+     * @return Delay in milliseconds of the next attempt of a failed background write, 0 if the last write succeeded
+     */
+    synchronized long getRetryDelay() {
+        return retryDelay;
+    }
+
+    /**
+     * Replace the values of the batch by the updates not yet written.
+     * @param batch Batch read from the database
+     */
+    public synchronized void apply(ColumnarBatch batch) {
+        if(pending.isEmpty() && inFlight.isEmpty()) {
+            return;
+        }
+        for(int row = 0; row < batch.getRowCount(); row++) {
+            Long pk = batch.getPk(row);
+            if(pk != null) {
+                apply(batch, row, inFlight.get(pk));
+                apply(batch, row, pending.get(pk));
+            }
+        }
+    }
+
+    private static void apply(ColumnarBatch batch, int row, Map<Integer, PendingValue> values) {
+        if(values != null) {
+            for(Map.Entry<Integer, PendingValue> entry : values.entrySet()) {
+                batch.set(entry.getKey(), row, entry.getValue().newValue);
+            }
+        }
+    }
+
+    private void scheduleFlush(long delay) {
+        if(scheduledFlush != null) {
+            if(scheduledFlush.getDelay(TimeUnit.MILLISECONDS) <= delay) {
+                return;
+            }
+            scheduledFlush.cancel(false);
+        }
+        scheduledFlush = EXECUTOR.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    write();
+                    synchronized (WriteBehindBuffer.this) {
+                        retryDelay = 0;
+                    }
+                } catch (SQLException ex) {
+                    synchronized (WriteBehindBuffer.this) {
+                        // Thrown by the next flush, the updates not written are tried again with a growing delay
+                        flushError = ex;
+                        if(!pending.isEmpty()) {
+                            retryDelay = Math.min(MAX_RETRY_DELAY, Math.max(retryDelay * 2, Math.max(1, flushDelay)));
+                            scheduleFlush(retryDelay);
+                        }
+                    }
+                    LOGGER.error(ex.getLocalizedMessage(), ex);
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Write the pending updates now.
+     * @throws SQLException Error while writing the updates, or updates not written because of a conflict. An error
+     * of a previous background write is also thrown here.
+     */
+    public void flush() throws SQLException {
+        synchronized (this) {
+            if(scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+        }
+        write();
+        SQLException error;
+        synchronized (this) {
+            retryDelay = 0;
+            error = flushError;
+            flushError = null;
+        }
+        if(error != null) {
+            throw error;
+        }
+    }
+
+    private void write() throws SQLException {
+        synchronized (flushLock) {
+            Map<Long, Map<Integer, PendingValue>> rows;
+            Map<Integer, String> columns;
+            synchronized (this) {
+                scheduledFlush = null;
+                if(pending.isEmpty()) {
+                    return;
+                }
+                rows = pending;
+                inFlight = rows;
+                pending = new LinkedHashMap<>();
+                columns = new HashMap<>(columnNames);
+            }
+            TreeMap<Long, Set<Integer>> conflicts = null;
+            try {
+                conflicts = write(rows, columns);
+            } finally {
+                synchronized (this) {
+                    // Once the transaction is committed, the written rows and the values in conflict are dropped
+                    inFlight = Collections.emptyMap();
+                    if(conflicts == null) {
+                        // Keep the updates, the newest values are in pending
+                        for(Map.Entry<Long, Map<Integer, PendingValue>> row : rows.entrySet()) {
+                            Map<Integer, PendingValue> newRow = pending.get(row.getKey());
+                            if(newRow == null) {
+                                pending.put(row.getKey(), row.getValue());
+                            } else {
+                                for(Map.Entry<Integer, PendingValue> value : row.getValue().entrySet()) {
+                                    PendingValue newValue = newRow.get(value.getKey());
+                                    if(newValue == null) {
+                                        newRow.put(value.getKey(), value.getValue());
+                                    } else {
+                                        newValue.oldValue = value.getValue().oldValue;
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            if(!conflicts.isEmpty()) {
+                // Drop the cached values of the rows in conflict
+                dataManager.fireTableEditHappened(new TableEditEvent(tableLocation.toString(isH2),
+                        TableModelEvent.ALL_COLUMNS, conflicts.firstKey(), conflicts.lastKey(),
+                        TableModelEvent.UPDATE));
+                throw new SQLException(I18N.tr("The updates of {0} rows have not been saved, these rows have been " +
+                        "modified or deleted by another user", conflicts.size()));
+            }
+        }
+    }
+
+    /**
+     * Check the rows for conflicts and write the other rows in a single transaction.
+     * @return Updated columns of each row that have not been written because of a conflict
+     */
+    private TreeMap<Long, Set<Integer>> write(Map<Long, Map<Integer, PendingValue>> rows, Map<Integer, String> columns)
+            throws SQLException {
+        // The rows are read by apply, they are not modified here
+        TreeMap<Long, Set<Integer>> conflicts = new TreeMap<>();
+        TableUndoableBulkUpdate.Builder undo = new TableUndoableBulkUpdate.Builder(dataManager, isH2, tableLocation,
+                pkName);
+        String table = tableLocation.toString(isH2);
+        try(Connection connection = dataManager.getDataSource().getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                List<Long> pkList = new ArrayList<>(rows.keySet());
+                for(int start = 0; start < pkList.size(); start += CHECK_ROW_COUNT) {
+                    checkConflicts(connection, rows, columns, pkList.subList(start,
+                            Math.min(pkList.size(), start + CHECK_ROW_COUNT)), conflicts);
+                }
+                // Rows that share the same set of updated columns use the same statement
+                Map<String, PreparedStatement> statements = new HashMap<>();
+                try {
+                    for(Map.Entry<Long, Map<Integer, PendingValue>> row : rows.entrySet()) {
+                        SortedMap<Integer, PendingValue> values = new TreeMap<>(row.getValue());
+                        Set<Integer> conflictColumns = conflicts.get(row.getKey());
+                        if(conflictColumns != null) {
+                            values.keySet().removeAll(conflictColumns);
+                        }
+                        if(values.isEmpty()) {
+                            continue;
+                        }
+                        String key = values.keySet().toString();
+                        PreparedStatement st = statements.get(key);
+                        if(st == null) {
+                            StringBuilder sb = new StringBuilder("UPDATE ").append(table).append(" SET ");
+                            boolean first = true;
+                            for(int column : values.keySet()) {
+                                if(!first) {
+                                    sb.append(", ");
+                                }
+                                sb.append(TableLocation.quoteIdentifier(columns.get(column), isH2)).append(" = ?");
+                                first = false;
+                            }
+                            sb.append(" WHERE ").append(pkName).append(" = ?");
+                            st = connection.prepareStatement(sb.toString());
+                            statements.put(key, st);
+                        }
+                        int parameter = 1;
+                        for(Map.Entry<Integer, PendingValue> value : values.entrySet()) {
+                            st.setObject(parameter++, value.getValue().newValue);
+                            undo.add(value.getKey(), columns.get(value.getKey()), row.getKey(),
+                                    value.getValue().oldValue, value.getValue().newValue);
+                        }
+                        st.setLong(parameter, row.getKey());
+                        st.addBatch();
+                    }
+                    for(PreparedStatement st : statements.values()) {
+                        st.executeBatch();
+                    }
+                } finally {
+                    for(PreparedStatement st : statements.values()) {
+                        st.close();
+                    }
+                }
+                connection.commit();
+            } catch (SQLException ex) {
+                connection.rollback();
+                throw ex;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+        TableUndoableBulkUpdate bulkUpdate = undo.build();
+        if(bulkUpdate != null) {
+            dataManager.fireTableEditHappened(bulkUpdate.createEvent());
+        }
+        return conflicts;
+    }
+
+    /**
+     * Compare the values read before the updates with the database values.
+     * @param conflicts Updated columns of each row that have been modified by another connection
+     */
+    private void checkConflicts(Connection connection, Map<Long, Map<Integer, PendingValue>> rows,
+                                Map<Integer, String> columns, List<Long> pkList, Map<Long, Set<Integer>> conflicts)
+            throws SQLException {
+        TreeSet<Integer> checkedColumns = new TreeSet<>();
+        for(Long pk : pkList) {
+            checkedColumns.addAll(rows.get(pk).keySet());
+        }
+        StringBuilder sb = new StringBuilder("SELECT ").append(pkName);
+        for(int column : checkedColumns) {
+            sb.append(", ").append(TableLocation.quoteIdentifier(columns.get(column), isH2));
+        }
+        sb.append(" FROM ").append(tableLocation.toString(isH2)).append(" WHERE ").append(pkName).append(" IN (");
+        for(int i = 0; i < pkList.size(); i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        sb.append(") FOR UPDATE");
+        TreeSet<Long> missingRows = new TreeSet<>(pkList);
+        try(PreparedStatement st = connection.prepareStatement(sb.toString())) {
+            for(int i = 0; i < pkList.size(); i++) {
+                st.setLong(i + 1, pkList.get(i));
+            }
+            try(ResultSet rs = st.executeQuery()) {
+                while(rs.next()) {
+                    long pk = rs.getLong(1);
+                    Map<Integer, PendingValue> row = rows.get(pk);
+                    if(row == null) {
+                        continue;
+                    }
+                    missingRows.remove(pk);
+                    int rsColumn = 2;
+                    for(int column : checkedColumns) {
+                        PendingValue value = row.get(column);
+                        if(value != null && !isSameValue(value.oldValue, rs.getObject(rsColumn))) {
+                            Set<Integer> conflictColumns = conflicts.get(pk);
+                            if(conflictColumns == null) {
+                                conflictColumns = new HashSet<>();
+                                conflicts.put(pk, conflictColumns);
+                            }
+                            conflictColumns.add(column);
+                        }
+                        rsColumn++;
+                    }
+                }
+            }
+        }
+        for(Long pk : missingRows) {
+            // Deleted row
+            conflicts.put(pk, rows.get(pk).keySet());
+        }
+    }
+
+    /**
+     * @param a First value
+     * @param b Second value
+     * @return True if the values are equal, numbers of different classes are compared by value
+     */
+    static boolean isSameValue(Object a, Object b) {
+        if(a == null || b == null) {
+            return a == b;
+        }
+        if(a instanceof Number && b instanceof Number) {
+            if(isIntegral(a) && isIntegral(b)) {
+                return ((Number) a).longValue() == ((Number) b).longValue();
+            }
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue()) == 0;
+        }
+        if(a instanceof Geometry && b instanceof Geometry) {
+            return ((Geometry) a).equalsExact((Geometry) b);
+        }
+        if(a instanceof byte[] && b instanceof byte[]) {
+            return Arrays.equals((byte[]) a, (byte[]) b);
+        }
+        return a.equals(b);
+    }
+
+    private static boolean isIntegral(Object number) {
+        return number instanceof Long || number instanceof Integer || number instanceof Short ||
+                number instanceof Byte || number instanceof BigInteger;
+    }
+
+    private static class PendingValue {
+        private Object oldValue;
+        private Object newValue;
+
+        private PendingValue(Object oldValue, Object newValue) {
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+    }
+}
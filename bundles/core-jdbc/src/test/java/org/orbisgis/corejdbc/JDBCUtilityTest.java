@@ -36,26 +36,35 @@
  */
 package org.orbisgis.corejdbc;
 
+import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.GeometryFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.*;
 import javax.sql.DataSource;
+import javax.swing.event.TableModelEvent;
 
 import org.h2gis.functions.factory.H2GISDBFactory;
 import org.h2gis.functions.factory.H2GISFunctions;
 import org.h2gis.functions.io.DriverManager;
 import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.SFSUtilities;
+import org.h2gis.utilities.TableLocation;
 import org.junit.AfterClass;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -231,10 +240,134 @@ public class JDBCUtilityTest {
             // Do stats using apache math
             props = ReadTable.computeStatsLocal(connection, table, "ROWID",getSortedSet(1,11) , new NullProgressMonitor());
             checkStats(props);
+            // Do stats using sql on selected primary keys
+            props = ReadTable.computeStatsSQL(connection, table, "ROWID", new LongUnion(indexes), new NullProgressMonitor());
+            checkStats(props);
+            st.execute("DROP TABLE "+table);
+        }
+    }
+
+    @Test
+    public void testStatsRowSubset() throws SQLException {
+        Set<Long> indexes = new TreeSet<>(Arrays.asList(new Long[]{0l, 2l, 3l, 4l, 8l, 10l, 15l, 30l, 45l, 78l}));
+        try(Statement st = connection.createStatement()) {
+            String table = CreateTable.createIndexTempTable(connection, new NullProgressMonitor(), indexes,"ROWID", 5);
+            // Rows 2 and 4, the rows after 4 are not read
+            String[][] props = ReadTable.computeStatsLocal(connection, table, new String[]{"ROWID", "ROWID * 2"},
+                    new TreeSet<>(Arrays.asList(2, 4)), new NullProgressMonitor());
+            assertEquals(2, Double.valueOf(props[0][ReadTable.STATS.COUNT.ordinal()]).intValue());
+            assertEquals(6, Double.valueOf(props[0][ReadTable.STATS.SUM.ordinal()]).intValue());
+            assertEquals(12, Double.valueOf(props[1][ReadTable.STATS.SUM.ordinal()]).intValue());
+            String[] pkProps = ReadTable.computeStatsSQL(connection, table, "ROWID", new LongUnion(new long[]{2, 4}),
+                    new NullProgressMonitor());
+            assertEquals(2, Double.valueOf(pkProps[ReadTable.STATS.COUNT.ordinal()]).intValue());
+            assertEquals(6, Double.valueOf(pkProps[ReadTable.STATS.SUM.ordinal()]).intValue());
             st.execute("DROP TABLE "+table);
         }
     }
 
+    @Test
+    public void testCreateIndexTempTable() throws SQLException {
+        // A range inserted with a single query, and isolated values
+        LongUnion keys = new LongUnion(1, 1000);
+        keys.add(2000L);
+        keys.add(2005L);
+        keys.add(2006L);
+        try(Statement st = connection.createStatement()) {
+            for(Collection<Long> selection : Arrays.<Collection<Long>>asList(keys, new TreeSet<Long>(keys))) {
+                String table = CreateTable.createIndexTempTable(connection, new NullProgressMonitor(), selection, "ROWID", 5);
+                try(ResultSet rs = st.executeQuery("SELECT COUNT(*), SUM(ROWID) FROM " + table)) {
+                    assertTrue(rs.next());
+                    assertEquals(1003, rs.getInt(1));
+                    assertEquals(500500 + 2000 + 2005 + 2006, rs.getLong(2));
+                }
+                st.execute("DROP TABLE " + table);
+            }
+        }
+    }
+
+    /**
+     * The bulk insertion of createIndexTempTable must give the same keys as the former insertion of one key per
+     * addBatch. A selection made of a long range and of isolated keys.
+     */
+    @Test
+    public void testCreateIndexTempTableKeys() throws SQLException {
+        LongUnion keys = new LongUnion(1, 5000);
+        for(long key = 10000; key < 20000; key += 2) {
+            keys.add(key);
+        }
+        try(Statement st = connection.createStatement()) {
+            String bulkTable = CreateTable.createIndexTempTable(connection, new NullProgressMonitor(), keys, "ROWID", 30);
+            String batchTable = insertKeysByBatch(keys);
+            try(ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + bulkTable)) {
+                assertTrue(rs.next());
+                assertEquals(keys.size(), rs.getInt(1));
+            }
+            // Both tables contain the same keys
+            try(ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM (SELECT ROWID FROM " + bulkTable +
+                    " EXCEPT SELECT ROWID FROM " + batchTable + ")")) {
+                assertTrue(rs.next());
+                assertEquals(0, rs.getInt(1));
+            }
+            try(ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM (SELECT ROWID FROM " + batchTable +
+                    " EXCEPT SELECT ROWID FROM " + bulkTable + ")")) {
+                assertTrue(rs.next());
+                assertEquals(0, rs.getInt(1));
+            }
+            st.execute("DROP TABLE " + bulkTable);
+            st.execute("DROP TABLE " + batchTable);
+        }
+    }
+
+    /**
+     * Former insertion of createIndexTempTable, one key per addBatch, used as the reference
+     */
+    private static String insertKeysByBatch(Collection<Long> keys) throws SQLException {
+        String tableName = MetaData.getNewUniqueName("BATCH_SOURCE", connection.getMetaData(), "");
+        try(Statement st = connection.createStatement()) {
+            st.execute("CREATE LOCAL TEMPORARY TABLE " + tableName + "(ROWID bigint primary key)");
+        }
+        try(PreparedStatement insertSt = connection.prepareStatement("INSERT INTO " + tableName + " VALUES(?)")) {
+            int batchSize = 0;
+            for(Long key : keys) {
+                insertSt.setLong(1, key);
+                insertSt.addBatch();
+                if(++batchSize == 30) {
+                    insertSt.executeBatch();
+                    batchSize = 0;
+                }
+            }
+            if(batchSize > 0) {
+                insertSt.executeBatch();
+            }
+        }
+        return tableName;
+    }
+
+    @Test
+    public void testBulkWriter() throws SQLException {
+        try(Statement st = connection.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS BULKTABLE");
+            st.execute("CREATE TABLE BULKTABLE(ID bigint primary key, NAME varchar, THE_GEOM GEOMETRY)");
+            GeometryFactory factory = new GeometryFactory();
+            try(BulkWriter writer = CreateTable.createBulkWriter(connection, "BULKTABLE",
+                    new String[]{"ID", "NAME", "THE_GEOM"}, 4)) {
+                for(long id = 1; id <= 10; id++) {
+                    writer.addRow(id, id % 2 == 0 ? null : "row" + id,
+                            factory.createPoint(new Coordinate(id, id)));
+                }
+                assertEquals(10, writer.getRowCount());
+            }
+            try(ResultSet rs = st.executeQuery("SELECT COUNT(*), COUNT(NAME), SUM(ST_X(THE_GEOM)) FROM BULKTABLE")) {
+                assertTrue(rs.next());
+                assertEquals(10, rs.getInt(1));
+                assertEquals(5, rs.getInt(2));
+                assertEquals(55, rs.getDouble(3), 1e-12);
+            }
+            st.execute("DROP TABLE BULKTABLE");
+        }
+    }
+
     private static SortedSet<Integer> getSortedSet(int begin,int end) {
         SortedSet<Integer> set = new TreeSet<>();
         for(int i = begin; i < end; i++) {
@@ -417,4 +550,84 @@ public class JDBCUtilityTest {
             assertFalse(JDBCUtilities.tableExists(connection, "BV_SAP_2"));
         }
     }
+
+    /**
+     * Register a set of files, the files already linked must not be linked again
+     */
+    @Test
+    public void testRegisterDataSources() throws SQLException, URISyntaxException {
+        try(Statement st = connection.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS BV_SAP, BV_SAP_1, BV_SAP_2");
+            DataManager dataManager = new DataManagerImpl(dataSource);
+            URI source = JDBCUtilityTest.class.getResource("bv_sap.shp").toURI();
+            String tableIdentifier = dataManager.registerDataSource(source);
+            URI missingSource = new File(new File(source), "missing.shp").toURI();
+            Map<URI, String> tables = dataManager.registerDataSources(Arrays.asList(source, missingSource, source));
+            assertEquals(1, tables.size());
+            assertEquals(tableIdentifier, tables.get(source));
+            assertFalse(JDBCUtilities.tableExists(connection, "BV_SAP_1"));
+            // The index must follow the dropped tables
+            st.execute("DROP TABLE " + tableIdentifier);
+            tables = dataManager.registerDataSources(Collections.singleton(source));
+            assertTrue(JDBCUtilities.tableExists(connection, tables.get(source)));
+            assertEquals(tables.get(source), dataManager.registerDataSource(source));
+        }
+    }
+
+    /**
+     * Import a file in the cache schema, the table is imported again when the file is updated
+     */
+    @Test
+    public void testMaterializeLinkedFile() throws SQLException, URISyntaxException, IOException {
+        DataManager dataManager = new DataManagerImpl(dataSource);
+        dataManager.setMaterializeLinkedFiles(true);
+        // The H2 trigger is not available here, the table changes are given by the events fired below
+        dataManager.setStatementChangeEvents(true);
+        // The file modification time is changed, work on a copy
+        File folder = File.createTempFile("materialize", "");
+        assertTrue(folder.delete());
+        assertTrue(folder.mkdir());
+        for(String extension : new String[]{"shp", "shx", "dbf"}) {
+            File resource = new File(JDBCUtilityTest.class.getResource("bv_sap." + extension).toURI());
+            Files.copy(resource.toPath(), new File(folder, resource.getName()).toPath());
+        }
+        URI source = new File(folder, "bv_sap.shp").toURI();
+        String tableIdentifier = dataManager.registerDataSource(source);
+        assertTrue(JDBCUtilities.tableExists(connection, tableIdentifier));
+        assertEquals("ORBISGIS_FILE_CACHE", TableLocation.parse(tableIdentifier).getSchema());
+        assertEquals(tableIdentifier, dataManager.registerDataSource(source));
+        Envelope envelope = SFSUtilities.getTableEnvelope(connection, TableLocation.parse(tableIdentifier), "");
+        assertEquals(envelope, dataManager.getCachedEnvelope(tableIdentifier));
+        // Touch the file
+        File file = new File(source);
+        assertTrue(file.setLastModified(file.lastModified() + 2000));
+        assertEquals(tableIdentifier, dataManager.registerDataSource(source));
+        int rowCount = JDBCUtilities.getRowCount(connection, tableIdentifier);
+        assertTrue(rowCount > 0);
+        // Edit the cached table, the stored envelope is no longer used
+        try(Statement st = connection.createStatement()) {
+            st.execute("DELETE FROM " + tableIdentifier + " WHERE _ROWID_ = (SELECT MIN(_ROWID_) FROM " +
+                    tableIdentifier + ")");
+        }
+        dataManager.fireTableEditHappened(new TableEditEvent(tableIdentifier, TableModelEvent.ALL_COLUMNS, null, null,
+                TableModelEvent.DELETE));
+        assertNull(dataManager.getCachedEnvelope(tableIdentifier));
+        // The edited table is not replaced when the file is updated
+        assertTrue(file.setLastModified(file.lastModified() + 2000));
+        assertEquals(tableIdentifier, dataManager.registerDataSource(source));
+        assertEquals(rowCount - 1, JDBCUtilities.getRowCount(connection, tableIdentifier));
+        // Linked tables have no cached envelope
+        dataManager.setMaterializeLinkedFiles(false);
+        String linkedTable = dataManager.registerDataSource(source);
+        assertFalse(tableIdentifier.equals(linkedTable));
+        assertNull(dataManager.getCachedEnvelope(linkedTable));
+        try(Statement st = connection.createStatement()) {
+            st.execute("DROP TABLE " + linkedTable);
+            st.execute("DROP TABLE " + tableIdentifier);
+        }
+        for(File copy : folder.listFiles()) {
+            assertTrue(copy.delete());
+        }
+        assertTrue(folder.delete());
+    }
 }
@@ -48,6 +48,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.orbisgis.corejdbc.internal.DataManagerImpl;
 import org.orbisgis.corejdbc.internal.ReadRowSetImpl;
+import org.orbisgis.corejdbc.internal.ResultSetScheduler;
 import org.orbisgis.commons.progress.NullProgressMonitor;
 
 import javax.sql.DataSource;
@@ -55,10 +56,13 @@ import javax.sql.RowSetEvent;
 import javax.sql.RowSetListener;
 import javax.sql.rowset.JdbcRowSet;
 import javax.sql.rowset.RowSetFactory;
+import javax.swing.event.TableModelEvent;
 import java.sql.Connection;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -211,6 +215,49 @@ public class RowSetTest {
         }
     }
 
+    @Test
+    public void testRowCursor() throws SQLException {
+        try (
+                Connection connection = dataSource.getConnection();
+                Statement st = connection.createStatement()) {
+            st.execute("drop table if exists test");
+            st.execute("create table test (id integer primary key, str varchar(30), flt float)");
+            st.execute("insert into test select x, 'row' || x, x / 2.0 from system_range(1, 500)");
+            try (ReadRowSetImpl rs = new ReadRowSetImpl(dataSource)) {
+                rs.setFetchSize(50);
+                rs.initialize(TableLocation.parse("TEST"), "id", new NullProgressMonitor());
+                // All rows, selected columns
+                double sum = 0;
+                int count = 0;
+                try (RowCursor cursor = rs.cursor(new String[]{"FLT", "ID"}, null, new NullProgressMonitor())) {
+                    assertEquals(2, cursor.getColumnCount());
+                    while (cursor.next()) {
+                        sum += cursor.getDouble(1);
+                        assertEquals(cursor.getRow(), cursor.getLong(2));
+                        count++;
+                    }
+                }
+                assertEquals(500, count);
+                assertEquals(62625, sum, 1e-6);
+                // Selected rows only
+                List<Long> pk = new ArrayList<>();
+                try (RowCursor cursor = rs.cursor(null, getRows(3L, 250L, 499L), new NullProgressMonitor())) {
+                    while (cursor.next()) {
+                        pk.add(cursor.getPk());
+                        assertEquals("row" + cursor.getPk(), cursor.getString(2));
+                    }
+                }
+                assertEquals(Arrays.asList(3L, 250L, 499L), pk);
+                // Early termination
+                RowCursor cursor = rs.cursor(null, null, new NullProgressMonitor());
+                assertTrue(cursor.next());
+                cursor.close();
+                assertFalse(cursor.next());
+            }
+            st.execute("drop table if exists test");
+        }
+    }
+
     @Test
     public void testReversibleRowSet() throws SQLException {
         RowSetFactory factory = new DataManagerImpl(dataSource);
@@ -247,6 +294,108 @@ public class RowSetTest {
         }
     }
 
+    @Test
+    public void testMetaDataSnapshot() throws SQLException {
+        DataManager manager = new DataManagerImpl(dataSource);
+        ReversibleRowSet rs = manager.createReversibleRowSet();
+        try (
+                Connection connection = dataSource.getConnection();
+                Statement st = connection.createStatement()) {
+            st.execute("drop table if exists test");
+            st.execute("create table test (id integer primary key, str varchar(30), flt float)");
+            st.execute("insert into test values (42, 'marvin', 10.1010), (666, 'satan', 1/3)");
+            rs.setCommand("SELECT * FROM TEST");
+            rs.execute();
+            ResultSetMetaData meta = rs.getMetaData();
+            assertEquals(3, meta.getColumnCount());
+            assertEquals(Types.VARCHAR, meta.getColumnType(2));
+            assertEquals(30, meta.getPrecision(2));
+            assertTrue(rs.absolute(1));
+            st.execute("alter table test add column lng bigint");
+            // Meta data is kept until the result set is executed again
+            assertEquals(3, meta.getColumnCount());
+            // A change of the rows does not drop the meta data
+            manager.fireTableEditHappened(new TableEditEvent("TEST", TableModelEvent.ALL_COLUMNS, null, null,
+                    TableModelEvent.UPDATE));
+            assertEquals(3, meta.getColumnCount());
+            assertEquals(42, rs.getInt(1));
+            // The result set is released then executed again for the next batch read
+            assertTrue(ResultSetScheduler.getInstance().releaseIdleResources() > 0);
+            manager.fireTableEditHappened(new TableEditEvent("TEST", TableModelEvent.ALL_COLUMNS, null, null,
+                    TableModelEvent.UPDATE));
+            assertTrue(rs.absolute(2));
+            assertEquals(4, meta.getColumnCount());
+            assertEquals(Types.BIGINT, meta.getColumnType(4));
+            assertEquals(666, rs.getInt(1));
+            rs.close();
+        }
+    }
+
+    @Test
+    public void testTableChangeFromOtherThread() throws Exception {
+        final DataManager manager = new DataManagerImpl(dataSource);
+        ReversibleRowSet rs = manager.createReversibleRowSet();
+        try (
+                Connection connection = dataSource.getConnection();
+                Statement st = connection.createStatement()) {
+            st.execute("drop table if exists test");
+            st.execute("create table test (id integer primary key, val integer) as select X, X from SYSTEM_RANGE(1, 200)");
+            rs.setCommand("SELECT * FROM TEST");
+            rs.execute();
+            assertTrue(rs.absolute(150));
+            assertEquals(150, rs.getInt(2));
+            st.execute("update test set val = -id");
+            st.execute("insert into test select X, -X from SYSTEM_RANGE(201, 250)");
+            // Coalesced events are delivered by another thread
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    manager.fireTableEditHappened(new TableEditEvent("TEST", TableModelEvent.ALL_COLUMNS, null, null,
+                            TableModelEvent.UPDATE));
+                }
+            });
+            thread.start();
+            thread.join();
+            // The cached rows are dropped on the next read
+            assertEquals(-150, rs.getInt(2));
+            assertTrue(rs.absolute(250));
+            assertEquals(-250, rs.getInt(2));
+            assertEquals(250, rs.getRowCount());
+            rs.close();
+        }
+    }
+
+    @Test
+    public void testRowChangeEvent() throws Exception {
+        DataManager manager = new DataManagerImpl(dataSource);
+        RowCache rowCache = manager.getRowCache();
+        ReversibleRowSet rs = manager.createReversibleRowSet();
+        try (
+                Connection connection = dataSource.getConnection();
+                Statement st = connection.createStatement()) {
+            st.execute("drop table if exists test");
+            st.execute("create table test (id integer primary key, val integer) as select X, X from SYSTEM_RANGE(1, 500)");
+            rs.setCommand("SELECT * FROM TEST");
+            rs.execute();
+            assertTrue(rs.absolute(10));
+            assertTrue(rs.absolute(450));
+            assertTrue(rs.absolute(150));
+            assertEquals(150, rs.getInt(2));
+            st.execute("update test set val = -id where id = 150");
+            manager.fireTableEditHappened(new TableEditEvent("TEST", TableModelEvent.ALL_COLUMNS, 150L, 150L,
+                    TableModelEvent.UPDATE));
+            // The current batch is read again
+            assertEquals(-150, rs.getInt(2));
+            // The batches before the changed row are still cached
+            long hitCount = rowCache.getHitCount();
+            assertTrue(rs.absolute(10));
+            assertEquals(hitCount + 1, rowCache.getHitCount());
+            assertTrue(rs.absolute(450));
+            assertEquals(450, rs.getInt(2));
+            rs.close();
+        }
+    }
+
     @Test
     public void testBatch() throws SQLException {
         RowSetFactory factory = new DataManagerImpl(dataSource);
@@ -286,6 +435,45 @@ public class RowSetTest {
         }
     }
 
+    @Test
+    public void testBatchPrefetch() throws SQLException {
+        DataManager factory = new DataManagerImpl(dataSource);
+        ReadRowSet rs = factory.createReadRowSet();
+        try (
+                Connection connection = dataSource.getConnection();
+                Statement st = connection.createStatement()) {
+            st.execute("drop table if exists test");
+            st.execute("create table test (id integer primary key, y float) as select X, SQRT(X::float) SQ from SYSTEM_RANGE(1, 2000)");
+            rs.setCommand("SELECT * FROM TEST");
+            rs.setFetchSize(50);
+            rs.setPrefetchDepth(3);
+            rs.execute();
+            // Forward access, following batches are read ahead
+            for(int i =0; i < 2000; i++) {
+                assertTrue(rs.next());
+                assertEquals(i+1, rs.getInt("ID"));
+                assertEquals(Math.sqrt(i+1), rs.getDouble(2), 1e-6);
+            }
+            assertFalse(rs.next());
+            // Backward access, preceding batches are read ahead
+            for(int i = 1999; i >= 0; i--) {
+                assertTrue(rs.previous());
+                assertEquals(i+1, rs.getInt("ID"));
+            }
+            assertFalse(rs.previous());
+            // Read ahead batches must not be used once the table has been updated
+            assertTrue(rs.absolute(60));
+            st.execute("update test set y = -1");
+            rs.execute();
+            for(int i = 60; i < 400; i++) {
+                assertTrue(rs.absolute(i + 1));
+                assertEquals(i+1, rs.getInt("ID"));
+                assertEquals(-1, rs.getDouble(2), 1e-6);
+            }
+            rs.close();
+        }
+    }
+
     /**
      * @throws SQLException
      */
@@ -637,6 +825,178 @@ public class RowSetTest {
         }
     }
 
+    @Test
+    public void testEditSession() throws SQLException {
+        DataManager factory = new DataManagerImpl(dataSource);
+        ReversibleRowSet rs = factory.createReversibleRowSet();
+        try (
+                Connection connection = dataSource.getConnection();
+                Statement st = connection.createStatement()) {
+            st.execute("drop table if exists test");
+            st.execute("create table test (id integer primary key, str varchar(30), flt float)");
+            st.execute("insert into test select x, 'row' || x, x from system_range(1, 100)");
+            ListenerList listenerList = new ListenerList();
+            factory.addTableEditListener("TEST", listenerList, false);
+            rs.setCommand("SELECT * FROM TEST");
+            rs.execute();
+            rs.beginEdit();
+            assertTrue(rs.isEditSessionStarted());
+            while(rs.next()) {
+                rs.updateDouble("flt", rs.getInt("id") <= 50 ? 1. : 2.);
+                if(rs.getInt("id") % 10 == 0) {
+                    rs.updateString("str", "ten");
+                }
+                rs.updateRow();
+            }
+            // Values are written on commit
+            assertTrue(rs.absolute(1));
+            assertEquals(1., rs.getDouble("flt"), 1e-6);
+            try {
+                rs.deleteRow();
+                assertTrue("Delete must be refused in an edit session", false);
+            } catch (SQLException ex) {
+                // Ok
+            }
+            rs.commitEdit();
+            assertFalse(rs.isEditSessionStarted());
+            assertEquals(1, listenerList.eventList.size());
+            TableEditEvent event = listenerList.eventList.get(0);
+            assertEquals(1L, event.getFirstRowPK().longValue());
+            assertEquals(100L, event.getLastRowPK().longValue());
+            try(ResultSet rs2 = st.executeQuery("SELECT SUM(FLT) FROM TEST")) {
+                assertTrue(rs2.next());
+                assertEquals(150., rs2.getDouble(1), 1e-6);
+            }
+            assertTrue(rs.absolute(10));
+            assertEquals("ten", rs.getString("str"));
+            // Undo
+            event.getUndoableEdit().undo();
+            try(ResultSet rs2 = st.executeQuery("SELECT SUM(FLT), COUNT(*) FROM TEST WHERE STR = 'row' || ID")) {
+                assertTrue(rs2.next());
+                assertEquals(5050., rs2.getDouble(1), 1e-6);
+                assertEquals(100, rs2.getInt(2));
+            }
+            // Redo
+            event.getUndoableEdit().redo();
+            try(ResultSet rs2 = st.executeQuery("SELECT SUM(FLT) FROM TEST")) {
+                assertTrue(rs2.next());
+                assertEquals(150., rs2.getDouble(1), 1e-6);
+            }
+            rs.close();
+        }
+    }
+
+    @Test
+    public void testEditSessionCachedValues() throws SQLException {
+        DataManager factory = new DataManagerImpl(dataSource);
+        ReversibleRowSet rs = factory.createReversibleRowSet();
+        try (
+                Connection connection = dataSource.getConnection();
+                Statement st = connection.createStatement()) {
+            st.execute("drop table if exists test");
+            st.execute("create table test (id integer primary key, str varchar(30), flt float check (flt < 1000))");
+            st.execute("insert into test select x, 'row' || x, x from system_range(1, 100)");
+            rs.setFetchSize(10);
+            rs.setCommand("SELECT * FROM TEST");
+            rs.execute();
+            rs.beginEdit();
+            assertTrue(rs.absolute(5));
+            rs.updateDouble("flt", 42.);
+            rs.updateRow();
+            assertEquals(42., rs.getDouble("flt"), 1e-6);
+            // The batch read again from the database shows the value of the session
+            rs.setFetchSize(10);
+            assertTrue(rs.absolute(95));
+            assertTrue(rs.absolute(5));
+            assertEquals(42., rs.getDouble("flt"), 1e-6);
+            // The database refuses the update, the session is kept
+            assertTrue(rs.absolute(6));
+            rs.updateDouble("flt", 5000.);
+            rs.updateRow();
+            try {
+                rs.commitEdit();
+                assertTrue("The update must be refused by the check constraint", false);
+            } catch (SQLException ex) {
+                // Ok
+            }
+            assertTrue(rs.isEditSessionStarted());
+            assertTrue(rs.absolute(5));
+            assertEquals(42., rs.getDouble("flt"), 1e-6);
+            try(ResultSet rs2 = st.executeQuery("SELECT FLT FROM TEST WHERE ID = 5")) {
+                assertTrue(rs2.next());
+                assertEquals(5., rs2.getDouble(1), 1e-6);
+            }
+            // Cancel, the values of the database are read again
+            rs.cancelEdit();
+            assertFalse(rs.isEditSessionStarted());
+            assertTrue(rs.absolute(5));
+            assertEquals(5., rs.getDouble("flt"), 1e-6);
+            assertTrue(rs.absolute(6));
+            assertEquals(6., rs.getDouble("flt"), 1e-6);
+            rs.close();
+        }
+    }
+
+    @Test
+    public void testWriteBehind() throws SQLException {
+        DataManager factory = new DataManagerImpl(dataSource);
+        ReversibleRowSet rs = factory.createReversibleRowSet();
+        try (
+                Connection connection = dataSource.getConnection();
+                Statement st = connection.createStatement()) {
+            st.execute("drop table if exists test");
+            st.execute("create table test (id integer primary key, str varchar(30), flt float)");
+            st.execute("insert into test select x, 'row' || x, x from system_range(1, 10)");
+            ListenerList listenerList = new ListenerList();
+            factory.addTableEditListener("TEST", listenerList, false);
+            rs.setCommand("SELECT * FROM TEST");
+            rs.execute();
+            rs.setWriteBehind(true);
+            assertTrue(rs.isWriteBehind());
+            while(rs.next()) {
+                rs.updateDouble("flt", 1.);
+                rs.updateRow();
+            }
+            // Pending values are visible through the row set
+            assertTrue(rs.absolute(5));
+            assertEquals(1., rs.getDouble("flt"), 1e-6);
+            // Concurrent update of the row 5
+            st.execute("update test set flt = 50 where id = 5");
+            try {
+                rs.flush();
+                assertTrue("The conflicting row must be reported", false);
+            } catch (SQLException ex) {
+                // Ok
+            }
+            try(ResultSet rs2 = st.executeQuery("SELECT SUM(FLT) FROM TEST")) {
+                assertTrue(rs2.next());
+                assertEquals(59., rs2.getDouble(1), 1e-6);
+            }
+            // Written rows and the value in conflict are not kept, the second flush has nothing to write
+            assertTrue(rs.isWriteBehind());
+            rs.flush();
+            // One undo record for the whole flush
+            assertFalse(listenerList.eventList.isEmpty());
+            assertTrue(listenerList.eventList.get(0).getUndoableEdit() != null);
+            listenerList.eventList.get(0).getUndoableEdit().undo();
+            try(ResultSet rs2 = st.executeQuery("SELECT SUM(FLT) FROM TEST")) {
+                assertTrue(rs2.next());
+                assertEquals(100., rs2.getDouble(1), 1e-6);
+            }
+            // Updates after a conflict are written
+            assertTrue(rs.absolute(1));
+            rs.updateDouble("flt", 11.);
+            rs.updateRow();
+            rs.flush();
+            try(ResultSet rs2 = st.executeQuery("SELECT SUM(FLT) FROM TEST")) {
+                assertTrue(rs2.next());
+                assertEquals(110., rs2.getDouble(1), 1e-6);
+            }
+            rs.setWriteBehind(false);
+            rs.close();
+        }
+    }
+
     @Test
     public void testDeleteRow() throws SQLException {
 
@@ -0,0 +1,167 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc;
+
+import org.h2gis.functions.factory.H2GISDBFactory;
+import org.h2gis.utilities.SFSUtilities;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.orbisgis.commons.progress.NullProgressMonitor;
+import org.orbisgis.corejdbc.internal.DataManagerImpl;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TableScanTest {
+    private static final int ROW_COUNT = 50000;
+    private static DataSource dataSource;
+    private static Connection connection;
+
+    @BeforeClass
+    public static void tearUp() throws Exception {
+        dataSource = SFSUtilities.wrapSpatialDataSource(H2GISDBFactory.createDataSource(TableScanTest.class.getSimpleName(), true));
+        connection = dataSource.getConnection();
+        try(Statement st = connection.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS SCANTABLE");
+            st.execute("CREATE TABLE SCANTABLE(PK INTEGER PRIMARY KEY, VAL DOUBLE)");
+            st.execute("INSERT INTO SCANTABLE SELECT X, MOD(X * 7, 1000) FROM SYSTEM_RANGE(1, " + ROW_COUNT + ")");
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        if(connection!=null) {
+            connection.createStatement().execute("DROP TABLE IF EXISTS SCANTABLE");
+            connection.close();
+        }
+    }
+
+    @Test
+    public void testPartitions() throws SQLException {
+        TableScan scan = new TableScan(dataSource, "SCANTABLE");
+        scan.setParallelism(4);
+        List<TableScan.Partition> partitions = scan.getPartitions(connection);
+        assertTrue(partitions.size() > 1);
+        assertNull(partitions.get(0).getLower());
+        assertNull(partitions.get(partitions.size() - 1).getUpper());
+        for(int i = 1; i < partitions.size(); i++) {
+            assertEquals(partitions.get(i - 1).getUpper(), partitions.get(i).getLower());
+        }
+    }
+
+    @Test
+    public void testRowSetPartitions() throws SQLException {
+        DataManager dataManager = new DataManagerImpl(dataSource);
+        try(ReadRowSet rowSet = dataManager.createReadRowSet()) {
+            rowSet.initialize("SCANTABLE", "PK", new NullProgressMonitor());
+            rowSet.absolute(ROW_COUNT);
+            TableScan scan = new TableScan(dataSource, "SCANTABLE");
+            scan.setParallelism(4);
+            scan.setRowSet(rowSet);
+            List<TableScan.Partition> partitions = scan.getPartitions(connection);
+            assertTrue(partitions.size() > 1);
+            assertEquals(ROW_COUNT, countRows(scan).longValue());
+        }
+    }
+
+    @Test
+    public void testOrderedMerge() throws SQLException {
+        TableScan scan = new TableScan(dataSource, "SCANTABLE");
+        scan.setParallelism(4);
+        scan.setFilter("VAL < 500");
+        List<Integer> keys = scan.scan("PK", new TableScan.PartitionReader<List<Integer>>() {
+            @Override
+            public List<Integer> read(ResultSet rs) throws SQLException {
+                List<Integer> keys = new ArrayList<>();
+                while (rs.next()) {
+                    keys.add(rs.getInt(1));
+                }
+                Collections.sort(keys);
+                return keys;
+            }
+
+            @Override
+            public List<Integer> merge(List<Integer> left, List<Integer> right) {
+                // Ranges are merged in key order
+                assertTrue(left.isEmpty() || right.isEmpty() || left.get(left.size() - 1) < right.get(0));
+                List<Integer> keys = new ArrayList<>(left);
+                keys.addAll(right);
+                return keys;
+            }
+        }, new NullProgressMonitor());
+        try(Statement st = connection.createStatement();
+            ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM SCANTABLE WHERE VAL < 500")) {
+            assertTrue(rs.next());
+            assertEquals(rs.getInt(1), keys.size());
+        }
+    }
+
+    @Test
+    public void testParallelStats() throws SQLException {
+        String[] expected = ReadTable.computeStatsSQL(connection, "SCANTABLE", "VAL", new NullProgressMonitor());
+        String[] stats = ReadTable.computeStatsSQL(dataSource, "SCANTABLE", "VAL", new NullProgressMonitor());
+        for(ReadTable.STATS func : ReadTable.STATS.values()) {
+            assertEquals(func.name(), Double.valueOf(expected[func.ordinal()]), Double.valueOf(stats[func.ordinal()]),
+                    1e-6);
+        }
+    }
+
+    private static Long countRows(TableScan scan) throws SQLException {
+        return scan.scan("COUNT(*)", new TableScan.PartitionReader<Long>() {
+            @Override
+            public Long read(ResultSet rs) throws SQLException {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+
+            @Override
+            public Long merge(Long left, Long right) {
+                return left + right;
+            }
+        }, new NullProgressMonitor());
+    }
+}
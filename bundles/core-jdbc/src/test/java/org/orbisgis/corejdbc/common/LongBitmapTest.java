@@ -0,0 +1,214 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.common;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of LongBitmap
+ */
+public class LongBitmapTest {
+
+    private static void check(SortedSet<Long> expected, LongBitmap bitmap) {
+        assertEquals(expected.size(), bitmap.size());
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(bitmap));
+        if(!expected.isEmpty()) {
+            assertEquals(expected.first(), bitmap.first());
+            assertEquals(expected.last(), bitmap.last());
+        }
+    }
+
+    /**
+     * Sparse values, dense values (bitmap chunks) and negative values
+     */
+    private static TreeSet<Long> randomSet(Random random, int count) {
+        TreeSet<Long> set = new TreeSet<>();
+        for(int i = 0; i < count; i++) {
+            switch (random.nextInt(3)) {
+                case 0:
+                    set.add((long) random.nextInt(10000));
+                    break;
+                case 1:
+                    set.add(100000L + random.nextInt(1 << 20));
+                    break;
+                default:
+                    set.add(-1L - random.nextInt(200000));
+            }
+        }
+        return set;
+    }
+
+    @Test
+    public void testAddRemoveContains() {
+        Random random = new Random(42);
+        TreeSet<Long> expected = randomSet(random, 50000);
+        LongBitmap bitmap = new LongBitmap(expected);
+        check(expected, bitmap);
+        for(long value : expected) {
+            assertTrue(bitmap.contains(value));
+        }
+        assertFalse(bitmap.contains(Long.MAX_VALUE));
+        assertFalse(bitmap.contains((Object) 5));
+        // Remove half of the values, chunks go back to arrays
+        Iterator<Long> it = expected.iterator();
+        while(it.hasNext()) {
+            long value = it.next();
+            if(random.nextBoolean()) {
+                assertTrue(bitmap.remove(value));
+                assertFalse(bitmap.remove(value));
+                it.remove();
+            }
+        }
+        check(expected, bitmap);
+        for(long value : expected) {
+            assertFalse(bitmap.add(value));
+        }
+        bitmap.clear();
+        assertTrue(bitmap.isEmpty());
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        LongBitmap bitmap = new LongBitmap(0, 10000);
+        bitmap.add(70000L);
+        TreeSet<Long> expected = new TreeSet<>(bitmap);
+        Iterator<Long> it = bitmap.iterator();
+        while(it.hasNext()) {
+            long value = it.next();
+            if(value % 3 != 0) {
+                it.remove();
+                expected.remove(value);
+            }
+        }
+        check(expected, bitmap);
+    }
+
+    @Test
+    public void testRanges() {
+        LongBitmap bitmap = new LongBitmap(-70000, 70000);
+        assertEquals(140001, bitmap.size());
+        bitmap.remove(0L);
+        bitmap.add(100000L);
+        assertEquals(Arrays.asList(-70000L, -1L, 1L, 70000L, 100000L, 100000L), bitmap.getValueRanges());
+        LongBitmap fromUnion = new LongBitmap(new LongUnion(5, 200000));
+        assertEquals(Arrays.asList(5L, 200000L), fromUnion.getValueRanges());
+        assertEquals(Arrays.asList(10L, 19L), new LongBitmap(bitmap.subSet(10L, 20L)).getValueRanges());
+        assertEquals(Arrays.asList(-70000L, -69991L), new LongBitmap(bitmap.headSet(-69990L)).getValueRanges());
+        assertEquals(Arrays.asList(69999L, 70000L, 100000L, 100000L), new LongBitmap(bitmap.tailSet(69999L)).getValueRanges());
+    }
+
+    @Test
+    public void testSetOperations() {
+        Random random = new Random(7);
+        for(int test = 0; test < 5; test++) {
+            TreeSet<Long> a = randomSet(random, 20000 * test);
+            TreeSet<Long> b = randomSet(random, 30000);
+            LongBitmap bitmapA = new LongBitmap(a);
+            LongBitmap bitmapB = new LongBitmap(b);
+            TreeSet<Long> expected = new TreeSet<>(a);
+            expected.addAll(b);
+            check(expected, bitmapA.or(bitmapB));
+            expected = new TreeSet<>(a);
+            expected.retainAll(b);
+            check(expected, bitmapA.and(bitmapB));
+            expected = new TreeSet<>(a);
+            expected.removeAll(b);
+            check(expected, bitmapA.andNot(bitmapB));
+            TreeSet<Long> xor = new TreeSet<>(a);
+            xor.removeAll(b);
+            for(long value : b) {
+                if(!a.contains(value)) {
+                    xor.add(value);
+                }
+            }
+            check(xor, bitmapA.xor(bitmapB));
+            // Operands are not modified
+            check(a, bitmapA);
+            check(b, bitmapB);
+            assertEquals(!expected.equals(a), bitmapA.removeAll(bitmapB));
+            check(expected, bitmapA);
+        }
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        Random random = new Random(3);
+        TreeSet<Long> expected = randomSet(random, 50000);
+        LongBitmap bitmap = new LongBitmap(expected);
+        // Bitmap chunk with few values
+        bitmap.addRange(1L << 40, (1L << 40) + 5000);
+        bitmap.removeAll(new LongBitmap((1L << 40) + 10, (1L << 40) + 3000));
+        expected = new TreeSet<>(bitmap);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(DataOutputStream out = new DataOutputStream(bytes)) {
+            bitmap.write(out);
+        }
+        assertEquals(bytes.size(), bitmap.getSerializedSize());
+        try(DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            check(expected, LongBitmap.read(in));
+        }
+        bytes = new ByteArrayOutputStream();
+        try(ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(bitmap);
+        }
+        try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            check(expected, (LongBitmap) in.readObject());
+        }
+        List<Long> empty = new ArrayList<>(LongBitmap.read(new DataInputStream(new ByteArrayInputStream(
+                new byte[]{0, 0, 0, 1, 0, 0, 0, 0}))));
+        assertTrue(empty.isEmpty());
+    }
+}
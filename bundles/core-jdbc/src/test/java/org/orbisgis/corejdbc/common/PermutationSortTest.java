@@ -0,0 +1,165 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.common;
+
+import org.junit.Test;
+import org.orbisgis.commons.progress.NullProgressMonitor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit test of PermutationSort
+ */
+public class PermutationSortTest {
+
+    /**
+     * Expected order, nulls first then by row index
+     */
+    private static int[] expectedOrder(final Comparable[] values, boolean ascending) {
+        List<Integer> rows = new ArrayList<>(values.length);
+        for(int i = 0; i < values.length; i++) {
+            rows.add(i);
+        }
+        Collections.sort(rows, new Comparator<Integer>() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public int compare(Integer a, Integer b) {
+                Comparable left = values[a];
+                Comparable right = values[b];
+                int res;
+                if(left == null || right == null) {
+                    res = left == right ? 0 : (left == null ? -1 : 1);
+                } else {
+                    res = left.compareTo(right);
+                }
+                return res != 0 ? res : a.compareTo(b);
+            }
+        });
+        if(!ascending) {
+            Collections.reverse(rows);
+        }
+        int[] order = new int[rows.size()];
+        for(int i = 0; i < order.length; i++) {
+            order[i] = rows.get(i);
+        }
+        return order;
+    }
+
+    @Test
+    public void testSortLong() {
+        Long[] values = new Long[]{20L, 5L, 15L, 4L, 1L};
+        PermutationSort.LongKeys keys = new PermutationSort.LongKeys(values.length);
+        for(int i = 0; i < values.length; i++) {
+            keys.set(i, values[i]);
+        }
+        assertArrayEquals(new int[]{4, 3, 1, 2, 0}, PermutationSort.sort(keys, true));
+        assertArrayEquals(new int[]{0, 2, 1, 3, 4}, PermutationSort.sort(keys, false));
+    }
+
+    @Test
+    public void testSortNull() {
+        PermutationSort.DoubleKeys keys = new PermutationSort.DoubleKeys(5);
+        keys.set(0, 20);
+        keys.setNull(1);
+        keys.set(2, 15);
+        keys.set(3, 4);
+        keys.setNull(4);
+        assertArrayEquals(new int[]{1, 4, 3, 2, 0}, PermutationSort.sort(keys, true));
+        assertArrayEquals(new int[]{0, 2, 3, 4, 1}, PermutationSort.sort(keys, false));
+    }
+
+    @Test
+    public void testParallelSort() {
+        Random random = new Random(42);
+        final int rowCount = 100000;
+        Comparable[] longValues = new Comparable[rowCount];
+        Comparable[] stringValues = new Comparable[rowCount];
+        PermutationSort.LongKeys longKeys = new PermutationSort.LongKeys(rowCount);
+        PermutationSort.StringKeys stringKeys = new PermutationSort.StringKeys(rowCount);
+        for(int i = 0; i < rowCount; i++) {
+            long value = random.nextInt(5000);
+            longValues[i] = value;
+            longKeys.set(i, value);
+            String word = random.nextInt(20) == 0 ? null : "w" + random.nextInt(1000);
+            stringValues[i] = word;
+            stringKeys.set(i, word);
+        }
+        assertArrayEquals(expectedOrder(longValues, true), PermutationSort.sort(longKeys, true));
+        assertArrayEquals(expectedOrder(longValues, false), PermutationSort.sort(longKeys, false));
+        assertArrayEquals(expectedOrder(stringValues, true), PermutationSort.sort(stringKeys, true));
+        assertArrayEquals(expectedOrder(stringValues, false), PermutationSort.sort(stringKeys, false));
+    }
+
+    @Test
+    public void testCancelledSort() {
+        PermutationSort.LongKeys keys = new PermutationSort.LongKeys(100000);
+        for(int i = 0; i < keys.getRowCount(); i++) {
+            keys.set(i, keys.getRowCount() - i);
+        }
+        assertNull(PermutationSort.sort(keys, true, new NullProgressMonitor() {
+            @Override
+            public boolean isCancelled() {
+                return true;
+            }
+        }));
+    }
+
+    @Test
+    public void testIntegerArrayView() {
+        IntegerArrayView view = new IntegerArrayView(new int[]{3, 1, 2, 0}, 3);
+        assertEquals(3, view.size());
+        assertEquals(Integer.valueOf(1), view.get(1));
+        assertArrayEquals(new int[]{3, 1, 2}, view.toIntArray());
+        assertEquals(6, sum(view));
+    }
+
+    private static int sum(Iterable<Integer> values) {
+        int sum = 0;
+        for(int value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.common;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.ByteOrderValues;
+import com.vividsolutions.jts.io.WKBWriter;
+import com.vividsolutions.jts.io.WKTReader;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of WKBEnvelope
+ */
+public class WKBEnvelopeTest {
+
+    private static void check(String wkt) throws Exception {
+        Geometry geometry = new WKTReader().read(wkt);
+        geometry.setSRID(4326);
+        Envelope expected = geometry.getEnvelopeInternal();
+        for(int byteOrder : new int[]{ByteOrderValues.BIG_ENDIAN, ByteOrderValues.LITTLE_ENDIAN}) {
+            for(boolean withSRID : new boolean[]{false, true}) {
+                byte[] wkb = new WKBWriter(3, byteOrder, withSRID).write(geometry);
+                assertEquals(wkt, expected, WKBEnvelope.read(wkb));
+            }
+        }
+    }
+
+    @Test
+    public void testGeometryTypes() throws Exception {
+        check("POINT(1 2)");
+        check("POINT(1 2 3)");
+        check("LINESTRING(1 2, -5 8, 3 -4)");
+        check("POLYGON((0 0, 10 0, 10 10, 0 10, 0 0), (2 2, 4 2, 4 4, 2 2))");
+        check("MULTIPOINT((1 1), (-3 5))");
+        check("MULTILINESTRING((1 2 5, 3 4 5), (-1 -2 5, 0 0 5))");
+        check("MULTIPOLYGON(((0 0, 1 0, 1 1, 0 0)), ((5 5, 6 5, 6 6, 5 5)))");
+        check("GEOMETRYCOLLECTION(POINT(15 15), LINESTRING(1 2, -5 8))");
+    }
+
+    @Test
+    public void testEmptyGeometry() throws Exception {
+        Geometry geometry = new WKTReader().read("LINESTRING EMPTY");
+        assertTrue(WKBEnvelope.read(new WKBWriter().write(geometry)).isNull());
+        geometry = new WKTReader().read("GEOMETRYCOLLECTION EMPTY");
+        assertTrue(WKBEnvelope.read(new WKBWriter().write(geometry)).isNull());
+    }
+
+    @Test
+    public void testInvalidWKB() throws Exception {
+        assertNull(WKBEnvelope.read(null));
+        assertNull(WKBEnvelope.read("0101000000".getBytes()));
+        byte[] wkb = new WKBWriter().write(new WKTReader().read("LINESTRING(1 2, -5 8, 3 -4)"));
+        byte[] truncated = new byte[wkb.length - 4];
+        System.arraycopy(wkb, 0, truncated, 0, truncated.length);
+        assertNull(WKBEnvelope.read(truncated));
+    }
+}
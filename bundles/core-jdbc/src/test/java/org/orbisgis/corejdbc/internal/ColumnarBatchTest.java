@@ -0,0 +1,139 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.WKBWriter;
+import com.vividsolutions.jts.io.WKTReader;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of ColumnarBatch
+ */
+public class ColumnarBatchTest {
+
+    @Test
+    public void testPrimitiveColumns() {
+        ColumnarBatch batch = new ColumnarBatch(new ColumnarBatch.Kind[]{ColumnarBatch.Kind.INT,
+                ColumnarBatch.Kind.LONG, ColumnarBatch.Kind.DOUBLE}, 70, true, new StringDictionary());
+        for(int i = 0; i < 70; i++) {
+            int row = batch.addRow(i + 1000);
+            batch.set(0, row, i % 3 == 0 ? null : i);
+            batch.set(1, row, (long) i * 2);
+            batch.set(2, row, i / 2.);
+        }
+        assertEquals(70, batch.getRowCount());
+        assertEquals(1069L, batch.getPk(69).longValue());
+        assertNull(batch.getObject(0, 66));
+        assertTrue(batch.isNull(0, 66));
+        assertFalse(batch.isNull(0, 67));
+        assertEquals(67, batch.getObject(0, 67));
+        assertEquals(134L, batch.getObject(1, 67));
+        assertEquals(33.5, (Double) batch.getObject(2, 67), 1e-12);
+        assertEquals(134, batch.getLong(1, 67));
+        assertEquals(33.5, batch.getDouble(2, 67), 1e-12);
+    }
+
+    @Test
+    public void testFallbackToObjectStorage() {
+        ColumnarBatch batch = new ColumnarBatch(new ColumnarBatch.Kind[]{ColumnarBatch.Kind.INT}, 3, false,
+                new StringDictionary());
+        batch.set(0, batch.addRow(0), 1);
+        batch.set(0, batch.addRow(0), null);
+        batch.set(0, batch.addRow(0), new BigDecimal(3));
+        assertEquals(ColumnarBatch.Kind.OBJECT, batch.getKind(0));
+        assertEquals(1, batch.getObject(0, 0));
+        assertNull(batch.getObject(0, 1));
+        assertEquals(new BigDecimal(3), batch.getObject(0, 2));
+        assertNull(batch.getPk(0));
+    }
+
+    @Test
+    public void testSharedStrings() {
+        StringDictionary dictionary = new StringDictionary(1, 10);
+        ColumnarBatch batch = new ColumnarBatch(new ColumnarBatch.Kind[]{ColumnarBatch.Kind.STRING}, 3, false,
+                dictionary);
+        batch.set(0, batch.addRow(0), new String("road"));
+        batch.set(0, batch.addRow(0), new String("road"));
+        batch.set(0, batch.addRow(0), "river");
+        assertSame(batch.getObject(0, 0), batch.getObject(0, 1));
+        assertEquals("river", batch.getObject(0, 2));
+        assertEquals(1, dictionary.size());
+    }
+
+    @Test
+    public void testClear() {
+        ColumnarBatch batch = new ColumnarBatch(new ColumnarBatch.Kind[]{ColumnarBatch.Kind.INT}, 1, false,
+                new StringDictionary());
+        batch.set(0, batch.addRow(0), null);
+        assertTrue(batch.isNull(0, 0));
+        batch.clear();
+        assertEquals(0, batch.getRowCount());
+        batch.set(0, batch.addRow(0), 5);
+        assertEquals(1, batch.getRowCount());
+        assertFalse(batch.isNull(0, 0));
+        assertEquals(5, batch.getObject(0, 0));
+    }
+
+    @Test
+    public void testGeometryDecodedOnce() throws Exception {
+        ColumnarBatch batch = new ColumnarBatch(new ColumnarBatch.Kind[]{ColumnarBatch.Kind.GEOMETRY}, 2, true,
+                new StringDictionary());
+        WKBWriter writer = new WKBWriter();
+        WKTReader reader = new WKTReader();
+        batch.set(0, batch.addRow(1), writer.write(reader.read("POINT(1 2)")));
+        batch.set(0, batch.addRow(2), null);
+        Geometry geometry = (Geometry) batch.getObject(0, 0);
+        assertEquals("POINT (1 2)", geometry.toText());
+        assertSame(geometry, batch.getObject(0, 0));
+        assertNull(batch.getObject(0, 1));
+        // An updated cell is decoded again
+        batch.set(0, 0, writer.write(reader.read("POINT(3 4)")));
+        assertEquals("POINT (3 4)", ((Geometry) batch.getObject(0, 0)).toText());
+        batch.clear();
+        batch.set(0, batch.addRow(3), writer.write(reader.read("POINT(5 6)")));
+        assertEquals("POINT (5 6)", ((Geometry) batch.getObject(0, 0)).toText());
+    }
+}
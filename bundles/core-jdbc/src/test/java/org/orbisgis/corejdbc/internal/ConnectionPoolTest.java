@@ -0,0 +1,218 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import org.h2gis.functions.factory.H2GISDBFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.orbisgis.corejdbc.ConnectionPoolStatistics;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of the connection pool and of its prepared statement cache
+ */
+public class ConnectionPoolTest {
+    private static DataSource dataSource;
+
+    @BeforeClass
+    public static void tearUp() throws Exception {
+        dataSource = H2GISDBFactory.createDataSource(ConnectionPoolTest.class.getSimpleName(), false);
+        try(Connection connection = dataSource.getConnection();
+            Statement st = connection.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS TEST");
+            st.execute("CREATE TABLE TEST(ID INTEGER PRIMARY KEY, VAL VARCHAR)");
+            st.execute("INSERT INTO TEST SELECT X, 'V' || X FROM SYSTEM_RANGE(1, 10)");
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        try(Connection connection = dataSource.getConnection();
+            Statement st = connection.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS TEST");
+        }
+    }
+
+    @Test
+    public void testReuseConnection() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(dataSource, 2, 4);
+        try {
+            Connection first = pool.getConnection();
+            first.close();
+            assertTrue(first.isClosed());
+            try (Connection second = pool.getConnection()) {
+                assertFalse(second.isClosed());
+                assertNotSame(first, second);
+            }
+            ConnectionPoolStatistics statistics = pool.getStatistics();
+            assertEquals(1, statistics.getCreatedConnections());
+            assertEquals(2, statistics.getBorrowCount());
+            assertEquals(1, statistics.getIdleConnections());
+            assertEquals(0, statistics.getActiveConnections());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testBoundedPool() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(dataSource, 1, 4);
+        pool.setAcquireTimeout(100);
+        try {
+            try (Connection connection = pool.getConnection()) {
+                try {
+                    pool.getConnection();
+                    assertTrue("The pool must not open a second connection", false);
+                } catch (SQLException ex) {
+                    // Ok
+                }
+                assertEquals(1, pool.getStatistics().getWaitCount());
+            }
+            // The connection has been released
+            pool.getConnection().close();
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testStatementCache() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(dataSource, 1, 4);
+        try {
+            for(int id = 1; id <= 3; id++) {
+                try (Connection connection = pool.getConnection();
+                     PreparedStatement st = connection.prepareStatement("SELECT VAL FROM TEST WHERE ID = ?")) {
+                    assertSame(connection, st.getConnection());
+                    st.setInt(1, id);
+                    try (ResultSet rs = st.executeQuery()) {
+                        assertTrue(rs.next());
+                        assertEquals("V" + id, rs.getString(1));
+                    }
+                }
+            }
+            ConnectionPoolStatistics statistics = pool.getStatistics();
+            assertEquals(1, statistics.getStatementCacheMisses());
+            assertEquals(2, statistics.getStatementCacheHits());
+            // Fill the cache
+            try (Connection connection = pool.getConnection()) {
+                for(int id = 1; id <= 5; id++) {
+                    connection.prepareStatement("SELECT VAL FROM TEST WHERE ID = " + id).close();
+                }
+            }
+            assertEquals(2, pool.getStatistics().getStatementCacheEvictions());
+            // Structure update
+            pool.clearStatementCache();
+            try (Connection connection = pool.getConnection()) {
+                connection.prepareStatement("SELECT VAL FROM TEST WHERE ID = ?").close();
+            }
+            assertEquals(2, pool.getStatistics().getStatementCacheHits());
+            // Structure update issued through the pool
+            try (Connection connection = pool.getConnection();
+                 Statement st = connection.createStatement()) {
+                connection.prepareStatement("SELECT VAL FROM TEST WHERE ID = ?").close();
+                assertEquals(3, pool.getStatistics().getStatementCacheHits());
+                st.execute("CREATE INDEX IF NOT EXISTS TEST_VAL ON TEST(VAL)");
+                connection.prepareStatement("SELECT VAL FROM TEST WHERE ID = ?").close();
+                st.execute("DROP INDEX TEST_VAL");
+            }
+            assertEquals(3, pool.getStatistics().getStatementCacheHits());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testResetConnection() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(dataSource, 1, 4);
+        try {
+            try (Connection connection = pool.getConnection();
+                 Statement st = connection.createStatement()) {
+                connection.setAutoCommit(false);
+                st.execute("DELETE FROM TEST");
+            }
+            try (Connection connection = pool.getConnection();
+                 Statement st = connection.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM TEST")) {
+                // Uncommitted changes are rolled back
+                assertTrue(connection.getAutoCommit());
+                assertTrue(rs.next());
+                assertEquals(10, rs.getInt(1));
+            }
+            // Session settings are not given to the next borrower
+            try (Connection connection = pool.getConnection();
+                 Statement st = connection.createStatement()) {
+                st.execute("SET QUERY_TIMEOUT 1000");
+            }
+            pool.getConnection().close();
+            assertEquals(2, pool.getStatistics().getCreatedConnections());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testIsSessionCommand() {
+        assertTrue(PooledConnection.isSessionCommand("SET QUERY_TIMEOUT 10"));
+        assertTrue(PooledConnection.isSessionCommand("  set\tsearch_path TO public"));
+        assertFalse(PooledConnection.isSessionCommand("SELECT 1"));
+        assertFalse(PooledConnection.isSessionCommand("SETTINGS"));
+        assertFalse(PooledConnection.isSessionCommand(null));
+    }
+
+    @Test
+    public void testIsStructureCommand() {
+        assertTrue(PooledConnection.isStructureCommand("CREATE TABLE T(ID INT)"));
+        assertTrue(PooledConnection.isStructureCommand("  alter\ttable T ADD COLUMN V INT"));
+        assertTrue(PooledConnection.isStructureCommand("DROP TABLE T"));
+        assertFalse(PooledConnection.isStructureCommand("SELECT * FROM CREATED"));
+        assertFalse(PooledConnection.isStructureCommand("CREATED"));
+        assertFalse(PooledConnection.isStructureCommand(null));
+    }
+}
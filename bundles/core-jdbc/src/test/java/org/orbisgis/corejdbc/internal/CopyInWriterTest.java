@@ -0,0 +1,160 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import org.junit.Test;
+import org.postgresql.copy.CopyIn;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.GregorianCalendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of the binary COPY encoder of CopyInWriter
+ */
+public class CopyInWriterTest {
+    private static final byte[] HEADER = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0,
+            0, 0, 0, 0, 0, 0, 0, 0};
+
+    @Test
+    public void testEncoding() throws SQLException {
+        CopyInStub stub = new CopyInStub();
+        CopyInWriter.ColumnType[] types = {CopyInWriter.ColumnType.INT8, CopyInWriter.ColumnType.TEXT,
+                CopyInWriter.ColumnType.GEOMETRY, CopyInWriter.ColumnType.DATE, CopyInWriter.ColumnType.TIMESTAMP};
+        try(CopyInWriter writer = new CopyInWriter(stub.copyIn, types, new int[]{0, 0, 4326, 0, 0})) {
+            // The geometry SRID is 0, the SRID of the column is written
+            writer.addRow(42L, "ab", new GeometryFactory().createPoint(new Coordinate(1, 2)),
+                    new Date(new GregorianCalendar(2000, 0, 2).getTimeInMillis()),
+                    Timestamp.valueOf("2000-01-01 00:00:01.000002"));
+            writer.addRow(5L, null, null, null, null);
+            assertEquals(2, writer.getRowCount());
+        }
+        ByteBuffer expected = ByteBuffer.allocate(200);
+        expected.put(HEADER);
+        expected.putShort((short) 5);
+        // int8
+        expected.putInt(8).putLong(42);
+        // text
+        expected.putInt(2).put(new byte[]{'a', 'b'});
+        // EWKB point, big endian, point type with the SRID flag
+        expected.putInt(25).put((byte) 0).putInt(0x20000001).putInt(4326).putDouble(1).putDouble(2);
+        // Days since 2000-01-01
+        expected.putInt(4).putInt(1);
+        // Microseconds since 2000-01-01 00:00:00
+        expected.putInt(8).putLong(1000002);
+        expected.putShort((short) 5);
+        expected.putInt(8).putLong(5);
+        for(int i = 0; i < 4; i++) {
+            expected.putInt(-1);
+        }
+        // Trailer
+        expected.putShort((short) -1);
+        assertTrue(Arrays.equals(Arrays.copyOf(expected.array(), expected.position()), stub.getBytes()));
+        assertTrue(stub.ended);
+    }
+
+    @Test
+    public void testGeometrySrid() throws SQLException {
+        CopyInStub stub = new CopyInStub();
+        GeometryFactory factory = new GeometryFactory();
+        try(CopyInWriter writer = new CopyInWriter(stub.copyIn,
+                new CopyInWriter.ColumnType[]{CopyInWriter.ColumnType.GEOMETRY}, new int[]{0})) {
+            // No SRID
+            writer.addRow(factory.createPoint(new Coordinate(1, 2)));
+            // The column does not constrain the SRID, the geometry SRID is kept
+            Geometry point = factory.createPoint(new Coordinate(1, 2));
+            point.setSRID(2154);
+            writer.addRow(point);
+        }
+        ByteBuffer expected = ByteBuffer.allocate(100);
+        expected.put(HEADER);
+        expected.putShort((short) 1);
+        expected.putInt(21).put((byte) 0).putInt(1).putDouble(1).putDouble(2);
+        expected.putShort((short) 1);
+        expected.putInt(25).put((byte) 0).putInt(0x20000001).putInt(2154).putDouble(1).putDouble(2);
+        expected.putShort((short) -1);
+        assertTrue(Arrays.equals(Arrays.copyOf(expected.array(), expected.position()), stub.getBytes()));
+    }
+
+    /**
+     * Keep the bytes written in the copy
+     */
+    private static class CopyInStub implements InvocationHandler {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private boolean ended = false;
+        private final CopyIn copyIn = (CopyIn) Proxy.newProxyInstance(CopyInWriterTest.class.getClassLoader(),
+                new Class<?>[]{CopyIn.class}, this);
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "writeToCopy":
+                    bytes.write((byte[]) args[0], (Integer) args[1], (Integer) args[2]);
+                    return null;
+                case "isActive":
+                    return !ended;
+                case "endCopy":
+                case "cancelCopy":
+                    ended = true;
+                    return method.getReturnType() == long.class ? 0L : null;
+            }
+            if(method.getReturnType() == int.class) {
+                return 0;
+            } else if(method.getReturnType() == long.class) {
+                return 0L;
+            }
+            return null;
+        }
+
+        private byte[] getBytes() {
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import org.h2gis.functions.factory.H2GISDBFactory;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of PkPageIndex
+ */
+public class PkPageIndexTest {
+
+    @Test
+    public void testKnownPages() {
+        PkPageIndex index = new PkPageIndex(10);
+        assertEquals(1, index.size());
+        assertNull(index.get(0));
+        index.set(100, 1000L);
+        assertEquals(101, index.size());
+        assertNull(index.get(99));
+        assertEquals(1000L, index.get(100).longValue());
+        assertFalse(index.isComplete(101));
+        for(int page = 1; page < 100; page++) {
+            index.set(page, page * 10L);
+        }
+        assertTrue(index.isComplete(101));
+        index.set(50, null);
+        assertNull(index.get(50));
+        assertFalse(index.isComplete(101));
+    }
+
+    @Test
+    public void testKnownFirstPk() {
+        PkPageIndex index = new PkPageIndex(10);
+        index.add(10L);
+        index.add(null);
+        index.add(30L);
+        assertArrayEquals(new long[]{10, 30}, index.getKnownFirstPk());
+    }
+
+    @Test
+    public void testInvalidateFrom() {
+        PkPageIndex index = new PkPageIndex(10);
+        for(int page = 1; page < 20; page++) {
+            index.add(page * 10L);
+        }
+        index.invalidateFrom(55);
+        assertEquals(50L, index.get(5).longValue());
+        assertNull(index.get(6));
+        assertNull(index.get(19));
+        assertEquals(20, index.size());
+    }
+
+    @Test
+    public void testPageOfPk() {
+        PkPageIndex index = new PkPageIndex(10);
+        for(int page = 1; page < 20; page++) {
+            index.add(page == 7 ? null : page * 10L);
+        }
+        assertEquals(0, index.getFirstPage(5));
+        assertEquals(0, index.getLastPage(5));
+        assertEquals(3, index.getFirstPage(35));
+        assertEquals(4, index.getLastPage(45));
+        // The first primary key of the page 7 is unknown, the rows may be in the page 6 or 7
+        assertEquals(6, index.getFirstPage(75));
+        assertEquals(7, index.getLastPage(75));
+        assertEquals(19, index.getLastPage(500));
+    }
+
+    @Test
+    public void testPersistence() throws IOException {
+        File file = File.createTempFile("pageindex", ".pki");
+        try {
+            PkPageIndex index = new PkPageIndex(10);
+            for (int page = 1; page < 200; page++) {
+                index.add(page % 7 == 0 ? null : page * 10L);
+            }
+            index.write(file, "PUBLIC.TEST|PK|", 42);
+            assertNull(PkPageIndex.read(file, "PUBLIC.TEST|PK|", 43, 10));
+            assertNull(PkPageIndex.read(file, "PUBLIC.OTHER|PK|", 42, 10));
+            assertNull(PkPageIndex.read(file, "PUBLIC.TEST|PK|", 42, 20));
+            PkPageIndex read = PkPageIndex.read(file, "PUBLIC.TEST|PK|", 42, 10);
+            assertEquals(200, read.size());
+            for (int page = 0; page < 200; page++) {
+                assertEquals(index.get(page), read.get(page));
+            }
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void testMatches() throws Exception {
+        DataSource dataSource = H2GISDBFactory.createDataSource(PkPageIndexTest.class.getSimpleName(), false);
+        try(Connection connection = dataSource.getConnection();
+            Statement st = connection.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS PAGES");
+            st.execute("CREATE TABLE PAGES(ID bigint primary key) AS SELECT X FROM SYSTEM_RANGE(1, 1000)");
+            String command = "SELECT ID FROM PAGES ORDER BY ID";
+            PkPageIndex index;
+            try(PreparedStatement pst = connection.prepareStatement(command)) {
+                index = PkPageIndex.build(pst, 10, 1000);
+            }
+            assertTrue(index.matches(connection, command, Collections.<Integer, Object>emptyMap()));
+            // Same row count, other keys
+            st.execute("UPDATE PAGES SET ID = ID + 1000 WHERE ID <= 500");
+            assertFalse(index.matches(connection, command, Collections.<Integer, Object>emptyMap()));
+            st.execute("DROP TABLE PAGES");
+        }
+    }
+}
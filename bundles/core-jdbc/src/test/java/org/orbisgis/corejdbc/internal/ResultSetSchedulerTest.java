@@ -0,0 +1,162 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of ResultSetScheduler
+ */
+public class ResultSetSchedulerTest {
+    private static final long WAIT_TIMEOUT = 10000;
+
+    @Test
+    public void testBudgetEviction() {
+        // The wheel does not expire anything during the test
+        ResultSetScheduler scheduler = new ResultSetScheduler(60000);
+        scheduler.setMaxOpenResources(2);
+        FakeResource first = new FakeResource(scheduler);
+        FakeResource second = new FakeResource(scheduler);
+        FakeResource third = new FakeResource(scheduler);
+        first.open(60000);
+        second.open(60000);
+        assertEquals(2, scheduler.getOpenResourceCount());
+        // The least recently used resource is released
+        scheduler.touch(first);
+        third.open(60000);
+        assertTrue(second.released);
+        assertFalse(first.released);
+        assertEquals(2, scheduler.getOpenResourceCount());
+        // Resources in use are kept
+        first.idle = false;
+        third.idle = false;
+        second.open(60000);
+        assertFalse(first.released);
+        assertFalse(third.released);
+        assertEquals(3, scheduler.getOpenResourceCount());
+        assertEquals(3, scheduler.getScheduledCount());
+    }
+
+    @Test
+    public void testIdleExpiry() throws InterruptedException {
+        ResultSetScheduler scheduler = new ResultSetScheduler(10);
+        FakeResource idle = new FakeResource(scheduler);
+        FakeResource busy = new FakeResource(scheduler);
+        busy.idle = false;
+        busy.open(50);
+        idle.open(50);
+        long deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+        while(!idle.released && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(idle.released);
+        assertFalse(busy.released);
+        // The busy resource is scheduled again, once
+        assertEquals(1, scheduler.getOpenResourceCount());
+        assertEquals(1, scheduler.getScheduledCount());
+        busy.idle = true;
+        deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+        while(!busy.released && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(busy.released);
+        assertEquals(0, scheduler.getOpenResourceCount());
+        assertEquals(0, scheduler.getScheduledCount());
+    }
+
+    @Test
+    public void testReopenAfterRelease() {
+        ResultSetScheduler scheduler = new ResultSetScheduler(60000);
+        FakeResource resource = new FakeResource(scheduler);
+        for(int i = 0; i < 10; i++) {
+            resource.open(i * 1000 + 1000);
+            assertEquals(1, scheduler.getScheduledCount());
+            assertTrue(resource.tryRelease());
+            assertEquals(0, scheduler.getOpenResourceCount());
+            assertEquals(0, scheduler.getScheduledCount());
+        }
+        // Registered again while it is open, it stays in a single slot
+        resource.open(1000);
+        resource.open(30000);
+        assertEquals(1, scheduler.getOpenResourceCount());
+        assertEquals(1, scheduler.getScheduledCount());
+    }
+
+    private static class FakeResource implements ResultSetScheduler.ScheduledResource {
+        private final ResultSetScheduler scheduler;
+        private volatile long expiration;
+        private volatile boolean idle = true;
+        private volatile boolean released = false;
+
+        private FakeResource(ResultSetScheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        /**
+         * @param delay Expiration delay in milliseconds
+         */
+        private void open(long delay) {
+            expiration = System.currentTimeMillis() + delay;
+            released = false;
+            scheduler.register(this);
+        }
+
+        @Override
+        public long getExpiration() {
+            return expiration;
+        }
+
+        @Override
+        public boolean isIdle() {
+            return idle;
+        }
+
+        @Override
+        public synchronized boolean tryRelease() {
+            if(idle && !released) {
+                released = true;
+                scheduler.unregister(this);
+                return true;
+            }
+            return false;
+        }
+    }
+}
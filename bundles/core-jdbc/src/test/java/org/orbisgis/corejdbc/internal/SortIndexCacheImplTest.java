@@ -0,0 +1,106 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of the saved indexes of SortIndexCacheImpl
+ */
+public class SortIndexCacheImplTest {
+
+    @Test
+    public void testPersistence() throws IOException {
+        File file = File.createTempFile("sortindex", ".sort");
+        try {
+            // Larger than the write buffer
+            int[] rows = new int[100000];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = rows.length - i;
+            }
+            SortIndexCacheImpl.write(file, "PUBLIC.TEST|VALUE|ASC", 42, rows);
+            assertNull(SortIndexCacheImpl.read(file, "PUBLIC.TEST|VALUE|ASC", 43));
+            assertNull(SortIndexCacheImpl.read(file, "PUBLIC.TEST|VALUE|DESC", 42));
+            assertArrayEquals(rows, SortIndexCacheImpl.read(file, "PUBLIC.TEST|VALUE|ASC", 42));
+            SortIndexCacheImpl.write(file, "PUBLIC.TEST|VALUE|ASC", 43, new int[0]);
+            assertArrayEquals(new int[0], SortIndexCacheImpl.read(file, "PUBLIC.TEST|VALUE|ASC", 43));
+        } finally {
+            if(!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    @Test
+    public void testTruncatedFile() throws IOException {
+        File file = File.createTempFile("sortindex", ".sort");
+        try {
+            SortIndexCacheImpl.write(file, "PUBLIC.TEST|VALUE|ASC", 42, new int[]{3, 1, 2});
+            try(RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+                out.setLength(out.length() - 4);
+            }
+            assertNull(SortIndexCacheImpl.read(file, "PUBLIC.TEST|VALUE|ASC", 42));
+        } finally {
+            if(!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+        assertNull(SortIndexCacheImpl.read(file, "PUBLIC.TEST|VALUE|ASC", 42));
+    }
+
+    @Test
+    public void testPreviousSessionDeleted() throws IOException {
+        File folder = File.createTempFile("sortindex", "");
+        assertTrue(folder.delete());
+        File file = new File(folder, "1a_2b_2a.sort");
+        SortIndexCacheImpl.write(file, "PUBLIC.TEST|VALUE|ASC|previous", 42, new int[]{3, 1, 2});
+        assertTrue(file.exists());
+        // The modification stamps of a previous session cannot be trusted
+        new SortIndexCacheImpl(null).setFolder(folder);
+        assertFalse(file.exists());
+        assertTrue(folder.delete());
+    }
+}
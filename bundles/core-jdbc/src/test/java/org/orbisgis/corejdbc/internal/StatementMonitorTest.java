@@ -0,0 +1,109 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import org.junit.Test;
+import org.orbisgis.corejdbc.StatementMetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StatementMonitorTest {
+
+    @Test
+    public void testTemplate() {
+        assertEquals("SELECT * FROM t WHERE id IN (?) AND name = ?",
+                StatementMonitor.toTemplate("SELECT * FROM t WHERE id IN (1, 2,3) AND name = 'it''s'"));
+        assertEquals("select \"col 1\" from tab_2 where t1.x > ? limit ?",
+                StatementMonitor.toTemplate("select \"col 1\"\n   from  tab_2 where t1.x > 2.5e3 limit 10"));
+    }
+
+    @Test
+    public void testRecorder() {
+        StatementMonitor monitor = new StatementMonitor();
+        monitor.setSlowQueryThreshold(0);
+        StatementMonitor.Recorder recorder = monitor.getRecorder("SELECT * FROM t WHERE id = 1");
+        // Same template
+        assertTrue(recorder == monitor.getRecorder("SELECT * FROM t WHERE id = 42"));
+        recorder.record(2000000, false);
+        recorder.record(6000000, true);
+        recorder.addRow();
+        recorder.addBytes(21);
+        monitor.getRecorder("SELECT 1").record(1000, false);
+        List<StatementMetrics> metrics = monitor.getMetrics();
+        assertEquals(2, metrics.size());
+        StatementMetrics metric = metrics.get(0);
+        assertEquals("SELECT * FROM t WHERE id = ?", metric.getTemplate());
+        assertEquals(2, metric.getExecutionCount());
+        assertEquals(1, metric.getErrorCount());
+        assertEquals(8, metric.getTotalTime(), 1e-9);
+        assertEquals(4, metric.getMeanTime(), 1e-9);
+        assertEquals(6, metric.getMaxTime(), 1e-9);
+        // 2 ms is in the [1024, 2048[ us bucket
+        assertEquals(2.048, metric.getPercentile(50), 1e-9);
+        assertEquals(6, metric.getPercentile(100), 1e-9);
+        assertEquals(1, metric.getRowCount());
+        assertEquals(21, metric.getBytesRead());
+        assertTrue(metric.getCallSite().startsWith(StatementMonitorTest.class.getName()));
+        monitor.reset();
+        assertTrue(monitor.getMetrics().isEmpty());
+    }
+
+    @Test
+    public void testSlowQueryLog() throws IOException {
+        File log = File.createTempFile("slow_queries", ".log");
+        try {
+            StatementMonitor monitor = new StatementMonitor();
+            monitor.setSlowQueryLog(log);
+            monitor.setSlowQueryThreshold(10);
+            monitor.getRecorder("SELECT 1").record(1000000, false);
+            monitor.getRecorder("SELECT 2").record(20000000, false);
+            monitor.close();
+            List<String> lines = Files.readAllLines(log.toPath(), StandardCharsets.UTF_8);
+            assertEquals(1, lines.size());
+            assertTrue(lines.get(0).endsWith("\tSELECT ?"));
+        } finally {
+            assertTrue(log.delete());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import org.h2gis.utilities.TableLocation;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit test of the update coalescing of TableUndoableBulkUpdate
+ */
+public class TableUndoableBulkUpdateTest {
+
+    @Test
+    public void testNextRun() {
+        long[] pk = new long[] {1, 2, 3, 5, 6, 7, 8};
+        Object[] values = new Object[] {"a", "a", "a", "a", "a", null, null};
+        assertEquals(3, TableUndoableBulkUpdate.nextRun(pk, values, 0));
+        // Same value but pk 4 is missing
+        assertEquals(5, TableUndoableBulkUpdate.nextRun(pk, values, 3));
+        assertEquals(7, TableUndoableBulkUpdate.nextRun(pk, values, 5));
+        assertEquals(3, TableUndoableBulkUpdate.nextRun(pk, values, 2));
+    }
+
+    @Test
+    public void testBuilder() {
+        TableUndoableBulkUpdate.Builder builder = new TableUndoableBulkUpdate.Builder(null, true,
+                TableLocation.parse("TEST"), "ID");
+        assertNull(builder.build());
+        builder.add(1, "STR", 5, "e", "E");
+        builder.add(1, "STR", 2, "b", "B");
+        builder.add(2, "FLT", 2, 2., 20.);
+        // Same cell updated twice
+        builder.add(1, "STR", 5, "E", "EE");
+        builder.add(1, "STR", 2, "B", "BB");
+        TableUndoableBulkUpdate update = builder.build();
+        assertEquals(3, update.getUpdateCount());
+        assertEquals(Arrays.asList("STR", "FLT"), update.getColumnNames());
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of TwoQueueRowCache
+ */
+public class TwoQueueRowCacheTest {
+
+    private static BatchPrefetcher.PrefetchedBatch createBatch(long firstPk) {
+        ColumnarBatch batch = new ColumnarBatch(new ColumnarBatch.Kind[]{ColumnarBatch.Kind.INT}, 100, true,
+                new StringDictionary());
+        for(int i = 0; i < 100; i++) {
+            batch.set(0, batch.addRow(firstPk + i), i);
+        }
+        return new BatchPrefetcher.PrefetchedBatch(batch, firstPk, firstPk + 100);
+    }
+
+    @Test
+    public void testHitMiss() {
+        BatchPrefetcher.PrefetchedBatch batch = createBatch(100);
+        TwoQueueRowCache cache = new TwoQueueRowCache(100 * batch.size);
+        long owner = cache.newOwner();
+        assertNull(cache.get(owner, 1, 100L));
+        cache.put(owner, 1, batch);
+        assertSame(batch, cache.get(owner, 1, 100L));
+        assertSame(batch, cache.get(owner, 1, null));
+        assertNull(cache.get(cache.newOwner(), 1, 100L));
+        // Rows have moved
+        assertNull(cache.get(owner, 1, 150L));
+        assertEquals(0, cache.getBatchCount());
+        assertEquals(0, cache.getUsedMemory());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testMemoryBudget() {
+        long batchSize = createBatch(0).size;
+        TwoQueueRowCache cache = new TwoQueueRowCache(10 * batchSize);
+        long owner = cache.newOwner();
+        for(int i = 0; i < 50; i++) {
+            cache.put(owner, i, createBatch(i * 100));
+            assertTrue(cache.getUsedMemory() <= cache.getMemoryBudget());
+        }
+        assertEquals(10, cache.getBatchCount());
+        assertEquals(40, cache.getEvictionCount());
+        assertNotNull(cache.get(owner, 49, 4900L));
+        cache.setMemoryBudget(5 * batchSize);
+        assertEquals(5, cache.getBatchCount());
+        cache.removeOwner(owner);
+        assertEquals(0, cache.getBatchCount());
+        assertEquals(0, cache.getUsedMemory());
+        assertEquals(45, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testRemoveBatches() {
+        long batchSize = createBatch(0).size;
+        TwoQueueRowCache cache = new TwoQueueRowCache(100 * batchSize);
+        long owner = cache.newOwner();
+        long other = cache.newOwner();
+        for(int i = 0; i < 10; i++) {
+            cache.put(owner, i, createBatch(i * 100));
+            cache.put(other, i, createBatch(i * 100));
+        }
+        cache.removeBatches(owner, 3, 5);
+        assertEquals(17, cache.getBatchCount());
+        assertNotNull(cache.get(owner, 2, 200L));
+        assertNull(cache.get(owner, 3, 300L));
+        assertNull(cache.get(owner, 5, 500L));
+        assertNotNull(cache.get(owner, 6, 600L));
+        assertNotNull(cache.get(other, 4, 400L));
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testScanResistance() {
+        long batchSize = createBatch(0).size;
+        TwoQueueRowCache cache = new TwoQueueRowCache(16 * batchSize);
+        long editor = cache.newOwner();
+        long renderer = cache.newOwner();
+        // The editor batches are read twice, they go in the frequently used queue
+        for(int i = 0; i < 4; i++) {
+            cache.put(editor, i, createBatch(i * 100));
+        }
+        for(int i = 4; i < 20; i++) {
+            cache.put(renderer, i, createBatch(i * 100));
+        }
+        for(int i = 0; i < 4; i++) {
+            assertNull(cache.get(editor, i, i * 100L));
+            cache.put(editor, i, createBatch(i * 100));
+        }
+        // Full scan of a large table
+        long scan = cache.newOwner();
+        for(int i = 0; i < 1000; i++) {
+            cache.put(scan, i, createBatch(i * 100));
+        }
+        for(int i = 0; i < 4; i++) {
+            assertNotNull(cache.get(editor, i, i * 100L));
+        }
+    }
+}
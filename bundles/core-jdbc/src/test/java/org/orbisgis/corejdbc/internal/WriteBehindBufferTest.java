@@ -0,0 +1,102 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.corejdbc.internal;
+
+import org.h2gis.functions.factory.H2GISDBFactory;
+import org.h2gis.utilities.TableLocation;
+import org.junit.Test;
+import org.orbisgis.corejdbc.DataManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test of WriteBehindBuffer
+ */
+public class WriteBehindBufferTest {
+    private static final long WAIT_TIMEOUT = 10000;
+
+    @Test
+    public void testRetryFailedWrite() throws Exception {
+        DataSource dataSource = H2GISDBFactory.createDataSource(WriteBehindBufferTest.class.getSimpleName(), false);
+        DataManager dataManager = new DataManagerImpl(dataSource);
+        try(Connection connection = dataSource.getConnection();
+            Statement st = connection.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS TEST");
+            st.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, FLT FLOAT CONSTRAINT FLT_LIMIT CHECK (FLT < 1000))");
+            st.execute("INSERT INTO TEST SELECT X, X FROM SYSTEM_RANGE(1, 10)");
+            WriteBehindBuffer buffer = new WriteBehindBuffer(dataManager, true, TableLocation.parse("TEST", true),
+                    "ID");
+            buffer.setFlushPolicy(10, 500);
+            // Refused by the database
+            buffer.add(5, 1, "FLT", 5., 5000.);
+            long deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+            while(buffer.getRetryDelay() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(buffer.getRetryDelay() > 0);
+            assertTrue(!buffer.isEmpty());
+            // The update is written by the next attempt, without any new update or flush
+            st.execute("ALTER TABLE TEST DROP CONSTRAINT FLT_LIMIT");
+            deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+            while(!buffer.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(buffer.isEmpty());
+            assertEquals(0, buffer.getRetryDelay());
+            try(ResultSet rs = st.executeQuery("SELECT FLT FROM TEST WHERE ID = 5")) {
+                assertTrue(rs.next());
+                assertEquals(5000., rs.getDouble(1), 1e-6);
+            }
+            // The error of the failed write is reported
+            try {
+                buffer.flush();
+                assertTrue("The failed write must be reported", false);
+            } catch (SQLException ex) {
+                // Ok
+            }
+            buffer.flush();
+            st.execute("DROP TABLE TEST");
+        }
+    }
+}
@@ -46,7 +46,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 import net.opengis.ows_context.LayerType;
-import org.orbisgis.corejdbc.common.LongUnion;
+import org.orbisgis.corejdbc.common.LongBitmap;
 import org.orbisgis.coremap.renderer.se.SeExceptions.InvalidStyle;
 import org.orbisgis.coremap.renderer.se.Style;
 import org.orbisgis.coremap.renderer.se.common.Description;
@@ -63,7 +63,7 @@ public abstract class BeanLayer extends AbstractLayer {
         //bean properties
         private Description description;
         protected List<Style> styleList = new ArrayList<Style>();
-        protected LongUnion selection = new LongUnion();
+        protected LongBitmap selection = new LongBitmap();
         private boolean visible = true;
         private PropertyChangeListener styleListener = EventHandler.create(PropertyChangeListener.class,this,"onStyleChanged","");
 
@@ -298,8 +298,8 @@ public abstract class BeanLayer extends AbstractLayer {
 
         @Override
         public void setSelection(Set<Long> newSelection) {
-                LongUnion oldSelection = selection;
-                selection = new LongUnion(newSelection);
+                LongBitmap oldSelection = selection;
+                selection = new LongBitmap(newSelection);
                 propertyChangeSupport.firePropertyChange(PROP_SELECTION, oldSelection, selection);
         }
 }
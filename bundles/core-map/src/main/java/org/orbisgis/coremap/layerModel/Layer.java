@@ -160,6 +160,13 @@ public class Layer extends BeanLayer {
         return tableReference;
     }
 
+    /**
+     * @param tableReference Table already registered for the data URI, the data URI will not be registered on open.
+     */
+    void setTableReference(String tableReference) {
+        this.tableReference = tableReference;
+    }
+
     @Override
     public void clearCache() {
         envelope = new Envelope();
@@ -173,6 +180,12 @@ public class Layer extends BeanLayer {
                 if (isStream()) {
                     return stream.getEnvelope();
                 } else {
+                    Envelope materializedEnvelope = dataManager.getCachedEnvelope(tableReference);
+                    if (materializedEnvelope != null) {
+                        // The file has been imported, its envelope has already been computed
+                        envelope = materializedEnvelope;
+                        return materializedEnvelope;
+                    }
                     try (Connection connection = dataManager.getDataSource().getConnection()) {
                         // Check if the table exists
                         if (!JDBCUtilities.tableExists(connection, tableReference)) {
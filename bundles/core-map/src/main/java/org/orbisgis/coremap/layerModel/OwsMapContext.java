@@ -48,6 +48,7 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
@@ -102,6 +103,8 @@ public final class OwsMapContext extends BeanMapContext {
         private OWSContextType jaxbMapContext = null; //Persistent form of the MapContext
         private long idTime;
         private DataManager dataManager;
+        // Table reference of the layer sources registered while loading the map context
+        private Map<URI, String> registeredSources = new HashMap<URI, String>();
 
         /**
          * Default constructor
@@ -149,14 +152,10 @@ public final class OwsMapContext extends BeanMapContext {
 
         @Override
         public ILayer createLayer(URI source) throws LayerException {
-            if(!source.isAbsolute()) {
-                // If URI is not absolute ex URI.create("../folder/myfile.shp"), then create a canonical URI
-                try {
-                    source = new File(location != null ? new File(location) : new File("./"),
-                            source.toString()).getCanonicalFile().toURI();
-                } catch (IOException ex) {
-                    throw new LayerException(ex);
-                }
+            try {
+                source = getAbsoluteURI(source);
+            } catch (IOException ex) {
+                throw new LayerException(ex);
             }
             String layerName;
             try {
@@ -171,6 +170,15 @@ public final class OwsMapContext extends BeanMapContext {
             return createLayer(layerName, source);
         }
 
+        private URI getAbsoluteURI(URI source) throws IOException {
+            if(!source.isAbsolute()) {
+                // If URI is not absolute ex URI.create("../folder/myfile.shp"), then create a canonical URI
+                return new File(location != null ? new File(location) : new File("./"),
+                        source.toString()).getCanonicalFile().toURI();
+            }
+            return source;
+        }
+
     @Override
         public ILayer createLayerCollection(String layerName) {
                 return new LayerCollection(layerName);
@@ -579,18 +587,15 @@ public final class OwsMapContext extends BeanMapContext {
                         if (dataUrl != null) {
                                 OnlineResourceType resType = dataUrl.getOnlineResource();
                                 try {
-                                        URI layerURI = new URI(resType.getHref());
-                                        // The resource is given as relative to MapContext location
-                                        if(!layerURI.isAbsolute() && getLocation()!=null) {
-                                            try {
-                                                // Resolve the relative resource ex: new Uri("myFile.shp")
-                                                layerURI = getLocation().resolve(layerURI);
-                                            } catch (IllegalArgumentException ex) {
-                                                LOGGER.warn("Error while trying to find an absolute path for an external resource", ex);
-                                            }
-                                        }
+                                        URI layerURI = getLayerURI(lt);
                                         //Get table name
                                         ILayer leafLayer = createLayer(layerURI);
+                                        if(leafLayer instanceof Layer && leafLayer.getTableReference().isEmpty()) {
+                                                String tableReference = registeredSources.get(((Layer) leafLayer).getDataUri());
+                                                if(tableReference != null) {
+                                                        ((Layer) leafLayer).setTableReference(tableReference);
+                                                }
+                                        }
                                         leafLayer.setDescription(new Description(lt));
                                         leafLayer.setVisible(!lt.isHidden());
                                         //Parse styles
@@ -613,6 +618,50 @@ public final class OwsMapContext extends BeanMapContext {
                 }
         }
 
+        /**
+         * @param lt Leaf layer
+         * @return The layer source, resolved against the map context location if relative
+         * @throws URISyntaxException The href is not a valid URI
+         */
+        private URI getLayerURI(LayerType lt) throws URISyntaxException {
+                URI layerURI = new URI(lt.getDataURL().getOnlineResource().getHref());
+                // The resource is given as relative to MapContext location
+                if(!layerURI.isAbsolute() && getLocation()!=null) {
+                    try {
+                        // Resolve the relative resource ex: new Uri("myFile.shp")
+                        layerURI = getLocation().resolve(layerURI);
+                    } catch (IllegalArgumentException ex) {
+                        LOGGER.warn("Error while trying to find an absolute path for an external resource", ex);
+                    }
+                }
+                return layerURI;
+        }
+
+        /**
+         * Recursive function to collect the file sources of a layer tree
+         *
+         * @param layers Layer tree
+         * @param sources Collected file sources
+         */
+        private void collectLayerSources(List<LayerType> layers, List<URI> sources) {
+                for(LayerType lt : layers) {
+                        if(!lt.getLayer().isEmpty() || lt.getDataURL() == null) {
+                                collectLayerSources(lt.getLayer(), sources);
+                        } else {
+                                try {
+                                        // Same URI as the one given to the layer by createLayer
+                                        URI layerURI = getAbsoluteURI(getLayerURI(lt));
+                                        if("file".equalsIgnoreCase(layerURI.getScheme())) {
+                                                sources.add(layerURI);
+                                        }
+                                } catch (URISyntaxException | IOException ex) {
+                                        // The layer will report the error
+                                        LOGGER.trace(ex.getLocalizedMessage(), ex);
+                                }
+                        }
+                }
+        }
+
         /**
          * Recursive function to parse a layer tree
          *
@@ -667,18 +716,31 @@ public final class OwsMapContext extends BeanMapContext {
                                 nextDescription.addAbstract(locale,mapAbstract.getValue());
                         }
                         setDescription(nextDescription);
-                        //Collect DataSource URI already loaded
+                        //Register all the DataSource in one pass
+                        List<URI> sources = new ArrayList<URI>();
+                        collectLayerSources(jaxbMapContext.getResourceList().getLayer(), sources);
+                        if(!sources.isEmpty()) {
+                                try {
+                                        registeredSources = dataManager.registerDataSources(sources);
+                                } catch (SQLException ex) {
+                                        LOGGER.warn(I18N.tr("Unable to register the data sources of the map"), ex);
+                                }
+                        }
 
                         //Load layers and DataSource
                         //Root layer correspond to ResourceList
                         setRootLayer(createLayerCollection("root"));
-                        for (LayerType lt : jaxbMapContext.getResourceList().getLayer()) {
-                                try {
-                                        parseJaxbLayer(lt, getLayerModel());
-                                } catch (LayerException ex) {
-                                        //The layer is not created if a layer exception is thrown
-                                        LOGGER.error(I18N.tr("The layer has not been imported"), ex);
+                        try {
+                                for (LayerType lt : jaxbMapContext.getResourceList().getLayer()) {
+                                        try {
+                                                parseJaxbLayer(lt, getLayerModel());
+                                        } catch (LayerException ex) {
+                                                //The layer is not created if a layer exception is thrown
+                                                LOGGER.error(I18N.tr("The layer has not been imported"), ex);
+                                        }
                                 }
+                        } finally {
+                                registeredSources = new HashMap<URI, String>();
                         }
                 }
         }
@@ -409,6 +409,14 @@ public class MapTransform implements PointTransformation {
                 }
         }
 
+        /**
+         * Gets the ground size of a pixel, computed from the scale denominator and the DPI.
+         * @return The pixel size in map units, 0 if the extent is not set
+         */
+        public double getPixelSize() {
+                return getScaleDenominator() * 0.0254 / dpi;
+        }
+
         /**
          * Adds a listener waiting for transformation changes.
          * @param listener The new {@code TransformListener}.
@@ -45,7 +45,7 @@ import java.util.SortedSet;
 import org.slf4j.*;
 import org.orbisgis.commons.progress.SwingWorkerPM;
 import org.orbisgis.corejdbc.ReadTable;
-import org.orbisgis.corejdbc.common.LongUnion;
+import org.orbisgis.corejdbc.common.LongBitmap;
 import org.orbisgis.coremap.layerModel.ILayer;
 import org.orbisgis.coremap.layerModel.MapContext;
 import org.xnap.commons.i18n.I18n;
@@ -107,7 +107,7 @@ public class ZoomToSelection extends SwingWorkerPM {
             if(data instanceof SortedSet) {
                 sortedSet = (SortedSet<Long>)data;
             } else {
-                sortedSet = new LongUnion(data);
+                sortedSet = new LongBitmap(data);
             }
             return ReadTable.getTableSelectionEnvelope(mapContext.getDataManager(), tableReference,sortedSet, this.getProgressMonitor());
         }
@@ -38,6 +38,7 @@ package org.orbisgis.coremap.renderer;
 
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.GeometryFactory;
+import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.SFSUtilities;
 import org.h2gis.utilities.SpatialResultSet;
 import org.h2gis.utilities.TableLocation;
@@ -106,14 +107,16 @@ public class DefaultResultSetProviderFactory implements ResultSetProviderFactory
         }
 
         @Override
-        public SpatialResultSet execute(ProgressMonitor pm, Envelope extent, Set<String> fields) throws SQLException {
+        public SpatialResultSet execute(ProgressMonitor pm, Envelope extent, Set<String> fields, double tolerance)
+                throws SQLException {
             this.pm = pm;
             connection = dataSource.getConnection();
             List<String> geometryFields = SFSUtilities.getGeometryFields(connection, TableLocation.parse(layer.getTableReference()));
             if(geometryFields.isEmpty()) {
                 throw new SQLException(I18N.tr("Table {0} does not contains geometry fields",layer.getTableReference()));
             }
-            st = createStatement(connection, geometryFields.get(0), layer.getTableReference(), fields);
+            st = createStatement(connection, geometryFields.get(0), layer.getTableReference(), fields,
+                    tolerance);
             st.setFetchSize(FETCH_SIZE);
             st.setFetchDirection(ResultSet.FETCH_FORWARD);
             connection.setAutoCommit(false);
@@ -132,41 +135,38 @@ public class DefaultResultSetProviderFactory implements ResultSetProviderFactory
          * @param geometryField the first geometryfield
          * @param tableReference the name of the input table
          * @param fields a list of columns
+         * @param tolerance simplification tolerance in map units, 0 to fetch the full resolution geometries
          * @return
          * @throws SQLException 
          */
         private PreparedStatement createStatement(Connection connection,String geometryField,String tableReference,
-                                                  Set<String> fields) throws SQLException {
-            if(fields.isEmpty()){
-                if(pkName != null && !pkName.isEmpty()) {
-                    return connection.prepareStatement(
-                            String.format("select " + pkName + ",%s from %s where %s && ?", geometryField,
-                            tableReference, geometryField),ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
-                }
-                else{
-                    return connection.prepareStatement(
-                            String.format("select %s from %s where %s && ?", geometryField, tableReference,
-                            geometryField),ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
-                }
+                                                  Set<String> fields, double tolerance) throws SQLException {
+            // Generalization is done by the PostGIS server, H2 returns the original geometries
+            boolean generalize = tolerance > 0 && !JDBCUtilities.isH2DataBase(connection.getMetaData());
+            String toleranceValue = Double.toString(tolerance);
+            StringBuilder sb = new StringBuilder("select ");
+            if(pkName != null && !pkName.isEmpty()){
+                sb.append(pkName).append(",");
             }
-            else{
-                StringBuilder sb = new StringBuilder("select ");
-                if(pkName != null && !pkName.isEmpty()){
-                    sb.append(pkName).append(",");
-                }
-                
-                for (String field : fields) {
+            for (String field : fields) {
+                if(!field.equals(geometryField)) {
                     sb.append(field).append(",");
-                    
-                }
-                if(fields.contains(geometryField)){
-                sb.append(" from ").append(tableReference).append(" where ").append(geometryField).append(" && ?");
                 }
-                else{
-                sb.append(geometryField).append(" from ").append(tableReference).append(" where ").append(geometryField).append(" && ?");
-                }
-                return connection.prepareStatement(sb.toString());
             }
+            if(generalize) {
+                sb.append(String.format("ST_SimplifyPreserveTopology(%1$s, %2$s) %1$s", geometryField,
+                        toleranceValue));
+            } else {
+                sb.append(geometryField);
+            }
+            sb.append(" from ").append(tableReference).append(" where ").append(geometryField).append(" && ?");
+            if(generalize) {
+                // Skip the features smaller than the tolerance, points are always kept
+                sb.append(String.format(" and (ST_Dimension(%1$s) = 0 or ST_XMax(%1$s) - ST_XMin(%1$s) >= %2$s" +
+                        " or ST_YMax(%1$s) - ST_YMin(%1$s) >= %2$s)", geometryField, toleranceValue));
+            }
+            return connection.prepareStatement(sb.toString(), ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
         }
 
         @Override
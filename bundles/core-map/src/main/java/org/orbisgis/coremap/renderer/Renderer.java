@@ -52,6 +52,8 @@ import org.h2gis.utilities.SpatialResultSetMetaData;
 import org.orbisgis.commons.progress.NullProgressMonitor;
 import org.orbisgis.commons.progress.ProgressMonitor;
 import org.orbisgis.corejdbc.ReadRowSet;
+import org.orbisgis.corejdbc.common.LongBitmap;
+import org.orbisgis.corejdbc.common.WKBEnvelope;
 import org.orbisgis.coremap.layerModel.ILayer;
 import org.orbisgis.coremap.layerModel.LayerException;
 import org.orbisgis.coremap.map.MapTransform;
@@ -183,7 +185,10 @@ public abstract class Renderer {
                 // fetch symbolizers and rules
                 style.getSymbolizers(mt, symbs, rList, fRList);
                 // Create new dataSource with only feature in current extent
-                Set<Long> selectedRows = layer.getSelection();
+                Set<Long> layerSelection = layer.getSelection();
+                // Primitive lookup of the drawn rows
+                LongBitmap selectedRows = layerSelection instanceof LongBitmap ? (LongBitmap) layerSelection :
+                        new LongBitmap(layerSelection);
                 // And now, features will be rendered
                 // Get a graphics for each symbolizer
                 initGraphics2D(symbs, g2, mt);
@@ -194,7 +199,9 @@ public abstract class Renderer {
                     fv.visitSymbolizerNode(r);
                     Set<String> fields = fv.getResult();
                     try(ResultSetProviderFactory.ResultSetProvider resultSetProvider = layerDataFactory.getResultSetProvider(layer, rulesProgress)) {
-                        try(SpatialResultSet rs = resultSetProvider.execute(rulesProgress, extent, fields)) {
+                        // Details smaller than half a pixel are not visible
+                        double tolerance = mt.getPixelSize() / 2;
+                        try(SpatialResultSet rs = resultSetProvider.execute(rulesProgress, extent, fields, tolerance)) {
                             //Workaround because H2 linked table doesn't contains PK or _ROWID_
                             String pkName = resultSetProvider.getPkName();
                             int pkColumn = -1;
@@ -215,14 +222,25 @@ public abstract class Renderer {
                                     break;
                                 }
                                 Geometry theGeom = null;
+                                boolean visible = true;
                                 // If there is only one geometry, it is fetched now, otherwise, it up to symbolizers
                                 // to retrieve the correct geometry (through the Geometry attribute)
                                 if (fieldID >= 0) {
-                                    theGeom = rs.getGeometry(fieldID);
+                                    // Do not display the geometry when the envelope
+                                    //doesn't intersect the current mapcontext area.
+                                    // The envelope is read from the WKB, the geometry is decoded only if drawn.
+                                    Envelope geomEnvelope = getEnvelope(rs, fieldID);
+                                    if(geomEnvelope != null) {
+                                        visible = geomEnvelope.intersects(extent);
+                                        if(visible) {
+                                            theGeom = rs.getGeometry(fieldID);
+                                        }
+                                    } else {
+                                        theGeom = rs.getGeometry(fieldID);
+                                        visible = theGeom == null || theGeom.getEnvelopeInternal().intersects(extent);
+                                    }
                                 }
-                                // Do not display the geometry when the envelope
-                                //doesn't intersect the current mapcontext area.
-                                if (theGeom == null || theGeom.getEnvelopeInternal().intersects(extent)) {
+                                if (visible) {
                                     //Workaround because H2 linked table doesn't contains PK or _ROWID_
                                     long row = -1;
                                     if(pkColumn != -1){
@@ -260,6 +278,20 @@ public abstract class Renderer {
             return layerCount;
         }
 
+        /**
+         * Read the envelope of the geometry without decoding it.
+         * @param rs Result set on a valid row
+         * @param fieldID Geometry field index
+         * @return The envelope or null if it cannot be read from the WKB (the geometry must then be decoded)
+         * @throws SQLException
+         */
+        private static Envelope getEnvelope(SpatialResultSet rs, int fieldID) throws SQLException {
+                if(rs instanceof ReadRowSet) {
+                        return ((ReadRowSet) rs).getEnvelope(fieldID);
+                }
+                return WKBEnvelope.read(rs.getBytes(fieldID));
+        }
+
         private boolean drawFeature(Symbolizer s, Geometry geom, ResultSet rs,
                         long rowIdentifier, Envelope extent, boolean selected,
                         MapTransform mt) throws ParameterException,
@@ -73,10 +73,13 @@ public interface ResultSetProviderFactory {
          * @param pm ProgressMonitor allows to display the process and cancel it.
          * @param extent filter entities by this envelope
          * @param fields a list of column names to keep in the select... from
+         * @param tolerance Geometries may be simplified with this distance tolerance (map units), and features smaller
+         *                  than this tolerance may be skipped. 0 to fetch the full resolution geometries.
          * @return The content of the table
          * @throws java.sql.SQLException
          */
-        SpatialResultSet execute(ProgressMonitor pm, Envelope extent, Set<String> fields) throws SQLException;
+        SpatialResultSet execute(ProgressMonitor pm, Envelope extent, Set<String> fields, double tolerance)
+                throws SQLException;
 
         /**
          * @return The primary key column name, empty if there is no such thing.
@@ -42,9 +42,14 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
+import javax.sql.DataSource;
+
 import org.h2gis.utilities.TableLocation;
+import org.orbisgis.commons.progress.ProgressMonitor;
+import org.orbisgis.corejdbc.TableScan;
 import org.orbisgis.coremap.renderer.se.parameter.ParameterException;
 import org.orbisgis.coremap.renderer.se.parameter.real.RealParameter;
 
@@ -82,6 +87,57 @@ public class ClassificationUtils {
         return Collections.unmodifiableList(values);
     }
 
+    /**
+     * Retrieves the non null double values of a column in ascending order. The table is read by several connections,
+     * each range of rows is sorted on its own then the sorted ranges are merged.
+     *
+     * @param dataSource Connections used to read the table
+     * @param table      Table identifier
+     * @param field      Name of the column
+     * @param pm         Progress monitor
+     * @return The sorted values, null if canceled
+     * @throws SQLException
+     */
+    public static double[] getSortedValues(DataSource dataSource, String table, String field, ProgressMonitor pm)
+            throws SQLException {
+        TableScan scan = new TableScan(dataSource, table);
+        String column = TableLocation.quoteIdentifier(field);
+        scan.setFilter(column + " IS NOT NULL");
+        return scan.scan(column, new SortedValuesReader(), pm);
+    }
+
+    private static class SortedValuesReader implements TableScan.PartitionReader<double[]> {
+        @Override
+        public double[] read(ResultSet rs) throws SQLException {
+            double[] values = new double[256];
+            int count = 0;
+            while (rs.next()) {
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, count * 2);
+                }
+                values[count++] = rs.getDouble(1);
+            }
+            values = Arrays.copyOf(values, count);
+            Arrays.sort(values);
+            return values;
+        }
+
+        @Override
+        public double[] merge(double[] left, double[] right) {
+            double[] merged = new double[left.length + right.length];
+            int idLeft = 0;
+            int idRight = 0;
+            for (int id = 0; id < merged.length; id++) {
+                if (idRight == right.length || (idLeft < left.length && left[idLeft] <= right[idRight])) {
+                    merged[id] = left[idLeft++];
+                } else {
+                    merged[id] = right[idRight++];
+                }
+            }
+            return merged;
+        }
+    }
+
     /**
      * Gets the minimum and maximum values of {@code table} from {@code value}.
      *
@@ -139,6 +139,10 @@ public class EditableSourceImpl extends AbstractEditableElement implements Edita
                 rowSet = dataManager.createReversibleRowSet();
                 rowSet.setExcludeGeomFields(excludeGeom);
                 rowSet.initialize(TableLocation.parse(tableReference, isH2).toString(isH2), pkName, progressMonitor);
+                if(!isH2 && !pkName.isEmpty()) {
+                    // Do not wait for the remote database on each cell edition
+                    rowSet.setWriteBehind(true);
+                }
             } catch (SQLException | IllegalArgumentException ex) {
                 throw new EditableElementException(ex);
             }
@@ -236,6 +240,13 @@ public class EditableSourceImpl extends AbstractEditableElement implements Edita
 
     @Override
     public void save() throws UnsupportedOperationException, EditableElementException {
+        if(rowSet != null) {
+            try {
+                rowSet.flush();
+            } catch (SQLException ex) {
+                throw new EditableElementException(ex);
+            }
+        }
     }
 
     @Override
@@ -53,13 +53,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
-import javax.swing.*;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Queue;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -72,6 +75,17 @@ public class EventListenerService implements DatabaseEventListener, TriggerFacto
     private Logger logger = LoggerFactory.getLogger(EventListenerService.class);
     private Queue<StateEvent> eventStack = new LinkedBlockingQueue<>();
     private AtomicBoolean eventProcessRunning = new AtomicBoolean(false);
+    // Events are delivered out of the H2 thread
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Database events");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private TableEditEventCoalescer tableEvents;
+    private TableModificationWatcher modificationWatcher;
 
     private static boolean isLocalH2DataBase(DatabaseMetaData meta) throws SQLException {
         return JDBCUtilities.isH2DataBase(meta)
@@ -82,6 +96,8 @@ public class EventListenerService implements DatabaseEventListener, TriggerFacto
     @Reference
     public void setDataManager(DataManager dataManager) {
         this.dataManager = dataManager;
+        this.tableEvents = new TableEditEventCoalescer(dataManager, executor);
+        this.modificationWatcher = new TableModificationWatcher(dataManager, tableEvents, executor);
         DataSource dataSource = dataManager.getDataSource();
         // Link
         try(Connection connection = dataSource.getConnection();
@@ -108,6 +124,7 @@ public class EventListenerService implements DatabaseEventListener, TriggerFacto
                     logger.warn("Cannot change connection URL:\n" + ex.getLocalizedMessage(), ex);
                 }
                 H2Trigger.setTriggerFactory(this);
+                modificationWatcher.start();
             }
         } catch (SQLException ex) {
             logger.error(ex.getLocalizedMessage(), ex);
@@ -118,6 +135,8 @@ public class EventListenerService implements DatabaseEventListener, TriggerFacto
     public void disable() {
         H2DatabaseEventListener.setDelegateDatabaseEventListener(null);
         H2Trigger.setTriggerFactory(null);
+        // Pending events are still delivered
+        executor.shutdown();
     }
 
     public void unsetDataManager(DataManager dataManager) {
@@ -154,10 +173,17 @@ public class EventListenerService implements DatabaseEventListener, TriggerFacto
             // Do not fire the event in the H2 thread in order to not raise
             // org.h2.jdbc.JdbcSQLException: Timeout trying to lock table XXX
             StateEvent.DB_STATES stateEnum = StateEvent.DB_STATES.values()[state];
+            if(stateEnum == StateEvent.DB_STATES.STATE_STATEMENT_END) {
+                modificationWatcher.statementEnd(name);
+            }
             eventStack.add(new StateEvent(stateEnum, name, x, max));
             if (!eventProcessRunning.getAndSet(true)) {
-                //SwingUtilities.invokeLater();
-                new StateEventProcess(dataManager, eventStack, eventProcessRunning).execute();
+                try {
+                    executor.execute(new StateEventProcess(dataManager, eventStack, eventProcessRunning));
+                } catch (RejectedExecutionException ex) {
+                    // The service is stopped
+                    eventProcessRunning.set(false);
+                }
             }
         }
     }
@@ -169,8 +195,9 @@ public class EventListenerService implements DatabaseEventListener, TriggerFacto
 
     @Override
     public Trigger createTrigger(Connection conn, String schemaName, String triggerName, String tableName, boolean before, int type) throws SQLException {
-        if(dataManager != null) {
-            TableTrigger trigger = new TableTrigger(dataManager);
+        // The table changes may be detected at the end of the statements instead
+        if(dataManager != null && !dataManager.isStatementChangeEvents()) {
+            TableTrigger trigger = new TableTrigger(dataManager, tableEvents);
             trigger.init(conn, schemaName, triggerName, tableName, before, type);
             return trigger;
         } else {
@@ -178,12 +205,13 @@ public class EventListenerService implements DatabaseEventListener, TriggerFacto
         }
     }
 
-    private static class StateEventProcess extends SwingWorker {
+    /**
+     * Deliver the queued state events, until the queue is empty.
+     */
+    private static class StateEventProcess implements Runnable {
         private final DataManager dataManager;
         private final Queue<StateEvent> eventStack;
         private final AtomicBoolean stateEventProcessing;
-        private static final int TIME_MAX_THREAD_ALIVE = 5000;
-        private static final int SLEEP_TIME = 500;
 
         private StateEventProcess(DataManager dataManager, Queue<StateEvent> eventStack, AtomicBoolean stateEventProcessing) {
             this.dataManager = dataManager;
@@ -192,23 +220,17 @@ public class EventListenerService implements DatabaseEventListener, TriggerFacto
         }
 
         @Override
-        protected Object doInBackground() throws Exception {
-            try {
-                long begin = System.currentTimeMillis();
-                while(!eventStack.isEmpty() || System.currentTimeMillis() - begin < TIME_MAX_THREAD_ALIVE) {
-                    while(!eventStack.isEmpty()) {
+        public void run() {
+            do {
+                try {
+                    while (!eventStack.isEmpty()) {
                         dataManager.fireDatabaseProgression(eventStack.remove());
                     }
-                    try {
-                        Thread.sleep(SLEEP_TIME);
-                    } catch (InterruptedException ex) {
-                        break;
-                    }
+                } finally {
+                    stateEventProcessing.set(false);
                 }
-            } finally {
-                stateEventProcessing.set(false);
-            }
-            return null;
+                // An event may have been queued after the last check
+            } while (!eventStack.isEmpty() && !stateEventProcessing.getAndSet(true));
         }
     }
 }
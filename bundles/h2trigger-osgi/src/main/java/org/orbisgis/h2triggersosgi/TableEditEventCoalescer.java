@@ -0,0 +1,190 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.h2triggersosgi;
+
+import org.orbisgis.corejdbc.DataManager;
+import org.orbisgis.corejdbc.TableEditEvent;
+import org.orbisgis.corejdbc.common.LongUnion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merge the row changes of the tables before delivering them to the {@link DataManager}.
+ * The changes are delivered at most once per {@link #DELIVERY_PERIOD}. For each table and change type, the primary
+ * keys are merged into ranges of consecutive values, one event is fired per range. Above {@link #MAX_RANGES} ranges
+ * a single event without primary key (the whole table has changed) is fired.
+ */
+public class TableEditEventCoalescer {
+    /** Delay in ms between the first change and its delivery */
+    public static final long DELIVERY_PERIOD = 250;
+    /** Maximum number of range events of a table delivered at once */
+    public static final int MAX_RANGES = 32;
+    private static final Logger LOGGER = LoggerFactory.getLogger(TableEditEventCoalescer.class);
+    private final DataManager dataManager;
+    private final ScheduledExecutorService executor;
+    private Map<String, TableEdits> pendingEdits = new LinkedHashMap<>();
+    private boolean deliveryScheduled = false;
+
+    /**
+     * @param dataManager Receiver of the events
+     * @param executor Thread of delivery
+     */
+    public TableEditEventCoalescer(DataManager dataManager, ScheduledExecutorService executor) {
+        this.dataManager = dataManager;
+        this.executor = executor;
+    }
+
+    /**
+     * Register a change, called from the H2 thread.
+     * @param tableIdentifier Table identifier
+     * @param type See {@link TableModelEvent#getType()}
+     * @param pk Primary key of the changed row, null if the whole table may have changed
+     */
+    public synchronized void tableChange(String tableIdentifier, int type, Long pk) {
+        TableEdits edits = pendingEdits.get(tableIdentifier);
+        if(edits == null) {
+            edits = new TableEdits();
+            pendingEdits.put(tableIdentifier, edits);
+        }
+        edits.add(type, pk);
+        if(!deliveryScheduled) {
+            try {
+                executor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliver();
+                    }
+                }, DELIVERY_PERIOD, TimeUnit.MILLISECONDS);
+                deliveryScheduled = true;
+            } catch (RejectedExecutionException ex) {
+                // The service is stopped, nobody listens
+                pendingEdits.clear();
+            }
+        }
+    }
+
+    private void deliver() {
+        Map<String, TableEdits> edits;
+        synchronized (this) {
+            edits = pendingEdits;
+            pendingEdits = new LinkedHashMap<>();
+            deliveryScheduled = false;
+        }
+        for(Map.Entry<String, TableEdits> entry : edits.entrySet()) {
+            for(TableEditEvent event : entry.getValue().getEvents(entry.getKey())) {
+                try {
+                    dataManager.fireTableEditHappened(event);
+                } catch (RuntimeException ex) {
+                    LOGGER.error(ex.getLocalizedMessage(), ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Changes of a table since the last delivery
+     */
+    private static class TableEdits {
+        // Changed primary keys by change type
+        private final Map<Integer, LongUnion> rows = new TreeMap<>();
+        // Number of ranges of all change types, kept up to date on each row
+        private int rangeCount = 0;
+        private boolean wholeTable = false;
+        private int wholeTableType;
+
+        private void add(int type, Long pk) {
+            if(wholeTable) {
+                if(type != wholeTableType) {
+                    wholeTableType = TableModelEvent.UPDATE;
+                }
+            } else if(pk == null) {
+                setWholeTable(type);
+            } else {
+                LongUnion pks = rows.get(type);
+                if(pks == null) {
+                    pks = new LongUnion();
+                    rows.put(type, pks);
+                }
+                int typeRangeCount = pks.getRangeCount();
+                pks.add(pk);
+                rangeCount += pks.getRangeCount() - typeRangeCount;
+                if(rangeCount > MAX_RANGES) {
+                    setWholeTable(type);
+                }
+            }
+        }
+
+        private void setWholeTable(int type) {
+            wholeTable = true;
+            wholeTableType = type;
+            for(int rowType : rows.keySet()) {
+                if(rowType != type) {
+                    wholeTableType = TableModelEvent.UPDATE;
+                }
+            }
+            rows.clear();
+            rangeCount = 0;
+        }
+
+        private List<TableEditEvent> getEvents(String tableIdentifier) {
+            List<TableEditEvent> events = new ArrayList<>();
+            if(wholeTable) {
+                events.add(new TableEditEvent(tableIdentifier, TableModelEvent.ALL_COLUMNS, null, null,
+                        wholeTableType));
+            } else {
+                for(Map.Entry<Integer, LongUnion> entry : rows.entrySet()) {
+                    List<Long> ranges = entry.getValue().getValueRanges();
+                    for(int idRange = 0; idRange < ranges.size() - 1; idRange += 2) {
+                        events.add(new TableEditEvent(tableIdentifier, TableModelEvent.ALL_COLUMNS,
+                                ranges.get(idRange), ranges.get(idRange + 1), entry.getKey()));
+                    }
+                }
+            }
+            return events;
+        }
+    }
+}
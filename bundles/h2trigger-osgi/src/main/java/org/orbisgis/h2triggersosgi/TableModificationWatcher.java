@@ -0,0 +1,158 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.h2triggersosgi;
+
+import org.h2gis.utilities.TableLocation;
+import org.orbisgis.corejdbc.DataManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.event.TableModelEvent;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Detect the changed tables at the end of the statements, without row triggers. The modification counters of the
+ * tables are read after the statements that may change the data, at most once per
+ * {@link TableEditEventCoalescer#DELIVERY_PERIOD}. A single event without primary key is fired for each changed table
+ * whose listeners requested the database changes, the tables that would have a trigger in row trigger mode.
+ * The counters are read in row trigger mode too, without firing events: they are the baseline of the tables added to
+ * the watched tables, and of all the tables when the statement change events are enabled.
+ */
+public class TableModificationWatcher {
+    private static final String MODIFICATION_QUERY = "SELECT TABLE_SCHEMA, TABLE_NAME, LAST_MODIFICATION FROM " +
+            "INFORMATION_SCHEMA.TABLES WHERE TABLE_TYPE = 'TABLE'";
+    private static final Logger LOGGER = LoggerFactory.getLogger(TableModificationWatcher.class);
+    private final DataManager dataManager;
+    private final TableEditEventCoalescer tableEvents;
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean checkScheduled = new AtomicBoolean(false);
+    // Last read modification counter of each table, only accessed from the executor thread
+    private Map<String, Long> modifications;
+
+    /**
+     * @param dataManager Data manager that holds the table listeners and the data source
+     * @param tableEvents Table changes are delivered by this coalescer
+     * @param executor Thread of the checks
+     */
+    public TableModificationWatcher(DataManager dataManager, TableEditEventCoalescer tableEvents,
+                                    ScheduledExecutorService executor) {
+        this.dataManager = dataManager;
+        this.tableEvents = tableEvents;
+        this.executor = executor;
+    }
+
+    /**
+     * Read the current modification counters, the following changes are compared with them.
+     */
+    public void start() {
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    check();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // The service is stopped
+        }
+    }
+
+    /**
+     * A statement has been executed, in both change event modes, called from the H2 thread.
+     * @param sql Statement, may be null
+     */
+    public void statementEnd(String sql) {
+        if(sql == null || sql.trim().toUpperCase(Locale.ROOT).startsWith("SELECT")) {
+            // Queries do not change the tables, and the check itself is a query
+            return;
+        }
+        if(!checkScheduled.getAndSet(true)) {
+            try {
+                executor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        checkScheduled.set(false);
+                        check();
+                    }
+                }, TableEditEventCoalescer.DELIVERY_PERIOD, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException ex) {
+                // The service is stopped
+                checkScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Compare the modification counters with the previous ones, and register the changes of the tables that would
+     * have a trigger.
+     */
+    private void check() {
+        Map<String, Long> current = new HashMap<>();
+        try(Connection connection = dataManager.getDataSource().getConnection();
+            Statement st = connection.createStatement();
+            ResultSet rs = st.executeQuery(MODIFICATION_QUERY)) {
+            while (rs.next()) {
+                String table = new TableLocation(rs.getString(1), rs.getString(2)).toString(true);
+                current.put(table, rs.getLong(3));
+            }
+        } catch (SQLException ex) {
+            LOGGER.error(ex.getLocalizedMessage(), ex);
+            return;
+        }
+        if(modifications != null && dataManager.isStatementChangeEvents()) {
+            for(Map.Entry<String, Long> entry : current.entrySet()) {
+                // A newly watched table is compared with its counter of the previous check, the tables created after
+                // the previous check are reported too
+                if(!entry.getValue().equals(modifications.get(entry.getKey())) &&
+                        dataManager.hasTableEditTrigger(entry.getKey())) {
+                    tableEvents.tableChange(entry.getKey(), TableModelEvent.UPDATE, null);
+                }
+            }
+        }
+        modifications = current;
+    }
+}
@@ -41,16 +41,11 @@ import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.TableLocation;
 import org.orbisgis.corejdbc.DataManager;
 import org.orbisgis.corejdbc.StateEvent;
-import org.orbisgis.corejdbc.TableEditEvent;
 
-import javax.swing.*;
 import javax.swing.event.TableModelEvent;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Trigger attached to H2 Database
@@ -60,12 +55,16 @@ public class TableTrigger implements Trigger {
     private DataManager dataManager;
     private String tableIdentifier;
     private boolean update;
-    private final Queue<TableEditEvent> editStack = new ConcurrentLinkedQueue<>();
-    private final AtomicBoolean stateEventProcessing = new AtomicBoolean(false);
+    private final TableEditEventCoalescer tableEvents;
     private int pkColumn = -1;
 
-    public TableTrigger(DataManager dataManager) {
+    /**
+     * @param dataManager Data manager that holds the table listeners
+     * @param tableEvents Row changes are merged and delivered by this coalescer
+     */
+    public TableTrigger(DataManager dataManager, TableEditEventCoalescer tableEvents) {
         this.dataManager = dataManager;
+        this.tableEvents = tableEvents;
     }
 
     @Override
@@ -94,10 +93,10 @@ public class TableTrigger implements Trigger {
             type = TableModelEvent.UPDATE;
         }
         Long pk = null;
-        if(pkColumn != -1 && newRow != null && newRow.length > pkColumn - 1 && newRow[pkColumn - 1] instanceof Long) {
-            pk = (Long)newRow[pkColumn - 1];
+        if(pkColumn != -1 && newRow != null && newRow.length > pkColumn - 1 && newRow[pkColumn - 1] instanceof Number) {
+            pk = ((Number) newRow[pkColumn - 1]).longValue();
         }
-        fireEvent(new TableEditEvent(tableIdentifier, TableModelEvent.ALL_COLUMNS, pk, pk, type));
+        tableEvents.tableChange(tableIdentifier, type, pk);
     }
 
     @Override
@@ -109,53 +108,6 @@ public class TableTrigger implements Trigger {
     public void remove() throws SQLException {
         // Do not fire the event in the H2 thread in order to not raise
         // org.h2.jdbc.JdbcSQLException: Timeout trying to lock table XXX
-        fireEvent(new TableEditEvent(tableIdentifier, TableModelEvent.ALL_COLUMNS, null, null, TableModelEvent.DELETE));
-    }
-
-    private void fireEvent(TableEditEvent evt) {
-        editStack.add(evt);
-        if(!stateEventProcessing.getAndSet(true)) {
-            new TableEditEventProcess(dataManager, editStack, stateEventProcessing).execute();
-        }
-
-    }
-
-    private static class TableEditEventProcess extends SwingWorker {
-        private final DataManager dataManager;
-        private final Queue<TableEditEvent> editStack;
-        private final AtomicBoolean stateEventProcessing;
-        private static final int TIME_MAX_THREAD_ALIVE = 5000;
-        private static final int SLEEP_TIME = 500;
-
-        private TableEditEventProcess(DataManager dataManager, Queue<TableEditEvent> editStack, AtomicBoolean stateEventProcessing) {
-            this.dataManager = dataManager;
-            this.editStack = editStack;
-            this.stateEventProcessing = stateEventProcessing;
-        }
-
-        @Override
-        public String toString() {
-            return "TableEditEventProcess editStack="+editStack.size();
-        }
-
-        @Override
-        protected Object doInBackground() throws Exception {
-            long begin = System.currentTimeMillis();
-            try {
-                while (!editStack.isEmpty() || System.currentTimeMillis() - begin < TIME_MAX_THREAD_ALIVE) {
-                    while (!editStack.isEmpty()) {
-                        dataManager.fireTableEditHappened(editStack.remove());
-                    }
-                    try {
-                        Thread.sleep(SLEEP_TIME);
-                    } catch (InterruptedException ex) {
-                        break;
-                    }
-                }
-            } finally {
-                stateEventProcessing.set(false);
-            }
-            return null;
-        }
+        tableEvents.tableChange(tableIdentifier, TableModelEvent.DELETE, null);
     }
 }
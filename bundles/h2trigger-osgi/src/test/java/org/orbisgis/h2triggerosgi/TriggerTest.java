@@ -37,6 +37,7 @@
 package org.orbisgis.h2triggerosgi;
 
 import org.h2gis.functions.factory.H2GISDBFactory;
+import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.SFSUtilities;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -49,8 +50,13 @@ import org.orbisgis.corejdbc.internal.DataManagerImpl;
 import org.orbisgis.h2triggersosgi.EventListenerService;
 
 import javax.sql.DataSource;
+import javax.swing.event.TableModelEvent;
+import java.io.File;
+import java.net.URI;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -64,6 +70,7 @@ import static org.junit.Assert.assertTrue;
  */
 public class TriggerTest {
 
+    private static final long EVENT_TIMEOUT = 10000;
     private static DataSource dataSource;
 
 
@@ -112,7 +119,7 @@ public class TriggerTest {
             dataManager.addTableEditListener("TEST", tableEvents);
             assertTrue(tableEvents.getEvents().isEmpty());
             st.execute("INSERT INTO TEST VALUES (1)");
-            Thread.sleep(1000);
+            waitForEvents(tableEvents, 1);
             List<TableEditEvent> evts = tableEvents.getEvents();
             assertEquals(1, evts.size());
             assertNull(evts.get(0).getUndoableEdit());
@@ -124,11 +131,179 @@ public class TriggerTest {
         evtServ.unsetDataManager(dataManager);
     }
 
+    @Test
+    public void testTableTriggerCoalescing() throws Exception {
+        DataManager dataManager = new DataManagerImpl(dataSource);
+        EventListenerService evtServ = new EventListenerService();
+        evtServ.setDataManager(dataManager);
+        EventStack tableEvents = new EventStack();
+        try(Connection connection = dataSource.getConnection();
+            Statement st = connection.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS TESTBULK");
+            st.execute("CREATE TABLE TESTBULK(ID bigint primary key, VAL int)");
+            dataManager.addTableEditListener("TESTBULK", tableEvents);
+            // Consecutive primary keys, a single range event
+            st.execute("INSERT INTO TESTBULK SELECT X, X FROM SYSTEM_RANGE(1, 1000)");
+            waitForEvents(tableEvents, 1);
+            List<TableEditEvent> evts = tableEvents.getEvents();
+            assertEquals(1, evts.size());
+            assertEquals(1L, evts.get(0).getFirstRowPK().longValue());
+            assertEquals(1000L, evts.get(0).getLastRowPK().longValue());
+            assertEquals(TableModelEvent.INSERT, evts.get(0).getType());
+            evts.clear();
+            // Too many ranges, a single whole table event
+            st.execute("UPDATE TESTBULK SET VAL = 0 WHERE MOD(ID, 2) = 0");
+            waitForEvents(tableEvents, 1);
+            assertEquals(1, evts.size());
+            assertNull(evts.get(0).getFirstRowPK());
+            assertEquals(TableModelEvent.UPDATE, evts.get(0).getType());
+        } finally {
+            dataManager.removeTableEditListener("TESTBULK", tableEvents);
+        }
+        evtServ.disable();
+        evtServ.unsetDataManager(dataManager);
+    }
+
+    @Test
+    public void testStatementChangeEvents() throws Exception {
+        DataManager dataManager = new DataManagerImpl(dataSource);
+        EventStack tableEvents = new EventStack();
+        EventStack noTriggerEvents = new EventStack();
+        EventStack barrierEvents = new EventStack();
+        try(Connection connection = dataSource.getConnection();
+            Statement st = connection.createStatement()) {
+            // The tables exist before the first modification counters are read
+            st.execute("DROP TABLE IF EXISTS TESTSTATEMENT");
+            st.execute("CREATE TABLE TESTSTATEMENT(ID bigint primary key, VAL int)");
+            st.execute("DROP TABLE IF EXISTS TESTNOTRIGGER");
+            st.execute("CREATE TABLE TESTNOTRIGGER(ID bigint primary key, VAL int)");
+            st.execute("DROP TABLE IF EXISTS TESTBARRIER");
+            st.execute("CREATE TABLE TESTBARRIER(ID bigint primary key, VAL int) AS SELECT 1, 1");
+            EventListenerService evtServ = new EventListenerService();
+            evtServ.setDataManager(dataManager);
+            try {
+                dataManager.addTableEditListener("TESTSTATEMENT", tableEvents);
+                dataManager.addTableEditListener("TESTBARRIER", barrierEvents);
+                // This listener does not request the database changes
+                dataManager.addTableEditListener("TESTNOTRIGGER", noTriggerEvents, false);
+                // Row trigger mode
+                st.execute("INSERT INTO TESTSTATEMENT VALUES (0, 0)");
+                waitForEvents(tableEvents, 1);
+                waitForDelivery(st, barrierEvents);
+                tableEvents.getEvents().clear();
+                // The row change already reported by the trigger is not reported again
+                dataManager.setStatementChangeEvents(true);
+                // No row trigger
+                try(ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TRIGGERS WHERE " +
+                        "TABLE_NAME = 'TESTSTATEMENT'")) {
+                    assertTrue(rs.next());
+                    assertEquals(0, rs.getInt(1));
+                }
+                waitForDelivery(st, barrierEvents);
+                assertTrue(tableEvents.getEvents().isEmpty());
+                st.execute("INSERT INTO TESTSTATEMENT SELECT X, X FROM SYSTEM_RANGE(1, 1000)");
+                waitForEvents(tableEvents, 1);
+                waitForDelivery(st, barrierEvents);
+                // A single whole table event
+                List<TableEditEvent> evts = tableEvents.getEvents();
+                assertEquals(1, evts.size());
+                assertNull(evts.get(0).getFirstRowPK());
+                assertEquals(TableModelEvent.UPDATE, evts.get(0).getType());
+                evts.clear();
+                // Queries do not fire events
+                st.execute("SELECT * FROM TESTSTATEMENT");
+                waitForDelivery(st, barrierEvents);
+                assertTrue(evts.isEmpty());
+                // Only the tables that would have a trigger are reported
+                st.execute("INSERT INTO TESTNOTRIGGER VALUES (1, 1)");
+                waitForDelivery(st, barrierEvents);
+                assertTrue(noTriggerEvents.getEvents().isEmpty());
+                assertTrue(evts.isEmpty());
+            } finally {
+                dataManager.removeTableEditListener("TESTSTATEMENT", tableEvents);
+                dataManager.removeTableEditListener("TESTNOTRIGGER", noTriggerEvents);
+                dataManager.removeTableEditListener("TESTBARRIER", barrierEvents);
+                evtServ.disable();
+                evtServ.unsetDataManager(dataManager);
+            }
+        }
+    }
+
+    @Test
+    public void testCachedFileSqlEdit() throws Exception {
+        DataManager dataManager = new DataManagerImpl(dataSource);
+        dataManager.setMaterializeLinkedFiles(true);
+        EventListenerService evtServ = new EventListenerService();
+        evtServ.setDataManager(dataManager);
+        File folder = File.createTempFile("cachedfile", "");
+        assertTrue(folder.delete());
+        assertTrue(folder.mkdir());
+        File file = new File(folder, "points.shp");
+        try(Connection connection = dataSource.getConnection();
+            Statement st = connection.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS POINTS_SOURCE");
+            st.execute("CREATE TABLE POINTS_SOURCE(ID int primary key, THE_GEOM GEOMETRY) AS SELECT X, " +
+                    "ST_MakePoint(X, X) FROM SYSTEM_RANGE(1, 10)");
+            st.execute("CALL SHPWRITE('" + file.getAbsolutePath() + "', 'POINTS_SOURCE')");
+            st.execute("DROP TABLE POINTS_SOURCE");
+            URI source = file.toURI();
+            String tableIdentifier = dataManager.registerDataSource(source);
+            assertNotNull(dataManager.getCachedEnvelope(tableIdentifier));
+            // Edit the cached table with a SQL query, without any event fired by the application
+            st.execute("DELETE FROM " + tableIdentifier + " WHERE _ROWID_ = (SELECT MIN(_ROWID_) FROM " +
+                    tableIdentifier + ")");
+            long deadline = System.currentTimeMillis() + 10000;
+            while(dataManager.getCachedEnvelope(tableIdentifier) != null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertNull(dataManager.getCachedEnvelope(tableIdentifier));
+            // The edited table is not replaced when the file is updated
+            assertTrue(file.setLastModified(file.lastModified() + 2000));
+            assertEquals(tableIdentifier, dataManager.registerDataSource(source));
+            assertEquals(9, JDBCUtilities.getRowCount(connection, tableIdentifier));
+            st.execute("DROP TABLE " + tableIdentifier);
+        } finally {
+            File[] copies = folder.listFiles();
+            if(copies != null) {
+                for(File copy : copies) {
+                    assertTrue(copy.delete());
+                }
+            }
+            assertTrue(folder.delete());
+        }
+        evtServ.disable();
+        evtServ.unsetDataManager(dataManager);
+    }
+
     @Test
     public void testListenerWithWrapper() throws Exception {
         testListenerInternal(SFSUtilities.wrapSpatialDataSource(dataSource));
     }
 
+    /**
+     * Wait until the given number of events has been received, or until {@link #EVENT_TIMEOUT}.
+     */
+    private static void waitForEvents(EventStack events, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + EVENT_TIMEOUT;
+        while(events.getEvents().size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
+    /**
+     * Wait until the changes made before this call have been delivered. The events are delivered by a single thread,
+     * the changes of the barrier table are reported in a delivery that follows the one of the previous changes.
+     * @param st Statement used to change the barrier table
+     * @param barrierEvents Listener of the barrier table
+     */
+    private static void waitForDelivery(Statement st, EventStack barrierEvents) throws Exception {
+        for(int i = 0; i < 2; i++) {
+            barrierEvents.getEvents().clear();
+            st.execute("UPDATE TESTBARRIER SET VAL = VAL + 1");
+            waitForEvents(barrierEvents, 1);
+        }
+    }
+
     private static class LocalListener implements DatabaseProgressionListener {
         private StateEvent lastState;
 
@@ -143,7 +318,7 @@ public class TriggerTest {
     }
 
     private static class EventStack implements TableEditListener {
-        List<TableEditEvent> events = new LinkedList<>();
+        List<TableEditEvent> events = Collections.synchronizedList(new LinkedList<TableEditEvent>());
         @Override
         public void tableChange(TableEditEvent event) {
             events.add(event);
@@ -154,6 +154,22 @@ public class MainOutputPanel extends JPanel implements MainLogFrame {
         tabbedPane.addTab(tabLabel, subPanel);
     }
 
+    /**
+     * Add a tab that is not a log output
+     * @param tabLabel Tab title
+     * @param component Tab content
+     */
+    public void addTab(String tabLabel, JComponent component) {
+        tabbedPane.addTab(tabLabel, component);
+    }
+
+    /**
+     * @param component Tab content added by {@link #addTab(String, JComponent)}
+     */
+    public void removeTab(JComponent component) {
+        tabbedPane.remove(component);
+    }
+
     public DockingPanelParameters getDockingParameters() {
         return dockingParameters;
     }
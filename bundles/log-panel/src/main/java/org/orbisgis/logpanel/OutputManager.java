@@ -40,6 +40,7 @@ import java.beans.EventHandler;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.orbisgis.corejdbc.DataManager;
 import org.orbisgis.logpanel.api.MainLogMenuService;
 import org.orbisgis.sif.docking.DockingPanel;
 import org.orbisgis.sif.docking.DockingPanelParameters;
@@ -55,6 +56,7 @@ import org.xnap.commons.i18n.I18n;
 import org.xnap.commons.i18n.I18nFactory;
 
 import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
 
 /**
  * The output manager, create then link/unlink appender with LOG4J.
@@ -74,6 +76,8 @@ public class OutputManager implements DockingPanel {
         private PanelAppender.ShowMessageListener outputAllListener;
         private OutputPanel allPanel;
         private LogReaderService logReaderService;
+        private volatile DataManager dataManager;
+        private StatementMetricsPanel statementMetricsPanel;
 
         @Activate
         public void init(Map<String, String> properties) {
@@ -86,6 +90,7 @@ public class OutputManager implements DockingPanel {
                 makeOutputInfo();
                 makeOutputWarning();
                 makeOutputError();
+                SwingUtilities.invokeLater(EventHandler.create(Runnable.class, this, "updateStatementMetrics"));
         }
 
         @Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC)
@@ -102,6 +107,38 @@ public class OutputManager implements DockingPanel {
                 this.logReaderService = logReaderService;
         }
 
+        /**
+         * @param dataManager Show the metrics of the statements issued through this DataManager
+         */
+        @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC)
+        public void setDataManager(DataManager dataManager) {
+                this.dataManager = dataManager;
+                SwingUtilities.invokeLater(EventHandler.create(Runnable.class, this, "updateStatementMetrics"));
+        }
+
+        public void unsetDataManager(DataManager dataManager) {
+                this.dataManager = null;
+                SwingUtilities.invokeLater(EventHandler.create(Runnable.class, this, "updateStatementMetrics"));
+        }
+
+        /**
+         * Replace the statement metrics tab when the DataManager changes, called in the swing thread
+         */
+        public void updateStatementMetrics() {
+                if(mainPanel == null) {
+                        return;
+                }
+                if(statementMetricsPanel != null) {
+                        mainPanel.removeTab(statementMetricsPanel);
+                        statementMetricsPanel = null;
+                }
+                DataManager current = dataManager;
+                if(current != null) {
+                        statementMetricsPanel = new StatementMetricsPanel(current);
+                        mainPanel.addTab(I18N.tr("SQL statements"), statementMetricsPanel);
+                }
+        }
+
         public void unsetLogReaderService(LogReaderService logReaderService) {
                 this.logReaderService = null;
                 for (PanelAppender appender : outputPanels.values()) {
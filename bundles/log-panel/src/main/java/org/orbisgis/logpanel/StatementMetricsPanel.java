@@ -0,0 +1,197 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.logpanel;
+
+import org.orbisgis.corejdbc.DataManager;
+import org.orbisgis.corejdbc.StatementMetrics;
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nFactory;
+
+import javax.swing.BoxLayout;
+import javax.swing.JButton;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+import java.awt.BorderLayout;
+import java.awt.event.ActionListener;
+import java.beans.EventHandler;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Table of the SQL statements issued by the application, with their execution time. Refreshed while shown.
+ */
+public class StatementMetricsPanel extends JPanel {
+    private static final long serialVersionUID = 1L;
+    private static final I18n I18N = I18nFactory.getI18n(StatementMetricsPanel.class);
+    private static final int REFRESH_DELAY = 2000;
+    private final DataManager dataManager;
+    private final MetricsTableModel model = new MetricsTableModel();
+    private final Timer refreshTimer;
+
+    /**
+     * @param dataManager Source of the statement metrics
+     */
+    public StatementMetricsPanel(DataManager dataManager) {
+        super(new BorderLayout());
+        this.dataManager = dataManager;
+        JTable table = new JTable(model);
+        table.setAutoCreateRowSorter(true);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        JPanel buttons = new JPanel();
+        buttons.setLayout(new BoxLayout(buttons, BoxLayout.LINE_AXIS));
+        JButton refresh = new JButton(I18N.tr("Refresh"));
+        refresh.addActionListener(EventHandler.create(ActionListener.class, this, "onRefresh"));
+        buttons.add(refresh);
+        JButton reset = new JButton(I18N.tr("Reset"));
+        reset.setToolTipText(I18N.tr("Forget the collected statement metrics"));
+        reset.addActionListener(EventHandler.create(ActionListener.class, this, "onReset"));
+        buttons.add(reset);
+        add(buttons, BorderLayout.SOUTH);
+        refreshTimer = new Timer(REFRESH_DELAY, EventHandler.create(ActionListener.class, this, "onTimer"));
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        onRefresh();
+        refreshTimer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        refreshTimer.stop();
+        super.removeNotify();
+    }
+
+    /**
+     * Read the metrics again
+     */
+    public void onRefresh() {
+        model.setMetrics(dataManager.getStatementMetrics());
+    }
+
+    /**
+     * Refresh the metrics if the tab is selected
+     */
+    public void onTimer() {
+        if(isShowing()) {
+            onRefresh();
+        }
+    }
+
+    /**
+     * Forget the collected metrics
+     */
+    public void onReset() {
+        dataManager.resetStatementMetrics();
+        onRefresh();
+    }
+
+    private static class MetricsTableModel extends AbstractTableModel {
+        private static final long serialVersionUID = 1L;
+        private final String[] columns = new String[]{I18N.tr("Statement"), I18N.tr("Count"), I18N.tr("Errors"),
+                I18N.tr("Total (ms)"), I18N.tr("Mean (ms)"), I18N.tr("95% (ms)"), I18N.tr("Max (ms)"),
+                I18N.tr("Rows"), I18N.tr("Bytes"), I18N.tr("Call site")};
+        private List<StatementMetrics> metrics = new ArrayList<>();
+
+        private void setMetrics(List<StatementMetrics> metrics) {
+            this.metrics = metrics;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return metrics.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            switch (column) {
+                case 0:
+                case 9:
+                    return String.class;
+                case 1:
+                case 2:
+                case 7:
+                case 8:
+                    return Long.class;
+                default:
+                    return Double.class;
+            }
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            StatementMetrics metric = metrics.get(row);
+            switch (column) {
+                case 0:
+                    return metric.getTemplate();
+                case 1:
+                    return metric.getExecutionCount();
+                case 2:
+                    return metric.getErrorCount();
+                case 3:
+                    return metric.getTotalTime();
+                case 4:
+                    return metric.getMeanTime();
+                case 5:
+                    return metric.getPercentile(95);
+                case 6:
+                    return metric.getMaxTime();
+                case 7:
+                    return metric.getRowCount();
+                case 8:
+                    return metric.getBytesRead();
+                default:
+                    return metric.getCallSite();
+            }
+        }
+    }
+}
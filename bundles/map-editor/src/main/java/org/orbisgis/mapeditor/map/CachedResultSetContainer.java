@@ -69,6 +69,8 @@ public class CachedResultSetContainer implements ResultSetProviderFactory {
     private final Map<String, ReadRowSet> cache = new HashMap<>();
     private static final int LOCK_TIMEOUT = 10;
     private static final int FETCH_SIZE = 50;
+    // Number of batches read ahead while drawing
+    private static final int PREFETCH_DEPTH = 4;
     private static I18n I18N = I18nFactory.getI18n(CachedResultSetContainer.class);
     private static Logger LOGGER = LoggerFactory.getLogger(CachedResultSetContainer.class);
     private static final int ROWSET_FREE_DELAY = 60000;
@@ -117,6 +119,7 @@ public class CachedResultSetContainer implements ResultSetProviderFactory {
                     readRowSet.setFetchSize(FETCH_SIZE);
                     readRowSet.setCloseDelay(ROWSET_FREE_DELAY);
                     readRowSet.setFetchDirection(ResultSet.FETCH_FORWARD);
+                    readRowSet.setPrefetchDepth(PREFETCH_DEPTH);
                     readRowSet.initialize(tableRef, integerPK, pm);
                     cache.put(tableRef, readRowSet);
                 }
@@ -177,7 +180,8 @@ public class CachedResultSetContainer implements ResultSetProviderFactory {
         }
 
         @Override
-        public SpatialResultSet execute(ProgressMonitor pm, Envelope extent, Set<String> fields) throws SQLException {
+        public SpatialResultSet execute(ProgressMonitor pm, Envelope extent, Set<String> fields, double tolerance)
+                throws SQLException {
             lock = readRowSet.getReadLock();
             try {
                 lock.tryLock(LOCK_TIMEOUT, TimeUnit.SECONDS);
@@ -188,7 +192,7 @@ public class CachedResultSetContainer implements ResultSetProviderFactory {
                     readRowSet.beforeFirst();
                     return readRowSet;
                 } else {
-                    return resultSetProvider.execute(pm, extent, fields);
+                    return resultSetProvider.execute(pm, extent, fields, tolerance);
                 }
             } catch (InterruptedException ex) {
                 throw new SQLException(I18N.tr("Lock timeout while fetching {0}, another job is using this resource.",
@@ -76,6 +76,7 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
+import javax.swing.Timer;
 import javax.swing.event.TreeExpansionListener;
 import org.apache.commons.io.FilenameUtils;
 import org.orbisgis.commons.progress.SwingWorkerPM;
@@ -161,6 +162,10 @@ public class MapEditor extends JPanel implements TransformListener, MapEditorExt
     private EditorManager editorManager;
     private Map<ResultSetProviderFactory, Action> rsFactories = new HashMap<>();
     private ExecutorService executorService;
+    // Refresh the connection pool information of the status bar
+    private static final int CONNECTION_POOL_REFRESH = 2000;
+    private Timer connectionPoolTimer = new Timer(CONNECTION_POOL_REFRESH,
+            EventHandler.create(ActionListener.class, this, "onRefreshConnectionPool"));
 
     private boolean userChangedWidth = false;
     private boolean userChangedHeight = false;
@@ -238,6 +243,7 @@ public class MapEditor extends JPanel implements TransformListener, MapEditorExt
         mapEditorPersistence.addPropertyChangeListener(MapEditorPersistence.PROP_DEFAULTMAPCONTEXT,EventHandler.create(PropertyChangeListener.class,this,"onSerialisationMapChange"));
         add(layeredPane, BorderLayout.CENTER);
         add(mapStatusBar, BorderLayout.PAGE_END);
+        connectionPoolTimer.start();
         //Declare Tools of Map Editors
         //Add the tools in the docking Panel title
         createActions();
@@ -467,6 +473,7 @@ public class MapEditor extends JPanel implements TransformListener, MapEditorExt
          * Free MapEditor resources
          **/
         public void dispose() {
+            connectionPoolTimer.stop();
             removeListeners();
             getMapControl().closing();
             loadMap(null);
@@ -576,6 +583,14 @@ public class MapEditor extends JPanel implements TransformListener, MapEditorExt
         mapControl.invalidateImage();
     }
 
+    /**
+     * Update the connection pool information of the status bar
+     */
+    public void onRefreshConnectionPool() {
+        DataManager manager = dataManager;
+        mapStatusBar.setConnectionPoolStatistics(manager != null ? manager.getConnectionPoolStatistics() : null);
+    }
+
     /**
      * User click on the Show/Hide maps tree
      */
@@ -52,6 +52,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.cts.crs.CoordinateReferenceSystem;
 import org.orbisgis.commons.events.OGVetoableChangeSupport;
+import org.orbisgis.corejdbc.ConnectionPoolStatistics;
 import org.orbisgis.mapeditor.map.icons.MapEditorIcons;
 import org.orbisgis.sif.components.CustomButton;
 import org.orbisgis.sif.components.StatusBar;
@@ -64,6 +65,7 @@ import org.xnap.commons.i18n.I18nFactory;
  * - A scale information label
  * - A projection information label
  * - A projection selection button
+ * - The database connection pool usage
  */
 
 public class MapStatusBar extends StatusBar {
@@ -85,6 +87,8 @@ public class MapStatusBar extends StatusBar {
         //Coordinates
         private JLabel mouseCoordinatesLabel;
         private Point2D mouseCoordinates = new Point2D.Double();
+        //Database connections
+        private JLabel connectionPoolLabel;
         //Layout parameters
         private static final int OUTER_BAR_BORDER = 1;
         private static final int HORIZONTAL_EMPTY_BORDER = 4;
@@ -119,6 +123,30 @@ public class MapStatusBar extends StatusBar {
                 //TODO : manage projection
                 setProjection(null);
                 setCursorCoordinates(new Point2D.Double());
+                // Connection pool
+                connectionPoolLabel = new JLabel();
+                connectionPoolLabel.setVisible(false);
+                addComponent(connectionPoolLabel, SwingConstants.RIGHT);
+        }
+
+        /**
+         * @param statistics State of the database connection pool, null to hide the connection information
+         */
+        public void setConnectionPoolStatistics(ConnectionPoolStatistics statistics) {
+                if(statistics == null) {
+                        connectionPoolLabel.setVisible(false);
+                        return;
+                }
+                connectionPoolLabel.setText(I18N.tr("Connections : {0}/{1}", statistics.getActiveConnections(),
+                        statistics.getMaximumPoolSize()));
+                connectionPoolLabel.setToolTipText(I18N.tr("<html>Connections in use : {0}<br/>Idle connections : {1}" +
+                        "<br/>Waits for a connection : {2} ({3} ms)<br/>Leaked connections : {4}<br/>" +
+                        "Prepared statement cache : {5} hits, {6} misses ({7}%)</html>",
+                        new Object[]{statistics.getActiveConnections(), statistics.getIdleConnections(),
+                        statistics.getWaitCount(), statistics.getTotalWaitTime(), statistics.getLeakCount(),
+                        statistics.getStatementCacheHits(), statistics.getStatementCacheMisses(),
+                        Math.round(statistics.getStatementCacheHitRatio() * 100)}));
+                connectionPoolLabel.setVisible(true);
         }
 
         /**
@@ -85,13 +85,14 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
 import javax.sql.RowSet;
 import javax.swing.ImageIcon;
 import javax.swing.JMenuItem;
 import javax.swing.JPopupMenu;
+import org.orbisgis.commons.progress.NullProgressMonitor;
 import org.orbisgis.corejdbc.ReversibleRowSet;
+import org.orbisgis.corejdbc.RowCursor;
+import org.orbisgis.corejdbc.common.LongBitmap;
 import org.orbisgis.coremap.layerModel.*;
 import org.orbisgis.coremap.map.MapTransform;
 import org.orbisgis.coremap.map.TransformListener;
@@ -717,28 +718,20 @@ public class ToolManager implements MouseListener,MouseWheelListener,MouseMotion
                         || (activeLayer.getSelection().isEmpty()) || activeLayerRowSet == null) {
                         return;
                 }
-                Set<Long> selection = activeLayer.getSelection();
-                Lock readLock = activeLayerRowSet.getReadLock();
-                try {
-                    if(readLock.tryLock(TRY_LOCK_TIME, TimeUnit.MILLISECONDS)) {
-                        activeLayerRowSet.beforeFirst();
-                        while (activeLayerRowSet.next()){
-                            if(selection.contains(activeLayerRowSet.getPk())) {
-                                Primitive p;
-                                Geometry geometry = activeLayerRowSet.getGeometry();
+                // Only the batches of the selected rows are fetched, a bitmap selection is copied chunk by chunk
+                try (RowCursor cursor = new RowCursor(activeLayerRowSet, null, new LongBitmap(activeLayer.getSelection()),
+                        TRY_LOCK_TIME, new NullProgressMonitor())) {
+                        while (cursor.next()) {
+                                Geometry geometry = cursor.getGeometry();
                                 if (geometry != null) {
-                                    p = new Primitive(geometry, activeLayerRowSet.getPk());
-                                    Handler[] handlers = p.getHandlers();
-                                    currentHandlers.addAll(Arrays.asList(handlers));
+                                        Primitive p = new Primitive(geometry, cursor.getPk());
+                                        Handler[] handlers = p.getHandlers();
+                                        currentHandlers.addAll(Arrays.asList(handlers));
                                 }
-                            }
                         }
-                    }
-                } catch (SQLException | InterruptedException e) {
+                } catch (SQLException e) {
                         UILOGGER.warn(
                                 I18N.tr("Cannot recalculate the handlers"), e);
-                } finally {
-                    readLock.unlock();
                 }
         }
 
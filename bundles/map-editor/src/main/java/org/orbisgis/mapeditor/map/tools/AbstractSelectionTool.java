@@ -57,7 +57,7 @@ import java.util.Set;
 import org.h2gis.utilities.SFSUtilities;
 import org.h2gis.utilities.TableLocation;
 import org.orbisgis.corejdbc.ReadTable;
-import org.orbisgis.corejdbc.common.LongUnion;
+import org.orbisgis.corejdbc.common.LongBitmap;
 import org.orbisgis.coremap.layerModel.ILayer;
 import org.orbisgis.coremap.layerModel.MapContext;
 import org.orbisgis.coremap.ui.editors.map.tool.Rectangle2DDouble;
@@ -308,12 +308,8 @@ public abstract class AbstractSelectionTool extends Selection {
             protected void done() {
                 try {
                     if (controlDown) {
-                        LongUnion newSel = new LongUnion(activeLayer.getSelection());
-                        for (long el : get()) {
-                            if (!newSel.remove(el)) {
-                                newSel.add(el);
-                            }
-                        }
+                        // Invert the selection state of the found rows
+                        LongBitmap newSel = new LongBitmap(activeLayer.getSelection()).xor(new LongBitmap(get()));
                         activeLayer.setSelection(newSel);
                     } else {
                         activeLayer.setSelection(get());
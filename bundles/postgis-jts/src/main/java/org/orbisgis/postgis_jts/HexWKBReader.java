@@ -0,0 +1,189 @@
+/**
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the 
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ * 
+ * OrbisGIS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2007-2014 CNRS (IRSTV FR CNRS 2488)
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ * This file is part of OrbisGIS.
+ *
+ * OrbisGIS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisGIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisGIS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.postgis_jts;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.io.InStream;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKBReader;
+
+import java.io.IOException;
+
+/**
+ * Read the hexadecimal EWKB sent by the PostGIS server for geometry columns.
+ * The hexadecimal characters are decoded on the fly by the JTS {@link WKBReader}, no intermediate byte array nor
+ * PostGIS geometry is created. An instance is reused for all rows of a result set, it is not thread safe.
+ */
+public class HexWKBReader {
+    private static final int EWKB_M = 0x40000000;
+    private static final byte[] HEX_VALUES = new byte[128];
+    static {
+        for(int i = 0; i < HEX_VALUES.length; i++) {
+            HEX_VALUES[i] = -1;
+        }
+        for(int i = 0; i < 10; i++) {
+            HEX_VALUES['0' + i] = (byte) i;
+        }
+        for(int i = 0; i < 6; i++) {
+            HEX_VALUES['a' + i] = (byte) (10 + i);
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+    private final WKBReader wkbReader;
+    private final HexInStream inStream = new HexInStream();
+
+    /**
+     * @param geometryFactory Factory of the read geometries
+     */
+    public HexWKBReader(GeometryFactory geometryFactory) {
+        wkbReader = new WKBReader(geometryFactory);
+    }
+
+    /**
+     * @param hex Hexadecimal EWKB
+     * @return The geometry, null if the value is not a hexadecimal EWKB supported by JTS (M ordinates)
+     * @throws ParseException The WKB is not valid
+     */
+    public Geometry read(String hex) throws ParseException {
+        if(!isSupported(hex)) {
+            return null;
+        }
+        inStream.setHex(hex);
+        try {
+            return wkbReader.read(inStream);
+        } catch (IOException ex) {
+            throw new ParseException(ex);
+        } finally {
+            inStream.setHex(null);
+        }
+    }
+
+    /**
+     * @param hex Hexadecimal EWKB
+     * @return The EWKB bytes, null if the value is not a hexadecimal EWKB supported by JTS (M ordinates)
+     */
+    public static byte[] toBytes(String hex) {
+        if(!isSupported(hex) || hex.length() % 2 != 0) {
+            return null;
+        }
+        byte[] wkb = new byte[hex.length() / 2];
+        for(int i = 0; i < wkb.length; i++) {
+            int value = decode(hex, i * 2);
+            if(value < 0) {
+                return null;
+            }
+            wkb[i] = (byte) value;
+        }
+        return wkb;
+    }
+
+    /**
+     * Check the EWKB header, JTS ignore the M ordinates flag.
+     * @param hex Hexadecimal EWKB
+     * @return True if the value starts with a byte order and a geometry type without M ordinates
+     */
+    private static boolean isSupported(String hex) {
+        if(hex.length() < 10) {
+            return false;
+        }
+        int byteOrder = decode(hex, 0);
+        if(byteOrder != 0 && byteOrder != 1) {
+            return false;
+        }
+        int typeInt = 0;
+        for(int i = 0; i < 4; i++) {
+            int value = decode(hex, 2 + i * 2);
+            if(value < 0) {
+                return false;
+            }
+            if(byteOrder == 1) {
+                typeInt |= value << (i * 8);
+            } else {
+                typeInt = (typeInt << 8) | value;
+            }
+        }
+        return (typeInt & EWKB_M) == 0;
+    }
+
+    /**
+     * @param hex Hexadecimal string
+     * @param position Position of the first character of the byte
+     * @return Byte value [0-255] or -1 if the characters are not hexadecimal
+     */
+    private static int decode(String hex, int position) {
+        char high = hex.charAt(position);
+        char low = hex.charAt(position + 1);
+        if(high >= HEX_VALUES.length || low >= HEX_VALUES.length) {
+            return -1;
+        }
+        int highValue = HEX_VALUES[high];
+        int lowValue = HEX_VALUES[low];
+        if(highValue < 0 || lowValue < 0) {
+            return -1;
+        }
+        return (highValue << 4) | lowValue;
+    }
+
+    /**
+     * Feed the JTS reader with the bytes of a hexadecimal string
+     */
+    private static class HexInStream implements InStream {
+        private String hex;
+        private int position = 0;
+
+        public void setHex(String hex) {
+            this.hex = hex;
+            position = 0;
+        }
+
+        @Override
+        public void read(byte[] buf) throws IOException {
+            if(position + buf.length * 2 > hex.length()) {
+                throw new IOException("Unexpected end of hexadecimal WKB");
+            }
+            for(int i = 0; i < buf.length; i++) {
+                int value = decode(hex, position);
+                if(value < 0) {
+                    throw new IOException("Invalid hexadecimal WKB at position " + position);
+                }
+                buf[i] = (byte) value;
+                position += 2;
+            }
+        }
+    }
+}
@@ -39,6 +39,7 @@ package org.orbisgis.postgis_jts;
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.io.ParseException;
 import com.vividsolutions.jts.io.WKBWriter;
 import org.postgis.PGboxbase;
 import org.postgis.Point;
@@ -82,6 +83,9 @@ public class ResultSetWrapper implements ResultSet {
     private ResultSet rs;
     public static final Set<String> GEOMETRY_COLUMNS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("geometry", "box2d", "box3d")));
     private Set<Integer> spatialFields = new HashSet<Integer>();
+    // Geometry fields transferred as hexadecimal EWKB
+    private Set<Integer> wkbFields = new HashSet<>();
+    private HexWKBReader wkbReader;
     private Set<Integer> tidFields = new HashSet<>();
     private static GeometryFactory geometryFactory = new GeometryFactory();
 
@@ -95,6 +99,9 @@ public class ResultSetWrapper implements ResultSet {
                 String typeName = meta.getColumnTypeName(col);
                 if(GEOMETRY_COLUMNS.contains(typeName)) {
                     spatialFields.add(col);
+                    if(typeName.equals("geometry")) {
+                        wkbFields.add(col);
+                    }
                 } else if(typeName.equals("tid")) {
                     tidFields.add(col);
                 }
@@ -106,6 +113,24 @@ public class ResultSetWrapper implements ResultSet {
 
     @Override
     public Object getObject(int columnIndex) throws SQLException {
+        if(wkbFields.contains(columnIndex)) {
+            // Decode the server value without building the PostGIS geometry
+            String hex = rs.getString(columnIndex);
+            if(hex == null) {
+                return null;
+            }
+            if(wkbReader == null) {
+                wkbReader = new HexWKBReader(geometryFactory);
+            }
+            try {
+                Geometry geometry = wkbReader.read(hex);
+                if(geometry != null) {
+                    return geometry;
+                }
+            } catch (ParseException ex) {
+                throw new SQLException(ex);
+            }
+        }
         Object object = rs.getObject(columnIndex);
         if(spatialFields.contains(columnIndex)) {
             if(object instanceof JtsGeometry) {
@@ -978,6 +1003,17 @@ public class ResultSetWrapper implements ResultSet {
 
     @Override
     public byte[] getBytes(int columnIndex) throws SQLException {
+        if(wkbFields.contains(columnIndex)) {
+            // Return the server EWKB as is
+            String hex = rs.getString(columnIndex);
+            if(hex == null) {
+                return null;
+            }
+            byte[] wkb = HexWKBReader.toBytes(hex);
+            if(wkb != null) {
+                return wkb;
+            }
+        }
         if(spatialFields.contains(columnIndex)) {
             // Spatial field, return WKB
             Object object = getObject(columnIndex);
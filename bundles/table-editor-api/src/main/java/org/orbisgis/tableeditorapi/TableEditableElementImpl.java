@@ -41,7 +41,7 @@ import java.util.Set;
 import java.util.SortedSet;
 
 import org.orbisgis.corejdbc.DataManager;
-import org.orbisgis.corejdbc.common.LongUnion;
+import org.orbisgis.corejdbc.common.LongBitmap;
 import org.orbisgis.editorjdbc.EditableSourceImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,7 +58,7 @@ public class TableEditableElementImpl extends EditableSourceImpl implements Tabl
         public static final String TYPE_ID = "TableEditableElement";
         private static final Logger LOGGER = LoggerFactory.getLogger(TableEditableElementImpl.class);
         // Properties
-        protected LongUnion selectedGeometries;
+        protected LongBitmap selectedGeometries;
         private final I18n i18n = I18nFactory.getI18n(TableEditableElementImpl.class);
         private boolean isFiltered;
 
@@ -70,7 +70,7 @@ public class TableEditableElementImpl extends EditableSourceImpl implements Tabl
          */
         public TableEditableElementImpl(Set<Long> selection, String sourceName, DataManager dataManager) {
                 super(sourceName, dataManager);
-                this.selectedGeometries = new LongUnion(selection);
+                this.selectedGeometries = new LongBitmap(selection);
         }
 
         /**
@@ -80,7 +80,7 @@ public class TableEditableElementImpl extends EditableSourceImpl implements Tabl
          */
         public TableEditableElementImpl(String sourceName, DataManager dataManager) {
                 super(sourceName, dataManager);
-                this.selectedGeometries = new LongUnion();
+                this.selectedGeometries = new LongBitmap();
         }
 
         @Override
@@ -97,7 +97,7 @@ public class TableEditableElementImpl extends EditableSourceImpl implements Tabl
         public void setSelection(Set<Long> selection) {
                 LOGGER.debug("Editable selection change");
                 Set<Long> oldSelection = this.selectedGeometries;
-                this.selectedGeometries = new LongUnion(selection);
+                this.selectedGeometries = new LongBitmap(selection);
                 propertyChangeSupport.firePropertyChange(PROP_SELECTION, oldSelection, getSelection());
         }
 
@@ -207,6 +207,7 @@ public class DataSourceRowSorter extends RowSorter<DataSourceTableModel> {
         }
         if(model.getRowCount() > 0 && columnFound) {
             SortJob sortJob = new SortJob(sortInformation, columnName, model, viewToModel, dataSource);
+            sortJob.setSortIndexCache(tableEditor.getTableEditableElement().getDataManager().getSortIndexCache());
             sortJob.getEventSortedListeners().addListener(this, EventHandler.create(SortJob.SortJobListener.class, this, "onRowSortDone", ""));
             if(executorService != null) {
                 executorService.execute(sortJob);
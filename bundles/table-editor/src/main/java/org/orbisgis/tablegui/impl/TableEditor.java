@@ -893,8 +893,14 @@ public class TableEditor extends JPanel implements EditorDockable, SourceTable,T
             selectionModelRowId.addAll(tableSorter.getViewToModelIndex());
         }
         String colName = table.getColumnModel().getColumn(popupCellAdress.x).getHeaderValue().toString();
+        ReadRowSet rowSet = null;
+        try {
+            rowSet = tableEditableElement.getRowSet();
+        } catch (EditableElementException ex) {
+            LOGGER.debug(ex.getLocalizedMessage(), ex);
+        }
         executorService.execute(new ComputeFieldStatistics(selectionModelRowId, dataSource, colName,
-                tableEditableElement.getTableReference()));
+                tableEditableElement.getTableReference(), rowSet));
     }
 
     /**
@@ -47,6 +47,7 @@ import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.util.Set;
 import org.orbisgis.corejdbc.DataManager;
+import org.orbisgis.corejdbc.common.LongBitmap;
 import org.orbisgis.corejdbc.common.LongUnion;
 import org.orbisgis.sif.docking.DockingPanelLayout;
 import org.orbisgis.sif.docking.XElement;
@@ -66,7 +67,8 @@ public class TablePanelLayout implements DockingPanelLayout {
         private TableEditableElement tableEditableElement;
         private static final Logger LOGGER = LoggerFactory.getLogger(TablePanelLayout.class);
         private static final I18n I18N = I18nFactory.getI18n(TablePanelLayout.class);
-        private static final int MAX_SELECTION_SERIALISATION_SIZE = 100;
+        // Maximum size in bytes of a saved selection
+        private static final int MAX_SELECTION_SERIALISATION_SIZE = 256 * 1024;
         
         //Fields name (xml)
         private static final String PROP_DATA_SOURCE_NAME = "datasource";
@@ -101,30 +103,31 @@ public class TablePanelLayout implements DockingPanelLayout {
         private void writeSelection(OutputStream out) throws IOException {
                 ObjectOutputStream selectionOut = new ObjectOutputStream(out);
                 //Do not save byte consuming selection
-                LongUnion mergedSelection;
                 Set<Long> selection = tableEditableElement.getSelection();
-                if(selection instanceof LongUnion) {
-                        mergedSelection = (LongUnion) selection;
+                LongBitmap bitmap = selection instanceof LongBitmap ? (LongBitmap) selection :
+                        new LongBitmap(selection);
+                if(bitmap.getSerializedSize()>MAX_SELECTION_SERIALISATION_SIZE) {
+                        selectionOut.writeObject(new LongBitmap());
                 } else {
-                        mergedSelection = new LongUnion(selection);
-                }
-                if(mergedSelection.getValueRanges().size()>MAX_SELECTION_SERIALISATION_SIZE) {
-                        selectionOut.writeObject(new LongUnion());
-                } else {
-                        selectionOut.writeObject(mergedSelection);
+                        selectionOut.writeObject(bitmap);
                 }
                 selectionOut.flush();
                 selectionOut.close();                
         }
         
-        private LongUnion readSelection(InputStream in) {
+        private LongBitmap readSelection(InputStream in) {
                 try {
                         ObjectInputStream selectionIn = new ObjectInputStream(in);
-                        return (LongUnion)selectionIn.readObject();
-                } catch (ClassNotFoundException | IOException ex) {
+                        Object selection = selectionIn.readObject();
+                        // Layouts saved by previous versions hold a LongUnion
+                        if(selection instanceof LongUnion) {
+                                return new LongBitmap((LongUnion) selection);
+                        }
+                        return (LongBitmap) selection;
+                } catch (ClassNotFoundException | IOException | ClassCastException ex) {
                         LOGGER.error(I18N.tr("Selection deserialisation failed"),ex);
                 }
-            return new LongUnion();
+            return new LongBitmap();
         }
         @Override
         public void readStream(DataInputStream in) throws IOException {
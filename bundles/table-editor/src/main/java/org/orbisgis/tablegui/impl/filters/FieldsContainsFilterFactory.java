@@ -64,6 +64,7 @@ import org.h2gis.utilities.TableLocation;
 import org.orbisgis.corejdbc.common.IntegerUnion;
 import org.orbisgis.corejdbc.MetaData;
 import org.orbisgis.corejdbc.ReadRowSet;
+import org.orbisgis.corejdbc.RowCursor;
 import org.orbisgis.commons.progress.ProgressMonitor;
 import org.orbisgis.sif.components.CustomButton;
 import org.orbisgis.sif.components.filter.DefaultActiveFilter;
@@ -271,50 +272,36 @@ public class FieldsContainsFilterFactory implements FilterFactory<TableSelection
                                 } else {
                                     // If the table does not hold any PK, loop through rows
                                     final ReadRowSet rowSet = source.getRowSet();
-                                    rowSet.getReadLock().tryLock(1, TimeUnit.SECONDS);
-                                    try {
-                                        rowSet.beforeFirst();
-                                        int rowId = 0;
-                                        ProgressMonitor progressMonitor = pm.startTask(rowSet.getRowCount());
-                                        if (params.getColumnId() != -1) {
-                                            while(rowSet.next()) {
-                                                if(isFieldContains(rowSet.getString(params.getColumnId() + 1))) {
-                                                    filteredRows.add(rowId);
-                                                }
-                                                progressMonitor.endTask();
-                                                rowId++;
-                                            }
-                                        }
-                                        else if (params.getColumnName() != null) {
-                                            int colId = JDBCUtilities.getFieldIndex(rowSet.getMetaData(), params.getColumnName());
-                                            while(rowSet.next()) {
-                                                if(isFieldContains(rowSet.getString(colId))) {
+                                    int colId = -1;
+                                    if (params.getColumnId() != -1) {
+                                        colId = params.getColumnId() + 1;
+                                    } else if (params.getColumnName() != null) {
+                                        colId = JDBCUtilities.getFieldIndex(rowSet.getMetaData(), params.getColumnName());
+                                    }
+                                    try (RowCursor cursor = new RowCursor(rowSet, null, null,
+                                            TimeUnit.SECONDS.toMillis(1), pm)) {
+                                        int columnCount = cursor.getColumnCount();
+                                        while (cursor.next()) {
+                                            int rowId = cursor.getRow() - 1;
+                                            if (colId != -1) {
+                                                if (isFieldContains(cursor.getString(colId))) {
                                                     filteredRows.add(rowId);
                                                 }
-                                                progressMonitor.endTask();
-                                                rowId++;
-                                            }
-                                        } else {
-                                            while(rowSet.next()) {
-                                                int columnCount = rowSet.getMetaData().getColumnCount();
-                                                for(int col = 1; col < columnCount; col++) {
-                                                    if(isFieldContains(rowSet.getString(col))) {
+                                            } else {
+                                                for (int col = 1; col < columnCount; col++) {
+                                                    if (isFieldContains(cursor.getString(col))) {
                                                         filteredRows.add(rowId);
                                                         break;
                                                     }
                                                 }
-                                                progressMonitor.endTask();
-                                                rowId++;
                                             }
                                         }
-                                    } finally {
-                                        rowSet.getReadLock().unlock();
                                     }
                                 }
                             } finally {
                                 pm.removePropertyChangeListener(cancelListener);
                             }
-                        } catch (EditableElementException | InterruptedException ex) {
+                        } catch (EditableElementException ex) {
                             throw new SQLException(ex);
                         }
                 }
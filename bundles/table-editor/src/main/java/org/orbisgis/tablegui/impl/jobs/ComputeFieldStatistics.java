@@ -41,10 +41,13 @@ import java.sql.SQLException;
 import javax.sql.DataSource;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 
 import org.h2gis.utilities.JDBCUtilities;
 import org.orbisgis.commons.progress.SwingWorkerPM;
 import org.orbisgis.corejdbc.common.IntegerUnion;
+import org.orbisgis.corejdbc.ReadRowSet;
 import org.orbisgis.corejdbc.ReadTable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,10 +61,12 @@ import org.xnap.commons.i18n.I18nFactory;
 public class ComputeFieldStatistics extends SwingWorkerPM {
     protected final static I18n I18N = I18nFactory.getI18n(ComputeFieldStatistics.class);
     private static final Logger LOGGER = LoggerFactory.getLogger("gui." + ComputeFieldStatistics.class);
+    private static final int LOCK_TIMEOUT = 10; // In seconds
     private Set<Integer> statisticsRowFilter;
     private DataSource ds;
     private String columnName;
     private String table;
+    private ReadRowSet rowSet;
 
     /**
      * Constructor
@@ -80,6 +85,21 @@ public class ComputeFieldStatistics extends SwingWorkerPM {
         setTaskName(I18N.tr("Compute column statistics."));
     }
 
+    /**
+     * Constructor
+     *
+     * @param statisticsRowFilter Row id filter (not primary key)
+     * @param dataSource          JDBC Datasource
+     * @param columnName          Column name
+     * @param tableName           Table identifier
+     * @param rowSet              Row set of the table, used to find the primary key of the filtered rows
+     */
+    public ComputeFieldStatistics(Set<Integer> statisticsRowFilter, DataSource dataSource, String columnName,
+                                  String tableName, ReadRowSet rowSet) {
+        this(statisticsRowFilter, dataSource, columnName, tableName);
+        this.rowSet = rowSet;
+    }
+
     @Override
     protected Object doInBackground() throws Exception {
         try {
@@ -92,12 +112,19 @@ public class ComputeFieldStatistics extends SwingWorkerPM {
                 } else {
                     sortedSet = new IntegerUnion(statisticsRowFilter);
                 }
+                SortedSet<Long> rowPk = getRowPk(sortedSet);
                 try (Connection connection = ds.getConnection()) {
-                    stats = ReadTable.computeStatsLocal(connection, table, columnName, sortedSet, this.getProgressMonitor());
+                    if (rowPk != null) {
+                        stats = ReadTable.computeStatsSQL(connection, table, columnName, rowPk, this.getProgressMonitor());
+                    } else {
+                        stats = ReadTable.computeStatsLocal(connection, table, columnName, sortedSet, this.getProgressMonitor());
+                    }
                 }
             } else {
-                try (Connection connection = ds.getConnection()) {
-                    stats = ReadTable.computeStatsSQL(connection, table, columnName, this.getProgressMonitor());
+                stats = ReadTable.computeStatsSQL(ds, table, columnName, this.getProgressMonitor());
+                if (stats == null) {
+                    // Canceled
+                    return null;
                 }
             }
             // Show table statistics
@@ -115,4 +142,27 @@ public class ComputeFieldStatistics extends SwingWorkerPM {
         }
         return null;
     }
+
+    /**
+     * @param rowNumber Row id filter
+     * @return Primary key of the filtered rows or null if the row set is not available
+     */
+    private SortedSet<Long> getRowPk(SortedSet<Integer> rowNumber) throws SQLException {
+        if (rowSet == null) {
+            return null;
+        }
+        Lock lock = rowSet.getReadLock();
+        try {
+            if (lock.tryLock(LOCK_TIMEOUT, TimeUnit.SECONDS)) {
+                try {
+                    return ReadTable.getRowPkFromRowNumber(rowSet, rowNumber);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (InterruptedException ex) {
+            // Compute stats without the row set
+        }
+        return null;
+    }
 }
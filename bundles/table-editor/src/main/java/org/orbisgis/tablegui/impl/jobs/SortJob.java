@@ -41,6 +41,7 @@ import org.orbisgis.commons.events.Listener;
 import org.orbisgis.commons.events.ListenerContainer;
 import org.orbisgis.commons.progress.SwingWorkerPM;
 import org.orbisgis.corejdbc.ReadTable;
+import org.orbisgis.corejdbc.SortIndexCache;
 import org.orbisgis.corejdbc.common.IntegerUnion;
 import org.orbisgis.tablegui.impl.DataSourceTableModel;
 import org.slf4j.Logger;
@@ -76,6 +77,7 @@ public class SortJob extends SwingWorkerPM<Collection<Integer>, Collection<Integ
         private ListenerContainer<SortJobEventSorted> eventSortedListeners = new ListenerContainer<>();
         private Collection<Integer> modelIndex;
         private DataSource dataSource;
+        private SortIndexCache sortIndexCache;
 
         /**
          *
@@ -108,6 +110,13 @@ public class SortJob extends SwingWorkerPM<Collection<Integer>, Collection<Integ
         setTaskName(I18N.tr("Sorting {0}",columnSortName));
     }
 
+    /**
+     * @param sortIndexCache Cache of the sorted indexes, the sort is done again if null
+     */
+    public void setSortIndexCache(SortIndexCache sortIndexCache) {
+        this.sortIndexCache = sortIndexCache;
+    }
+
         public ListenerContainer<SortJobEventSorted> getEventSortedListeners() {
                 return eventSortedListeners;
         }
@@ -120,6 +129,10 @@ public class SortJob extends SwingWorkerPM<Collection<Integer>, Collection<Integ
                 modelIndex = new IntegerUnion(0, model.getRowCount() - 1);
             }
             try(Connection connection = dataSource.getConnection()) {
+                if(sortIndexCache != null) {
+                    return sortIndexCache.getSortedColumnRowIndex(connection, model.getRowSet(), model.getTableName(),
+                            columnSortName, sortRequest.getSortOrder() == SortOrder.ASCENDING, this.getProgressMonitor());
+                }
                 return ReadTable.getSortedColumnRowIndex(connection,model.getRowSet(), model.getTableName(), columnSortName, sortRequest.getSortOrder() == SortOrder.ASCENDING, this.getProgressMonitor());
             }
         }
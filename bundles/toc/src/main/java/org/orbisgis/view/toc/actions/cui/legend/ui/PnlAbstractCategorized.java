@@ -40,8 +40,8 @@ import net.miginfocom.swing.MigLayout;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.h2gis.utilities.TableLocation;
 import org.orbisgis.corejdbc.MetaData;
+import org.orbisgis.coremap.renderer.classification.ClassificationUtils;
 import org.orbisgis.coremap.renderer.se.parameter.Categorize;
 import org.orbisgis.legend.thematic.LineParameters;
 import org.orbisgis.legend.thematic.categorize.AbstractCategorizedLegend;
@@ -62,10 +62,7 @@ import javax.sql.DataSource;
 import javax.swing.*;
 import java.awt.event.ActionListener;
 import java.beans.EventHandler;
-import java.sql.Connection;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.SortedSet;
@@ -124,11 +121,11 @@ public abstract class PnlAbstractCategorized<U extends LineParameters> extends P
 
     private Thresholds computeStats(String fieldName){
         DescriptiveStatistics stats = new DescriptiveStatistics();
-        try(Connection connection = getDataSource().getConnection();
-            Statement st = connection.createStatement();
-            ResultSet rs = st.executeQuery("select "+ TableLocation.quoteIdentifier(fieldName)+ " from "+getTable()+ " where "+ TableLocation.quoteIdentifier(fieldName) + " is not null" )) {
-            while(rs.next()) {
-                stats.addValue(rs.getDouble(1));
+        try {
+            double[] values = ClassificationUtils.getSortedValues(getDataSource(), getTable(), fieldName,
+                    new NullProgressMonitor());
+            if(values != null) {
+                stats = new DescriptiveStatistics(values);
             }
         } catch (SQLException e) {
             LOGGER.warn(I18N.tr("The application has ended unexpectedly"),e);
@@ -53,4 +53,18 @@ public class DoubleQueueValue<I, B> {
                 this.val = val;
                 this.key = key;
         }
+
+        /**
+         * @return the key of the element
+         */
+        public I getKey() {
+                return key;
+        }
+
+        /**
+         * @return the element
+         */
+        public B getValue() {
+                return val;
+        }
 }
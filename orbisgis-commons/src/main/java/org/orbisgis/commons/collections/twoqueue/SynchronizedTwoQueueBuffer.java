@@ -92,4 +92,18 @@ public abstract class SynchronizedTwoQueueBuffer<I, B> extends TwoQueueBuffer<I,
                         return super.remove(key);
                 }
         }
+
+        @Override
+        public boolean contains(I key) {
+                synchronized (this) {
+                        return super.contains(key);
+                }
+        }
+
+        @Override
+        public boolean unloadOldest() {
+                synchronized (this) {
+                        return super.unloadOldest();
+                }
+        }
 }
@@ -73,6 +73,15 @@ final class TwoQueueA1in<I, B> implements Iterable<Entry<I, DoubleQueueValue<I,
                 return map.isEmpty();
         }
 
+        /**
+         * Checks if the block with the given id is in this queue.
+         * @param key the id of a block
+         * @return true if the block is found
+         */
+        boolean containsKey(I key) {
+                return map.containsKey(key);
+        }
+
         /**
          * Gets the block with the given id
          * @param key the id of a block
@@ -148,6 +157,20 @@ final class TwoQueueA1in<I, B> implements Iterable<Entry<I, DoubleQueueValue<I,
                 }
         }
 
+        /**
+         * Removes the oldest element of the queue.
+         * @return the removed element, or null if the queue is empty
+         */
+        DoubleQueueValue<I, B> removeOldest() {
+                if (newest == null) {
+                        return null;
+                }
+                DoubleQueueValue<I, B> v = newest.previous;
+                map.remove(v.key);
+                remove(v);
+                return v;
+        }
+
         B remove(I key) {
                 DoubleQueueValue<I, B> v = map.remove(key);
                 if (v != null) {
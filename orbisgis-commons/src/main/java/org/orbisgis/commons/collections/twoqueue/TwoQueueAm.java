@@ -137,6 +137,20 @@ final class TwoQueueAm<I, B> implements Iterable<Entry<I, DoubleQueueValue<I, B>
                 }
         }
 
+        /**
+         * Removes the least recently used element of the queue.
+         * @return the removed element, or null if the queue is empty
+         */
+        DoubleQueueValue<I, B> removeOldest() {
+                if (newest == null) {
+                        return null;
+                }
+                DoubleQueueValue<I, B> v = newest.previous;
+                map.remove(v.key);
+                remove(v);
+                return v;
+        }
+
         B remove(I key) {
                 DoubleQueueValue<I, B> v = map.remove(key);
                 if (v != null) {
@@ -209,6 +209,38 @@ public abstract class TwoQueueBuffer<I, B> implements Iterable<DoubleQueueValue<
                 }
         }
 
+        /**
+         * Checks if the element with the key {@code key } is loaded. Its position in the queues is not changed.
+         * @param key a key
+         * @return true if the element is loaded
+         */
+        public boolean contains(I key) {
+                return am.containsKey(key) || a1in.containsKey(key);
+        }
+
+        /**
+         * Unloads one element. This is useful when the buffer is also bounded by another criteria than the number
+         * of elements, e.g. the memory used by the elements.
+         *
+         * Like an overflow of <tt>A1in</tt>, its oldest element is unloaded and its key is remembered in
+         * <tt>A1out</tt>, unless <tt>Am</tt> holds more than 75% of the loaded elements: then the least recently
+         * used element of <tt>Am</tt> is unloaded.
+         * @return true if an element has been unloaded, false if the buffer is empty
+         */
+        public boolean unloadOldest() {
+                if (!am.isEmpty() && (a1in.isEmpty() || am.size() > 3 * a1in.size())) {
+                        unload(am.removeOldest().val);
+                        return true;
+                }
+                DoubleQueueValue<I, B> v = a1in.removeOldest();
+                if (v != null) {
+                        unload(v.val);
+                        a1out.put(v.key);
+                        return true;
+                }
+                return false;
+        }
+
         /**
          * Gets an iterator over the key/value pairs of elements loaded in this buffer.
          * 
@@ -310,4 +310,31 @@ public class TwoQueueTest {
                 b.get(i);
                 assertEquals(i, b.lastRec);
         }
+
+        @Test
+        public void testUnloadOldest() {
+                TestComplex2Q b = new TestComplex2Q(8);
+
+                b.get(0);
+                b.get(1);
+                assertTrue(b.contains(0));
+                assertFalse(b.contains(5));
+
+                // the oldest element of A1in goes to A1out
+                assertTrue(b.unloadOldest());
+                assertEquals(0, b.lastUn);
+                assertFalse(b.contains(0));
+                b.get(0);
+                assertEquals(0, b.lastRec);
+                assertTrue(b.contains(0));
+                assertEquals(2, b.size());
+
+                // A1in is unloaded before Am
+                assertTrue(b.unloadOldest());
+                assertEquals(1, b.lastUn);
+                assertTrue(b.unloadOldest());
+                assertEquals(0, b.lastUn);
+                assertTrue(b.isEmpty());
+                assertFalse(b.unloadOldest());
+        }
 }